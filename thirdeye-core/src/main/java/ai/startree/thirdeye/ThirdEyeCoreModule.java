@@ -19,6 +19,7 @@ import ai.startree.thirdeye.config.UiConfiguration;
 import ai.startree.thirdeye.datalayer.ThirdEyePersistenceModule;
 import ai.startree.thirdeye.datasource.loader.DefaultAggregationLoader;
 import ai.startree.thirdeye.datasource.loader.DefaultMinMaxTimeLoader;
+import ai.startree.thirdeye.detectionpipeline.sql.ParsedQueryCacheMetrics;
 import ai.startree.thirdeye.rootcause.configuration.RcaConfiguration;
 import ai.startree.thirdeye.spi.datasource.loader.AggregationLoader;
 import ai.startree.thirdeye.spi.datasource.loader.MinMaxTimeLoader;
@@ -53,6 +54,7 @@ public class ThirdEyeCoreModule extends AbstractModule {
 
     bind(AggregationLoader.class).to(DefaultAggregationLoader.class).in(Scopes.SINGLETON);
     bind(MinMaxTimeLoader.class).to(DefaultMinMaxTimeLoader.class).in(Scopes.SINGLETON);
+    bind(ParsedQueryCacheMetrics.class).asEagerSingleton();
 
     bind(CacheConfig.class).toInstance(cacheConfig);
     bind(RcaConfiguration.class).toInstance(rcaConfiguration);
@@ -21,19 +21,24 @@ import static ai.startree.thirdeye.util.ResourceUtils.ensureExists;
 import ai.startree.thirdeye.mapper.ApiBeanMapper;
 import ai.startree.thirdeye.spi.api.AlertApi;
 import ai.startree.thirdeye.spi.api.AlertTemplateApi;
+import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.bao.AlertManager;
 import ai.startree.thirdeye.spi.datalayer.bao.AlertTemplateManager;
 import ai.startree.thirdeye.spi.datalayer.dto.AlertDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.AlertTemplateDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
 import ai.startree.thirdeye.spi.template.TemplatePropertyMetadata;
+import ai.startree.thirdeye.util.CompiledTemplate;
 import ai.startree.thirdeye.util.StringTemplateUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Interval;
@@ -41,8 +46,28 @@ import org.joda.time.Interval;
 @Singleton
 public class AlertTemplateRenderer {
 
+  private static final int COMPILED_TEMPLATES_MAXIMUM_SIZE = 1000;
+
   private final AlertManager alertManager;
   private final AlertTemplateManager alertTemplateManager;
+  /**
+   * Templates read from the database, by version. Never modified.
+   */
+  private final Cache<TemplateVersion, AlertTemplateDTO> templates =
+      CacheBuilder.newBuilder()
+          .maximumSize(COMPILED_TEMPLATES_MAXIMUM_SIZE)
+          .build();
+  private final Cache<TemplateVersion, CompiledTemplate<AlertTemplateDTO>> compiledTemplates =
+      CacheBuilder.newBuilder()
+          .maximumSize(COMPILED_TEMPLATES_MAXIMUM_SIZE)
+          .build();
+  /**
+   * Templates rendered with the alert properties, compiled for the enumeration item pass.
+   */
+  private final Cache<AlertRendering, RenderedTemplate> renderedTemplates =
+      CacheBuilder.newBuilder()
+          .maximumSize(COMPILED_TEMPLATES_MAXIMUM_SIZE)
+          .build();
 
   @Inject
   public AlertTemplateRenderer(
@@ -103,26 +128,51 @@ public class AlertTemplateRenderer {
   public AlertTemplateDTO renderAlert(final AlertDTO alert, final Interval detectionInterval,
       @Nullable final EnumerationItemDTO enumerationItemDTO)
       throws IOException, ClassNotFoundException {
-    final AlertTemplateDTO templateWithAlertProperties = renderAlert(alert, detectionInterval);
-
     if (enumerationItemDTO == null || enumerationItemDTO.getParams() == null
         || enumerationItemDTO.getParams().isEmpty()) {
-      return templateWithAlertProperties;
+      return renderAlert(alert, detectionInterval);
     }
 
     // re-render with enum properties
-    // remove id and name to prevent template being re-fetched from db
-    final Long templateId = templateWithAlertProperties.getId();
-    final String templateName = templateWithAlertProperties.getName();
-    templateWithAlertProperties.setId(null);
-    templateWithAlertProperties.setName(null);
-    final AlertDTO alertWithEnumProperties = new AlertDTO().setTemplate(templateWithAlertProperties)
-        .setTemplateProperties(enumerationItemDTO.getParams());
-    final AlertTemplateDTO templateWithEnumProperties = renderAlert(alertWithEnumProperties,
+    final RenderedTemplate templateWithAlertProperties = templateWithAlertProperties(alert,
         detectionInterval);
-    templateWithEnumProperties.setId(templateId);
-    templateWithEnumProperties.setName(templateName);
-    return templateWithEnumProperties;
+    return applyContext(templateWithAlertProperties.template,
+        templateWithAlertProperties.compiledTemplate,
+        enumerationItemDTO.getParams(),
+        detectionInterval,
+        alert.getName());
+  }
+
+  /**
+   * Returns the template rendered with the alert properties, compiled for the enumeration item
+   * pass. For templates persisted in the database, the result is cached: the first pass and its
+   * compilation run once per template version, alert properties and detection interval.
+   */
+  private RenderedTemplate templateWithAlertProperties(final AlertDTO alert,
+      final Interval detectionInterval) throws IOException, ClassNotFoundException {
+    final AlertTemplateDTO template = getTemplate(alert.getTemplate());
+    final TemplateVersion version = TemplateVersion.of(template);
+    if (version == null) {
+      return renderTemplateWithAlertProperties(template, alert, detectionInterval);
+    }
+    final AlertRendering rendering = new AlertRendering(version, alert, detectionInterval);
+    // rendering twice in a race is harmless: both rendered templates are equivalent
+    RenderedTemplate rendered = renderedTemplates.getIfPresent(rendering);
+    if (rendered == null) {
+      rendered = renderTemplateWithAlertProperties(template, alert, detectionInterval);
+      renderedTemplates.put(rendering, rendered);
+    }
+    return rendered;
+  }
+
+  private RenderedTemplate renderTemplateWithAlertProperties(final AlertTemplateDTO template,
+      final AlertDTO alert, final Interval detectionInterval) throws IOException {
+    final AlertTemplateDTO rendered = applyContext(template,
+        compiledTemplate(template),
+        alert.getTemplateProperties(),
+        detectionInterval,
+        alert.getName());
+    return new RenderedTemplate(rendered, StringTemplateUtils.compile(rendered));
   }
 
   private AlertTemplateDTO renderAlertInternal(final AlertTemplateDTO alertTemplateInsideAlertDto,
@@ -132,31 +182,78 @@ public class AlertTemplateRenderer {
       throws IOException, ClassNotFoundException {
     final AlertTemplateDTO template = getTemplate(alertTemplateInsideAlertDto);
     return applyContext(template,
+        compiledTemplate(template),
         templateProperties,
         detectionInterval,
         alertName);
   }
 
+  /**
+   * Returns the template referenced by id or by name, or the template itself if it is inline.
+   *
+   * Templates read from the database are cached by version: only the index table is read to check
+   * that the cached template is up to date. The returned template is shared and must not be
+   * modified.
+   */
   public AlertTemplateDTO getTemplate(final AlertTemplateDTO alertTemplateDTO) {
     final Long id = alertTemplateDTO.getId();
+    final String name = alertTemplateDTO.getName();
+    if (id == null && name == null) {
+      return alertTemplateDTO;
+    }
+
+    final List<AlertTemplateDTO> versions = alertTemplateManager.findVersions(id != null
+        ? Predicate.EQ("baseId", id)
+        : Predicate.EQ("name", name));
+    final TemplateVersion version = versions.size() == 1 ? TemplateVersion.of(versions.get(0))
+        : null;
+    if (version == null) {
+      return findTemplate(id, name);
+    }
+    // reading twice in a race is harmless: the index is read first, a template cached under an
+    // outdated version is never read again
+    AlertTemplateDTO template = templates.getIfPresent(version);
+    if (template == null) {
+      template = alertTemplateManager.findById(version.id);
+      if (template != null) {
+        templates.put(version, template);
+      }
+    }
+    return template;
+  }
+
+  private AlertTemplateDTO findTemplate(final @Nullable Long id, final String name) {
     if (id != null) {
       return alertTemplateManager.findById(id);
     }
+    final List<AlertTemplateDTO> byName = alertTemplateManager.findByName(name);
+    ensure(byName.size() == 1, ERR_OBJECT_DOES_NOT_EXIST, "template not found: " + name);
+    return byName.get(0);
+  }
 
-    final String name = alertTemplateDTO.getName();
-    if (name != null) {
-      final List<AlertTemplateDTO> byName = alertTemplateManager.findByName(name);
-      ensure(byName.size() == 1, ERR_OBJECT_DOES_NOT_EXIST, "template not found: " + name);
-      return byName.get(0);
+  /**
+   * Templates persisted in the database are compiled once per version. Inline templates are
+   * compiled at each render.
+   */
+  private CompiledTemplate<AlertTemplateDTO> compiledTemplate(final AlertTemplateDTO template) {
+    final TemplateVersion version = TemplateVersion.of(template);
+    if (version == null) {
+      return StringTemplateUtils.compile(template);
     }
-
-    return alertTemplateDTO;
+    // compiling twice in a race is harmless: both compiled templates are equivalent
+    CompiledTemplate<AlertTemplateDTO> compiledTemplate = compiledTemplates.getIfPresent(version);
+    if (compiledTemplate == null) {
+      compiledTemplate = StringTemplateUtils.compile(template);
+      compiledTemplates.put(version, compiledTemplate);
+    }
+    return compiledTemplate;
   }
 
   private AlertTemplateDTO applyContext(final AlertTemplateDTO template,
+      final CompiledTemplate<AlertTemplateDTO> compiledTemplate,
       final Map<String, Object> templateProperties,
       final Interval detectionInterval,
-      final String alertName) throws IOException, ClassNotFoundException {
+      final String alertName) throws IOException {
     final Map<String, Object> properties = new HashMap<>();
     // legacy properties can be removed once all users have migrated their template to the new propertiesMetadata
     final Map<String, Object> legacyDefaultProperties = optional(
@@ -171,16 +268,17 @@ public class AlertTemplateRenderer {
 
     properties.put("startTime", detectionInterval.getStartMillis());
     properties.put("endTime", detectionInterval.getEndMillis());
+
+    final AlertTemplateDTO rendered = compiledTemplate.render(properties);
     // add source metadata to each node
-    if (template.getNodes() != null) {
-      template.getNodes().stream()
+    if (rendered.getNodes() != null) {
+      rendered.getNodes().stream()
           // TODO spyne remove magic string. This was done to remove dependency of AnomalyDetector.TYPE on the renderer
           .filter(node -> node.getType().equals("AnomalyDetector"))
           .forEach(node -> node.getParams()
               .putValue("anomaly.source", String.format("%s/%s", alertName, node.getName())));
     }
-
-    return StringTemplateUtils.applyContext(template, properties);
+    return rendered;
   }
 
   private @NonNull Map<String, Object> defaultProperties(
@@ -199,4 +297,94 @@ public class AlertTemplateRenderer {
 
     return res;
   }
+
+  private static class TemplateVersion {
+
+    private final long id;
+    private final long updateTime;
+
+    private TemplateVersion(final long id, final long updateTime) {
+      this.id = id;
+      this.updateTime = updateTime;
+    }
+
+    private static @Nullable TemplateVersion of(final AlertTemplateDTO template) {
+      if (template.getId() == null || template.getUpdateTime() == null) {
+        return null;
+      }
+      return new TemplateVersion(template.getId(), template.getUpdateTime().getTime());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final TemplateVersion that = (TemplateVersion) o;
+      return id == that.id && updateTime == that.updateTime;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(id, updateTime);
+    }
+  }
+
+  private static class AlertRendering {
+
+    private final TemplateVersion templateVersion;
+    private final String alertName;
+    private final Map<String, Object> templateProperties;
+    private final long startTime;
+    private final long endTime;
+
+    private AlertRendering(final TemplateVersion templateVersion, final AlertDTO alert,
+        final Interval detectionInterval) {
+      this.templateVersion = templateVersion;
+      this.alertName = alert.getName();
+      // copied: the key must not change if the alert is modified
+      this.templateProperties = alert.getTemplateProperties() == null
+          ? null
+          : new HashMap<>(alert.getTemplateProperties());
+      this.startTime = detectionInterval.getStartMillis();
+      this.endTime = detectionInterval.getEndMillis();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final AlertRendering that = (AlertRendering) o;
+      return startTime == that.startTime
+          && endTime == that.endTime
+          && templateVersion.equals(that.templateVersion)
+          && Objects.equals(alertName, that.alertName)
+          && Objects.equals(templateProperties, that.templateProperties);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(templateVersion, alertName, templateProperties, startTime, endTime);
+    }
+  }
+
+  private static class RenderedTemplate {
+
+    // shared between renders - never modified
+    private final AlertTemplateDTO template;
+    private final CompiledTemplate<AlertTemplateDTO> compiledTemplate;
+
+    private RenderedTemplate(final AlertTemplateDTO template,
+        final CompiledTemplate<AlertTemplateDTO> compiledTemplate) {
+      this.template = template;
+      this.compiledTemplate = compiledTemplate;
+    }
+  }
 }
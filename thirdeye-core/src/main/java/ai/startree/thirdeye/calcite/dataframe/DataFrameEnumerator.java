@@ -16,35 +16,45 @@ package ai.startree.thirdeye.calcite.dataframe;
 import static org.apache.calcite.linq4j.Nullness.castNonNull;
 
 import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.Series;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.calcite.linq4j.Enumerator;
-import org.apache.calcite.util.ImmutableNullableList;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Enumerator that reads from a DataFrame.
+ *
+ * Only the selected rows and the projected columns are read.
  */
 public class DataFrameEnumerator implements Enumerator<Object[]> {
 
-  private final DataFrame dataFrame;
-  private final @Nullable List<@Nullable Object> filterValues;
+  private final Series[] projectedSeries;
+  private final int @Nullable [] rows;
+  private final int rowCount;
   private final AtomicBoolean cancelFlag;
   private @Nullable Object[] current;
   private int currentIndex = -1;
-  List<String> columnNames;
 
   public DataFrameEnumerator(DataFrame dataFrame, AtomicBoolean cancelFlag) {
-    this(dataFrame, cancelFlag, null);
+    this(dataFrame, cancelFlag, null, null);
   }
 
+  /**
+   * @param rows indexes of the rows to read, in order. All rows if null.
+   * @param projects indexes of the columns to read, in order. All columns if null.
+   */
   public DataFrameEnumerator(DataFrame dataFrame, AtomicBoolean cancelFlag,
-      @Nullable Object @Nullable [] filterValues) {
+      int @Nullable [] rows, int @Nullable [] projects) {
     this.cancelFlag = cancelFlag;
-    this.filterValues = filterValues == null ? null
-        : ImmutableNullableList.copyOf(filterValues);
-    this.dataFrame = dataFrame;
-    this.columnNames = dataFrame.getSeriesNames();
+    this.rows = rows;
+    this.rowCount = rows == null ? dataFrame.size() : rows.length;
+    final List<String> columnNames = dataFrame.getSeriesNames();
+    final int columnCount = projects == null ? columnNames.size() : projects.length;
+    this.projectedSeries = new Series[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      projectedSeries[i] = dataFrame.get(columnNames.get(projects == null ? i : projects[i]));
+    }
   }
 
   @Override
@@ -54,33 +64,21 @@ public class DataFrameEnumerator implements Enumerator<Object[]> {
 
   @Override
   public boolean moveNext() {
-    outer:
-    for (; ; ) {
-      if (cancelFlag.get()) {
-        return false;
-      }
-      currentIndex++;
-      if (currentIndex == dataFrame.size()) {
-        return false;
-      }
-      Object[] values = columnNames.stream()
-          .map(name -> dataFrame.getObject(name, currentIndex))
-          .toArray(Object[]::new);
-
-      // works with string - long - boolean - double
-      if (filterValues != null) {
-        for (int i = 0; i < values.length; i++) {
-          Object filterValue = filterValues.get(i);
-          if (filterValue != null) {
-            if (!filterValue.equals(values[i])) {
-              continue outer;
-            }
-          }
-        }
-      }
-      current = values;
-      return true;
+    if (cancelFlag.get()) {
+      return false;
+    }
+    currentIndex++;
+    if (currentIndex >= rowCount) {
+      return false;
+    }
+    final int rowIndex = rows == null ? currentIndex : rows[currentIndex];
+    // rows are not reused: downstream operators may keep references to them
+    final Object[] values = new Object[projectedSeries.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = projectedSeries[i].getObject(rowIndex);
     }
+    current = values;
+    return true;
   }
 
   @Override
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.calcite.dataframe;
+
+import ai.startree.thirdeye.spi.dataframe.BooleanSeries;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.Series;
+import ai.startree.thirdeye.spi.dataframe.StringSeries;
+import java.math.BigDecimal;
+import java.util.List;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Evaluates Calcite filters on the arrays of a DataFrame.
+ *
+ * A filter is translated into a mask of the rows for which the filter is TRUE. Null values never
+ * match a comparison, as in SQL. Supported filters are AND, OR, SEARCH (ranges and IN lists),
+ * comparisons of a column with a literal and IS [NOT] NULL. Filters with other operators are not
+ * translated.
+ */
+class DataFrameFilterMasks {
+
+  private final DataFrame dataFrame;
+  private final List<String> columnNames;
+  private final RexBuilder rexBuilder;
+
+  DataFrameFilterMasks(final DataFrame dataFrame, final RexBuilder rexBuilder) {
+    this.dataFrame = dataFrame;
+    this.columnNames = dataFrame.getSeriesNames();
+    this.rexBuilder = rexBuilder;
+  }
+
+  /**
+   * Returns the mask of the rows matching the filters that are supported, or null if no filter
+   * is supported. The supported filters are removed from the list.
+   *
+   * The supported operands of an AND that is not supported entirely are applied, but the AND is
+   * kept in the list.
+   */
+  boolean @Nullable [] applyAndRemove(final List<RexNode> filters) {
+    boolean[] mask = null;
+    for (int i = 0; i < filters.size(); i++) {
+      final RexNode filter = filters.get(i);
+      boolean[] filterMask = mask(filter);
+      if (filterMask != null) {
+        filters.remove(i--);
+      } else if (filter.isA(SqlKind.AND)) {
+        // We cannot refine(remove) the operands of AND,
+        // it will cause o.a.c.i.TableScanNode.createFilterable filters check failed.
+        for (final RexNode operand : ((RexCall) filter).getOperands()) {
+          final boolean[] operandMask = mask(operand);
+          if (operandMask != null) {
+            filterMask = filterMask == null ? operandMask : and(filterMask, operandMask);
+          }
+        }
+      }
+      if (filterMask != null) {
+        mask = mask == null ? filterMask : and(mask, filterMask);
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Returns the mask of the rows matching the filter, or null if the filter is not supported.
+   */
+  boolean @Nullable [] mask(final RexNode filter) {
+    switch (filter.getKind()) {
+      case AND:
+      case OR: {
+        final boolean isAnd = filter.isA(SqlKind.AND);
+        boolean[] mask = null;
+        for (final RexNode operand : ((RexCall) filter).getOperands()) {
+          final boolean[] operandMask = mask(operand);
+          if (operandMask == null) {
+            return null;
+          }
+          mask = mask == null ? operandMask
+              : isAnd ? and(mask, operandMask) : or(mask, operandMask);
+        }
+        return mask;
+      }
+      case SEARCH:
+        return mask(RexUtil.expandSearch(rexBuilder, null, filter));
+      case IS_NULL:
+      case IS_NOT_NULL: {
+        final Series series = series(((RexCall) filter).getOperands().get(0));
+        if (series == null) {
+          return null;
+        }
+        final boolean isNull = filter.isA(SqlKind.IS_NULL);
+        final boolean[] mask = new boolean[series.size()];
+        for (int i = 0; i < mask.length; i++) {
+          mask[i] = series.isNull(i) == isNull;
+        }
+        return mask;
+      }
+      case EQUALS:
+      case NOT_EQUALS:
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL:
+        return comparisonMask((RexCall) filter);
+      default:
+        return null;
+    }
+  }
+
+  private boolean @Nullable [] comparisonMask(final RexCall call) {
+    SqlKind kind = call.getKind();
+    RexNode left = call.getOperands().get(0);
+    RexNode right = call.getOperands().get(1);
+    if (left instanceof RexLiteral) {
+      // literal on the left side: 5 < col is col > 5
+      final RexNode tmp = left;
+      left = right;
+      right = tmp;
+      kind = kind.reverse();
+    }
+    final Series series = series(left);
+    if (series == null || !(right instanceof RexLiteral) || ((RexLiteral) right).isNull()) {
+      return null;
+    }
+    final RexLiteral literal = (RexLiteral) right;
+    final SqlTypeFamily literalFamily = literal.getTypeName().getFamily();
+    switch (series.type()) {
+      case LONG:
+        if (literalFamily != SqlTypeFamily.NUMERIC) {
+          return null;
+        }
+        return longMask(series.getLongs(), kind, literal.getValueAs(BigDecimal.class));
+      case DOUBLE:
+        if (literalFamily != SqlTypeFamily.NUMERIC) {
+          return null;
+        }
+        return doubleMask(series.getDoubles(),
+            kind,
+            literal.getValueAs(BigDecimal.class).doubleValue());
+      case STRING:
+        if (literalFamily != SqlTypeFamily.CHARACTER) {
+          return null;
+        }
+        return stringMask(series.getStrings(), kind, literal.getValueAs(String.class));
+      case BOOLEAN:
+        if (literal.getTypeName() != SqlTypeName.BOOLEAN
+            || (kind != SqlKind.EQUALS && kind != SqlKind.NOT_EQUALS)) {
+          return null;
+        }
+        return booleanMask(series.getBooleans(), kind, literal.getValueAs(Boolean.class));
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the series of a column reference, or null if the node is not a column reference.
+   *
+   * Casts between numeric types that do not truncate the values are ignored: the comparison of
+   * the raw values gives the same result.
+   */
+  private @Nullable Series series(RexNode node) {
+    if (node.isA(SqlKind.CAST)) {
+      final SqlTypeName targetType = node.getType().getSqlTypeName();
+      if (targetType != SqlTypeName.BIGINT && targetType != SqlTypeName.DOUBLE) {
+        return null;
+      }
+      node = ((RexCall) node).getOperands().get(0);
+      if (!(node instanceof RexInputRef)) {
+        return null;
+      }
+      final Series series = dataFrame.get(columnNames.get(((RexInputRef) node).getIndex()));
+      final boolean isLossless = series.type() == Series.SeriesType.LONG
+          || (series.type() == Series.SeriesType.DOUBLE && targetType == SqlTypeName.DOUBLE);
+      return isLossless ? series : null;
+    }
+    if (node instanceof RexInputRef) {
+      return dataFrame.get(columnNames.get(((RexInputRef) node).getIndex()));
+    }
+    return null;
+  }
+
+  private static boolean[] longMask(final LongSeries series, final SqlKind kind,
+      final BigDecimal literal) {
+    final long[] values = series.values();
+    final boolean[] mask = new boolean[values.length];
+    final boolean isExactLong = literal.stripTrailingZeros().scale() <= 0
+        && literal.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0
+        && literal.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0;
+    if (isExactLong) {
+      final long value = literal.longValueExact();
+      for (int i = 0; i < values.length; i++) {
+        mask[i] = !LongSeries.isNull(values[i]) && matches(kind, Long.compare(values[i], value));
+      }
+    } else {
+      final double value = literal.doubleValue();
+      for (int i = 0; i < values.length; i++) {
+        mask[i] = !LongSeries.isNull(values[i])
+            && matches(kind, Double.compare(values[i], value));
+      }
+    }
+    return mask;
+  }
+
+  private static boolean[] doubleMask(final DoubleSeries series, final SqlKind kind,
+      final double literal) {
+    final double[] values = series.values();
+    final boolean[] mask = new boolean[values.length];
+    for (int i = 0; i < values.length; i++) {
+      // Double.compare orders -0.0 before 0.0, SQL does not
+      mask[i] = !DoubleSeries.isNull(values[i])
+          && matches(kind, values[i] < literal ? -1 : values[i] > literal ? 1 : 0);
+    }
+    return mask;
+  }
+
+  private static boolean[] stringMask(final StringSeries series, final SqlKind kind,
+      final String literal) {
+    final String[] values = series.values();
+    final boolean[] mask = new boolean[values.length];
+    for (int i = 0; i < values.length; i++) {
+      mask[i] = !StringSeries.isNull(values[i]) && matches(kind, values[i].compareTo(literal));
+    }
+    return mask;
+  }
+
+  private static boolean[] booleanMask(final BooleanSeries series, final SqlKind kind,
+      final boolean literal) {
+    final byte[] values = series.values();
+    final boolean[] mask = new boolean[values.length];
+    for (int i = 0; i < values.length; i++) {
+      mask[i] = !BooleanSeries.isNull(values[i])
+          && matches(kind, BooleanSeries.booleanValueOf(values[i]) == literal ? 0 : 1);
+    }
+    return mask;
+  }
+
+  private static boolean matches(final SqlKind kind, final int comparison) {
+    switch (kind) {
+      case EQUALS:
+        return comparison == 0;
+      case NOT_EQUALS:
+        return comparison != 0;
+      case LESS_THAN:
+        return comparison < 0;
+      case LESS_THAN_OR_EQUAL:
+        return comparison <= 0;
+      case GREATER_THAN:
+        return comparison > 0;
+      case GREATER_THAN_OR_EQUAL:
+        return comparison >= 0;
+      default:
+        throw new IllegalArgumentException("Unsupported comparison: " + kind);
+    }
+  }
+
+  private static boolean[] and(final boolean[] left, final boolean[] right) {
+    for (int i = 0; i < left.length; i++) {
+      left[i] &= right[i];
+    }
+    return left;
+  }
+
+  private static boolean[] or(final boolean[] left, final boolean[] right) {
+    for (int i = 0; i < left.length; i++) {
+      left[i] |= right[i];
+    }
+    return left;
+  }
+}
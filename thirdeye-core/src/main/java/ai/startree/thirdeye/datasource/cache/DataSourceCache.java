@@ -16,6 +16,7 @@
  * Confidential and Proprietary Information of StarTree Inc.
  */
 
+
 package ai.startree.thirdeye.datasource.cache;
 
 import static ai.startree.thirdeye.spi.Constants.METRICS_CACHE_TIMEOUT;
@@ -30,37 +31,79 @@ import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.bao.DataSourceManager;
 import ai.startree.thirdeye.spi.datalayer.dto.DataSourceDTO;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
-import ai.startree.thirdeye.spi.util.Pair;
+import ai.startree.thirdeye.spi.datasource.TimeSegmentCacheStats;
 import com.codahale.metrics.CachedGauge;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.sql.Timestamp;
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Cache of the datasources, by name.
+ *
+ * Reads do not take any lock nor query the database once a datasource is loaded. Entries are
+ * invalidated by {@link #removeDataSource(String)} when a datasource is updated or deleted on
+ * this instance, and by a periodic refresh that compares the update time of each entry with the
+ * database, for changes made on other instances.
+ *
+ * A datasource is loaded once: concurrent readers of a datasource being loaded wait for the
+ * same future.
+ */
 @Singleton
 public class DataSourceCache {
 
   private static final Logger LOG = LoggerFactory.getLogger(DataSourceCache.class);
+  private static final Duration REFRESH_INTERVAL = Duration.ofSeconds(30);
+  /**
+   * Max number of concurrent queries sent to a data source through its query executor.
+   */
+  private static final int DATASOURCE_PARALLELISM = 8;
 
   private final DataSourceManager dataSourceManager;
   private final DataSourcesLoader dataSourcesLoader;
   private final MetricRegistry metricRegistry;
+  private final ScheduledExecutorService refreshExecutor;
 
-  private final Map<String, Pair<DataSourceWrapper, Timestamp>> cache = new HashMap<>();
+  private final Map<String, CompletableFuture<CachedDataSource>> cache = new ConcurrentHashMap<>();
+  private final Map<String, ExecutorService> queryExecutors = new ConcurrentHashMap<>();
 
   @Inject
   public DataSourceCache(
       final DataSourceManager dataSourceManager,
       final DataSourcesLoader dataSourcesLoader,
       final MetricRegistry metricRegistry) {
+    this(dataSourceManager, dataSourcesLoader, metricRegistry, REFRESH_INTERVAL);
+  }
+
+  @VisibleForTesting
+  DataSourceCache(
+      final DataSourceManager dataSourceManager,
+      final DataSourcesLoader dataSourcesLoader,
+      final MetricRegistry metricRegistry,
+      final Duration refreshInterval) {
     this.dataSourceManager = dataSourceManager;
     this.dataSourcesLoader = dataSourcesLoader;
     this.metricRegistry = metricRegistry;
@@ -73,6 +116,25 @@ public class DataSourceCache {
       }
     });
     metricRegistry.register("cachedDatasourceCount", (Gauge<Integer>) cache::size);
+    metricRegistry.register("timeSegmentCacheHitRatio", new RatioGauge() {
+      @Override
+      protected Ratio getRatio() {
+        final TimeSegmentCacheStats stats = getTimeSegmentCacheStats();
+        return Ratio.of(stats.getHitCount(), stats.getRequestCount());
+      }
+    });
+    metricRegistry.register("timeSegmentCacheSavedRowCount",
+        (Gauge<Long>) () -> getTimeSegmentCacheStats().getSavedRowCount());
+
+    refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder()
+            .setNameFormat("datasource-cache-refresh-%d")
+            .setDaemon(true)
+            .build());
+    refreshExecutor.scheduleWithFixedDelay(this::refreshSafely,
+        refreshInterval.toMillis(),
+        refreshInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
   }
 
   private Integer getHealthyDatasourceCount() {
@@ -88,26 +150,50 @@ public class DataSourceCache {
         .count());
   }
 
-  public synchronized ThirdEyeDataSource getDataSource(final String name) {
-    final Optional<DataSourceDTO> dataSource = findByName(name);
+  /**
+   * Returns the time segment cache statistics of all the loaded datasources.
+   */
+  @VisibleForTesting
+  TimeSegmentCacheStats getTimeSegmentCacheStats() {
+    return cache.values().stream()
+        .filter(future -> future.isDone() && !future.isCompletedExceptionally())
+        .map(future -> future.join().dataSource.getTimeSegmentCacheStats())
+        .filter(Objects::nonNull)
+        .reduce(TimeSegmentCacheStats.EMPTY, TimeSegmentCacheStats::plus);
+  }
 
-    // datasource absent in DB
-    if (dataSource.isEmpty()) {
-      // remove redundant cache if datasource was recently deleted
-      removeDataSource(name);
-      throw new ThirdEyeException(ThirdEyeStatus.ERR_DATASOURCE_NOT_FOUND, name);
+  public ThirdEyeDataSource getDataSource(final String name) {
+    final CompletableFuture<CachedDataSource> cached = cache.get(name);
+    if (cached != null) {
+      return join(cached); // cache hit
     }
-    final Pair<DataSourceWrapper, Timestamp> cachedEntry = cache.get(name);
-    final DataSourceDTO dataSourceDTO = dataSource.get();
-    if (cachedEntry != null) {
-      final Timestamp updateTimeCached = cachedEntry.getSecond();
-      if (updateTimeCached.equals(dataSourceDTO.getUpdateTime())) {
-        return cachedEntry.getFirst(); // cache hit
-      }
+
+    // cache miss: the first thread to register a future loads the datasource
+    final CompletableFuture<CachedDataSource> loading = new CompletableFuture<>();
+    final CompletableFuture<CachedDataSource> concurrent = cache.putIfAbsent(name, loading);
+    if (concurrent != null) {
+      return join(concurrent);
+    }
+    try {
+      loading.complete(loadDataSource(name));
+    } catch (final RuntimeException e) {
+      // do not cache failures. Concurrent readers get the same exception.
+      cache.remove(name, loading);
+      loading.completeExceptionally(e);
+      throw e;
     }
+    return join(loading);
+  }
 
-    // cache miss
-    return loadDataSource(dataSourceDTO);
+  private static ThirdEyeDataSource join(final CompletableFuture<CachedDataSource> future) {
+    try {
+      return future.join().dataSource;
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
   }
 
   private Optional<DataSourceDTO> findByName(final String name) {
@@ -118,34 +204,100 @@ public class DataSourceCache {
     return results.stream().findFirst();
   }
 
-  private ThirdEyeDataSource loadDataSource(final DataSourceDTO dataSource) {
-    requireNonNull(dataSource);
-    final String dataSourceName = dataSource.getName();
+  private CachedDataSource loadDataSource(final String name) {
+    final DataSourceDTO dataSource = findByName(name)
+        .orElseThrow(() -> new ThirdEyeException(ThirdEyeStatus.ERR_DATASOURCE_NOT_FOUND, name));
     final DataSourceWrapper wrapped = wrap(
         requireNonNull(dataSourcesLoader.loadDataSource(dataSource),
-            "Failed to construct a data source object! " + dataSourceName));
+            "Failed to construct a data source object! " + name));
 
-    // remove outdated cached datasource
-    removeDataSource(dataSourceName);
-    cache.put(dataSourceName, new Pair<>(wrapped, dataSource.getUpdateTime()));
-    return wrapped;
+    return new CachedDataSource(wrapped, dataSource.getUpdateTime());
   }
 
   private DataSourceWrapper wrap(final ThirdEyeDataSource thirdEyeDataSource) {
     return new DataSourceWrapper(thirdEyeDataSource, metricRegistry);
   }
 
+  private void refreshSafely() {
+    try {
+      refresh();
+    } catch (final Exception e) {
+      LOG.error("Failed to refresh the datasource cache", e);
+    }
+  }
+
+  /**
+   * Evicts the entries that were updated or deleted in the database. They are loaded again on
+   * the next read.
+   */
+  @VisibleForTesting
+  void refresh() {
+    if (cache.isEmpty()) {
+      return;
+    }
+    final Map<String, Timestamp> updateTimes = dataSourceManager.findAll().stream()
+        .collect(Collectors.toMap(DataSourceDTO::getName,
+            DataSourceDTO::getUpdateTime,
+            (t1, t2) -> t1));
+    cache.forEach((name, future) -> {
+      if (!future.isDone() || future.isCompletedExceptionally()) {
+        return;
+      }
+      final Timestamp updateTime = future.join().updateTime;
+      if (!updateTimes.containsKey(name) || !Objects.equals(updateTimes.get(name), updateTime)) {
+        LOG.info("Datasource {} changed in the database. Evicting it from the cache.", name);
+        if (cache.remove(name, future)) {
+          closeWhenLoaded(future);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the executor of the concurrent queries sent to a datasource. Queries are queued per
+   * datasource: a large fan-out does not create a thread per query and does not prevent queries
+   * to other datasources. The executor is released when the datasource is removed.
+   */
+  public ExecutorService getQueryExecutor(final String name) {
+    return queryExecutors.computeIfAbsent(name, this::newQueryExecutor);
+  }
+
+  private ExecutorService newQueryExecutor(final String name) {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(DATASOURCE_PARALLELISM,
+        DATASOURCE_PARALLELISM,
+        60,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder().setNameFormat("datasource-query-%d").setDaemon(true).build());
+    executor.allowCoreThreadTimeOut(true);
+    return new InstrumentedExecutorService(executor, metricRegistry, queryExecutorMetricName(name));
+  }
+
+  private static String queryExecutorMetricName(final String name) {
+    return MetricRegistry.name(DataSourceCache.class, "queryExecutor", name);
+  }
+
   public void removeDataSource(final String name) {
-    optional(cache.remove(name))
-        .map(Pair::getFirst)
-        .ifPresent(this::close);
+    optional(cache.remove(name)).ifPresent(this::closeWhenLoaded);
+    // computeIfPresent locks the entry: a concurrent getQueryExecutor creates the next executor
+    // and its metrics after the removal
+    queryExecutors.computeIfPresent(name, (k, executor) -> {
+      // queued queries are completed
+      executor.shutdown();
+      metricRegistry.removeMatching(MetricFilter.startsWith(queryExecutorMetricName(name) + "."));
+      return null;
+    });
   }
 
   public void clear() {
-    cache.values().stream()
-        .map(Pair::getFirst)
-        .forEach(this::close);
-    cache.clear();
+    cache.keySet().forEach(this::removeDataSource);
+  }
+
+  /**
+   * An entry may be removed while it is loading. The datasource is then closed once loaded.
+   */
+  private void closeWhenLoaded(final CompletableFuture<CachedDataSource> future) {
+    future.thenApply(cached -> cached.dataSource).thenAccept(this::close);
   }
 
   private void close(final ThirdEyeDataSource dataSource) {
@@ -155,4 +307,29 @@ public class DataSourceCache {
       LOG.error("Datasource {} was not flushed gracefully.", dataSource.getName());
     }
   }
+
+  /**
+   * Stops the periodic refresh and the query executors, and closes the loaded datasources.
+   */
+  public void close() {
+    refreshExecutor.shutdownNow();
+    queryExecutors.values().forEach(ExecutorService::shutdownNow);
+    clear();
+  }
+
+  @VisibleForTesting
+  boolean isRefreshStopped() {
+    return refreshExecutor.isShutdown();
+  }
+
+  private static class CachedDataSource {
+
+    private final DataSourceWrapper dataSource;
+    private final Timestamp updateTime;
+
+    private CachedDataSource(final DataSourceWrapper dataSource, final Timestamp updateTime) {
+      this.dataSource = dataSource;
+      this.updateTime = updateTime;
+    }
+  }
 }
@@ -17,28 +17,43 @@ import ai.startree.thirdeye.spi.datalayer.dto.DatasetConfigDTO;
 import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSourceContext;
+import ai.startree.thirdeye.spi.datasource.TimeSegmentCacheStats;
 import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
 import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * This class intercepts all data source calls and helps with telemetry, etc.
+ *
+ * Concurrent calls to {@link #fetchDataTable(DataSourceRequest)} with equal requests are
+ * coalesced: the first caller runs the query, the other callers wait for its result.
  */
 public class DataSourceWrapper implements ThirdEyeDataSource {
 
   private final ThirdEyeDataSource delegate;
 
   private final Meter fetchTableExceptionMeter;
+  private final Meter fetchTableDeduplicatedMeter;
   private final Timer fetchTableTimer;
+  private final Map<DataSourceRequest, InFlightFetch> inFlightFetches =
+      new ConcurrentHashMap<>();
 
   public DataSourceWrapper(final ThirdEyeDataSource delegate, final MetricRegistry metricRegistry) {
     this.delegate = delegate;
 
     fetchTableExceptionMeter = metricRegistry.meter("fetchTableExceptionMeter");
+    fetchTableDeduplicatedMeter = metricRegistry.meter("fetchTableDeduplicatedMeter");
     fetchTableTimer = metricRegistry.timer("fetchTableTimer");
   }
 
@@ -64,7 +79,64 @@ public class DataSourceWrapper implements ThirdEyeDataSource {
 
   @Override
   public DataTable fetchDataTable(final DataSourceRequest request) throws Exception {
-    return fetchTableTimer.time(() -> fetchDataTable0(request));
+    // the request properties are mutable: the key is a copy
+    final DataSourceRequest key = new DataSourceRequest(request.getTable(),
+        request.getQuery(),
+        request.getProperties() == null ? null : new HashMap<>(request.getProperties()));
+    while (true) {
+      final InFlightFetch newFetch = new InFlightFetch();
+      final InFlightFetch fetch = inFlightFetches.compute(key, (k, inFlight) -> {
+        if (inFlight == null) {
+          return newFetch;
+        }
+        inFlight.waiters++;
+        return inFlight;
+      });
+      if (fetch == newFetch) {
+        return runFetch(request, key, fetch);
+      }
+      fetchTableDeduplicatedMeter.mark();
+      try {
+        // waiting can be interrupted without impacting the other callers
+        return copyOf(fetch.result.get());
+      } catch (final CancellationException e) {
+        // the caller running the query gave up - run it again
+      } catch (final ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private DataTable runFetch(final DataSourceRequest request, final DataSourceRequest key,
+      final InFlightFetch fetch) throws Exception {
+    try {
+      final DataTable dataTable = fetchTableTimer.time(() -> fetchDataTable0(request));
+      inFlightFetches.remove(key, fetch);
+      fetch.result.complete(dataTable);
+      // no caller can join anymore. Callers can modify their DataTable: the shared one is only
+      // read, each caller gets a copy
+      return fetch.waiters > 0 ? copyOf(dataTable) : dataTable;
+    } catch (final Exception e) {
+      final boolean interrupted = e instanceof InterruptedException
+          || Thread.currentThread().isInterrupted();
+      if (!interrupted) {
+        fetch.result.completeExceptionally(e);
+      }
+      throw e;
+    } finally {
+      inFlightFetches.remove(key, fetch);
+      // if not completed, the failure is specific to this caller: waiting callers run the query
+      fetch.result.cancel(false);
+    }
+  }
+
+  private static DataTable copyOf(final DataTable dataTable) {
+    final DataTable copy = SimpleDataTable.fromDataFrame(dataTable.getDataFrame().copy());
+    copy.addProperties(dataTable.getProperties());
+    return copy;
   }
 
   private DataTable fetchDataTable0(final DataSourceRequest request) throws Exception {
@@ -77,6 +149,16 @@ public class DataSourceWrapper implements ThirdEyeDataSource {
     }
   }
 
+  @Override
+  public boolean cachesTimeSegments() {
+    return delegate.cachesTimeSegments();
+  }
+
+  @Override
+  public TimeSegmentCacheStats getTimeSegmentCacheStats() {
+    return delegate.getTimeSegmentCacheStats();
+  }
+
   @Override
   public boolean validate() {
     return delegate.validate();
@@ -101,4 +183,11 @@ public class DataSourceWrapper implements ThirdEyeDataSource {
   public void close() throws Exception {
     delegate.close();
   }
+
+  private static class InFlightFetch {
+
+    private final CompletableFuture<DataTable> result = new CompletableFuture<>();
+    /* only updated in the map compute function */
+    private int waiters = 0;
+  }
 }
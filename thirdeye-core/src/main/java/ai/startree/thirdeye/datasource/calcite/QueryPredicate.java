@@ -71,6 +71,25 @@ public class QueryPredicate {
   }
 
   public SqlNode toSqlNode() {
+    switch (predicate.getOper()) {
+      case OR:
+        // OR_OPERATOR is binary: children are combined pairwise
+        return Arrays.stream(predicate.getChildPredicates())
+            .map(child -> new QueryPredicate(child, metricType, dataset).toSqlNode())
+            .reduce((left, right) -> new SqlBasicCall(CalciteUtils.OR_OPERATOR,
+                List.of(left, right),
+                SqlParserPos.ZERO))
+            .orElseThrow();
+      case IS_NULL:
+        return new SqlBasicCall(CalciteUtils.IS_NULL_OPERATOR,
+            List.of(prepareLeftOperand()),
+            SqlParserPos.ZERO);
+      default:
+        return toBinarySqlNode();
+    }
+  }
+
+  private SqlNode toBinarySqlNode() {
     final SqlIdentifier leftOperand = prepareLeftOperand();
     final SqlNode rightOperand = prepareRightOperand();
     final List<SqlNode> operands = List.of(leftOperand, rightOperand);
@@ -33,7 +33,6 @@ import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
 import ai.startree.thirdeye.spi.datasource.loader.AggregationLoader;
 import ai.startree.thirdeye.spi.metric.MetricSlice;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.util.ArrayList;
@@ -41,8 +40,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -60,13 +57,10 @@ public class DefaultAggregationLoader implements AggregationLoader {
   private static final String ROLLUP_NAME = "OTHER";
 
   private final DataSourceCache dataSourceCache;
-  private final ExecutorService executorService;
 
   @Inject
   public DefaultAggregationLoader(final DataSourceCache dataSourceCache) {
     this.dataSourceCache = dataSourceCache;
-    executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat(
-        "aggregation-loader-%d").build());
   }
 
   /**
@@ -135,6 +129,19 @@ public class DefaultAggregationLoader implements AggregationLoader {
         .build()
         .setIndex(COL_DIMENSION_NAME, COL_DIMENSION_VALUE);
 
+    final List<DataFrame> results = loadBreakdownByDimension(slice, dimensions, limit);
+
+    final DataFrame breakdown = dfAll.append(results);
+    // add time column containing start time of slice
+    return breakdown
+        .addSeries(Constants.COL_TIME,
+            LongSeries.fillValues(breakdown.size(), slice.getInterval().getStartMillis()))
+        .setIndex(Constants.COL_TIME, COL_DIMENSION_NAME, COL_DIMENSION_VALUE);
+  }
+
+  private List<DataFrame> loadBreakdownByDimension(final MetricSlice slice,
+      final List<String> dimensions, final int limit) throws Exception {
+    final String dataSource = slice.getDatasetConfigDTO().getDataSource();
     final Map<String, Future<DataFrame>> responses = new HashMap<>();
 
     // submit requests
@@ -147,8 +154,7 @@ public class DefaultAggregationLoader implements AggregationLoader {
           .orderBy(identifierDescOf(Constants.COL_VALUE))
           .limit(limit)
           .build();
-      final Future<DataFrame> res = getQueryResultAsync(request,
-          datasetConfigDTO.getDataSource());
+      final Future<DataFrame> res = getQueryResultAsync(request, dataSource);
 
       responses.put(dimension, res);
     }
@@ -157,19 +163,16 @@ public class DefaultAggregationLoader implements AggregationLoader {
     final List<DataFrame> results = new ArrayList<>();
     for (final String dimension : dimensions) {
       final DataFrame res = responses.get(dimension).get(TIMEOUT, TimeUnit.MILLISECONDS);
-      final DataFrame dfResult = new DataFrame()
-          .addSeries(COL_DIMENSION_NAME, StringSeries.fillValues(res.size(), dimension))
-          .addSeries(COL_DIMENSION_VALUE, res.get(dimension))
-          .addSeries(Constants.COL_VALUE, res.get(Constants.COL_VALUE));
-      results.add(dfResult);
+      results.add(breakdownOf(dimension, res));
     }
+    return results;
+  }
 
-    final DataFrame breakdown = dfAll.append(results);
-    // add time column containing start time of slice
-    return breakdown
-        .addSeries(Constants.COL_TIME,
-            LongSeries.fillValues(breakdown.size(), slice.getInterval().getStartMillis()))
-        .setIndex(Constants.COL_TIME, COL_DIMENSION_NAME, COL_DIMENSION_VALUE);
+  private static DataFrame breakdownOf(final String dimension, final DataFrame res) {
+    return new DataFrame()
+        .addSeries(COL_DIMENSION_NAME, StringSeries.fillValues(res.size(), dimension))
+        .addSeries(COL_DIMENSION_VALUE, res.get(dimension))
+        .addSeries(Constants.COL_VALUE, res.get(Constants.COL_VALUE));
   }
 
   @Override
@@ -197,13 +200,18 @@ public class DefaultAggregationLoader implements AggregationLoader {
           .select(dimensionIdentifier)
           .groupBy(dimensionIdentifier);
     }
+    if (!dimensions.isEmpty()) {
+      // keep the biggest groups when the limit is reached
+      requestBuilder.orderBy(identifierDescOf(Constants.COL_VALUE));
+    }
     final String dataSource = slice.getDatasetConfigDTO().getDataSource();
     return getQueryResultAsync(requestBuilder.build(), dataSource);
   }
 
   private Future<DataFrame> getQueryResultAsync(final SelectQueryTranslator request,
       final String dataSource) {
-    return executorService.submit(() -> getQueryResult(request, dataSource));
+    return dataSourceCache.getQueryExecutor(dataSource)
+        .submit(() -> getQueryResult(request, dataSource));
   }
 
   public DataFrame getQueryResult(final SelectQueryTranslator request, final String dataSource)
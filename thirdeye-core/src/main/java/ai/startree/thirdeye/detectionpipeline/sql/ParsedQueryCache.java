@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.sql;
+
+import static ai.startree.thirdeye.util.CalciteUtils.queryToNode;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import java.util.Objects;
+import java.util.Set;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.apache.calcite.sql.util.SqlShuttle;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Bounded cache of parsed SQL queries, keyed by parser configuration and query text.
+ *
+ * Alerts run the same query templates again and again: only the time bounds and the filters
+ * change. Parsing is done once per template. Cached trees are never given out directly: callers
+ * get a deep copy they are free to rewrite.
+ */
+public class ParsedQueryCache {
+
+  private static final int MAXIMUM_SIZE = 2000;
+  @VisibleForTesting
+  static final String HIT_COUNT_METRIC = "parsedQueryCacheHitCount";
+  @VisibleForTesting
+  static final String MISS_COUNT_METRIC = "parsedQueryCacheMissCount";
+
+  private static final Cache<Key, ParsedQuery> CACHE = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_SIZE)
+      .recordStats()
+      .build();
+
+  public static ParsedQuery parseQuery(final String query,
+      final SqlParser.Config sqlParserConfig) {
+    final Key key = new Key(query, sqlParserConfig);
+    ParsedQuery parsedQuery = CACHE.getIfPresent(key);
+    if (parsedQuery == null) {
+      // parse outside of the cache loader to let parsing exceptions propagate unwrapped
+      parsedQuery = new ParsedQuery(queryToNode(query, sqlParserConfig));
+      CACHE.put(key, parsedQuery);
+    }
+    return parsedQuery;
+  }
+
+  public static CacheStats stats() {
+    return CACHE.stats();
+  }
+
+  /**
+   * Registers the hit and miss counts of the cache. Registering more than once in the same
+   * registry is a no-op. Called by {@link ParsedQueryCacheMetrics}.
+   */
+  static synchronized void registerMetrics(final MetricRegistry metricRegistry) {
+    if (metricRegistry.getGauges().containsKey(HIT_COUNT_METRIC)) {
+      return;
+    }
+    metricRegistry.register(HIT_COUNT_METRIC, (Gauge<Long>) () -> CACHE.stats().hitCount());
+    metricRegistry.register(MISS_COUNT_METRIC, (Gauge<Long>) () -> CACHE.stats().missCount());
+  }
+
+  @VisibleForTesting
+  static void invalidateAll() {
+    CACHE.invalidateAll();
+  }
+
+  public static class ParsedQuery {
+
+    private final SqlNode template;
+    private final Set<String> functionNames;
+
+    private ParsedQuery(final SqlNode template) {
+      this.template = template;
+      this.functionNames = functionNames(template);
+    }
+
+    /**
+     * Returns a copy of the parsed query. The copy can be modified.
+     */
+    public SqlNode copy() {
+      return template.accept(new DeepCopyShuttle());
+    }
+
+    /**
+     * Returns the parsed query. The returned node is shared and must not be modified.
+     */
+    public SqlNode template() {
+      return template;
+    }
+
+    /**
+     * Returns true if the query calls at least one of the given user-defined functions.
+     */
+    public boolean callsAnyOf(final Set<String> names) {
+      for (final String name : names) {
+        if (functionNames.contains(name)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static Set<String> functionNames(final SqlNode node) {
+      final ImmutableSet.Builder<String> names = ImmutableSet.builder();
+      node.accept(new SqlBasicVisitor<Void>() {
+        @Override
+        public Void visit(final SqlCall call) {
+          if (call.getOperator().getKind() == SqlKind.OTHER_FUNCTION) {
+            names.add(call.getOperator().getName());
+          }
+          return super.visit(call);
+        }
+      });
+      return names.build();
+    }
+  }
+
+  /**
+   * Copies every call and node list. Identifiers, literals and data types are not modified by
+   * the query rewriters and are shared.
+   */
+  private static class DeepCopyShuttle extends SqlShuttle {
+
+    @Override
+    public @Nullable SqlNode visit(final SqlCall call) {
+      final CallCopyingArgHandler argHandler = new CallCopyingArgHandler(call, true);
+      call.getOperator().acceptCall(this, call, false, argHandler);
+      return argHandler.result();
+    }
+
+    @Override
+    public SqlNode visit(final SqlNodeList nodeList) {
+      final SqlNodeList copy = new SqlNodeList(nodeList.getParserPosition());
+      for (final SqlNode node : nodeList) {
+        copy.add(node == null ? null : node.accept(this));
+      }
+      return copy;
+    }
+  }
+
+  private static class Key {
+
+    private final String query;
+    private final SqlParser.Config sqlParserConfig;
+
+    private Key(final String query, final SqlParser.Config sqlParserConfig) {
+      this.query = query;
+      this.sqlParserConfig = sqlParserConfig;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return query.equals(key.query) && sqlParserConfig.equals(key.sqlParserConfig);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(query, sqlParserConfig);
+    }
+  }
+}
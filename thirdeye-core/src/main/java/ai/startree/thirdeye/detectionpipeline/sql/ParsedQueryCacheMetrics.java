@@ -0,0 +1,31 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.sql;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Owner of the metrics of the {@link ParsedQueryCache}. The cache is static and is used outside
+ * of Guice: this singleton registers its metrics once, when the core module is created.
+ */
+@Singleton
+public class ParsedQueryCacheMetrics {
+
+  @Inject
+  public ParsedQueryCacheMetrics(final MetricRegistry metricRegistry) {
+    ParsedQueryCache.registerMetrics(metricRegistry);
+  }
+}
@@ -15,10 +15,10 @@ package ai.startree.thirdeye.detectionpipeline.sql.filter;
 
 import static ai.startree.thirdeye.util.CalciteUtils.addPredicates;
 import static ai.startree.thirdeye.util.CalciteUtils.nodeToQuery;
-import static ai.startree.thirdeye.util.CalciteUtils.queryToNode;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import ai.startree.thirdeye.datasource.calcite.QueryPredicate;
+import ai.startree.thirdeye.detectionpipeline.sql.ParsedQueryCache;
 import ai.startree.thirdeye.detectionpipeline.sql.SqlLanguageTranslator;
 import ai.startree.thirdeye.spi.datalayer.Predicate.OPER;
 import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
@@ -61,7 +61,8 @@ public class FilterEngine {
   }
 
   public String prepareQuery() {
-    SqlNode rootNode = queryToNode(query, sqlParserConfig);
+    // predicates are injected in place: work on a copy of the cached template
+    SqlNode rootNode = ParsedQueryCache.parseQuery(query, sqlParserConfig).copy();
     SqlNode rootNodeWithFilters = rootNode.accept(new FilterVisitor());
     String preparedQuery = nodeToQuery(rootNodeWithFilters, sqlDialect, QUOTE_IDENTIFIERS);
 
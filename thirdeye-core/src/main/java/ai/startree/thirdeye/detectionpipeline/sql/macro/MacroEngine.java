@@ -13,11 +13,16 @@
  */
 package ai.startree.thirdeye.detectionpipeline.sql.macro;
 
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.GRANULARITY;
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MAX_TIME_MILLIS;
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MIN_TIME_MILLIS;
 import static ai.startree.thirdeye.spi.util.SpiUtils.optional;
+import static ai.startree.thirdeye.spi.util.TimeUtils.isoPeriod;
 import static ai.startree.thirdeye.util.CalciteUtils.expressionToNode;
 import static ai.startree.thirdeye.util.CalciteUtils.nodeToQuery;
-import static ai.startree.thirdeye.util.CalciteUtils.queryToNode;
 
+import ai.startree.thirdeye.detectionpipeline.sql.ParsedQueryCache;
+import ai.startree.thirdeye.detectionpipeline.sql.ParsedQueryCache.ParsedQuery;
 import ai.startree.thirdeye.detectionpipeline.sql.SqlLanguageTranslator;
 import ai.startree.thirdeye.detectionpipeline.sql.macro.function.TimeFilterFunction;
 import ai.startree.thirdeye.detectionpipeline.sql.macro.function.TimeGroupFunction;
@@ -56,8 +61,9 @@ public class MacroEngine {
   private final SqlDialect sqlDialect;
   private final String tableName;
   private final String query;
-  private final Map<String, String> properties;
-  private final MacroFunctionContext macroFunctionContext;
+  private final SqlExpressionBuilder sqlExpressionBuilder;
+  private final Interval detectionInterval;
+  private final @Nullable DatasetConfigDTO datasetConfigDTO;
   private final Map<String, MacroFunction> availableMacros = new HashMap<>();
 
   public MacroEngine(final SqlLanguage sqlLanguage, final SqlExpressionBuilder sqlExpressionBuilder,
@@ -67,14 +73,9 @@ public class MacroEngine {
     this.sqlDialect = SqlLanguageTranslator.translate(sqlLanguage.getSqlDialect());
     this.tableName = optional(datasetConfigDTO).map(DatasetConfigDTO::getDataset).orElse(null);
     this.query = query;
-    this.properties = new HashMap<>();
-    this.macroFunctionContext = new MacroFunctionContext()
-        .setSqlExpressionBuilder(sqlExpressionBuilder)
-        .setDetectionInterval(detectionInterval)
-        .setDatasetConfigDTO(datasetConfigDTO)
-        .setLiteralUnquoter(this.sqlDialect::unquoteStringLiteral)
-        .setIdentifierQuoter(this.sqlDialect::quoteIdentifier)
-        .setProperties(this.properties);
+    this.sqlExpressionBuilder = sqlExpressionBuilder;
+    this.detectionInterval = detectionInterval;
+    this.datasetConfigDTO = datasetConfigDTO;
     // possible to put datasource-specific macros here in the future
     for (MacroFunction function : CORE_MACROS) {
       this.availableMacros.put(function.name(), function);
@@ -82,15 +83,66 @@ public class MacroEngine {
   }
 
   public DataSourceRequest prepareRequest() {
-    final SqlNode rootNode = queryToNode(query, sqlParserConfig);
-    final SqlNode appliedMacrosNode = applyMacros(rootNode);
+    return prepareRequest(null);
+  }
+
+  /**
+   * Prepares the request split in consecutive time segments, see {@link TimeSegmentation}.
+   *
+   * @return null if the query cannot be split in time segments
+   */
+  public @Nullable SegmentedRequest prepareSegmentedRequest() {
+    final SqlNode template = ParsedQueryCache.parseQuery(query, sqlParserConfig).template();
+    if (!TimeSegmentation.isSegmentable(template)) {
+      return null;
+    }
+    final DataSourceRequest fullRequest = prepareRequest(null);
+    final Map<String, String> properties = fullRequest.getProperties();
+    final Interval filterInterval = new Interval(
+        Long.parseLong(properties.get(MIN_TIME_MILLIS.toString())),
+        Long.parseLong(properties.get(MAX_TIME_MILLIS.toString())),
+        detectionInterval.getChronology());
+    final List<Interval> segments = TimeSegmentation.segments(filterInterval,
+        isoPeriod(properties.get(GRANULARITY.toString())));
+    if (segments == null) {
+      return null;
+    }
+    final List<DataSourceRequest> segmentRequests = segments.stream()
+        .map(this::prepareRequest)
+        .collect(Collectors.toList());
+
+    return new SegmentedRequest(fullRequest, segmentRequests, TimeSegmentation.limit(template));
+  }
+
+  private DataSourceRequest prepareRequest(final @Nullable Interval timeFilterSegment) {
+    final ParsedQuery parsedQuery = ParsedQueryCache.parseQuery(query, sqlParserConfig);
+    final Map<String, String> properties = new HashMap<>();
+    final SqlNode appliedMacrosNode;
+    if (parsedQuery.callsAnyOf(availableMacros.keySet())) {
+      // the macro visitor copies the calls it changes, so the cached template is not modified
+      final Map<String, MacroFunction> macros = new HashMap<>(availableMacros);
+      if (timeFilterSegment != null) {
+        final MacroFunction segmentTimeFilter = new TimeFilterFunction(timeFilterSegment);
+        macros.put(segmentTimeFilter.name(), segmentTimeFilter);
+      }
+      appliedMacrosNode = parsedQuery.template()
+          .accept(new MacroVisitor(macros, macroFunctionContext(properties)));
+    } else {
+      appliedMacrosNode = parsedQuery.template();
+    }
     final String preparedQuery = nodeToQuery(appliedMacrosNode, sqlDialect, QUOTE_IDENTIFIERS);
 
     return new DataSourceRequest(tableName, preparedQuery, properties);
   }
 
-  private SqlNode applyMacros(SqlNode rootNode) {
-    return rootNode.accept(new MacroVisitor());
+  private MacroFunctionContext macroFunctionContext(final Map<String, String> properties) {
+    return new MacroFunctionContext()
+        .setSqlExpressionBuilder(sqlExpressionBuilder)
+        .setDetectionInterval(detectionInterval)
+        .setDatasetConfigDTO(datasetConfigDTO)
+        .setLiteralUnquoter(sqlDialect::unquoteStringLiteral)
+        .setIdentifierQuoter(sqlDialect::quoteIdentifier)
+        .setProperties(properties);
   }
 
   private List<String> paramsFromCall(final SqlCall call) {
@@ -102,6 +154,15 @@ public class MacroEngine {
 
   private class MacroVisitor extends SqlShuttle {
 
+    private final Map<String, MacroFunction> macros;
+    private final MacroFunctionContext macroFunctionContext;
+
+    private MacroVisitor(final Map<String, MacroFunction> macros,
+        final MacroFunctionContext macroFunctionContext) {
+      this.macros = macros;
+      this.macroFunctionContext = macroFunctionContext;
+    }
+
     @Override
     public @Nullable
     SqlNode visit(SqlCall call) {
@@ -117,7 +178,7 @@ public class MacroEngine {
         // cannot be a macro function
         return call;
       }
-      final MacroFunction macroFunction = availableMacros.get(call.getOperator().getName());
+      final MacroFunction macroFunction = macros.get(call.getOperator().getName());
       if (macroFunction != null) {
         List<String> macroParams = paramsFromCall(call);
         String expandedMacro = macroFunction.expandMacro(macroParams, macroFunctionContext);
@@ -127,4 +188,34 @@ public class MacroEngine {
       return call;
     }
   }
+
+  /**
+   * A request split in consecutive time segments. The results of the segment requests, appended
+   * in order and truncated to the limit, are the results of the full request.
+   */
+  public static class SegmentedRequest {
+
+    private final DataSourceRequest fullRequest;
+    private final List<DataSourceRequest> segmentRequests;
+    private final @Nullable Long limit;
+
+    public SegmentedRequest(final DataSourceRequest fullRequest,
+        final List<DataSourceRequest> segmentRequests, final @Nullable Long limit) {
+      this.fullRequest = fullRequest;
+      this.segmentRequests = segmentRequests;
+      this.limit = limit;
+    }
+
+    public DataSourceRequest getFullRequest() {
+      return fullRequest;
+    }
+
+    public List<DataSourceRequest> getSegmentRequests() {
+      return segmentRequests;
+    }
+
+    public @Nullable Long getLimit() {
+      return limit;
+    }
+  }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.sql.macro;
+
+import ai.startree.thirdeye.detectionpipeline.sql.macro.function.TimeFilterFunction;
+import ai.startree.thirdeye.detectionpipeline.sql.macro.function.TimeGroupFunction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.SqlOrderBy;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.apache.calcite.util.Litmus;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+
+/**
+ * Splits timeseries queries in time segments.
+ *
+ * A query can be split if its result is the union of its results on consecutive time segments:
+ * a single table is grouped by a __timeGroup bucket and filtered by a single __timeFilter.
+ * Segments are aligned on calendar days, or on weeks for daily buckets, so they do not cut time
+ * buckets and so that the same historical segments are queried from one run to the next.
+ */
+public class TimeSegmentation {
+
+  /**
+   * Above this number of segments, the query is not split.
+   */
+  public static final int MAX_SEGMENTS = 100;
+
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final String TIME_FILTER = new TimeFilterFunction().name();
+  private static final String TIME_GROUP = new TimeGroupFunction().name();
+
+  /**
+   * Returns true if the results of the query can be computed segment by segment and appended in
+   * the order of the segments.
+   */
+  public static boolean isSegmentable(final SqlNode query) {
+    final SqlSelect select;
+    final SqlNodeList orderList;
+    if (query instanceof SqlOrderBy) {
+      final SqlOrderBy orderBy = (SqlOrderBy) query;
+      if (!(orderBy.query instanceof SqlSelect) || orderBy.offset != null
+          || !isLimitLiteral(orderBy.fetch)) {
+        return false;
+      }
+      select = (SqlSelect) orderBy.query;
+      orderList = orderBy.orderList;
+    } else if (query instanceof SqlSelect) {
+      select = (SqlSelect) query;
+      orderList = select.getOrderList();
+    } else {
+      return false;
+    }
+    if (select.getOffset() != null || !isLimitLiteral(select.getFetch())
+        || !(select.getFrom() instanceof SqlIdentifier)
+        || select.getGroup() == null || select.getWhere() == null
+        || containsWindowFunction(select)
+        || findCalls(select, TIME_FILTER).size() != 1
+        || findCalls(select.getWhere(), TIME_FILTER).size() != 1) {
+      return false;
+    }
+    // a single granularity: the time group can be repeated in the GROUP BY or ORDER BY clauses
+    final List<SqlCall> timeGroups = findCalls(query, TIME_GROUP);
+    if (timeGroups.isEmpty() || !timeGroups.stream()
+        .allMatch(c -> c.equalsDeep(timeGroups.get(0), Litmus.IGNORE))) {
+      return false;
+    }
+
+    final @Nullable String timeGroupAlias = timeGroupAlias(select.getSelectList());
+    boolean groupedByTime = false;
+    for (final SqlNode groupItem : select.getGroup()) {
+      groupedByTime |= isTimeGroup(groupItem, timeGroupAlias);
+    }
+    if (!groupedByTime) {
+      return false;
+    }
+    // segments are appended in time order: the rows must be sorted by time first, if sorted
+    return orderList == null || orderList.size() == 0
+        || isTimeGroup(orderList.get(0), timeGroupAlias);
+  }
+
+  /**
+   * Returns the LIMIT of a segmentable query, or null if it has none.
+   */
+  public static @Nullable Long limit(final SqlNode query) {
+    final SqlNode fetch = query instanceof SqlOrderBy
+        ? ((SqlOrderBy) query).fetch
+        : ((SqlSelect) query).getFetch();
+    return fetch == null ? null : ((SqlNumericLiteral) fetch).longValue(true);
+  }
+
+  /**
+   * Returns the consecutive time segments covering the filter interval, or null if the filter
+   * interval cannot or should not be split for the given granularity.
+   */
+  public static @Nullable List<Interval> segments(final Interval filterInterval,
+      final Period granularity) {
+    final long granularityMillis;
+    try {
+      granularityMillis = granularity.toStandardDuration().getMillis();
+    } catch (final UnsupportedOperationException e) {
+      // months and years have no standard duration
+      return null;
+    }
+    final boolean weekly;
+    if (granularityMillis == DAY_MILLIS) {
+      weekly = true;
+    } else if (isDivisorOfDay(granularityMillis)) {
+      weekly = false;
+    } else {
+      return null;
+    }
+
+    final DateTime end = filterInterval.getEnd();
+    DateTime boundary = filterInterval.getStart().withTimeAtStartOfDay();
+    if (weekly) {
+      boundary = boundary.withDayOfWeek(DateTimeConstants.MONDAY);
+    }
+    final List<Interval> segments = new ArrayList<>();
+    DateTime segmentStart = filterInterval.getStart();
+    while (segmentStart.isBefore(end)) {
+      boundary = weekly ? boundary.plusWeeks(1) : boundary.plusDays(1);
+      if (boundary.isAfter(segmentStart)) {
+        final DateTime segmentEnd = boundary.isBefore(end) ? boundary : end;
+        segments.add(new Interval(segmentStart, segmentEnd));
+        if (segments.size() > MAX_SEGMENTS) {
+          return null;
+        }
+        segmentStart = segmentEnd;
+      }
+    }
+    return segments.size() < 2 ? null : segments;
+  }
+
+  private static boolean isDivisorOfDay(final long granularityMillis) {
+    if (granularityMillis <= 0) {
+      return false;
+    }
+    if (granularityMillis <= HOUR_MILLIS) {
+      // buckets do not cut hours - in particular at offset or DST changes
+      return HOUR_MILLIS % granularityMillis == 0;
+    }
+    return granularityMillis % HOUR_MILLIS == 0 && DAY_MILLIS % granularityMillis == 0;
+  }
+
+  private static boolean isLimitLiteral(final @Nullable SqlNode fetch) {
+    return fetch == null || fetch instanceof SqlNumericLiteral;
+  }
+
+  private static @Nullable String timeGroupAlias(final SqlNodeList selectList) {
+    for (final SqlNode item : selectList) {
+      if (item.getKind() == SqlKind.AS) {
+        final List<SqlNode> operands = ((SqlBasicCall) item).getOperandList();
+        if (isCallTo(operands.get(0), TIME_GROUP)) {
+          return ((SqlIdentifier) operands.get(1)).getSimple();
+        }
+      }
+    }
+    return null;
+  }
+
+  private static boolean isTimeGroup(final SqlNode node, final @Nullable String alias) {
+    if (isCallTo(node, TIME_GROUP)) {
+      return true;
+    }
+    return alias != null && node instanceof SqlIdentifier
+        && ((SqlIdentifier) node).isSimple()
+        && ((SqlIdentifier) node).getSimple().equals(alias);
+  }
+
+  private static boolean isCallTo(final SqlNode node, final String functionName) {
+    return node instanceof SqlCall
+        && ((SqlCall) node).getOperator().getKind() == SqlKind.OTHER_FUNCTION
+        && ((SqlCall) node).getOperator().getName().equals(functionName);
+  }
+
+  private static List<SqlCall> findCalls(final SqlNode node, final String functionName) {
+    final List<SqlCall> calls = new ArrayList<>();
+    node.accept(new SqlBasicVisitor<Void>() {
+      @Override
+      public Void visit(final SqlCall call) {
+        if (isCallTo(call, functionName)) {
+          calls.add(call);
+        }
+        return super.visit(call);
+      }
+    });
+    return calls;
+  }
+
+  private static boolean containsWindowFunction(final SqlNode node) {
+    final AtomicInteger count = new AtomicInteger();
+    node.accept(new SqlBasicVisitor<Void>() {
+      @Override
+      public Void visit(final SqlCall call) {
+        if (call.getKind() == SqlKind.OVER) {
+          count.incrementAndGet();
+        }
+        return super.visit(call);
+      }
+    });
+    return count.get() > 0;
+  }
+}
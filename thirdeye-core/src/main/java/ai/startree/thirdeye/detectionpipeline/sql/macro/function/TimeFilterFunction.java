@@ -24,6 +24,7 @@ import ai.startree.thirdeye.spi.datasource.macro.MacroFunctionContext;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 
@@ -38,6 +39,19 @@ public class TimeFilterFunction implements MacroFunction {
 
   private final String NO_LOOKBACK = "P0D";
 
+  /**
+   * If set, the filter is restricted to this segment of the filter interval.
+   */
+  private final @Nullable Interval segment;
+
+  public TimeFilterFunction() {
+    this(null);
+  }
+
+  public TimeFilterFunction(final @Nullable Interval segment) {
+    this.segment = segment;
+  }
+
   @Override
   public String name() {
     return "__timeFilter";
@@ -66,12 +80,17 @@ public class TimeFilterFunction implements MacroFunction {
         .minus(isoPeriod(lookbackFromStart));
     final DateTime filterUpperBound = detectionInterval.getEnd()
         .minus(isoPeriod(lookbackFromEnd));
-    final Interval filterInterval = new Interval(filterLowerBound, filterUpperBound);
+    Interval filterInterval = new Interval(filterLowerBound, filterUpperBound);
+    if (segment != null) {
+      checkArgument(filterInterval.contains(segment),
+          "Time segment %s is not in the filter interval %s", segment, filterInterval);
+      filterInterval = segment;
+    }
 
     //write time limits to metadata
     Map<String, String> properties = context.getProperties();
-    properties.put(MIN_TIME_MILLIS.toString(), String.valueOf(filterLowerBound.getMillis()));
-    properties.put(MAX_TIME_MILLIS.toString(), String.valueOf(filterUpperBound.getMillis()));
+    properties.put(MIN_TIME_MILLIS.toString(), String.valueOf(filterInterval.getStartMillis()));
+    properties.put(MAX_TIME_MILLIS.toString(), String.valueOf(filterInterval.getEndMillis()));
 
     if (isAutoTimeConfiguration(timeColumn)) {
       final DatasetConfigDTO datasetConfigDTO = context.getDatasetConfigDTO();
@@ -32,15 +32,16 @@ public class HolidayEventProvider implements EventDataProvider<EventDTO> {
 
   @Override
   public List<EventDTO> getEvents(EventFilter eventFilter) {
-    List<EventDTO> allEventsBetweenTimeRange = eventDAO.findEventsBetweenTimeRange(
+    final String eventType = eventFilter.getEventType();
+    final List<EventDTO> events = eventDAO.findEventsBetweenTimeRangeByDimensions(
         eventFilter.getStartTime(),
         eventFilter.getEndTime(),
-        eventFilter.getEventType());
+        eventType != null ? List.of(eventType) : List.of(),
+        eventFilter.getTargetDimensionMap());
 
-    LOG.info("Fetched {} {} events between {} and {}", allEventsBetweenTimeRange.size(),
-        eventFilter.getEventType(), eventFilter.getStartTime(), eventFilter.getEndTime());
-    return EventFilter
-        .applyDimensionFilter(allEventsBetweenTimeRange, eventFilter.getTargetDimensionMap());
+    LOG.info("Fetched {} {} events between {} and {}", events.size(),
+        eventType, eventFilter.getStartTime(), eventFilter.getEndTime());
+    return events;
   }
 
   @Override
@@ -24,6 +24,7 @@ import java.util.Map;
 import org.apache.calcite.sql.SqlAsOperator;
 import org.apache.calcite.sql.SqlBasicCall;
 import org.apache.calcite.sql.SqlBinaryOperator;
+import org.apache.calcite.sql.SqlCall;
 import org.apache.calcite.sql.SqlDialect;
 import org.apache.calcite.sql.SqlIdentifier;
 import org.apache.calcite.sql.SqlKind;
@@ -31,6 +32,7 @@ import org.apache.calcite.sql.SqlLiteral;
 import org.apache.calcite.sql.SqlNode;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.SqlPostfixOperator;
+import org.apache.calcite.sql.SqlWriter;
 import org.apache.calcite.sql.parser.SqlAbstractParserImpl.Metadata;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
@@ -106,6 +108,33 @@ public class CalciteUtils {
       null,
       null);
 
+  /**
+   * The operators of this class have no precedence: AND_OPERATOR does not parenthesize its
+   * operands. An OR call is always parenthesized, so that it can be combined with AND_OPERATOR.
+   */
+  public static final SqlOperator OR_OPERATOR = new SqlBinaryOperator(SqlKind.OR.sql,
+      SqlKind.OR,
+      0,
+      true,
+      null,
+      null,
+      null) {
+    @Override
+    public void unparse(final SqlWriter writer, final SqlCall call, final int leftPrec,
+        final int rightPrec) {
+      final SqlWriter.Frame frame = writer.startList("(", ")");
+      super.unparse(writer, call, 0, 0);
+      writer.endList(frame);
+    }
+  };
+
+  public static final SqlOperator IS_NULL_OPERATOR = new SqlPostfixOperator("IS NULL",
+      SqlKind.IS_NULL,
+      0,
+      null,
+      null,
+      null);
+
   public static final SqlOperator DESC_OPERATOR = new SqlPostfixOperator("DESC",
       SqlKind.DESCENDING,
       MDX_PRECEDENCE,
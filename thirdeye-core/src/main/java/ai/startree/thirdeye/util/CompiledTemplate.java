@@ -0,0 +1,211 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.util;
+
+import static ai.startree.thirdeye.spi.ThirdEyeStatus.ERR_TEMPLATE_MISSING_PROPERTY;
+import static ai.startree.thirdeye.util.StringTemplateUtils.OBJECT_MAPPER;
+import static ai.startree.thirdeye.util.StringTemplateUtils.isTemplatedValueNode;
+import static ai.startree.thirdeye.util.StringTemplateUtils.templatedValueProperty;
+
+import ai.startree.thirdeye.spi.ThirdEyeException;
+import ai.startree.thirdeye.spi.datalayer.Templatable;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.commons.text.StringSubstitutor;
+
+/**
+ * A template compiled to a JSON tree. Placeholders are located at compile time: rendering only
+ * rebuilds the branches that contain placeholders and shares the rest of the tree.
+ *
+ * Properties are applied on String values with ${property} variables and on {@link Templatable}
+ * values with a templated value. The compiled template is immutable and can be rendered
+ * concurrently.
+ */
+public class CompiledTemplate<T> {
+
+  private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+  private static final String VARIABLE_PREFIX = "${";
+
+  private final Part root;
+  private final Class<T> type;
+
+  CompiledTemplate(final JsonNode tree, final Class<T> type) {
+    this.root = compile(tree);
+    this.type = type;
+  }
+
+  public T render(final Map<String, Object> valuesMap) throws IOException {
+    return OBJECT_MAPPER.treeToValue(renderTree(valuesMap), type);
+  }
+
+  private JsonNode renderTree(final Map<String, Object> valuesMap) throws IOException {
+    final StringSubstitutor sub = new StringSubstitutor(valuesMap)
+        .setDisableSubstitutionInValues(true)
+        .setEnableUndefinedVariableException(true);
+    return root.render(new RenderContext(valuesMap, sub));
+  }
+
+  private static Part compile(final JsonNode node) {
+    if (node.isTextual()) {
+      return node.textValue().contains(VARIABLE_PREFIX)
+          ? new TextPart(node.textValue())
+          : new ConstantPart(node);
+    }
+    if (isTemplatedValueNode(node)) {
+      return new TemplatableValuePart(templatedValueProperty(node));
+    }
+    if (node.isObject()) {
+      final Map<String, Part> fields = new LinkedHashMap<>();
+      boolean constant = true;
+      final Iterator<Entry<String, JsonNode>> it = node.fields();
+      while (it.hasNext()) {
+        final Entry<String, JsonNode> field = it.next();
+        final Part part = compile(field.getValue());
+        constant &= part instanceof ConstantPart;
+        fields.put(field.getKey(), part);
+      }
+      return constant ? new ConstantPart(node) : new ObjectPart(fields);
+    }
+    if (node.isArray()) {
+      final List<Part> elements = new ArrayList<>(node.size());
+      boolean constant = true;
+      for (final JsonNode element : node) {
+        final Part part = compile(element);
+        constant &= part instanceof ConstantPart;
+        elements.add(part);
+      }
+      return constant ? new ConstantPart(node) : new ArrayPart(elements);
+    }
+    return new ConstantPart(node);
+  }
+
+  private static class RenderContext {
+
+    private final Map<String, Object> valuesMap;
+    private final StringSubstitutor sub;
+
+    private RenderContext(final Map<String, Object> valuesMap, final StringSubstitutor sub) {
+      this.valuesMap = valuesMap;
+      this.sub = sub;
+    }
+  }
+
+  private interface Part {
+
+    JsonNode render(RenderContext context) throws IOException;
+  }
+
+  private static class ConstantPart implements Part {
+
+    // shared between renders - never modified
+    private final JsonNode node;
+
+    private ConstantPart(final JsonNode node) {
+      this.node = node;
+    }
+
+    @Override
+    public JsonNode render(final RenderContext context) {
+      return node;
+    }
+  }
+
+  private static class TextPart implements Part {
+
+    private final String text;
+
+    private TextPart(final String text) {
+      this.text = text;
+    }
+
+    @Override
+    public JsonNode render(final RenderContext context) throws JsonMappingException {
+      try {
+        return NODE_FACTORY.textNode(context.sub.replace(text));
+      } catch (final IllegalArgumentException e) {
+        throw new JsonMappingException(null, e.getMessage(),
+            new ThirdEyeException(ERR_TEMPLATE_MISSING_PROPERTY, e.getMessage()));
+      }
+    }
+  }
+
+  private static class TemplatableValuePart implements Part {
+
+    private final String property;
+
+    private TemplatableValuePart(final String property) {
+      this.property = property;
+    }
+
+    @Override
+    public JsonNode render(final RenderContext context) throws IOException {
+      if (!context.valuesMap.containsKey(property)) {
+        throw new JsonMappingException(null,
+            String.format("Property not provided for templatable value: %s", property));
+      }
+      // the property value is rendered too: it can contain String variables and Templatables
+      final Object propertyValue = context.valuesMap.get(property);
+      final JsonNode value = propertyValue == null
+          ? NODE_FACTORY.nullNode()
+          : compile(OBJECT_MAPPER.valueToTree(propertyValue)).render(context);
+      return NODE_FACTORY.objectNode().set(Templatable.VALUE_FIELD_STRING, value);
+    }
+  }
+
+  private static class ObjectPart implements Part {
+
+    private final Map<String, Part> fields;
+
+    private ObjectPart(final Map<String, Part> fields) {
+      this.fields = fields;
+    }
+
+    @Override
+    public JsonNode render(final RenderContext context) throws IOException {
+      final ObjectNode node = NODE_FACTORY.objectNode();
+      for (final Entry<String, Part> field : fields.entrySet()) {
+        node.set(field.getKey(), field.getValue().render(context));
+      }
+      return node;
+    }
+  }
+
+  private static class ArrayPart implements Part {
+
+    private final List<Part> elements;
+
+    private ArrayPart(final List<Part> elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public JsonNode render(final RenderContext context) throws IOException {
+      final ArrayNode node = NODE_FACTORY.arrayNode(elements.size());
+      for (final Part element : elements) {
+        node.add(element.render(context));
+      }
+      return node;
+    }
+  }
+}
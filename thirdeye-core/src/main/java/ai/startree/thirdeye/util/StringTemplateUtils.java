@@ -14,25 +14,71 @@
 package ai.startree.thirdeye.util;
 
 import ai.startree.thirdeye.spi.datalayer.Templatable;
-import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import java.io.IOException;
 import java.util.Map;
 
 public class StringTemplateUtils {
 
-  @SuppressWarnings("unchecked")
+  private static final String TEMPLATED_VALUE_FIELD_STRING = "templatedValue";
+
+  /**
+   * Mapper used to compile templates. Safe to share: it is configured once and never modified.
+   */
+  static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new SimpleModule()
+      .addSerializer(Templatable.class, new TemplatableSerializer()));
+
   public static <T> T applyContext(final T template,
       final Map<String, Object> valuesMap)
       throws IOException, ClassNotFoundException {
-    final Module module = new SimpleModule()
-        .addSerializer(Templatable.class, new TemplateEngineTemplatableSerializer(valuesMap))
-        .addSerializer(String.class, new TemplateEngineStringSerializer(valuesMap));
-    final ObjectMapper objectMapper = new ObjectMapper().registerModule(module);
-
-    // serialize as json - properties are applied during the serialization
-    final String jsonString = objectMapper.writeValueAsString(template);
-    return (T) objectMapper.readValue(jsonString, template.getClass());
+    return compile(template).render(valuesMap);
+  }
+
+  /**
+   * Compiles a template. Placeholders are located once, the returned template can be rendered
+   * many times with different properties.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> CompiledTemplate<T> compile(final T template) {
+    return new CompiledTemplate<>(OBJECT_MAPPER.valueToTree(template),
+        (Class<T>) template.getClass());
+  }
+
+  static boolean isTemplatedValueNode(final JsonNode node) {
+    return node.isObject()
+        && node.size() == 1
+        && node.path(TEMPLATED_VALUE_FIELD_STRING).isTextual()
+        && Templatable.isTemplatable(node.get(TEMPLATED_VALUE_FIELD_STRING).textValue());
+  }
+
+  static String templatedValueProperty(final JsonNode node) {
+    final String templatedValue = node.get(TEMPLATED_VALUE_FIELD_STRING).textValue();
+    return templatedValue.substring(2, templatedValue.length() - 1);
+  }
+
+  /**
+   * Writes a templated {@link Templatable} as {"templatedValue": "${property}"} and a resolved
+   * one as {"value": value}.
+   */
+  private static class TemplatableSerializer extends JsonSerializer<Templatable> {
+
+    @Override
+    public void serialize(final Templatable templatable, final JsonGenerator jsonGenerator,
+        final SerializerProvider serializerProvider) throws IOException {
+      jsonGenerator.writeStartObject();
+      final String templatedValue = templatable.getTemplatedValue();
+      if (templatedValue != null) {
+        jsonGenerator.writeStringField(TEMPLATED_VALUE_FIELD_STRING, templatedValue);
+      } else {
+        // cannot call writeObject on the templatable --> this would create an infinite recursive loop
+        jsonGenerator.writeObjectField(Templatable.VALUE_FIELD_STRING, templatable.getValue());
+      }
+      jsonGenerator.writeEndObject();
+    }
   }
 }
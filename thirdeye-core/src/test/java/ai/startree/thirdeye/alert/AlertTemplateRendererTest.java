@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.alert;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.spi.datalayer.TemplatableMap;
+import ai.startree.thirdeye.spi.datalayer.bao.AlertManager;
+import ai.startree.thirdeye.spi.datalayer.bao.AlertTemplateManager;
+import ai.startree.thirdeye.spi.datalayer.dto.AlertDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AlertTemplateDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import org.joda.time.Interval;
+import org.testng.annotations.Test;
+
+public class AlertTemplateRendererTest {
+
+  private static final Interval INTERVAL = new Interval(1000L, 2000L);
+
+  private static AlertTemplateDTO persistedTemplate(final long updateTime) {
+    final AlertTemplateDTO template = new AlertTemplateDTO()
+        .setName("template")
+        .setNodes(List.of(new PlanNodeBean()
+            .setName("detector")
+            .setType("AnomalyDetector")
+            .setParams(TemplatableMap.ofValue("query", "SELECT ${metric} FROM ${table} "
+                + "WHERE ts >= ${startTime} AND ts < ${endTime}"))));
+    template.setId(1L);
+    template.setUpdateTime(new Timestamp(updateTime));
+    return template;
+  }
+
+  private static AlertTemplateDTO version(final long updateTime) {
+    final AlertTemplateDTO version = new AlertTemplateDTO().setName("template");
+    version.setId(1L);
+    version.setUpdateTime(new Timestamp(updateTime));
+    return version;
+  }
+
+  private static AlertDTO alert(final Map<String, Object> templateProperties) {
+    final AlertDTO alert = new AlertDTO()
+        .setTemplate(new AlertTemplateDTO().setName("template"))
+        .setTemplateProperties(templateProperties);
+    alert.setName("alert");
+    return alert;
+  }
+
+  private static Object query(final AlertTemplateDTO rendered) {
+    return rendered.getNodes().get(0).getParams().getValue("query");
+  }
+
+  @Test
+  public void testRenderPersistedTemplateManyTimes() throws Exception {
+    final AlertTemplateManager alertTemplateManager = mock(AlertTemplateManager.class);
+    when(alertTemplateManager.findByName("template")).thenReturn(List.of(persistedTemplate(1L)));
+    final AlertTemplateRenderer renderer = new AlertTemplateRenderer(mock(AlertManager.class),
+        alertTemplateManager);
+
+    final AlertTemplateDTO rendered1 = renderer.renderAlert(
+        alert(Map.of("metric", "views", "table", "pageviews")), INTERVAL);
+    // modifying a rendered template must not impact other renders
+    rendered1.getNodes().get(0).getParams().putValue("query", "modified");
+    final AlertTemplateDTO rendered2 = renderer.renderAlert(
+        alert(Map.of("metric", "clicks", "table", "pageviews")), INTERVAL);
+
+    assertThat(query(rendered2))
+        .isEqualTo("SELECT clicks FROM pageviews WHERE ts >= 1000 AND ts < 2000");
+    assertThat(rendered2.getNodes().get(0).getParams().getValue("anomaly.source"))
+        .isEqualTo("alert/detector");
+    assertThat(rendered2.getId()).isEqualTo(1L);
+  }
+
+  @Test
+  public void testTemplateUpdateIsRendered() throws Exception {
+    final AlertTemplateManager alertTemplateManager = mock(AlertTemplateManager.class);
+    final AlertTemplateDTO updatedTemplate = persistedTemplate(2L);
+    updatedTemplate.getNodes().get(0).getParams().putValue("query", "SELECT ${metric}");
+    when(alertTemplateManager.findByName("template"))
+        .thenReturn(List.of(persistedTemplate(1L)))
+        .thenReturn(List.of(updatedTemplate));
+    final AlertTemplateRenderer renderer = new AlertTemplateRenderer(mock(AlertManager.class),
+        alertTemplateManager);
+    final AlertDTO alert = alert(Map.of("metric", "views", "table", "pageviews"));
+
+    renderer.renderAlert(alert, INTERVAL);
+    final AlertTemplateDTO rendered = renderer.renderAlert(alert, INTERVAL);
+
+    assertThat(query(rendered)).isEqualTo("SELECT views");
+  }
+
+  @Test
+  public void testRenderWithEnumerationItem() throws Exception {
+    final AlertTemplateManager alertTemplateManager = mock(AlertTemplateManager.class);
+    when(alertTemplateManager.findByName("template")).thenReturn(List.of(persistedTemplate(1L)));
+    final AlertTemplateRenderer renderer = new AlertTemplateRenderer(mock(AlertManager.class),
+        alertTemplateManager);
+    // the alert property references an enumeration item property
+    final AlertDTO alert = alert(Map.of("metric", "${enumMetric}", "table", "pageviews"));
+    final EnumerationItemDTO enumerationItem = new EnumerationItemDTO()
+        .setParams(Map.of("enumMetric", "clicks"));
+
+    final AlertTemplateDTO rendered = renderer.renderAlert(alert, INTERVAL, enumerationItem);
+
+    assertThat(query(rendered))
+        .isEqualTo("SELECT clicks FROM pageviews WHERE ts >= 1000 AND ts < 2000");
+    assertThat(rendered.getId()).isEqualTo(1L);
+    assertThat(rendered.getName()).isEqualTo("template");
+    assertThat(rendered.getNodes().get(0).getParams().getValue("anomaly.source"))
+        .isEqualTo("alert/detector");
+  }
+
+  @Test
+  public void testPersistedTemplateIsReadOncePerVersion() throws Exception {
+    final AlertTemplateManager alertTemplateManager = mock(AlertTemplateManager.class);
+    final AlertTemplateDTO updatedTemplate = persistedTemplate(2L);
+    updatedTemplate.getNodes().get(0).getParams().putValue("query", "SELECT ${metric}");
+    when(alertTemplateManager.findVersions(any()))
+        .thenReturn(List.of(version(1L)))
+        .thenReturn(List.of(version(1L)))
+        .thenReturn(List.of(version(2L)));
+    when(alertTemplateManager.findById(1L))
+        .thenReturn(persistedTemplate(1L))
+        .thenReturn(updatedTemplate);
+    final AlertTemplateRenderer renderer = new AlertTemplateRenderer(mock(AlertManager.class),
+        alertTemplateManager);
+    final AlertDTO alert = alert(Map.of("metric", "views", "table", "pageviews"));
+
+    renderer.renderAlert(alert, INTERVAL);
+    final AlertTemplateDTO rendered1 = renderer.renderAlert(alert, INTERVAL);
+    final AlertTemplateDTO rendered2 = renderer.renderAlert(alert, INTERVAL);
+
+    assertThat(query(rendered1))
+        .isEqualTo("SELECT views FROM pageviews WHERE ts >= 1000 AND ts < 2000");
+    assertThat(query(rendered2)).isEqualTo("SELECT views");
+    verify(alertTemplateManager, times(2)).findById(1L);
+    verify(alertTemplateManager, never()).findByName(any());
+  }
+
+  @Test
+  public void testRenderManyEnumerationItems() throws Exception {
+    final AlertTemplateManager alertTemplateManager = mock(AlertTemplateManager.class);
+    when(alertTemplateManager.findVersions(any())).thenReturn(List.of(version(1L)));
+    when(alertTemplateManager.findById(1L)).thenReturn(persistedTemplate(1L));
+    final AlertTemplateRenderer renderer = new AlertTemplateRenderer(mock(AlertManager.class),
+        alertTemplateManager);
+    final AlertDTO alert = alert(Map.of("metric", "${enumMetric}", "table", "pageviews"));
+
+    final AlertTemplateDTO rendered1 = renderer.renderAlert(alert, INTERVAL,
+        new EnumerationItemDTO().setParams(Map.of("enumMetric", "clicks")));
+    // modifying a rendered template must not impact other renders
+    rendered1.getNodes().get(0).getParams().putValue("query", "modified");
+    final AlertTemplateDTO rendered2 = renderer.renderAlert(alert, INTERVAL,
+        new EnumerationItemDTO().setParams(Map.of("enumMetric", "views")));
+    final AlertTemplateDTO rendered3 = renderer.renderAlert(alert, new Interval(3000L, 4000L),
+        new EnumerationItemDTO().setParams(Map.of("enumMetric", "views")));
+
+    assertThat(query(rendered2))
+        .isEqualTo("SELECT views FROM pageviews WHERE ts >= 1000 AND ts < 2000");
+    assertThat(query(rendered3))
+        .isEqualTo("SELECT views FROM pageviews WHERE ts >= 3000 AND ts < 4000");
+    verify(alertTemplateManager, times(1)).findById(1L);
+  }
+}
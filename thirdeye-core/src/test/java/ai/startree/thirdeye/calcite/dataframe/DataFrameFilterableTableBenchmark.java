@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.calcite.dataframe;
+
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares range filters pushed down to DataFrameFilterableTable with a full scan of the
+ * DataFrame filtered by Calcite, which is what the table did for range filters before they were
+ * pushed down. Run the main method manually.
+ */
+public class DataFrameFilterableTableBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(
+      DataFrameFilterableTableBenchmark.class);
+
+  private static final int N_ROUNDS = 20;
+  private static final int SIZE = 500_000;
+  private static final String ROOT_SCHEMA = "root_schema";
+  private static final String[] COUNTRIES = {"US", "FR", "IN", "BR", "JP"};
+  private static final long START_TIME = 1_600_000_000_000L;
+  private static final long STEP_MILLIS = 60_000L;
+  // selects 10% of the rows
+  private static final String TIME_RANGE_QUERY = "select ts, met from t "
+      + "where ts >= " + (START_TIME + SIZE / 2 * STEP_MILLIS)
+      + " and ts < " + (START_TIME + (SIZE / 2 + SIZE / 10) * STEP_MILLIS);
+  // selects 10% of the rows
+  private static final String BETWEEN_QUERY = "select met, country from t "
+      + "where met between 10 and 19.9";
+
+  private final DataFrame dataFrame;
+
+  private DataFrameFilterableTableBenchmark() {
+    final Random random = new Random(42);
+    final long[] times = new long[SIZE];
+    final double[] metrics = new double[SIZE];
+    final String[] countries = new String[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      times[i] = START_TIME + i * STEP_MILLIS;
+      metrics[i] = random.nextInt(1000) / 10.;
+      countries[i] = COUNTRIES[random.nextInt(COUNTRIES.length)];
+    }
+    dataFrame = new DataFrame()
+        .addSeries("ts", times)
+        .addSeries("met", metrics)
+        .addSeries("country", countries);
+  }
+
+  private static Connection connection(final Table table) throws SQLException {
+    // if not set, casing is changed when query is sent
+    final Properties properties = new Properties();
+    properties.setProperty("unquotedCasing", "UNCHANGED");
+    final CalciteConnection connection = DriverManager.getConnection("jdbc:calcite:", properties)
+        .unwrap(CalciteConnection.class);
+    connection.getRootSchema().add(ROOT_SCHEMA, new AbstractSchema() {
+      @Override
+      protected Map<String, Table> getTableMap() {
+        return Map.of("t", table);
+      }
+    });
+    connection.setSchema(ROOT_SCHEMA);
+    return connection;
+  }
+
+  private void benchmarkPushdown(final String query) throws SQLException {
+    try (final Connection connection = connection(
+        new DataFrameFilterableTable(dataFrame, null))) {
+      runQuery("benchmarkPushdown", connection, query);
+    }
+  }
+
+  private void benchmarkFullScan(final String query) throws SQLException {
+    try (final Connection connection = connection(new FullScanTable(dataFrame))) {
+      runQuery("benchmarkFullScan", connection, query);
+    }
+  }
+
+  private static void runQuery(final String name, final Connection connection,
+      final String query) throws SQLException {
+    double checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      try (final Statement statement = connection.createStatement();
+          final ResultSet resultSet = statement.executeQuery(query)) {
+        while (resultSet.next()) {
+          checksum += resultSet.getDouble("met");
+        }
+      }
+    }
+    final long tMillis = (System.nanoTime() - tStart) / 1_000_000;
+    LOG.info("{}: {} rounds of '{}' in {}ms ({}ms per round, checksum {})", name, N_ROUNDS,
+        query, tMillis, tMillis / N_ROUNDS, checksum);
+  }
+
+  /**
+   * Returns all the rows and columns of the DataFrame. Calcite evaluates the filters.
+   */
+  private static class FullScanTable extends DataFrameTable implements ScannableTable {
+
+    private FullScanTable(final DataFrame dataFrame) {
+      super(dataFrame, null);
+    }
+
+    @Override
+    public Enumerable<@Nullable Object[]> scan(final DataContext root) {
+      final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+      return new AbstractEnumerable<@Nullable Object[]>() {
+        @Override
+        public Enumerator<@Nullable Object[]> enumerator() {
+          return new DataFrameEnumerator(dataFrame, cancelFlag);
+        }
+      };
+    }
+  }
+
+  public static void main(final String[] args) throws SQLException {
+    final DataFrameFilterableTableBenchmark benchmark = new DataFrameFilterableTableBenchmark();
+    // warm up
+    benchmark.benchmarkPushdown(TIME_RANGE_QUERY);
+    benchmark.benchmarkFullScan(TIME_RANGE_QUERY);
+
+    benchmark.benchmarkPushdown(TIME_RANGE_QUERY);
+    benchmark.benchmarkFullScan(TIME_RANGE_QUERY);
+    benchmark.benchmarkPushdown(BETWEEN_QUERY);
+    benchmark.benchmarkFullScan(BETWEEN_QUERY);
+  }
+}
@@ -13,19 +13,37 @@
  */
 package ai.startree.thirdeye.calcite.dataframe;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
 import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import com.google.common.collect.ImmutableMap;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -84,6 +102,81 @@ public class DataFrameSchemaTest {
     Assert.assertEquals(outputDf, expectedDf);
   }
 
+  @Test
+  public void testRangeInAndNullPredicatePushdown() throws Exception {
+    final DataFrame df = new DataFrame();
+    df.addSeries("str_column", "PLACED", "IN_PROGRESS", "SHIPPED", null, "PLACED");
+    df.addSeries("long_column", 10L, 20L, 30L, 40L, LongSeries.NULL);
+    df.addSeries("double_column", 1.5D, DoubleSeries.NULL, 3.5D, 4.5D, 5.5D);
+    final Connection connection = getConnection(
+        new DataFrameSchema(ImmutableMap.of("t", df)), properties);
+
+    // select * keeps the plans simple: with assertions enabled, Calcite's planner validation
+    // rejects some plans that filter on a column that is not projected
+    assertThat(queryLongColumn(connection, "select * from t where long_column between 15 and 35"))
+        .containsExactly(20L, 30L);
+    assertThat(queryLongColumn(connection,
+        "select * from t where long_column >= 20 and long_column < 40"))
+        .containsExactly(20L, 30L);
+    assertThat(queryLongColumn(connection, "select * from t where 20 < long_column"))
+        .containsExactly(30L, 40L);
+    assertThat(queryLongColumn(connection,
+        "select * from t where long_column > 15.5 and long_column <= 30.0"))
+        .containsExactly(20L, 30L);
+    assertThat(queryLongColumn(connection,
+        "select * from t where str_column in ('SHIPPED', 'IN_PROGRESS')"))
+        .containsExactly(20L, 30L);
+    assertThat(queryLongColumn(connection, "select * from t where str_column > 'PLACED'"))
+        .containsExactly(30L);
+    assertThat(queryLongColumn(connection, "select * from t where double_column is null"))
+        .containsExactly(20L);
+    assertThat(queryLongColumn(connection,
+        "select * from t where double_column < 2 or double_column > 4"))
+        .containsExactly(10L, 40L, null);
+    assertThat(queryLongColumn(connection,
+        "select * from t where long_column is not null and str_column is null"))
+        .containsExactly(40L);
+    assertThat(queryLongColumn(connection,
+        "select * from t where long_column <> 20 and char_length(str_column) = 6"))
+        .containsExactly(10L);
+  }
+
+  @Test
+  public void testScanWithFilterAndProjection() {
+    final DataFrameFilterableTable table = (DataFrameFilterableTable) new DataFrameSchema(
+        ImmutableMap.of("types_table", dataFrame)).getTableMap().get("types_table");
+    final JavaTypeFactory typeFactory = new JavaTypeFactoryImpl();
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RelDataType rowType = table.getRowType(typeFactory);
+    final RexNode longColumnFilter = rexBuilder.makeCall(SqlStdOperatorTable.EQUALS,
+        rexBuilder.makeInputRef(rowType, 2),
+        rexBuilder.makeBigintLiteral(BigDecimal.valueOf(1568549798000L)));
+    final List<RexNode> filters = new ArrayList<>(List.of(longColumnFilter));
+    final DataContext root = mock(DataContext.class);
+    when(root.getTypeFactory()).thenReturn(typeFactory);
+    when(root.get(DataContext.Variable.CANCEL_FLAG.camelName)).thenReturn(new AtomicBoolean());
+
+    final List<@Nullable Object[]> rows = table.scan(root, filters, new int[]{3, 0}).toList();
+
+    // the filter is fully handled by the table, so Calcite does not apply it again
+    assertThat(filters).isEmpty();
+    assertThat(rows).hasSize(2);
+    assertThat(rows.get(0)).containsExactly(1.2D, "IN_PROGRESS");
+    assertThat(rows.get(1)).containsExactly(1.3D, "PLACED");
+  }
+
+  private static List<Long> queryLongColumn(final Connection connection, final String sql)
+      throws SQLException {
+    final List<Long> values = new ArrayList<>();
+    try (final ResultSet resultSet = connection.createStatement().executeQuery(sql)) {
+      while (resultSet.next()) {
+        final long value = resultSet.getLong("long_column");
+        values.add(resultSet.wasNull() ? null : value);
+      }
+    }
+    return values;
+  }
+
   @Test
   public void testMultipleTables() throws Exception {
     // test importing multiple dataframe as SQL tables
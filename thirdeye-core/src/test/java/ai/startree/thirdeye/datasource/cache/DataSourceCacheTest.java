@@ -0,0 +1,240 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datasource.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.datasource.DataSourcesLoader;
+import ai.startree.thirdeye.spi.ThirdEyeException;
+import ai.startree.thirdeye.spi.ThirdEyeStatus;
+import ai.startree.thirdeye.spi.datalayer.Predicate;
+import ai.startree.thirdeye.spi.datalayer.bao.DataSourceManager;
+import ai.startree.thirdeye.spi.datalayer.dto.DataSourceDTO;
+import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
+import ai.startree.thirdeye.spi.datasource.TimeSegmentCacheStats;
+import com.codahale.metrics.MetricRegistry;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DataSourceCacheTest {
+
+  private static final String NAME = "pinot";
+
+  private DataSourceManager dataSourceManager;
+  private DataSourcesLoader dataSourcesLoader;
+  private MetricRegistry metricRegistry;
+  private DataSourceCache dataSourceCache;
+
+  private static DataSourceDTO dataSourceDto(final long updateTime) {
+    final DataSourceDTO dto = new DataSourceDTO().setName(NAME);
+    dto.setUpdateTime(new Timestamp(updateTime));
+    return dto;
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    dataSourceManager = mock(DataSourceManager.class);
+    dataSourcesLoader = mock(DataSourcesLoader.class);
+    metricRegistry = new MetricRegistry();
+    // refresh is triggered manually in the tests
+    dataSourceCache = new DataSourceCache(dataSourceManager,
+        dataSourcesLoader,
+        metricRegistry,
+        Duration.ofDays(1));
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    dataSourceCache.close();
+  }
+
+  @Test
+  public void testCloseStopsRefreshAndClosesDataSources() throws Exception {
+    final ThirdEyeDataSource dataSource = mock(ThirdEyeDataSource.class);
+    when(dataSourceManager.findByPredicate(any(Predicate.class)))
+        .thenReturn(List.of(dataSourceDto(1000L)));
+    when(dataSourcesLoader.loadDataSource(any())).thenReturn(dataSource);
+    dataSourceCache.getDataSource(NAME);
+
+    dataSourceCache.close();
+
+    assertThat(dataSourceCache.isRefreshStopped()).isTrue();
+    verify(dataSource, times(1)).close();
+  }
+
+  @Test
+  public void testCacheHitDoesNotQueryDatabase() {
+    when(dataSourceManager.findByPredicate(any(Predicate.class)))
+        .thenReturn(List.of(dataSourceDto(1000L)));
+    when(dataSourcesLoader.loadDataSource(any())).thenReturn(mock(ThirdEyeDataSource.class));
+
+    final ThirdEyeDataSource first = dataSourceCache.getDataSource(NAME);
+    final ThirdEyeDataSource second = dataSourceCache.getDataSource(NAME);
+
+    assertThat(second).isSameAs(first);
+    verify(dataSourceManager, times(1)).findByPredicate(any(Predicate.class));
+    verify(dataSourcesLoader, times(1)).loadDataSource(any());
+  }
+
+  @Test
+  public void testConcurrentReadsLoadDataSourceOnce() throws Exception {
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch releaseLoad = new CountDownLatch(1);
+    when(dataSourceManager.findByPredicate(any(Predicate.class)))
+        .thenReturn(List.of(dataSourceDto(1000L)));
+    when(dataSourcesLoader.loadDataSource(any())).thenAnswer(i -> {
+      loadStarted.countDown();
+      releaseLoad.await(10, TimeUnit.SECONDS);
+      return mock(ThirdEyeDataSource.class);
+    });
+
+    final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<ThirdEyeDataSource>> futures = new ArrayList<>();
+      final Callable<ThirdEyeDataSource> read = () -> dataSourceCache.getDataSource(NAME);
+      futures.add(executorService.submit(read));
+      assertThat(loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+      for (int i = 0; i < 3; i++) {
+        futures.add(executorService.submit(read));
+      }
+      releaseLoad.countDown();
+
+      final ThirdEyeDataSource expected = futures.get(0).get(10, TimeUnit.SECONDS);
+      for (final Future<ThirdEyeDataSource> future : futures) {
+        assertThat(future.get(10, TimeUnit.SECONDS)).isSameAs(expected);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+    verify(dataSourcesLoader, times(1)).loadDataSource(any());
+  }
+
+  @Test
+  public void testMissingDataSourceIsNotCached() {
+    when(dataSourceManager.findByPredicate(any(Predicate.class))).thenReturn(List.of());
+
+    for (int i = 0; i < 2; i++) {
+      assertThatThrownBy(() -> dataSourceCache.getDataSource(NAME))
+          .isInstanceOf(ThirdEyeException.class)
+          .extracting(e -> ((ThirdEyeException) e).getStatus())
+          .isEqualTo(ThirdEyeStatus.ERR_DATASOURCE_NOT_FOUND);
+    }
+    verify(dataSourceManager, times(2)).findByPredicate(any(Predicate.class));
+  }
+
+  @Test
+  public void testRefreshEvictsUpdatedDataSource() throws Exception {
+    final ThirdEyeDataSource outdated = mock(ThirdEyeDataSource.class);
+    final ThirdEyeDataSource updated = mock(ThirdEyeDataSource.class);
+    when(dataSourceManager.findByPredicate(any(Predicate.class)))
+        .thenReturn(List.of(dataSourceDto(1000L)))
+        .thenReturn(List.of(dataSourceDto(2000L)));
+    when(dataSourcesLoader.loadDataSource(any())).thenReturn(outdated).thenReturn(updated);
+    final ThirdEyeDataSource first = dataSourceCache.getDataSource(NAME);
+
+    // unchanged in the database
+    when(dataSourceManager.findAll()).thenReturn(List.of(dataSourceDto(1000L)));
+    dataSourceCache.refresh();
+    assertThat(dataSourceCache.getDataSource(NAME)).isSameAs(first);
+
+    // updated in the database
+    when(dataSourceManager.findAll()).thenReturn(List.of(dataSourceDto(2000L)));
+    dataSourceCache.refresh();
+    verify(outdated).close();
+    assertThat(dataSourceCache.getDataSource(NAME)).isNotSameAs(first);
+    verify(dataSourcesLoader, times(2)).loadDataSource(any());
+  }
+
+  @Test
+  public void testRemoveDataSource() throws Exception {
+    final ThirdEyeDataSource dataSource = mock(ThirdEyeDataSource.class);
+    when(dataSourceManager.findByPredicate(any(Predicate.class)))
+        .thenReturn(List.of(dataSourceDto(1000L)));
+    when(dataSourcesLoader.loadDataSource(any())).thenReturn(dataSource);
+    dataSourceCache.getDataSource(NAME);
+
+    dataSourceCache.removeDataSource(NAME);
+
+    verify(dataSource).close();
+    dataSourceCache.getDataSource(NAME);
+    verify(dataSourcesLoader, times(2)).loadDataSource(any());
+  }
+
+  @Test
+  public void testQueryExecutorIsSharedAndClosed() throws Exception {
+    final ExecutorService queryExecutor = dataSourceCache.getQueryExecutor(NAME);
+    assertThat(dataSourceCache.getQueryExecutor(NAME)).isSameAs(queryExecutor);
+    assertThat(dataSourceCache.getQueryExecutor("other")).isNotSameAs(queryExecutor);
+
+    assertThat(queryExecutor.submit(() -> 42).get()).isEqualTo(42);
+    assertThat(metricRegistry.getMeters()).containsKey(
+        MetricRegistry.name(DataSourceCache.class, "queryExecutor", NAME, "completed"));
+
+    dataSourceCache.close();
+    assertThat(queryExecutor.isShutdown()).isTrue();
+  }
+
+  @Test
+  public void testQueryExecutorIsReleasedWhenTheDataSourceIsRemoved() throws Exception {
+    final ExecutorService queryExecutor = dataSourceCache.getQueryExecutor(NAME);
+    final ExecutorService otherExecutor = dataSourceCache.getQueryExecutor("other");
+    assertThat(queryExecutor.submit(() -> 42).get()).isEqualTo(42);
+
+    dataSourceCache.removeDataSource(NAME);
+    assertThat(queryExecutor.isShutdown()).isTrue();
+    assertThat(otherExecutor.isShutdown()).isFalse();
+    final String prefix = MetricRegistry.name(DataSourceCache.class, "queryExecutor", NAME);
+    assertThat(metricRegistry.getNames()).noneMatch(name -> name.startsWith(prefix + "."));
+    assertThat(metricRegistry.getNames()).anyMatch(name -> name.startsWith(
+        MetricRegistry.name(DataSourceCache.class, "queryExecutor", "other")));
+
+    // the next user of the data source gets a new executor
+    assertThat(dataSourceCache.getQueryExecutor(NAME)).isNotSameAs(queryExecutor);
+  }
+
+  @Test
+  public void testTimeSegmentCacheMetrics() {
+    final ThirdEyeDataSource dataSource = mock(ThirdEyeDataSource.class);
+    when(dataSource.getTimeSegmentCacheStats()).thenReturn(new TimeSegmentCacheStats(4, 3, 100));
+    when(dataSourceManager.findByPredicate(any(Predicate.class)))
+        .thenReturn(List.of(dataSourceDto(1000L)));
+    when(dataSourcesLoader.loadDataSource(any())).thenReturn(dataSource);
+
+    assertThat(metricRegistry.getGauges().get("timeSegmentCacheSavedRowCount").getValue())
+        .isEqualTo(0L);
+    dataSourceCache.getDataSource(NAME);
+
+    assertThat(metricRegistry.getGauges().get("timeSegmentCacheHitRatio").getValue())
+        .isEqualTo(0.75);
+    assertThat(metricRegistry.getGauges().get("timeSegmentCacheSavedRowCount").getValue())
+        .isEqualTo(100L);
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datasource.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
+import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
+import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
+import com.codahale.metrics.MetricRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DataSourceWrapperTest {
+
+  private static final DataSourceRequest REQUEST = new DataSourceRequest("tableName",
+      "SELECT ts, met FROM tableName",
+      Map.of("key", "value"));
+
+  private ThirdEyeDataSource delegate;
+  private MetricRegistry metricRegistry;
+  private DataSourceWrapper dataSourceWrapper;
+  private ExecutorService executorService;
+
+  private static DataTable dataTable() {
+    return SimpleDataTable.fromDataFrame(new DataFrame()
+        .addSeries("ts", 1000L, 2000L)
+        .addSeries("met", 1.0, 2.0));
+  }
+
+  @BeforeMethod
+  public void setUp() {
+    delegate = mock(ThirdEyeDataSource.class);
+    metricRegistry = new MetricRegistry();
+    dataSourceWrapper = new DataSourceWrapper(delegate, metricRegistry);
+    executorService = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Submits a first fetch, waits for it to reach the delegate, then submits concurrent fetches.
+   */
+  private List<Future<DataTable>> fetchConcurrently(final CountDownLatch fetchStarted,
+      final int concurrentFetches) throws InterruptedException {
+    final List<Future<DataTable>> futures = new ArrayList<>();
+    // equal requests, different instances
+    final Callable<DataTable> fetch = () -> dataSourceWrapper.fetchDataTable(
+        new DataSourceRequest(REQUEST.getTable(), REQUEST.getQuery(),
+            new HashMap<>(REQUEST.getProperties())));
+    futures.add(executorService.submit(fetch));
+    assertThat(fetchStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    for (int i = 0; i < concurrentFetches; i++) {
+      futures.add(executorService.submit(fetch));
+    }
+    // let the concurrent fetches join the in-flight fetch
+    while (metricRegistry.meter("fetchTableDeduplicatedMeter").getCount() < concurrentFetches) {
+      Thread.sleep(10);
+    }
+    return futures;
+  }
+
+  @Test
+  public void testConcurrentEqualRequestsAreFetchedOnce() throws Exception {
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    final CountDownLatch releaseFetch = new CountDownLatch(1);
+    when(delegate.fetchDataTable(any())).thenAnswer(i -> {
+      fetchStarted.countDown();
+      releaseFetch.await(10, TimeUnit.SECONDS);
+      return dataTable();
+    });
+
+    final List<Future<DataTable>> futures = fetchConcurrently(fetchStarted, 3);
+    releaseFetch.countDown();
+
+    final List<DataTable> results = new ArrayList<>();
+    for (final Future<DataTable> future : futures) {
+      results.add(future.get(10, TimeUnit.SECONDS));
+    }
+    verify(delegate, times(1)).fetchDataTable(any());
+    assertThat(metricRegistry.meter("fetchTableDeduplicatedMeter").getCount()).isEqualTo(3);
+    for (final DataTable result : results) {
+      assertThat(result.getDataFrame()).isEqualTo(dataTable().getDataFrame());
+    }
+    // callers can modify their result
+    assertThat(results).doesNotHaveDuplicates();
+    assertThat(results.get(1).getDataFrame()).isNotSameAs(results.get(2).getDataFrame());
+  }
+
+  @Test
+  public void testSequentialRequestsAreNotCoalesced() throws Exception {
+    when(delegate.fetchDataTable(any())).thenAnswer(i -> dataTable());
+
+    dataSourceWrapper.fetchDataTable(REQUEST);
+    dataSourceWrapper.fetchDataTable(REQUEST);
+
+    verify(delegate, times(2)).fetchDataTable(any());
+    assertThat(metricRegistry.meter("fetchTableDeduplicatedMeter").getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testFailureIsSharedWithWaitingCallers() throws Exception {
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    final CountDownLatch releaseFetch = new CountDownLatch(1);
+    when(delegate.fetchDataTable(any())).thenAnswer(i -> {
+      fetchStarted.countDown();
+      releaseFetch.await(10, TimeUnit.SECONDS);
+      throw new IOException("broker unavailable");
+    });
+
+    final List<Future<DataTable>> futures = fetchConcurrently(fetchStarted, 2);
+    releaseFetch.countDown();
+
+    for (final Future<DataTable> future : futures) {
+      assertThatThrownBy(() -> future.get(10, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasCauseInstanceOf(IOException.class);
+    }
+    verify(delegate, times(1)).fetchDataTable(any());
+  }
+
+  @Test
+  public void testWaitingCallerRunsTheQueryWhenTheFirstCallerGivesUp() throws Exception {
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    when(delegate.fetchDataTable(any()))
+        .thenAnswer(i -> {
+          fetchStarted.countDown();
+          // blocks until the caller is interrupted
+          new CountDownLatch(1).await();
+          return dataTable();
+        })
+        .thenAnswer(i -> dataTable());
+
+    final List<Future<DataTable>> futures = fetchConcurrently(fetchStarted, 1);
+    futures.get(0).cancel(true);
+
+    final DataTable result = futures.get(1).get(10, TimeUnit.SECONDS);
+    assertThat(result.getDataFrame()).isEqualTo(dataTable().getDataFrame());
+    verify(delegate, times(2)).fetchDataTable(any());
+  }
+}
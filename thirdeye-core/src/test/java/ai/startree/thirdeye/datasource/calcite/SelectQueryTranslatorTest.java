@@ -397,6 +397,35 @@ public class SelectQueryTranslatorTest {
     }
   }
 
+  @Test
+  public void testGetSqlWithInOrIsNullPredicate() {
+    final SelectQuery builder = new SelectQuery(TABLE).withDatabase(DATABASE)
+        .select(SIMPLE_PROJECTION)
+        .where(QueryPredicate.of(Predicate.EQ(COLUMN_NAME_3, "val3"), DimensionType.STRING, TABLE))
+        .where(QueryPredicate.of(Predicate.OR(
+            Predicate.IN(COLUMN_NAME_2, new String[]{"val1"}),
+            Predicate.IS_NULL(COLUMN_NAME_2)), DimensionType.STRING, TABLE));
+    final SelectQueryTranslator request = builder.build();
+    final String output = request.getSql(SQL_LANGUAGE, SQL_EXPRESSION_BUILDER);
+    // the OR is parenthesized: it is not absorbed by the AND
+    final String expected = String.format(
+        "SELECT \"%s\" FROM \"%s\".\"%s\" WHERE (\"%s\".\"%s\" = %s)"
+            + " AND ((\"%s\".\"%s\" IN (%s) OR (\"%s\".\"%s\" IS NULL)))",
+        COLUMN_NAME_1,
+        DATABASE,
+        TABLE,
+        TABLE,
+        COLUMN_NAME_3,
+        "'val3'",
+        TABLE,
+        COLUMN_NAME_2,
+        "'val1'",
+        TABLE,
+        COLUMN_NAME_2);
+
+    assertEquivalent(output, expected);
+  }
+
   @Test
   public void testGetSqlWithInPredicates() {
     final SelectQuery builder = new SelectQuery(TABLE).withDatabase(DATABASE)
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datasource.loader;
+
+import static ai.startree.thirdeye.spi.datasource.loader.AggregationLoader.COL_DIMENSION_NAME;
+import static ai.startree.thirdeye.spi.datasource.loader.AggregationLoader.COL_DIMENSION_VALUE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.datasource.cache.DataSourceCache;
+import ai.startree.thirdeye.spi.Constants;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.datalayer.Templatable;
+import ai.startree.thirdeye.spi.datalayer.dto.DatasetConfigDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.MetricConfigDTO;
+import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
+import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdEyeSqlParserConfig;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdeyeSqlDialect;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
+import ai.startree.thirdeye.spi.metric.MetricSlice;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DefaultAggregationLoaderTest {
+
+  private static final String DATA_SOURCE = "dataSource";
+  private static final ThirdEyeSqlParserConfig SQL_PARSER_CONFIG = new ThirdEyeSqlParserConfig.Builder()
+      .withLex("MYSQL_ANSI")
+      .withConformance("BABEL")
+      .withParserFactory("SqlBabelParserImpl")
+      .build();
+  private static final ThirdeyeSqlDialect SQL_DIALECT = new ThirdeyeSqlDialect.Builder()
+      .withBaseDialect("AnsiSqlDialect")
+      .withIdentifierQuoteString("\"")
+      .withIdentifierEscapedQuoteString("")
+      .build();
+  private static final MetricSlice SLICE = MetricSlice.from(
+      new MetricConfigDTO().setName("met").setDefaultAggFunction("SUM"),
+      new Interval(0L, 1000L, DateTimeZone.UTC),
+      new DatasetConfigDTO()
+          .setDataset("tableName")
+          .setDataSource(DATA_SOURCE)
+          .setTimeColumn("ts")
+          .setTimeFormat("EPOCH")
+          .setTimeUnit(TimeUnit.MILLISECONDS)
+          .setDimensions(Templatable.of(List.of("country", "browser"))));
+
+  private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+  private ThirdEyeDataSource dataSource;
+  private DefaultAggregationLoader aggregationLoader;
+  private List<String> queries;
+
+  private static final SqlLanguage SQL_LANGUAGE = new SqlLanguage() {
+    @Override
+    public ThirdEyeSqlParserConfig getSqlParserConfig() {
+      return SQL_PARSER_CONFIG;
+    }
+
+    @Override
+    public ThirdeyeSqlDialect getSqlDialect() {
+      return SQL_DIALECT;
+    }
+  };
+
+  @BeforeMethod
+  public void setUp() {
+    final SqlExpressionBuilder sqlExpressionBuilder = mock(SqlExpressionBuilder.class);
+    when(sqlExpressionBuilder.getTimeFilterExpression(anyString(), any(), any(), any()))
+        .thenReturn("ts >= 0 AND ts < 1000");
+    dataSource = mock(ThirdEyeDataSource.class);
+    when(dataSource.getSqlExpressionBuilder()).thenReturn(sqlExpressionBuilder);
+    final DataSourceCache dataSourceCache = mock(DataSourceCache.class);
+    when(dataSourceCache.getDataSource(DATA_SOURCE)).thenReturn(dataSource);
+    when(dataSourceCache.getQueryExecutor(DATA_SOURCE)).thenReturn(executorService);
+    aggregationLoader = new DefaultAggregationLoader(dataSourceCache);
+    queries = new CopyOnWriteArrayList<>();
+  }
+
+  @AfterClass
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void testBreakdownSendsAQueryPerDimension() throws Exception {
+    when(dataSource.getSqlLanguage()).thenReturn(SQL_LANGUAGE);
+    when(dataSource.fetchDataTable(any())).thenAnswer(i -> {
+      final String query = ((DataSourceRequest) i.getArgument(0)).getQuery();
+      queries.add(query);
+      return SimpleDataTable.fromDataFrame(query.contains("country")
+          ? new DataFrame().addSeries("country", "US").addSeries(Constants.COL_VALUE, 30.)
+          : new DataFrame().addSeries("browser", "firefox").addSeries(Constants.COL_VALUE, 45.));
+    });
+
+    final DataFrame breakdown = aggregationLoader.loadBreakdown(SLICE, 2);
+
+    assertThat(queries).hasSize(2);
+    assertThat(breakdown.getStrings(COL_DIMENSION_VALUE).toList())
+        .containsExactly("US", "firefox");
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.sql;
+
+import static ai.startree.thirdeye.util.CalciteUtils.queryToNode;
+
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares a cache hit, with and without the copy done for the filter engine, with a fresh parse
+ * of the query. Run the main method manually.
+ */
+public class ParsedQueryCacheBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParsedQueryCacheBenchmark.class);
+
+  private static final int N_ROUNDS = 100_000;
+  private static final SqlParser.Config PARSER_CONFIG = SqlParser.config()
+      .withUnquotedCasing(Casing.UNCHANGED);
+  private static final String QUERY = "SELECT __timeGroup(ts, 'EPOCH_MILLIS', 'P1D') AS ts, "
+      + "SUM(views) AS met, country, browser "
+      + "FROM pageviews "
+      + "WHERE __timeFilter(ts, 'EPOCH_MILLIS') AND country IN ('US', 'FR', 'DE') "
+      + "AND browser <> 'bot' "
+      + "GROUP BY 1, country, browser "
+      + "ORDER BY 1 LIMIT 100000";
+
+  private void benchmarkCacheHit() {
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      final SqlNode node = ParsedQueryCache.parseQuery(QUERY, PARSER_CONFIG).template();
+      checksum += node.getKind().ordinal();
+    }
+    logResults("benchmarkCacheHit", tStart, checksum);
+  }
+
+  private void benchmarkCacheHitWithCopy() {
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      final SqlNode node = ParsedQueryCache.parseQuery(QUERY, PARSER_CONFIG).copy();
+      checksum += node.getKind().ordinal();
+    }
+    logResults("benchmarkCacheHitWithCopy", tStart, checksum);
+  }
+
+  private void benchmarkFreshParse() {
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      final SqlNode node = queryToNode(QUERY, PARSER_CONFIG);
+      checksum += node.getKind().ordinal();
+    }
+    logResults("benchmarkFreshParse", tStart, checksum);
+  }
+
+  private static void logResults(final String name, final long tStart, final long checksum) {
+    final long tNanos = System.nanoTime() - tStart;
+    LOG.info("{}: {} rounds in {}ms ({}us per round, checksum {})", name, N_ROUNDS,
+        tNanos / 1_000_000, tNanos / 1_000 / N_ROUNDS, checksum);
+  }
+
+  public static void main(final String[] args) {
+    final ParsedQueryCacheBenchmark benchmark = new ParsedQueryCacheBenchmark();
+    // warm up
+    benchmark.benchmarkCacheHit();
+    benchmark.benchmarkCacheHitWithCopy();
+    benchmark.benchmarkFreshParse();
+
+    benchmark.benchmarkCacheHit();
+    benchmark.benchmarkCacheHitWithCopy();
+    benchmark.benchmarkFreshParse();
+  }
+}
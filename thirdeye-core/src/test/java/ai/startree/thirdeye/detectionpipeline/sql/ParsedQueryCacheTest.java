@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.sql;
+
+import static ai.startree.thirdeye.util.CalciteUtils.nodeToQuery;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ai.startree.thirdeye.detectionpipeline.sql.ParsedQueryCache.ParsedQuery;
+import ai.startree.thirdeye.spi.ThirdEyeException;
+import com.codahale.metrics.MetricRegistry;
+import java.util.Set;
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlDialect;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.dialect.AnsiSqlDialect;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ParsedQueryCacheTest {
+
+  private static final SqlParser.Config PARSER_CONFIG = SqlParser.config()
+      .withUnquotedCasing(Casing.UNCHANGED);
+  private static final SqlDialect DIALECT = AnsiSqlDialect.DEFAULT;
+  private static final String QUERY = "SELECT ts, met FROM tableName WHERE __timeFilter(ts, 'EPOCH')";
+
+  @BeforeMethod
+  public void setUp() {
+    ParsedQueryCache.invalidateAll();
+  }
+
+  @Test
+  public void testQueryIsParsedOnce() {
+    final long hits = ParsedQueryCache.stats().hitCount();
+    final long misses = ParsedQueryCache.stats().missCount();
+
+    final ParsedQuery first = ParsedQueryCache.parseQuery(QUERY, PARSER_CONFIG);
+    final ParsedQuery second = ParsedQueryCache.parseQuery(QUERY,
+        SqlParser.config().withUnquotedCasing(Casing.UNCHANGED));
+
+    assertThat(second).isSameAs(first);
+    assertThat(ParsedQueryCache.stats().missCount() - misses).isEqualTo(1);
+    assertThat(ParsedQueryCache.stats().hitCount() - hits).isEqualTo(1);
+  }
+
+  @Test
+  public void testParserConfigIsPartOfTheKey() {
+    final ParsedQuery first = ParsedQueryCache.parseQuery(QUERY, PARSER_CONFIG);
+    final ParsedQuery second = ParsedQueryCache.parseQuery(QUERY,
+        PARSER_CONFIG.withCaseSensitive(false));
+
+    assertThat(second).isNotSameAs(first);
+  }
+
+  @Test
+  public void testCopyDoesNotModifyTemplate() {
+    final ParsedQuery parsedQuery = ParsedQueryCache.parseQuery(QUERY, PARSER_CONFIG);
+    final String expected = nodeToQuery(parsedQuery.template(), DIALECT, false);
+
+    final SqlSelect copy = (SqlSelect) parsedQuery.copy();
+    copy.setWhere(SqlLiteral.createBoolean(true, SqlParserPos.ZERO));
+    copy.getSelectList().remove(1);
+
+    assertThat(nodeToQuery(parsedQuery.template(), DIALECT, false)).isEqualTo(expected);
+    assertThat(nodeToQuery(parsedQuery.copy(), DIALECT, false)).isEqualTo(expected);
+    assertThat(nodeToQuery(copy, DIALECT, false))
+        .isEqualTo("SELECT ts\nFROM tableName\nWHERE TRUE");
+  }
+
+  @Test
+  public void testCallsAnyOf() {
+    final ParsedQuery parsedQuery = ParsedQueryCache.parseQuery(QUERY, PARSER_CONFIG);
+
+    assertThat(parsedQuery.callsAnyOf(Set.of("__timeFilter", "__timeGroup"))).isTrue();
+    assertThat(parsedQuery.callsAnyOf(Set.of("__timeGroup"))).isFalse();
+  }
+
+  @Test
+  public void testInvalidQueryIsNotCached() {
+    final String invalidQuery = "SELECT FROM WHERE";
+    assertThatThrownBy(() -> ParsedQueryCache.parseQuery(invalidQuery, PARSER_CONFIG))
+        .isInstanceOf(ThirdEyeException.class);
+    assertThatThrownBy(() -> ParsedQueryCache.parseQuery(invalidQuery, PARSER_CONFIG))
+        .isInstanceOf(ThirdEyeException.class);
+  }
+
+  @Test
+  public void testRegisterMetricsTwice() {
+    final MetricRegistry metricRegistry = new MetricRegistry();
+    new ParsedQueryCacheMetrics(metricRegistry);
+    new ParsedQueryCacheMetrics(metricRegistry);
+
+    ParsedQueryCache.parseQuery(QUERY, PARSER_CONFIG);
+
+    assertThat(metricRegistry.getGauges().get(ParsedQueryCache.MISS_COUNT_METRIC).getValue())
+        .isEqualTo(ParsedQueryCache.stats().missCount());
+    assertThat(metricRegistry.getGauges().get(ParsedQueryCache.HIT_COUNT_METRIC).getValue())
+        .isEqualTo(ParsedQueryCache.stats().hitCount());
+  }
+}
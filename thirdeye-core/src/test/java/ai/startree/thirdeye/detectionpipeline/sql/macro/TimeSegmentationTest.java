@@ -0,0 +1,219 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.sql.macro;
+
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.GRANULARITY;
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MAX_TIME_MILLIS;
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MIN_TIME_MILLIS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ai.startree.thirdeye.detectionpipeline.sql.macro.MacroEngine.SegmentedRequest;
+import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdEyeSqlParserConfig;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdeyeSqlDialect;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.avatica.util.Casing;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.testng.annotations.Test;
+
+public class TimeSegmentationTest {
+
+  private static final DateTimeZone PARIS = DateTimeZone.forID("Europe/Paris");
+  private static final String TIME_GROUP = "__timeGroup(ts, 'EPOCH_MILLIS', 'PT1H')";
+  private static final SqlLanguage SQL_LANGUAGE = new SqlLanguage() {
+    @Override
+    public ThirdEyeSqlParserConfig getSqlParserConfig() {
+      return new ThirdEyeSqlParserConfig.Builder()
+          .withLex("MYSQL_ANSI")
+          .withConformance("BABEL")
+          .withParserFactory("SqlBabelParserImpl")
+          .build();
+    }
+
+    @Override
+    public ThirdeyeSqlDialect getSqlDialect() {
+      return new ThirdeyeSqlDialect.Builder()
+          .withBaseDialect("AnsiSqlDialect")
+          .withIdentifierQuoteString("\"")
+          .build();
+    }
+  };
+  private static final SqlExpressionBuilder SQL_EXPRESSION_BUILDER = new SqlExpressionBuilder() {
+    @Override
+    public String getTimeFilterExpression(final String timeColumn, final Interval filterInterval,
+        final String timeColumnFormat) {
+      return String.format("%s >= %d AND %s < %d", timeColumn, filterInterval.getStartMillis(),
+          timeColumn, filterInterval.getEndMillis());
+    }
+
+    @Override
+    public String getTimeGroupExpression(final String timeColumn, final String timeColumnFormat,
+        final Period granularity, final String timezone) {
+      return timeColumn;
+    }
+  };
+
+  private static SqlNode parse(final String query) throws SqlParseException {
+    return SqlParser.create(query, SqlParser.config().withUnquotedCasing(Casing.UNCHANGED))
+        .parseQuery();
+  }
+
+  @Test
+  public void testHourlyBucketsAreSplitInDays() {
+    final Interval filterInterval = new Interval(
+        new DateTime(2022, 3, 1, 10, 0, PARIS),
+        new DateTime(2022, 3, 3, 7, 0, PARIS));
+
+    final List<Interval> segments = TimeSegmentation.segments(filterInterval,
+        Period.hours(1));
+
+    assertThat(segments).containsExactly(
+        new Interval(new DateTime(2022, 3, 1, 10, 0, PARIS), new DateTime(2022, 3, 2, 0, 0, PARIS)),
+        new Interval(new DateTime(2022, 3, 2, 0, 0, PARIS), new DateTime(2022, 3, 3, 0, 0, PARIS)),
+        new Interval(new DateTime(2022, 3, 3, 0, 0, PARIS), new DateTime(2022, 3, 3, 7, 0, PARIS)));
+  }
+
+  @Test
+  public void testDailyBucketsAreSplitInWeeks() {
+    // 2022-03-02 is a Wednesday
+    final Interval filterInterval = new Interval(
+        new DateTime(2022, 3, 2, 0, 0, PARIS),
+        new DateTime(2022, 3, 16, 0, 0, PARIS));
+
+    final List<Interval> segments = TimeSegmentation.segments(filterInterval, Period.days(1));
+
+    assertThat(segments).containsExactly(
+        new Interval(new DateTime(2022, 3, 2, 0, 0, PARIS), new DateTime(2022, 3, 7, 0, 0, PARIS)),
+        new Interval(new DateTime(2022, 3, 7, 0, 0, PARIS), new DateTime(2022, 3, 14, 0, 0, PARIS)),
+        new Interval(new DateTime(2022, 3, 14, 0, 0, PARIS), new DateTime(2022, 3, 16, 0, 0, PARIS)));
+  }
+
+  @Test
+  public void testSegmentsAreNotComputedWhenBucketsCrossDays() {
+    final Interval filterInterval = new Interval(
+        new DateTime(2022, 1, 1, 0, 0, PARIS),
+        new DateTime(2022, 6, 1, 0, 0, PARIS));
+
+    assertThat(TimeSegmentation.segments(filterInterval, Period.months(1))).isNull();
+    assertThat(TimeSegmentation.segments(filterInterval, Period.hours(5))).isNull();
+    assertThat(TimeSegmentation.segments(filterInterval, Period.minutes(7))).isNull();
+  }
+
+  @Test
+  public void testSegmentsAreNotComputedForASingleOrTooManySegments() {
+    final DateTime start = new DateTime(2022, 3, 1, 0, 0, PARIS);
+
+    assertThat(TimeSegmentation.segments(new Interval(start, start.plusHours(12)),
+        Period.hours(1))).isNull();
+    assertThat(TimeSegmentation.segments(
+        new Interval(start, start.plusDays(TimeSegmentation.MAX_SEGMENTS + 1)),
+        Period.hours(1))).isNull();
+  }
+
+  @Test
+  public void testTimeseriesQueryIsSegmentable() throws SqlParseException {
+    final SqlNode query = parse("SELECT " + TIME_GROUP + " AS ts, SUM(met) AS met FROM tableName"
+        + " WHERE __timeFilter(ts, 'EPOCH_MILLIS') AND dim = 'a'"
+        + " GROUP BY ts ORDER BY ts LIMIT 1000");
+
+    assertThat(TimeSegmentation.isSegmentable(query)).isTrue();
+    assertThat(TimeSegmentation.limit(query)).isEqualTo(1000L);
+  }
+
+  @Test
+  public void testTimeseriesQueryWithoutOrderIsSegmentable() throws SqlParseException {
+    final SqlNode query = parse("SELECT " + TIME_GROUP + ", dim, SUM(met) FROM tableName"
+        + " WHERE __timeFilter(ts, 'EPOCH_MILLIS') GROUP BY " + TIME_GROUP + ", dim");
+
+    assertThat(TimeSegmentation.isSegmentable(query)).isTrue();
+    assertThat(TimeSegmentation.limit(query)).isNull();
+  }
+
+  @Test
+  public void testQueriesNotSegmentable() throws SqlParseException {
+    // not ordered by time first
+    assertThat(TimeSegmentation.isSegmentable(parse("SELECT " + TIME_GROUP
+        + " AS ts, SUM(met) AS met FROM tableName WHERE __timeFilter(ts, 'EPOCH_MILLIS')"
+        + " GROUP BY ts ORDER BY ts DESC"))).isFalse();
+    assertThat(TimeSegmentation.isSegmentable(parse("SELECT " + TIME_GROUP
+        + " AS ts, SUM(met) AS met FROM tableName WHERE __timeFilter(ts, 'EPOCH_MILLIS')"
+        + " GROUP BY ts ORDER BY met"))).isFalse();
+    // not grouped by time
+    assertThat(TimeSegmentation.isSegmentable(parse("SELECT SUM(met) FROM tableName"
+        + " WHERE __timeFilter(ts, 'EPOCH_MILLIS')"))).isFalse();
+    // no time filter
+    assertThat(TimeSegmentation.isSegmentable(parse("SELECT " + TIME_GROUP
+        + " AS ts, SUM(met) AS met FROM tableName GROUP BY ts"))).isFalse();
+    // offset
+    assertThat(TimeSegmentation.isSegmentable(parse("SELECT " + TIME_GROUP
+        + " AS ts, SUM(met) AS met FROM tableName WHERE __timeFilter(ts, 'EPOCH_MILLIS')"
+        + " GROUP BY ts ORDER BY ts OFFSET 10"))).isFalse();
+    // sub query
+    assertThat(TimeSegmentation.isSegmentable(parse("SELECT " + TIME_GROUP
+        + " AS ts, SUM(met) AS met FROM (SELECT * FROM tableName)"
+        + " WHERE __timeFilter(ts, 'EPOCH_MILLIS') GROUP BY ts"))).isFalse();
+  }
+
+  @Test
+  public void testPrepareSegmentedRequest() {
+    final DateTime start = new DateTime(2022, 3, 1, 0, 0, PARIS);
+    final DateTime end = new DateTime(2022, 3, 3, 12, 0, PARIS);
+    final MacroEngine macroEngine = new MacroEngine(SQL_LANGUAGE, SQL_EXPRESSION_BUILDER,
+        new Interval(start, end), null, "SELECT " + TIME_GROUP + " AS ts, SUM(met) AS met"
+        + " FROM tableName WHERE __timeFilter(ts, 'EPOCH_MILLIS') AND dim = 'a'"
+        + " GROUP BY ts ORDER BY ts LIMIT 1000");
+
+    final SegmentedRequest segmentedRequest = macroEngine.prepareSegmentedRequest();
+
+    assertThat(segmentedRequest).isNotNull();
+    assertThat(segmentedRequest.getLimit()).isEqualTo(1000L);
+    assertThat(segmentedRequest.getFullRequest().getProperties()).isEqualTo(Map.of(
+        MIN_TIME_MILLIS.toString(), String.valueOf(start.getMillis()),
+        MAX_TIME_MILLIS.toString(), String.valueOf(end.getMillis()),
+        GRANULARITY.toString(), "PT1H"));
+    final List<DateTime> bounds = List.of(start, start.plusDays(1), start.plusDays(2), end);
+    final List<DataSourceRequest> segmentRequests = segmentedRequest.getSegmentRequests();
+    assertThat(segmentRequests).hasSize(3);
+    for (int i = 0; i < segmentRequests.size(); i++) {
+      final long segmentStart = bounds.get(i).getMillis();
+      final long segmentEnd = bounds.get(i + 1).getMillis();
+      final DataSourceRequest segmentRequest = segmentRequests.get(i);
+      assertThat(segmentRequest.getProperties()).isEqualTo(Map.of(
+          MIN_TIME_MILLIS.toString(), String.valueOf(segmentStart),
+          MAX_TIME_MILLIS.toString(), String.valueOf(segmentEnd),
+          GRANULARITY.toString(), "PT1H"));
+      assertThat(segmentRequest.getQuery())
+          .contains("ts >= " + segmentStart + " AND ts < " + segmentEnd)
+          .contains("'a'");
+    }
+  }
+
+  @Test
+  public void testPrepareSegmentedRequestOfQueryNotSegmentable() {
+    final MacroEngine macroEngine = new MacroEngine(SQL_LANGUAGE, SQL_EXPRESSION_BUILDER,
+        new Interval(new DateTime(2022, 3, 1, 0, 0, PARIS), new DateTime(2022, 3, 4, 0, 0, PARIS)),
+        null, "SELECT SUM(met) FROM tableName WHERE __timeFilter(ts, 'EPOCH_MILLIS')");
+
+    assertThat(macroEngine.prepareSegmentedRequest()).isNull();
+  }
+}
@@ -72,6 +72,28 @@ public class StringTemplateUtilsTest {
     assertThat(map1).isEqualTo(expected);
   }
 
+  @Test
+  public void testCompiledTemplateRenderedWithDifferentValues() throws IOException {
+    final ObjectWithTemplatableFields input = new ObjectWithTemplatableFields()
+        .setTemplatableMap(new Templatable<Map<String, String>>().setTemplatedValue("${map}"))
+        .setTemplatableList(Templatable.of(List.of("constant", "prefix-${k}")));
+    final CompiledTemplate<ObjectWithTemplatableFields> compiled = StringTemplateUtils.compile(
+        input);
+
+    final ObjectWithTemplatableFields output1 = compiled.render(Map.of("k", "v1",
+        "map", Map.of("key", "${k}")));
+    final ObjectWithTemplatableFields output2 = compiled.render(Map.of("k", "v2",
+        "map", Map.of("key", "value")));
+
+    assertThat(output1.templatableList.getValue()).isEqualTo(List.of("constant", "prefix-v1"));
+    assertThat(output1.templatableMap.getValue()).isEqualTo(Map.of("key", "v1"));
+    assertThat(output2.templatableList.getValue()).isEqualTo(List.of("constant", "prefix-v2"));
+    assertThat(output2.templatableMap.getValue()).isEqualTo(Map.of("key", "value"));
+    // the input is not modified
+    assertThat(input.templatableMap.getTemplatedValue()).isEqualTo("${map}");
+    assertThat(input.templatableList.getValue()).isEqualTo(List.of("constant", "prefix-${k}"));
+  }
+
   @Test
   public void testFailAtMissingValue() {
     final Map<String, Object> values = Map.of("k2", "v2");
@@ -18,6 +18,7 @@ import ai.startree.thirdeye.detectionpipeline.persistence.CachedDatasetConfigMan
 import ai.startree.thirdeye.spi.datalayer.bao.DatasetConfigManager;
 import ai.startree.thirdeye.spi.datalayer.bao.EnumerationItemManager;
 import ai.startree.thirdeye.spi.datalayer.bao.EventManager;
+import com.codahale.metrics.MetricRegistry;
 import java.util.concurrent.ExecutorService;
 
 public class ApplicationContext {
@@ -30,6 +31,7 @@ public class ApplicationContext {
   private final ExecutorService subTaskExecutor;
   private final DetectionPipelineConfiguration configuration;
   private final EnumerationItemManager enumerationItemManager;
+  private final MetricRegistry metricRegistry;
 
   public ApplicationContext(final DataSourceCache dataSourceCache,
       final DetectionRegistry detectionRegistry,
@@ -38,7 +40,8 @@ public class ApplicationContext {
       final DatasetConfigManager datasetConfigManager,
       final ExecutorService subTaskExecutor,
       final EnumerationItemManager enumerationItemManager,
-      final DetectionPipelineConfiguration detectionPipelineConfiguration) {
+      final DetectionPipelineConfiguration detectionPipelineConfiguration,
+      final MetricRegistry metricRegistry) {
     this.dataSourceCache = dataSourceCache;
     this.detectionRegistry = detectionRegistry;
     this.postProcessorRegistry = postProcessorRegistry;
@@ -46,6 +49,7 @@ public class ApplicationContext {
     this.subTaskExecutor = subTaskExecutor;
     this.enumerationItemManager = enumerationItemManager;
     this.configuration = detectionPipelineConfiguration;
+    this.metricRegistry = metricRegistry;
 
     /* Use a cached instance for pipeline execution */
     this.datasetConfigManager = new CachedDatasetConfigManager(datasetConfigManager);
@@ -82,4 +86,8 @@ public class ApplicationContext {
   public EnumerationItemManager getEnumerationItemManager() {
     return enumerationItemManager;
   }
+
+  public MetricRegistry getMetricRegistry() {
+    return metricRegistry;
+  }
 }
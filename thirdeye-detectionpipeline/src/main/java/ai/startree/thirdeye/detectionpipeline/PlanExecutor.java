@@ -18,6 +18,8 @@ import static ai.startree.thirdeye.util.ThirdEyeUtils.shutdownExecutionService;
 import static ai.startree.thirdeye.util.ThirdEyeUtils.threadsNamed;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.toList;
 
 import ai.startree.thirdeye.datasource.cache.DataSourceCache;
 import ai.startree.thirdeye.spi.datalayer.bao.DatasetConfigManager;
@@ -26,15 +28,32 @@ import ai.startree.thirdeye.spi.datalayer.bao.EventManager;
 import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean;
 import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean.InputBean;
 import ai.startree.thirdeye.spi.detection.v2.OperatorResult;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Singleton
 public class PlanExecutor implements AutoCloseable {
@@ -50,6 +69,7 @@ public class PlanExecutor implements AutoCloseable {
   private final DatasetConfigManager datasetConfigManager;
   private final DetectionPipelineConfiguration detectionPipelineConfiguration;
   private final EnumerationItemManager enumerationItemManager;
+  private final MetricRegistry metricRegistry;
 
   private final ExecutorService subTaskExecutor;
 
@@ -64,7 +84,8 @@ public class PlanExecutor implements AutoCloseable {
       final EventManager eventManager,
       final DatasetConfigManager datasetConfigManager,
       final EnumerationItemManager enumerationItemManager,
-      final DetectionPipelineConfiguration detectionPipelineConfiguration) {
+      final DetectionPipelineConfiguration detectionPipelineConfiguration,
+      final MetricRegistry metricRegistry) {
     this.planNodeFactory = planNodeFactory;
     this.dataSourceCache = dataSourceCache;
     this.detectionRegistry = detectionRegistry;
@@ -73,6 +94,7 @@ public class PlanExecutor implements AutoCloseable {
     this.datasetConfigManager = datasetConfigManager;
     this.detectionPipelineConfiguration = detectionPipelineConfiguration;
     this.enumerationItemManager = enumerationItemManager;
+    this.metricRegistry = metricRegistry;
 
     final int nThreads = detectionPipelineConfiguration.getForkjoin().getParallelism();
     subTaskExecutor = Executors.newFixedThreadPool(nThreads, threadsNamed("fork-join-%d"));
@@ -80,7 +102,9 @@ public class PlanExecutor implements AutoCloseable {
     applicationContext = createApplicationContext();
   }
 
-  @VisibleForTesting
+  /**
+   * Executes the DAG reachable from node sequentially on the calling thread.
+   */
   public static void executePlanNode(final Map<String, PlanNode> pipelinePlanNodes,
       final PlanNode node,
       final Map<ContextKey, OperatorResult> resultMap)
@@ -108,6 +132,164 @@ public class PlanExecutor implements AutoCloseable {
     }
   }
 
+  /**
+   * Executes the DAG reachable from rootNode. The calling thread runs one ready node at a time
+   * and only the other ready nodes, ie independent branches such as the current and baseline data
+   * fetchers, are offloaded to the executor. When it has no ready node left, the calling thread
+   * runs the offloaded nodes that have not started yet instead of waiting for them, so a linear
+   * pipeline never uses the executor and a saturated executor cannot stall the pipeline. Only the
+   * calling thread wires inputs and collects outputs.
+   *
+   * @param timeout max wall time for the whole DAG. Offloaded operators are cancelled on
+   *     timeout. An operator running on the calling thread is not interrupted: the timeout is
+   *     enforced once it completes.
+   */
+  @VisibleForTesting
+  static void executePlanNodes(final Map<String, PlanNode> pipelinePlanNodes,
+      final PlanNode rootNode,
+      final Map<ContextKey, OperatorResult> resultMap,
+      final ExecutorService executor,
+      final Duration timeout) throws Exception {
+    /* node name -> distinct names of the nodes it consumes outputs from */
+    final Map<String, Set<String>> upstreams = new LinkedHashMap<>();
+    final Map<String, PlanNode> nodes = new HashMap<>();
+    collectUpstreams(pipelinePlanNodes, rootNode, nodes, upstreams, new HashSet<>());
+
+    final Map<String, Set<String>> downstreams = new HashMap<>();
+    final Map<String, Integer> pendingUpstreams = new HashMap<>();
+    final Deque<PlanNode> ready = new ArrayDeque<>();
+    upstreams.forEach((name, sources) -> {
+      pendingUpstreams.put(name, sources.size());
+      sources.forEach(source -> downstreams.computeIfAbsent(source, k -> new HashSet<>())
+          .add(name));
+      if (sources.isEmpty()) {
+        ready.add(nodes.get(name));
+      }
+    });
+
+    final BlockingQueue<NodeTask> completed = new LinkedBlockingQueue<>();
+    final List<NodeTask> offloaded = new ArrayList<>();
+    final long deadline = System.nanoTime() + timeout.toNanos();
+    try {
+      int remaining = nodes.size();
+      while (remaining > 0) {
+        if (System.nanoTime() - deadline >= 0) {
+          throw timeoutException(timeout, offloaded);
+        }
+        NodeTask task = completed.poll();
+        if (task == null) {
+          final PlanNode next = ready.poll();
+          if (next != null) {
+            while (!ready.isEmpty()) {
+              final NodeTask branch = newTask(ready.poll(), resultMap, completed);
+              try {
+                branch.future = executor.submit(branch);
+              } catch (final RejectedExecutionException e) {
+                // the calling thread runs it once it has no ready node left
+              }
+              offloaded.add(branch);
+            }
+            newTask(next, resultMap, completed).run();
+            continue;
+          }
+          if (runNotStarted(offloaded)) {
+            continue;
+          }
+          task = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (task == null) {
+            throw timeoutException(timeout, offloaded);
+          }
+        }
+        offloaded.remove(task);
+        if (task.failure instanceof Error) {
+          throw (Error) task.failure;
+        } else if (task.failure != null) {
+          throw (Exception) task.failure;
+        }
+        final String name = task.node.getName();
+        for (final Entry<String, OperatorResult> output : task.outputs.entrySet()) {
+          resultMap.put(key(name, output.getKey()), output.getValue());
+        }
+        remaining--;
+
+        for (final String downstream : downstreams.getOrDefault(name, emptySet())) {
+          if (pendingUpstreams.merge(downstream, -1, Integer::sum) == 0) {
+            ready.add(nodes.get(downstream));
+          }
+        }
+      }
+    } finally {
+      // no-op when the DAG completed. Else stop the branches that are still running.
+      offloaded.stream()
+          .map(t -> t.future)
+          .filter(Objects::nonNull)
+          .forEach(f -> f.cancel(true));
+    }
+  }
+
+  private static void collectUpstreams(final Map<String, PlanNode> pipelinePlanNodes,
+      final PlanNode node,
+      final Map<String, PlanNode> nodes,
+      final Map<String, Set<String>> upstreams,
+      final Set<String> visiting) {
+    final String name = node.getName();
+    if (upstreams.containsKey(name)) {
+      return;
+    }
+    checkArgument(visiting.add(name),
+        "Cycle detected in the pipeline at node \"%s\". Template is invalid.",
+        name);
+    final Set<String> sources = new LinkedHashSet<>();
+    for (final InputBean input : optional(node.getPlanNodeInputs()).orElse(emptyList())) {
+      final PlanNode inputPlanNode = pipelinePlanNodes.get(input.getSourcePlanNode());
+      checkArgument(inputPlanNode != null,
+          "sourcePlanNode \"%s\" found in \"%s\" node configuration does not exist. Template is invalid.",
+          input.getSourcePlanNode(),
+          name);
+      collectUpstreams(pipelinePlanNodes, inputPlanNode, nodes, upstreams, visiting);
+      sources.add(inputPlanNode.getName());
+    }
+    visiting.remove(name);
+    nodes.put(name, node);
+    upstreams.put(name, sources);
+  }
+
+  private static NodeTask newTask(final PlanNode node,
+      final Map<ContextKey, OperatorResult> resultMap,
+      final BlockingQueue<NodeTask> completed) {
+    for (final InputBean input : optional(node.getPlanNodeInputs()).orElse(emptyList())) {
+      final ContextKey contextKey = key(input.getSourcePlanNode(), input.getSourceProperty());
+      if (!resultMap.containsKey(contextKey)) {
+        throw new RuntimeException("Missing resultMap key - " + contextKey);
+      }
+      node.setInput(input.getTargetProperty(), resultMap.get(contextKey));
+    }
+    return new NodeTask(node, completed);
+  }
+
+  /**
+   * Runs on the calling thread the first offloaded node that no executor thread picked up yet.
+   *
+   * @return true if a node was run
+   */
+  private static boolean runNotStarted(final List<NodeTask> offloaded) {
+    for (final NodeTask task : offloaded) {
+      if (task.claim()) {
+        task.execute();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static TimeoutException timeoutException(final Duration timeout,
+      final List<NodeTask> offloaded) {
+    return new TimeoutException(String.format(
+        "Pipeline execution did not complete within %s. Running nodes: %s",
+        timeout,
+        offloaded.stream().map(t -> t.node.getName()).collect(toList())));
+  }
+
   @VisibleForTesting
   static ContextKey key(final String name, final String key) {
     return new ContextKey(name, key);
@@ -133,7 +315,8 @@ public class PlanExecutor implements AutoCloseable {
         datasetConfigManager,
         subTaskExecutor,
         enumerationItemManager,
-        detectionPipelineConfiguration
+        detectionPipelineConfiguration,
+        metricRegistry
     );
   }
 
@@ -176,7 +359,11 @@ public class PlanExecutor implements AutoCloseable {
 
     /* Execute the DAG */
     final PlanNode rootNode = pipelinePlanNodes.get(ROOT_OPERATOR_KEY);
-    executePlanNode(pipelinePlanNodes, rootNode, resultMap);
+    executePlanNodes(pipelinePlanNodes,
+        rootNode,
+        resultMap,
+        subTaskExecutor,
+        detectionPipelineConfiguration.getForkjoin().getTimeout());
 
     return resultMap;
   }
@@ -201,4 +388,47 @@ public class PlanExecutor implements AutoCloseable {
   public void close() throws Exception {
     shutdownExecutionService(subTaskExecutor);
   }
+
+  /**
+   * A plan node run either by an executor thread or by the calling thread, whichever claims it
+   * first. Once run, the task is added to the completed queue with its outputs or its failure.
+   */
+  private static class NodeTask implements Runnable {
+
+    private final PlanNode node;
+    private final BlockingQueue<NodeTask> completed;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private Future<?> future;
+    private Map<String, OperatorResult> outputs;
+    private Throwable failure;
+
+    private NodeTask(final PlanNode node, final BlockingQueue<NodeTask> completed) {
+      this.node = node;
+      this.completed = completed;
+    }
+
+    private boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+    @Override
+    public void run() {
+      if (claim()) {
+        execute();
+      }
+    }
+
+    private void execute() {
+      try {
+        final Operator operator = node.buildOperator();
+        operator.execute();
+        outputs = operator.getOutputs();
+      } catch (final Throwable t) {
+        failure = t;
+      } finally {
+        // the queue publishes outputs and failure to the calling thread
+        completed.add(this);
+      }
+    }
+  }
 }
@@ -18,11 +18,14 @@ import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 import ai.startree.thirdeye.detectionpipeline.plan.AnomalyDetectorPlanNode;
+import ai.startree.thirdeye.detectionpipeline.plan.CombinerPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.DataFetcherPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.DelayPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.EchoPlanNode;
+import ai.startree.thirdeye.detectionpipeline.plan.EnumeratorPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.EventFetcherPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.EventTriggerPlanNode;
+import ai.startree.thirdeye.detectionpipeline.plan.ForkJoinPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.IndexFillerPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.PostProcessorPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.SqlExecutionPlanNode;
@@ -52,7 +55,10 @@ public class PlanNodeFactory {
       IndexFillerPlanNode.class,
       SqlExecutionPlanNode.class,
       DelayPlanNode.class,
-      PostProcessorPlanNode.class
+      PostProcessorPlanNode.class,
+      EnumeratorPlanNode.class,
+      ForkJoinPlanNode.class,
+      CombinerPlanNode.class
   );
   /**
    * Contains the list of built in as well as node/operators coming from plugins.
@@ -20,6 +20,8 @@ import ai.startree.thirdeye.datasource.calcite.QueryPredicate;
 import ai.startree.thirdeye.detectionpipeline.spec.DataFetcherSpec;
 import ai.startree.thirdeye.detectionpipeline.sql.filter.FilterEngine;
 import ai.startree.thirdeye.detectionpipeline.sql.macro.MacroEngine;
+import ai.startree.thirdeye.detectionpipeline.sql.macro.MacroEngine.SegmentedRequest;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
 import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.bao.DatasetConfigManager;
 import ai.startree.thirdeye.spi.datalayer.dto.DatasetConfigDTO;
@@ -29,16 +31,26 @@ import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
 import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
 import ai.startree.thirdeye.spi.detection.DataFetcher;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import ai.startree.thirdeye.spi.metric.DimensionType;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class GenericDataFetcher implements DataFetcher<DataFetcherSpec> {
 
+  private static final Logger LOG = LoggerFactory.getLogger(GenericDataFetcher.class);
+
   /**
    * Query to execute.
    */
@@ -48,6 +60,10 @@ public class GenericDataFetcher implements DataFetcher<DataFetcherSpec> {
    */
   private String tableName;
   private ThirdEyeDataSource thirdEyeDataSource;
+  /**
+   * Executor of the queries sent to the data source. Shared by all the users of the data source.
+   */
+  private ExecutorService queryExecutor;
   private DatasetConfigDTO datasetConfigDTO;
   private List<QueryPredicate> timeseriesFilters = List.of();
 
@@ -85,6 +101,7 @@ public class GenericDataFetcher implements DataFetcher<DataFetcherSpec> {
       this.thirdEyeDataSource = requireNonNull(dataFetcherSpec
           .getDataSourceCache()
           .getDataSource(dataSource), "data source is unavailable");
+      this.queryExecutor = dataFetcherSpec.getDataSourceCache().getQueryExecutor(dataSource);
     }
 
     if (!dataFetcherSpec.getTimeseriesFilters().isEmpty()) {
@@ -100,12 +117,103 @@ public class GenericDataFetcher implements DataFetcher<DataFetcherSpec> {
   @Override
   public DataTable getDataTable(Interval detectionInterval) throws Exception {
     String queryWithFilters = injectFilters(query);
+    if (thirdEyeDataSource.cachesTimeSegments()) {
+      final DataTable segmentedResult = fetchSegmented(detectionInterval, queryWithFilters);
+      if (segmentedResult != null) {
+        return segmentedResult;
+      }
+    }
     DataSourceRequest preparedRequest = applyMacros(detectionInterval, queryWithFilters);
     DataTable result = thirdEyeDataSource.fetchDataTable(preparedRequest);
     result.addProperties(preparedRequest.getProperties());
     return result;
   }
 
+  /**
+   * Fetches a timeseries query segment by segment, so that the data source can serve historical
+   * segments from its cache. Segments are fetched concurrently with the query executor of the
+   * data source.
+   *
+   * @return null if the query cannot be split in time segments
+   */
+  private @Nullable DataTable fetchSegmented(final Interval detectionInterval,
+      final String queryWithFilters) throws Exception {
+    final SqlLanguage sqlLanguage = thirdEyeDataSource.getSqlLanguage();
+    final SqlExpressionBuilder sqlExpressionBuilder = thirdEyeDataSource.getSqlExpressionBuilder();
+    if (sqlLanguage == null || sqlExpressionBuilder == null) {
+      return null;
+    }
+    final SegmentedRequest segmentedRequest = new MacroEngine(sqlLanguage,
+        sqlExpressionBuilder,
+        detectionInterval,
+        datasetConfigDTO,
+        queryWithFilters).prepareSegmentedRequest();
+    if (segmentedRequest == null) {
+      return null;
+    }
+
+    final List<Future<DataFrame>> segmentFutures = new ArrayList<>();
+    for (final DataSourceRequest segmentRequest : segmentedRequest.getSegmentRequests()) {
+      segmentFutures.add(queryExecutor.submit(
+          () -> thirdEyeDataSource.fetchDataTable(segmentRequest).getDataFrame()));
+    }
+    try {
+      final DataFrame dataFrame = stitchSegments(segmentFutures, segmentedRequest.getLimit());
+      if (dataFrame == null) {
+        LOG.warn("Time segments of query {} have different columns. Fetching it at once.",
+            segmentedRequest.getFullRequest().getQuery());
+        return null;
+      }
+      final DataTable result = SimpleDataTable.fromDataFrame(dataFrame);
+      result.addProperties(segmentedRequest.getFullRequest().getProperties());
+      return result;
+    } finally {
+      // no-op for completed segments - stops fetching after a failure or a column mismatch
+      segmentFutures.forEach(f -> f.cancel(true));
+    }
+  }
+
+  /**
+   * Appends the segment results in order and truncates them to the limit.
+   *
+   * @return null if a segment does not have the columns of the first non-empty segment
+   */
+  private static @Nullable DataFrame stitchSegments(final List<Future<DataFrame>> segmentFutures,
+      final @Nullable Long limit) throws Exception {
+    final List<DataFrame> segmentFrames = new ArrayList<>();
+    DataFrame emptyFrame = null;
+    for (final Future<DataFrame> segmentFuture : segmentFutures) {
+      final DataFrame segmentFrame;
+      try {
+        segmentFrame = segmentFuture.get();
+      } catch (final ExecutionException e) {
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      }
+      // empty segments may not have the column types of the other segments
+      if (segmentFrame.size() > 0) {
+        if (!segmentFrames.isEmpty() && !sameColumns(segmentFrames.get(0), segmentFrame)) {
+          return null;
+        }
+        segmentFrames.add(segmentFrame);
+      } else {
+        emptyFrame = segmentFrame;
+      }
+    }
+
+    DataFrame dataFrame = segmentFrames.isEmpty()
+        ? emptyFrame
+        : DataFrame.concatenate(segmentFrames);
+    if (limit != null && dataFrame.size() > limit) {
+      dataFrame = dataFrame.head(limit.intValue());
+    }
+    return dataFrame;
+  }
+
+  private static boolean sameColumns(final DataFrame df1, final DataFrame df2) {
+    return df1.getSeriesNames().equals(df2.getSeriesNames())
+        && df1.getSeriesTypes().equals(df2.getSeriesTypes());
+  }
+
   private String injectFilters(final String query) {
     if (timeseriesFilters.isEmpty()) {
       return query;
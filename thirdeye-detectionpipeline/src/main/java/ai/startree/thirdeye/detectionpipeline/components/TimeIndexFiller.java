@@ -22,21 +22,24 @@ import static ai.startree.thirdeye.spi.util.TimeUtils.isoPeriod;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import ai.startree.thirdeye.detectionpipeline.spec.TimeIndexFillerSpec;
+import ai.startree.thirdeye.spi.dataframe.BooleanSeries;
 import ai.startree.thirdeye.spi.dataframe.DataFrame;
 import ai.startree.thirdeye.spi.dataframe.LongSeries;
 import ai.startree.thirdeye.spi.dataframe.LongSeries.Builder;
 import ai.startree.thirdeye.spi.dataframe.Series;
-import ai.startree.thirdeye.spi.dataframe.Series.LongConditional;
 import ai.startree.thirdeye.spi.detection.IndexFiller;
 import ai.startree.thirdeye.spi.detection.NullReplacer;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
 import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import ai.startree.thirdeye.spi.util.TimeUtils;
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import org.joda.time.Chronology;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
 import org.joda.time.Period;
 
@@ -55,6 +58,10 @@ public class TimeIndexFiller implements IndexFiller<TimeIndexFillerSpec> {
       "FILL_WITH_ZEROES",
       new HashMap<>());
 
+  private static final NullReplacer KEEP_NULL_REPLACER = new NullReplacerRegistry().buildNullReplacer(
+      "KEEP_NULL",
+      new HashMap<>());
+
   private static final TimeLimitInferenceStrategy DEFAULT_MIN_TIME_INFERENCE_STRATEGY = TimeLimitInferenceStrategy.FROM_DATA;
   private static final TimeLimitInferenceStrategy DEFAULT_MAX_TIME_INFERENCE_STRATEGY = TimeLimitInferenceStrategy.FROM_DETECTION_TIME;
   private static final Period DEFAULT_LOOKBACK = Period.ZERO;
@@ -142,54 +149,192 @@ public class TimeIndexFiller implements IndexFiller<TimeIndexFillerSpec> {
     DataFrame rawData = dataTable.getDataFrame();
     checkArgument(rawData.contains(timeColumn),
         "'" + timeColumn + "' column not found in DataFrame");
-    DataFrame correctIndex = generateCorrectIndex(detectionInterval.getChronology());
-    DataFrame filledData = joinOnTimeIndex(correctIndex, rawData);
-    DataFrame nullReplacedData = replaceNullData(detectionInterval.getStart(), filledData);
+    Chronology chronology = detectionInterval.getChronology();
+    long step = fixedStepMillis(granularity, chronology);
+    long[] correctIndex = generateCorrectIndex(chronology, step);
+    DataFrame filledData = joinOnTimeIndex(correctIndex, step, rawData);
+    DataFrame nullReplacedData = replaceNullData(detectionInterval.getStartMillis(), filledData);
 
     return SimpleDataTable.fromDataFrame(nullReplacedData);
   }
 
-  private DataFrame replaceNullData(final DateTime start, final DataFrame dataFrame) {
+  private DataFrame replaceNullData(final long detectionStart, final DataFrame dataFrame) {
     // only apply replacer *before* the detection period - on detection period, replace nulls by zeroes
-    DataFrame beforeDetectionStart = dataFrame.filter((LongConditional) values ->
-        values[0] < start.getMillis(), timeColumn).dropNull(timeColumn);
-    DataFrame afterDetectionStart = dataFrame.filter((LongConditional) values ->
-        values[0] >= start.getMillis(), timeColumn).dropNull(timeColumn);
-
+    final int detectionStartRow = firstRowAtOrAfter(dataFrame.getLongs(timeColumn).values(),
+        detectionStart);
+    if (detectionStartRow == 0 || nullReplacer == WITH_ZERO_NULL_REPLACER) {
+      return WITH_ZERO_NULL_REPLACER.replaceNulls(dataFrame);
+    }
+    if (nullReplacer == KEEP_NULL_REPLACER) {
+      return fillNullFrom(dataFrame, detectionStartRow);
+    }
     return DataFrame.concatenate(
-        nullReplacer.replaceNulls(beforeDetectionStart),
-        WITH_ZERO_NULL_REPLACER.replaceNulls(afterDetectionStart)
+        nullReplacer.replaceNulls(dataFrame.sliceTo(detectionStartRow)),
+        WITH_ZERO_NULL_REPLACER.replaceNulls(dataFrame.sliceFrom(detectionStartRow))
     );
   }
 
-  private DataFrame generateCorrectIndex(Chronology chronology) {
+  /**
+   * Replaces null values by their native default value in the rows from {@code fromRow}, without
+   * splitting the DataFrame.
+   */
+  private static DataFrame fillNullFrom(final DataFrame dataFrame, final int fromRow) {
+    final int size = dataFrame.size();
+    if (fromRow >= size) {
+      return dataFrame;
+    }
+    final byte[] mask = new byte[size];
+    Arrays.fill(mask, fromRow, size, BooleanSeries.TRUE);
+    final BooleanSeries fillMask = BooleanSeries.buildFrom(mask);
+
+    final DataFrame filled = new DataFrame(dataFrame);
+    for (final String seriesName : dataFrame.getSeriesNames()) {
+      final Series series = dataFrame.get(seriesName);
+      if (series.hasNull()) {
+        filled.addSeries(seriesName, series.set(fillMask, series.fillNull()));
+      }
+    }
+    return filled;
+  }
+
+  /**
+   * Returns the first row of the sorted {@code times} that is at or after {@code time}.
+   */
+  private static int firstRowAtOrAfter(final long[] times, final long time) {
+    int low = 0;
+    int high = times.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (times[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
 
+  private long[] generateCorrectIndex(Chronology chronology, long step) {
     DateTime firstIndexValue = TimeUtils.getSmallestDatetime(
         new DateTime(minTime, chronology), granularity);
     DateTime lastIndexValue = TimeUtils.getBiggestDatetime(
         new DateTime(maxTime, chronology), granularity);
-    Series correctIndexSeries = generateSeries(firstIndexValue, lastIndexValue, granularity);
-    DataFrame dataFrame = new DataFrame();
-    dataFrame.addSeries(timeColumn, correctIndexSeries);
 
-    return dataFrame;
+    if (step > 0) {
+      return generateFixedStepIndex(firstIndexValue.getMillis(), lastIndexValue.getMillis(), step);
+    }
+    return generateSeries(firstIndexValue, lastIndexValue, granularity);
+  }
+
+  /**
+   * Returns the duration in milliseconds of the period if it is the same for all steps in the
+   * chronology, -1 otherwise. Months and years have variable lengths. Days and weeks have a fixed
+   * length only if the time zone has no daylight saving time.
+   */
+  @VisibleForTesting
+  static long fixedStepMillis(final Period period, final Chronology chronology) {
+    if (period.getYears() != 0 || period.getMonths() != 0) {
+      return -1;
+    }
+    final DateTimeZone zone = chronology.getZone();
+    final boolean hasDays = period.getWeeks() != 0 || period.getDays() != 0;
+    if (hasDays && (zone == null || !zone.isFixed())) {
+      return -1;
+    }
+    return period.toStandardDuration().getMillis();
+  }
+
+  private static long[] generateFixedStepIndex(final long firstValue,
+      final long lastValueIncluded, final long step) {
+    if (lastValueIncluded < firstValue) {
+      return new long[0];
+    }
+    final long[] index = new long[Math.toIntExact((lastValueIncluded - firstValue) / step + 1)];
+    for (int i = 0; i < index.length; i++) {
+      index[i] = firstValue + i * step;
+    }
+    return index;
   }
 
-  private DataFrame joinOnTimeIndex(DataFrame correctIndex, DataFrame rawData) {
-    DataFrame filledData = correctIndex.joinLeft(rawData, timeColumn, timeColumn);
+  /**
+   * Left joins the raw data on the index. Each raw row is placed on its index slot by
+   * arithmetic or binary search, then all the series are projected at once. Raw rows with a
+   * timestamp that is not in the index are dropped. An index value with several raw rows
+   * is repeated for each row, in raw order.
+   */
+  private DataFrame joinOnTimeIndex(long[] correctIndex, long step, DataFrame rawData) {
+    final int[] slots = indexSlots(correctIndex, rawData.getLongs(timeColumn).values(), step);
+
+    final int[] counts = new int[correctIndex.length];
+    for (final int slot : slots) {
+      if (slot >= 0) {
+        counts[slot]++;
+      }
+    }
+    // offsets[i] is the first output row of index value i - missing values take one null row
+    final int[] offsets = new int[correctIndex.length + 1];
+    for (int i = 0; i < correctIndex.length; i++) {
+      offsets[i + 1] = offsets[i] + Math.max(counts[i], 1);
+    }
+    final int size = offsets[correctIndex.length];
+
+    final long[] times = new long[size];
+    final int[] fromIndex = new int[size];
+    Arrays.fill(fromIndex, -1);
+    final int[] next = Arrays.copyOf(offsets, correctIndex.length);
+    for (int row = 0; row < slots.length; row++) {
+      if (slots[row] >= 0) {
+        fromIndex[next[slots[row]]++] = row;
+      }
+    }
+    for (int i = 0; i < correctIndex.length; i++) {
+      Arrays.fill(times, offsets[i], offsets[i + 1], correctIndex[i]);
+    }
 
-    // some series can be of type Object if the rawData had no value before the join
-    // fix: transform these Series of Objects into series of Doubles - incorrect if String series was expected
-    for (String seriesName : filledData.getSeriesNames()) {
-      Series series = filledData.get(seriesName);
-      if (series.type() == OBJECT) {
-        filledData.addSeries(seriesName, series.getDoubles());
+    DataFrame projected = rawData.project(fromIndex);
+    DataFrame filledData = new DataFrame();
+    filledData.addSeries(timeColumn, LongSeries.buildFrom(times));
+    for (String seriesName : rawData.getSeriesNames()) {
+      if (seriesName.equals(timeColumn)) {
+        continue;
       }
+      Series series = projected.get(seriesName);
+      // some series can be of type Object if the rawData had no value before the join
+      // fix: transform these Series of Objects into series of Doubles - incorrect if String series was expected
+      filledData.addSeries(seriesName, series.type() == OBJECT ? series.getDoubles() : series);
     }
 
     return filledData;
   }
 
+  /**
+   * Returns the position in the index of each raw timestamp, -1 if the timestamp is not in the
+   * index. The raw timestamps do not need to be sorted.
+   */
+  private static int[] indexSlots(final long[] correctIndex, final long[] rawTimes,
+      final long step) {
+    final int[] slots = new int[rawTimes.length];
+    if (correctIndex.length == 0) {
+      Arrays.fill(slots, -1);
+      return slots;
+    }
+    final long firstValue = correctIndex[0];
+    for (int row = 0; row < rawTimes.length; row++) {
+      final long time = rawTimes[row];
+      if (time == LongSeries.NULL) {
+        slots[row] = -1;
+      } else if (step > 0) {
+        final long offset = time - firstValue;
+        final long slot = offset / step;
+        slots[row] = offset >= 0 && offset % step == 0 && slot < correctIndex.length
+            ? (int) slot : -1;
+      } else {
+        slots[row] = Math.max(Arrays.binarySearch(correctIndex, time), -1);
+      }
+    }
+    return slots;
+  }
+
   private long inferMinTime(final DateTime start, final Series timeColumnSeries,
       final TimeLimitInferenceStrategy minTimeInference, final Period lookback) {
     if (minTimeInference == TimeLimitInferenceStrategy.FROM_DATA) {
@@ -220,7 +365,7 @@ public class TimeIndexFiller implements IndexFiller<TimeIndexFillerSpec> {
     }
   }
 
-  private Series generateSeries(final DateTime firstValue, final DateTime lastValueIncluded,
+  private long[] generateSeries(final DateTime firstValue, final DateTime lastValueIncluded,
       Period timePeriod) {
     Builder correctIndexSeries = LongSeries.builder();
     DateTime indexValue = new DateTime(firstValue);
@@ -228,7 +373,7 @@ public class TimeIndexFiller implements IndexFiller<TimeIndexFillerSpec> {
       correctIndexSeries.addValues(indexValue.getMillis());
       indexValue = indexValue.plus(timePeriod);
     }
-    return correctIndexSeries.build();
+    return correctIndexSeries.build().values();
   }
 
   private static class NullReplacerRegistry {
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.operator;
+
+import static java.util.Objects.requireNonNull;
+
+import ai.startree.thirdeye.detectionpipeline.operator.ForkJoinResult.ForkJoinResultItem;
+import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
+import ai.startree.thirdeye.spi.detection.v2.OperatorResult;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the per enumeration item results of a ForkJoin operator into a {@link CombinerResult}.
+ * Failed items are skipped. The combiner fails only if all the items failed.
+ */
+public class CombinerOperator extends DetectionPipelineOperator {
+
+  public static final String DEFAULT_INPUT_KEY = "input";
+  public static final String DEFAULT_OUTPUT_KEY = "output";
+  private static final Logger LOG = LoggerFactory.getLogger(CombinerOperator.class);
+
+  public CombinerOperator() {
+    super();
+  }
+
+  private static OperatorResult withEnumerationItem(final OperatorResult result,
+      final EnumerationItemDTO enumerationItem) {
+    if (result.getEnumerationItem() != null
+        || !(result instanceof AnomalyDetectorOperatorResult)) {
+      return result;
+    }
+    return AnomalyDetectorOperatorResult.builder()
+        .setAnomalies(result.getAnomalies())
+        .setTimeseries(result.getTimeseries())
+        .setRawData(result.getRawData())
+        .setEnumerationItem(enumerationItem)
+        .build();
+  }
+
+  @Override
+  public void execute() throws Exception {
+    final ForkJoinResult forkJoinResult = (ForkJoinResult) requireNonNull(
+        inputMap.get(DEFAULT_INPUT_KEY), "Combiner requires the output of a ForkJoin operator");
+    final List<ForkJoinResultItem> items = forkJoinResult.getResults();
+
+    final Map<String, OperatorResult> combined = new LinkedHashMap<>();
+    Exception lastException = null;
+    int failed = 0;
+    for (final ForkJoinResultItem item : items) {
+      if (item.isFailed()) {
+        failed++;
+        lastException = item.getException();
+        continue;
+      }
+      for (final OperatorResult result : requireNonNull(item.getResults()).values()) {
+        combined.put(String.valueOf(combined.size()),
+            withEnumerationItem(result, item.getEnumerationItem()));
+      }
+    }
+    if (failed > 0) {
+      LOG.warn("{}/{} enumeration items failed in node {}",
+          failed,
+          items.size(),
+          planNode.getName());
+      if (failed == items.size()) {
+        throw new RuntimeException(
+            String.format("All %d enumeration items failed. Last error: %s",
+                failed,
+                lastException.getMessage()),
+            lastException);
+      }
+    }
+    setOutput(DEFAULT_OUTPUT_KEY, new CombinerResult(combined));
+  }
+
+  @Override
+  public String getOperatorName() {
+    return "CombinerOperator";
+  }
+}
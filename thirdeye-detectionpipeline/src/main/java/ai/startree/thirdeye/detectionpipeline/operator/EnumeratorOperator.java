@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.operator;
+
+import static ai.startree.thirdeye.spi.util.SpiUtils.optional;
+import static java.util.Collections.emptyMap;
+import static java.util.Objects.requireNonNull;
+
+import ai.startree.thirdeye.detectionpipeline.ApplicationContext;
+import ai.startree.thirdeye.detectionpipeline.DetectionPipelineContext;
+import ai.startree.thirdeye.detectionpipeline.OperatorContext;
+import ai.startree.thirdeye.spi.datalayer.TemplatableMap;
+import ai.startree.thirdeye.spi.datalayer.bao.EnumerationItemManager;
+import ai.startree.thirdeye.spi.datalayer.dto.AlertDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
+import ai.startree.thirdeye.spi.detection.DetectionPipelineUsage;
+import ai.startree.thirdeye.spi.detection.Enumerator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.collections4.MapUtils;
+
+public class EnumeratorOperator extends DetectionPipelineOperator {
+
+  public static final String DEFAULT_OUTPUT_KEY = "enumeratorResult";
+  private static final String DEFAULT_ENUMERATOR_TYPE = "default";
+  private static final String K_ID_KEYS = "idKeys";
+
+  private Enumerator enumerator;
+  private Map<String, Object> params;
+  private DetectionPipelineContext detectionPipelineContext;
+  private EnumerationItemManager enumerationItemManager;
+
+  public EnumeratorOperator() {
+    super();
+  }
+
+  @Override
+  public void init(final OperatorContext context) {
+    super.init(context);
+    final ApplicationContext applicationContext = context.getPlanNodeContext()
+        .getApplicationContext();
+    params = optional(planNode.getParams()).map(TemplatableMap::valueMap).orElse(emptyMap());
+
+    final String type = MapUtils.getString(params, PROP_TYPE, DEFAULT_ENUMERATOR_TYPE);
+    enumerator = applicationContext.getDetectionRegistry().buildEnumerator(type);
+    enumerationItemManager = applicationContext.getEnumerationItemManager();
+    detectionPipelineContext = context.getPlanNodeContext().getDetectionPipelineContext();
+  }
+
+  @Override
+  public void execute() throws Exception {
+    final EnumerationItemDTO contextItem = detectionPipelineContext.getEnumerationItem();
+    if (contextItem != null) {
+      // the pipeline is run for a single enumeration item. eg: evaluation of a given item
+      setOutput(DEFAULT_OUTPUT_KEY, new EnumeratorResult(List.of(contextItem)));
+      return;
+    }
+
+    final List<EnumerationItemDTO> enumerationItems = enumerator.enumerate(
+        new Enumerator.Context().setParams(params));
+    final List<EnumerationItemDTO> outputs = shouldPersist()
+        ? persist(enumerationItems)
+        : enumerationItems;
+    setOutput(DEFAULT_OUTPUT_KEY, new EnumeratorResult(outputs));
+  }
+
+  private boolean shouldPersist() {
+    return detectionPipelineContext.getUsage() == DetectionPipelineUsage.DETECTION
+        && detectionPipelineContext.getAlertId() != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<EnumerationItemDTO> persist(final List<EnumerationItemDTO> enumerationItems) {
+    final AlertDTO alert = (AlertDTO) new AlertDTO()
+        .setId(detectionPipelineContext.getAlertId());
+    for (final EnumerationItemDTO item : enumerationItems) {
+      if (item.getName() == null) {
+        item.setName(defaultName(item));
+      }
+      item.setAlert(alert);
+    }
+    final List<String> idKeys = (List<String>) params.get(K_ID_KEYS);
+    return requireNonNull(enumerationItemManager.findExistingOrCreate(enumerationItems, idKeys),
+        "enumeration items could not be persisted");
+  }
+
+  /**
+   * Deterministic name for items that do not provide one. Sorted so that it does not depend on
+   * the params map implementation.
+   */
+  private static String defaultName(final EnumerationItemDTO item) {
+    return String.valueOf(new TreeMap<>(optional(item.getParams()).orElse(emptyMap())));
+  }
+
+  @Override
+  public String getOperatorName() {
+    return "EnumeratorOperator";
+  }
+}
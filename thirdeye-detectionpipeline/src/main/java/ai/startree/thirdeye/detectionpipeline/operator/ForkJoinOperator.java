@@ -0,0 +1,280 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.operator;
+
+import static ai.startree.thirdeye.spi.util.SpiUtils.optional;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Objects.requireNonNull;
+
+import ai.startree.thirdeye.detectionpipeline.ApplicationContext;
+import ai.startree.thirdeye.detectionpipeline.ContextKey;
+import ai.startree.thirdeye.detectionpipeline.DetectionPipelineContext;
+import ai.startree.thirdeye.detectionpipeline.DetectionPipelineContextMapper;
+import ai.startree.thirdeye.detectionpipeline.ForkJoinConfiguration;
+import ai.startree.thirdeye.detectionpipeline.Operator;
+import ai.startree.thirdeye.detectionpipeline.OperatorContext;
+import ai.startree.thirdeye.detectionpipeline.PlanExecutor;
+import ai.startree.thirdeye.detectionpipeline.PlanNode;
+import ai.startree.thirdeye.detectionpipeline.PlanNodeContext;
+import ai.startree.thirdeye.detectionpipeline.PlanNodeFactory;
+import ai.startree.thirdeye.detectionpipeline.operator.ForkJoinResult.ForkJoinResultItem;
+import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean;
+import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean.InputBean;
+import ai.startree.thirdeye.spi.detection.v2.OperatorResult;
+import ai.startree.thirdeye.util.StringTemplateUtils;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the sub-pipeline of the root node once per enumeration item, in parallel.
+ *
+ * The items are shared by up to {@link ForkJoinConfiguration#getParallelism()} workers: the
+ * calling thread plus helpers submitted to the sub task executor. Because the calling thread
+ * processes items too, the operator makes progress even if the executor is saturated, and it never
+ * waits for a helper that has not started. Each item runs its sub-pipeline sequentially on the
+ * worker thread, with its own copy of the plan nodes.
+ *
+ * An item that fails with an exception is reported in its result. An item that fails with an
+ * {@link Error} stops the remaining items and the error is rethrown on the calling thread.
+ */
+public class ForkJoinOperator extends DetectionPipelineOperator {
+
+  public static final String K_ENUMERATOR = "enumerator";
+  public static final String K_ROOT = "root";
+  public static final String K_COMBINER = "combiner";
+  public static final List<String> NODE_KEYS = List.of(K_ENUMERATOR, K_ROOT, K_COMBINER);
+
+  private static final Logger LOG = LoggerFactory.getLogger(ForkJoinOperator.class);
+
+  private PlanNode enumerator;
+  private PlanNode root;
+  private PlanNode combiner;
+  private ExecutorService subTaskExecutor;
+  private int parallelism;
+  private Duration timeout;
+  private Timer itemTimer;
+  private Counter itemExceptionCounter;
+
+  /* names of the nodes of the sub-pipeline of the root node, in dependency order */
+  private List<String> subPipelineNodeNames;
+
+  public ForkJoinOperator() {
+    super();
+  }
+
+  @Override
+  public void init(final OperatorContext context) {
+    super.init(context);
+    final Map<String, Object> properties = context.getProperties();
+    enumerator = (PlanNode) requireNonNull(properties.get(K_ENUMERATOR));
+    root = (PlanNode) requireNonNull(properties.get(K_ROOT));
+    combiner = (PlanNode) requireNonNull(properties.get(K_COMBINER));
+
+    final ApplicationContext applicationContext = context.getPlanNodeContext()
+        .getApplicationContext();
+    final ForkJoinConfiguration config = applicationContext.getConfiguration().getForkjoin();
+    subTaskExecutor = applicationContext.getSubTaskExecutor();
+    parallelism = Math.max(1, config.getParallelism());
+    timeout = config.getTimeout();
+    itemTimer = applicationContext.getMetricRegistry().timer("forkJoinItemTimer");
+    itemExceptionCounter = applicationContext.getMetricRegistry()
+        .counter("forkJoinItemExceptionCounter");
+
+    final Set<String> names = new LinkedHashSet<>();
+    collectSubPipeline(root, names);
+    subPipelineNodeNames = new ArrayList<>(names);
+  }
+
+  private void collectSubPipeline(final PlanNode node, final Set<String> names) {
+    if (names.contains(node.getName())) {
+      return;
+    }
+    final Map<String, PlanNode> pipelinePlanNodes = node.getContext().getPipelinePlanNodes();
+    for (final InputBean input : optional(node.getPlanNodeInputs()).orElse(emptyList())) {
+      final PlanNode source = requireNonNull(pipelinePlanNodes.get(input.getSourcePlanNode()),
+          "sourcePlanNode does not exist: " + input.getSourcePlanNode());
+      collectSubPipeline(source, names);
+    }
+    names.add(node.getName());
+  }
+
+  @Override
+  public void execute() throws Exception {
+    final Operator enumeratorOperator = enumerator.buildOperator();
+    enumeratorOperator.execute();
+    final EnumeratorResult enumeratorResult = (EnumeratorResult) requireNonNull(
+        enumeratorOperator.getOutput(EnumeratorOperator.DEFAULT_OUTPUT_KEY),
+        "enumerator node did not output an EnumeratorResult: " + enumerator.getName());
+
+    final List<ForkJoinResultItem> results = executeAll(enumeratorResult.getResults());
+
+    combiner.setInput(CombinerOperator.DEFAULT_INPUT_KEY, new ForkJoinResult(results));
+    final Operator combinerOperator = combiner.buildOperator();
+    combinerOperator.execute();
+    resultMap.putAll(combinerOperator.getOutputs());
+  }
+
+  private List<ForkJoinResultItem> executeAll(final List<EnumerationItemDTO> enumerationItems)
+      throws Exception {
+    final int n = enumerationItems.size();
+    final Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+    for (int i = 0; i < n; i++) {
+      pending.add(i);
+    }
+    final AtomicReferenceArray<ForkJoinResultItem> results = new AtomicReferenceArray<>(n);
+    final CountDownLatch done = new CountDownLatch(n);
+    // errors are not isolated per item: the first one fails the operator
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final long deadline = System.nanoTime() + timeout.toNanos();
+
+    final Runnable worker = () -> {
+      Integer i;
+      while (System.nanoTime() < deadline
+          && !Thread.currentThread().isInterrupted()
+          && (i = pending.poll()) != null) {
+        try {
+          results.set(i, executeItem(enumerationItems.get(i)));
+        } catch (final Throwable t) {
+          failure.compareAndSet(null, t);
+          // release the caller without running the remaining items
+          while (pending.poll() != null) {
+            done.countDown();
+          }
+        } finally {
+          done.countDown();
+        }
+      }
+    };
+
+    final List<Future<?>> helpers = new ArrayList<>();
+    try {
+      for (int h = 1; h < Math.min(parallelism, n); h++) {
+        helpers.add(subTaskExecutor.submit(worker));
+      }
+      worker.run();
+      final boolean completed = done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      rethrowFailure(failure.get());
+      if (!completed) {
+        throw new TimeoutException(String.format(
+            "ForkJoin node %s did not complete %d enumeration items within %s. Completed: %d",
+            planNode.getName(),
+            n,
+            timeout,
+            n - done.getCount()));
+      }
+    } finally {
+      // helpers that never started are not needed anymore. Running helpers are interrupted.
+      helpers.forEach(f -> f.cancel(true));
+    }
+
+    final List<ForkJoinResultItem> output = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      output.add(results.get(i));
+    }
+    return output;
+  }
+
+  private void rethrowFailure(final @Nullable Throwable failure) throws Exception {
+    if (failure == null) {
+      return;
+    }
+    LOG.error("Failed to run node {}: an enumeration item threw {}",
+        planNode.getName(),
+        failure.getClass().getSimpleName());
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    // executeItem catches exceptions: only unchecked exceptions thrown outside of it get here
+    throw (Exception) failure;
+  }
+
+  private ForkJoinResultItem executeItem(final EnumerationItemDTO enumerationItem) {
+    final Timer.Context timerContext = itemTimer.time();
+    final long start = System.currentTimeMillis();
+    try {
+      final Map<String, PlanNode> itemPlanNodes = buildItemPlanNodes(enumerationItem);
+      final Map<ContextKey, OperatorResult> outputs = new HashMap<>();
+      PlanExecutor.executePlanNode(itemPlanNodes, itemPlanNodes.get(root.getName()), outputs);
+
+      final Map<String, OperatorResult> results = PlanExecutor.getOutput(outputs,
+          root.getName());
+      return new ForkJoinResultItem(enumerationItem,
+          results,
+          null,
+          System.currentTimeMillis() - start);
+    } catch (final Exception e) {
+      itemExceptionCounter.inc();
+      LOG.error("Failed to run node {} for enumeration item {}",
+          planNode.getName(),
+          enumerationItem,
+          e);
+      return new ForkJoinResultItem(enumerationItem, null, e, System.currentTimeMillis() - start);
+    } finally {
+      timerContext.stop();
+    }
+  }
+
+  /**
+   * Builds a fresh copy of the sub-pipeline for an enumeration item: plan nodes are stateful and
+   * the item params are applied on the node beans.
+   */
+  private Map<String, PlanNode> buildItemPlanNodes(final EnumerationItemDTO enumerationItem)
+      throws Exception {
+    final Map<String, Object> itemParams = optional(enumerationItem.getParams())
+        .orElse(emptyMap());
+    final DetectionPipelineContext itemPipelineContext = DetectionPipelineContextMapper.INSTANCE
+        .clone(root.getContext().getDetectionPipelineContext())
+        .setEnumerationItem(enumerationItem);
+
+    final Map<String, PlanNode> itemPlanNodes = new HashMap<>();
+    for (final String name : subPipelineNodeNames) {
+      final PlanNode node = root.getContext().getPipelinePlanNodes().get(name);
+      final PlanNodeBean itemBean = StringTemplateUtils.applyContext(
+          node.getContext().getPlanNodeBean(),
+          itemParams);
+      final PlanNodeContext itemContext = PlanNodeContext.copy(node.getContext())
+          .setDetectionPipelineContext(itemPipelineContext)
+          .setPlanNodeBean(itemBean)
+          .setPipelinePlanNodes(itemPlanNodes);
+      itemPlanNodes.put(name, PlanNodeFactory.build(node.getClass(), itemContext));
+    }
+    return itemPlanNodes;
+  }
+
+  @Override
+  public String getOperatorName() {
+    return "ForkJoinOperator";
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.operator;
+
+import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
+import ai.startree.thirdeye.spi.detection.v2.OperatorResult;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Output of the ForkJoin operator. Contains one item per enumeration item, in enumeration order.
+ * A failed item does not fail the other items: it holds the exception instead of results.
+ */
+public class ForkJoinResult implements OperatorResult {
+
+  private final List<ForkJoinResultItem> results;
+
+  public ForkJoinResult(final List<ForkJoinResultItem> results) {
+    this.results = results;
+  }
+
+  public List<ForkJoinResultItem> getResults() {
+    return results;
+  }
+
+  public static class ForkJoinResultItem {
+
+    private final EnumerationItemDTO enumerationItem;
+    private final @Nullable Map<String, OperatorResult> results;
+    private final @Nullable Exception exception;
+    private final long durationMillis;
+
+    public ForkJoinResultItem(final EnumerationItemDTO enumerationItem,
+        final @Nullable Map<String, OperatorResult> results,
+        final @Nullable Exception exception,
+        final long durationMillis) {
+      this.enumerationItem = enumerationItem;
+      this.results = results;
+      this.exception = exception;
+      this.durationMillis = durationMillis;
+    }
+
+    public EnumerationItemDTO getEnumerationItem() {
+      return enumerationItem;
+    }
+
+    public @Nullable Map<String, OperatorResult> getResults() {
+      return results;
+    }
+
+    public @Nullable Exception getException() {
+      return exception;
+    }
+
+    public boolean isFailed() {
+      return exception != null;
+    }
+
+    public long getDurationMillis() {
+      return durationMillis;
+    }
+  }
+}
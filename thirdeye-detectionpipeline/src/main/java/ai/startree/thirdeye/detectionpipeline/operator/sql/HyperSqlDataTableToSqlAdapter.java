@@ -13,25 +13,44 @@
  */
 package ai.startree.thirdeye.detectionpipeline.operator.sql;
 
+import ai.startree.thirdeye.spi.dataframe.BooleanSeries;
 import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.Series;
 import ai.startree.thirdeye.spi.dataframe.Series.SeriesType;
+import ai.startree.thirdeye.spi.dataframe.StringSeries;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
 import ai.startree.thirdeye.spi.detection.v2.DataTableToSqlAdapter;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Loads DataTables in the in-memory HyperSQL database.
+ *
+ * The in-memory database is shared by all the executions in the JVM. Each adapter creates its
+ * tables in its own schema, so that concurrent executions using the same table names do not
+ * collide. The schema is set as the default schema of the connection, so queries can use
+ * unqualified table names.
+ */
 public class HyperSqlDataTableToSqlAdapter implements DataTableToSqlAdapter {
 
+  private static final int INSERT_BATCH_SIZE = 1000;
+  private static final int MIN_VARCHAR_LENGTH = 128;
+
   private final Logger LOG = LoggerFactory.getLogger(getClass());
 
-  private final List<String> insertedTable = new ArrayList<>();
+  private final String schemaName = "TE_" + UUID.randomUUID().toString().replace("-", "");
 
   private final Properties properties = new Properties();
 
@@ -53,120 +72,163 @@ public class HyperSqlDataTableToSqlAdapter implements DataTableToSqlAdapter {
   @Override
   public void loadTables(final Connection connection, final Map<String, DataTable> dataTables)
       throws SQLException {
-    for (final Entry<String, DataTable> entry : dataTables.entrySet()) {
-      insertInput(connection, entry.getKey(), entry.getValue());
-      insertedTable.add(entry.getKey());
+    execute(connection, "CREATE SCHEMA " + schemaName);
+    execute(connection, "SET SCHEMA " + schemaName);
+    final boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    try {
+      for (final Entry<String, DataTable> entry : dataTables.entrySet()) {
+        insertInput(connection, entry.getKey(), entry.getValue());
+      }
+      connection.commit();
+    } catch (final SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
     }
   }
 
   @Override
   public void tearDown(final Connection connection) throws SQLException {
     // Destroy database
-    LOG.debug("trying to drop all the tables to clean up the environment.");
-    for (final String tableName : insertedTable) {
-      destroyTable(connection, tableName);
-    }
+    LOG.debug("trying to drop schema {} to clean up the environment.", schemaName);
+    execute(connection, "DROP SCHEMA " + schemaName + " IF EXISTS CASCADE");
   }
 
-  private void destroyTable(final Connection c, final String tableName) throws SQLException {
-    final String dropTableStatement = "DROP TABLE " + tableName + " IF EXISTS";
-    try {
-      c.prepareCall(dropTableStatement).execute();
+  private void execute(final Connection c, final String sql) throws SQLException {
+    try (final Statement statement = c.createStatement()) {
+      statement.execute(sql);
     } catch (final SQLException e) {
-      LOG.error("Failed to drop table: {} with sql: {}",
-          tableName,
-          dropTableStatement,
-          e);
+      LOG.error("Failed to execute sql: {}", sql, e);
       throw e;
     }
   }
 
   private void insertInput(final Connection c, final String tableName,
       final DataTable dataTable) throws SQLException {
-    // Drop the table in case.
-    destroyTable(c, tableName);
-
     final DataFrame df = dataTable.getDataFrame();
+    final List<String> seriesNames = df.getSeriesNames();
+    final Series[] series = new Series[seriesNames.size()];
+    for (int colIdx = 0; colIdx < series.length; colIdx++) {
+      series[colIdx] = df.get(seriesNames.get(colIdx));
+    }
     // Create the table.
-    createTable(c, tableName, df);
-
-    // Insert all rows into the table
-    for (int rowIdx = 0; rowIdx < df.size(); rowIdx++) {
-      final String insertionStatement = getRowInsertionStatement(tableName, rowIdx, df);
-      try {
-        c.prepareCall(insertionStatement).execute();
-      } catch (final SQLException e) {
-        LOG.error("Failed to insert row idx: {}, insertion sql: {}",
-            rowIdx,
-            insertionStatement,
-            e);
-        throw e;
-      }
+    execute(c, getTableCreationStatement(tableName, seriesNames, series));
+    if (df.size() == 0) {
+      return;
     }
-  }
 
-  private void createTable(final Connection c, final String tableName, final DataFrame dataFrame)
-      throws SQLException {
-    final String tableCreationStatement = getTableCreationStatement(tableName,
-        dataFrame.getSeriesNames(),
-        dataFrame.getSeriesTypes());
-    try {
-      c.prepareCall(tableCreationStatement).execute();
-      LOG.debug("Trying to create table with sql: {}", tableCreationStatement);
+    // Insert all rows into the table, in batches
+    final ColumnBinder[] binders = new ColumnBinder[series.length];
+    for (int colIdx = 0; colIdx < series.length; colIdx++) {
+      binders[colIdx] = binder(series[colIdx]);
+    }
+    final String insertionStatement = getInsertionStatement(tableName, series.length);
+    try (final PreparedStatement ps = c.prepareStatement(insertionStatement)) {
+      for (int rowIdx = 0; rowIdx < df.size(); rowIdx++) {
+        for (int colIdx = 0; colIdx < binders.length; colIdx++) {
+          binders[colIdx].bind(ps, colIdx + 1, rowIdx);
+        }
+        ps.addBatch();
+        if ((rowIdx + 1) % INSERT_BATCH_SIZE == 0) {
+          ps.executeBatch();
+        }
+      }
+      if (df.size() % INSERT_BATCH_SIZE != 0) {
+        ps.executeBatch();
+      }
     } catch (final SQLException e) {
-      LOG.error("Failed to create table: {} with sql: {}",
+      LOG.error("Failed to insert rows in table: {}, insertion sql: {}",
           tableName,
-          tableCreationStatement,
+          insertionStatement,
           e);
       throw e;
     }
   }
 
-  private String getRowInsertionStatement(final String tableName,
-      final int rowIdx,
-      final DataFrame dataFrame) {
-    final StringBuilder sb = new StringBuilder(
-        "INSERT INTO " + tableName + " VALUES (");
-    final List<String> seriesNames = dataFrame.getSeriesNames();
-    for (int colIdx = 0; colIdx < seriesNames.size(); colIdx++) {
-      final Object value = dataFrame.getObject(seriesNames.get(colIdx), rowIdx);
-
-      // If string, then wrap with quotes
-      final String quoteWith = value instanceof String ? "'" : "";
-      sb
-          .append(quoteWith)
-          .append(value)
-          .append(quoteWith);
-
-      if (colIdx < seriesNames.size() - 1) {
-        sb.append(", ");
+  private static ColumnBinder binder(final Series series) {
+    switch (series.type()) {
+      case LONG: {
+        final long[] values = series.getLongs().values();
+        return (ps, paramIdx, rowIdx) -> {
+          if (LongSeries.isNull(values[rowIdx])) {
+            ps.setNull(paramIdx, Types.BIGINT);
+          } else {
+            ps.setLong(paramIdx, values[rowIdx]);
+          }
+        };
+      }
+      case DOUBLE: {
+        final double[] values = series.getDoubles().values();
+        return (ps, paramIdx, rowIdx) -> {
+          if (DoubleSeries.isNull(values[rowIdx])) {
+            ps.setNull(paramIdx, Types.DOUBLE);
+          } else {
+            ps.setDouble(paramIdx, values[rowIdx]);
+          }
+        };
+      }
+      case STRING: {
+        final String[] values = series.getStrings().values();
+        return (ps, paramIdx, rowIdx) -> ps.setString(paramIdx, values[rowIdx]);
+      }
+      case BOOLEAN: {
+        final byte[] values = series.getBooleans().values();
+        return (ps, paramIdx, rowIdx) -> {
+          if (BooleanSeries.isNull(values[rowIdx])) {
+            ps.setNull(paramIdx, Types.BOOLEAN);
+          } else {
+            ps.setBoolean(paramIdx, BooleanSeries.booleanValueOf(values[rowIdx]));
+          }
+        };
+      }
+      case OBJECT: {
+        final Object[] values = series.getObjects().values();
+        return (ps, paramIdx, rowIdx) -> {
+          if (values[rowIdx] == null) {
+            ps.setNull(paramIdx, Types.VARBINARY);
+          } else {
+            ps.setObject(paramIdx, values[rowIdx]);
+          }
+        };
       }
+      default:
+        throw new IllegalArgumentException("Unknown type " + series.type().name());
+    }
+  }
+
+  private static String getInsertionStatement(final String tableName, final int columnCount) {
+    final StringBuilder sb = new StringBuilder("INSERT INTO " + tableName + " VALUES (");
+    for (int colIdx = 0; colIdx < columnCount; colIdx++) {
+      sb.append(colIdx == 0 ? "?" : ", ?");
     }
     sb.append(")");
     return sb.toString();
   }
 
-  private String getTableCreationStatement(final String tableName, final List<String> columns,
-      final List<SeriesType> seriesTypes) {
-    String tableCreationStatement = "CREATE TABLE " + tableName + " (";
+  private static String getTableCreationStatement(final String tableName,
+      final List<String> columns, final Series[] series) {
+    final StringBuilder sb = new StringBuilder("CREATE TABLE " + tableName + " (");
     for (int i = 0; i < columns.size(); i++) {
-      tableCreationStatement += columns.get(i) + " " + getColumnType(seriesTypes.get(i));
+      sb.append(columns.get(i)).append(" ").append(getColumnType(series[i]));
       if (i < columns.size() - 1) {
-        tableCreationStatement += ", ";
+        sb.append(", ");
       }
     }
-    tableCreationStatement += ")";
-    return tableCreationStatement;
+    sb.append(")");
+    return sb.toString();
   }
 
-  private String getColumnType(final SeriesType seriesType) {
+  private static String getColumnType(final Series series) {
+    final SeriesType seriesType = series.type();
     switch (seriesType) {
       case LONG:
         return "BIGINT";
       case DOUBLE:
         return "DOUBLE";
       case STRING:
-        return "VARCHAR(128)";
+        return "VARCHAR(" + maxLength(series.getStrings()) + ")";
       case BOOLEAN:
         return "BOOLEAN";
       case OBJECT:
@@ -175,4 +237,24 @@ public class HyperSqlDataTableToSqlAdapter implements DataTableToSqlAdapter {
         throw new IllegalArgumentException("Unknown type " + seriesType.name());
     }
   }
+
+  /**
+   * Strings longer than the declared length are rejected by HyperSQL. Size the column to the
+   * data.
+   */
+  private static int maxLength(final StringSeries series) {
+    int maxLength = MIN_VARCHAR_LENGTH;
+    for (final String value : series.values()) {
+      if (value != null) {
+        maxLength = Math.max(maxLength, value.length());
+      }
+    }
+    return maxLength;
+  }
+
+  @FunctionalInterface
+  private interface ColumnBinder {
+
+    void bind(PreparedStatement ps, int paramIdx, int rowIdx) throws SQLException;
+  }
 }
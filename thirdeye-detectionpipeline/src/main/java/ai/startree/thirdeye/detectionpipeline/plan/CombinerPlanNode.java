@@ -0,0 +1,41 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.plan;
+
+import ai.startree.thirdeye.detectionpipeline.Operator;
+import ai.startree.thirdeye.detectionpipeline.operator.CombinerOperator;
+
+public class CombinerPlanNode extends DetectionPipelinePlanNode {
+
+  public static final String TYPE = "Combiner";
+
+  public CombinerPlanNode() {
+    super();
+  }
+
+  @Override
+  public String getType() {
+    return TYPE;
+  }
+
+  @Override
+  public Operator buildOperator() throws Exception {
+    final CombinerOperator operator = new CombinerOperator();
+    operator.init(createOperatorContext()
+        .setDetectionInterval(this.detectionInterval)
+        .setInputsMap(inputsMap)
+        .setPlanNode(planNodeBean));
+    return operator;
+  }
+}
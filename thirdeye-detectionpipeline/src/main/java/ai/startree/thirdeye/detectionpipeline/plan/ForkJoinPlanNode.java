@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.plan;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import ai.startree.thirdeye.detectionpipeline.Operator;
+import ai.startree.thirdeye.detectionpipeline.PlanNode;
+import ai.startree.thirdeye.detectionpipeline.operator.ForkJoinOperator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the sub-pipeline starting at the "root" node once per enumeration item produced by the
+ * "enumerator" node. The per-item results are merged by the "combiner" node.
+ */
+public class ForkJoinPlanNode extends DetectionPipelinePlanNode {
+
+  public static final String TYPE = "ForkJoin";
+
+  public ForkJoinPlanNode() {
+    super();
+  }
+
+  @Override
+  public String getType() {
+    return TYPE;
+  }
+
+  @Override
+  public Operator buildOperator() throws Exception {
+    final Map<String, Object> properties = new HashMap<>();
+    for (final String key : ForkJoinOperator.NODE_KEYS) {
+      properties.put(key, getPlanNode(key));
+    }
+
+    final ForkJoinOperator operator = new ForkJoinOperator();
+    operator.init(createOperatorContext()
+        .setDetectionInterval(this.detectionInterval)
+        .setInputsMap(inputsMap)
+        .setPlanNode(planNodeBean)
+        .setProperties(properties));
+    return operator;
+  }
+
+  private PlanNode getPlanNode(final String key) {
+    final Map<String, Object> params = requireNonNull(getParams(),
+        "params are required in ForkJoin node " + getName());
+    final Object nodeName = requireNonNull(params.get(key),
+        String.format("param '%s' is required in ForkJoin node %s", key, getName()));
+    final PlanNode planNode = getContext().getPipelinePlanNodes().get(nodeName.toString());
+    checkArgument(planNode != null,
+        "node \"%s\" referenced by param '%s' of ForkJoin node \"%s\" does not exist. Template is invalid.",
+        nodeName,
+        key,
+        getName());
+    return planNode;
+  }
+}
@@ -13,27 +13,49 @@
  */
 package ai.startree.thirdeye.detectionpipeline;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ai.startree.thirdeye.datasource.cache.DataSourceCache;
+import ai.startree.thirdeye.detectionpipeline.operator.CombinerOperator;
+import ai.startree.thirdeye.detectionpipeline.operator.CombinerResult;
 import ai.startree.thirdeye.detectionpipeline.operator.EchoOperator;
 import ai.startree.thirdeye.detectionpipeline.operator.EchoOperator.EchoResult;
+import ai.startree.thirdeye.detectionpipeline.plan.CombinerPlanNode;
 import ai.startree.thirdeye.detectionpipeline.plan.EchoPlanNode;
+import ai.startree.thirdeye.detectionpipeline.plan.EnumeratorPlanNode;
+import ai.startree.thirdeye.detectionpipeline.plan.ForkJoinPlanNode;
 import ai.startree.thirdeye.spi.datalayer.TemplatableMap;
 import ai.startree.thirdeye.spi.datalayer.bao.DatasetConfigManager;
 import ai.startree.thirdeye.spi.datalayer.bao.EnumerationItemManager;
 import ai.startree.thirdeye.spi.datalayer.bao.EventManager;
 import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean;
+import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean.InputBean;
+import ai.startree.thirdeye.spi.detection.DetectionPipelineUsage;
 import ai.startree.thirdeye.spi.detection.Enumerator;
 import ai.startree.thirdeye.spi.detection.v2.OperatorResult;
+import com.codahale.metrics.MetricRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -41,6 +63,67 @@ public class PlanExecutorTest {
 
   private PlanExecutor planExecutor;
   private Enumerator enumerator;
+  private EnumerationItemManager enumerationItemManager;
+  private ExecutorService executor;
+
+  private static PlanNodeBean echoBean(final String name, final String text) {
+    return new PlanNodeBean()
+        .setName(name)
+        .setType(EchoPlanNode.TYPE)
+        .setParams(TemplatableMap.ofValue(EchoOperator.DEFAULT_INPUT_KEY, text));
+  }
+
+  private static PlanNodeBean delayBean(final String name, final String delay,
+      final String... sourceNodes) {
+    final List<InputBean> inputs = new ArrayList<>();
+    for (final String sourceNode : sourceNodes) {
+      inputs.add(new InputBean()
+          .setSourcePlanNode(sourceNode)
+          .setSourceProperty(EchoOperator.DEFAULT_OUTPUT_KEY)
+          .setTargetProperty(sourceNode));
+    }
+    return new PlanNodeBean()
+        .setName(name)
+        .setType("Delay")
+        .setParams(TemplatableMap.ofValue("delayTime", delay))
+        .setInputs(inputs);
+  }
+
+  private static List<PlanNodeBean> forkJoinPipeline() {
+    return List.of(
+        new PlanNodeBean()
+            .setName("enumerator")
+            .setType(EnumeratorPlanNode.TYPE)
+            .setParams(TemplatableMap.ofValue("type", "default")),
+        new PlanNodeBean()
+            .setName("combiner")
+            .setType(CombinerPlanNode.TYPE),
+        new PlanNodeBean()
+            .setName("root")
+            .setType(ForkJoinPlanNode.TYPE)
+            .setParams(TemplatableMap.fromValueMap(Map.of(
+                "enumerator", "enumerator",
+                "root", "childRoot",
+                "combiner", "combiner"))),
+        echoBean("childRoot", "${text}"));
+  }
+
+  private static EnumerationItemDTO item(final String text) {
+    return new EnumerationItemDTO().setParams(Map.of("text", text));
+  }
+
+  private static List<String> echoTexts(final Map<String, OperatorResult> outputs) {
+    final CombinerResult combinerResult = (CombinerResult) outputs.get(
+        CombinerOperator.DEFAULT_OUTPUT_KEY);
+    return combinerResult.getDetectionResults().stream()
+        .map(r -> ((EchoResult) r).text())
+        .collect(Collectors.toList());
+  }
+
+  private static DetectionPipelineContext newContext() {
+    return new DetectionPipelineContext()
+        .setDetectionInterval(new Interval(0L, 0L, DateTimeZone.UTC));
+  }
 
   @BeforeMethod
   public void setUp() {
@@ -51,7 +134,7 @@ public class PlanExecutorTest {
     final DatasetConfigManager datasetConfigManager = mock(DatasetConfigManager.class);
     final PlanNodeFactory planNodeFactory = new PlanNodeFactory(
     );
-    final EnumerationItemManager enumerationItemManager = mock(EnumerationItemManager.class);
+    enumerationItemManager = mock(EnumerationItemManager.class);
     when(enumerationItemManager.save(any())).thenAnswer(e -> {
       ((EnumerationItemDTO) e.getArguments()[0]).setId(1L);
       return 1L;
@@ -63,10 +146,18 @@ public class PlanExecutorTest {
         eventManager,
         datasetConfigManager,
         enumerationItemManager,
-        new DetectionPipelineConfiguration());
+        new DetectionPipelineConfiguration(),
+        new MetricRegistry());
     enumerator = mock(Enumerator.class);
 
     when(detectionRegistry.buildEnumerator("default")).thenReturn(enumerator);
+    executor = Executors.newFixedThreadPool(2);
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    planExecutor.close();
   }
 
   @Test
@@ -99,4 +190,195 @@ public class PlanExecutorTest {
     final EchoResult echoResult = (EchoResult) result;
     assertThat(echoResult.text()).isEqualTo(echoInput);
   }
+
+  @Test
+  public void testRunPipelineWithIndependentBranches() throws Exception {
+    final List<PlanNodeBean> beans = List.of(
+        echoBean("current", "current_data"),
+        echoBean("baseline", "baseline_data"),
+        delayBean("root", "PT0S", "current", "baseline"));
+
+    final Map<String, OperatorResult> outputs = planExecutor.runPipelineAndGetRootOutputs(beans,
+        newContext());
+
+    assertThat(outputs).containsOnlyKeys("current", "baseline");
+    assertThat(((EchoResult) outputs.get("current")).text()).isEqualTo("current_data");
+    assertThat(((EchoResult) outputs.get("baseline")).text()).isEqualTo("baseline_data");
+  }
+
+  @Test
+  public void testExecutePlanNodesSharedUpstreamIsExecutedOnce() throws Exception {
+    final List<PlanNodeBean> beans = List.of(
+        echoBean("source", "data"),
+        delayBean("left", "PT0S", "source"),
+        delayBean("right", "PT0S", "source"),
+        new PlanNodeBean()
+            .setName("root")
+            .setType("Delay")
+            .setParams(TemplatableMap.ofValue("delayTime", "PT0S"))
+            .setInputs(List.of(
+                new InputBean().setSourcePlanNode("left").setSourceProperty("source")
+                    .setTargetProperty("left"),
+                new InputBean().setSourcePlanNode("right").setSourceProperty("source")
+                    .setTargetProperty("right"))));
+    final Map<String, PlanNode> nodes = planExecutor.buildPlanNodeMap(beans, newContext());
+    final Map<ContextKey, OperatorResult> resultMap = new HashMap<>();
+
+    PlanExecutor.executePlanNodes(nodes, nodes.get("root"), resultMap, executor,
+        Duration.ofMinutes(1));
+
+    // 1 output for source, left and right. 2 outputs for root
+    assertThat(resultMap).hasSize(5);
+    assertThat(resultMap.get(PlanExecutor.key("root", "left")))
+        .isSameAs(resultMap.get(PlanExecutor.key("source", EchoOperator.DEFAULT_OUTPUT_KEY)));
+  }
+
+  @Test
+  public void testExecutePlanNodesLinearPipelineRunsOnCallingThread() throws Exception {
+    final List<PlanNodeBean> beans = List.of(
+        echoBean("source", "data"),
+        delayBean("root", "PT0S", "source"));
+    final Map<String, PlanNode> nodes = planExecutor.buildPlanNodeMap(beans, newContext());
+    final Map<ContextKey, OperatorResult> resultMap = new HashMap<>();
+    // a shut down executor rejects any offloaded node
+    executor.shutdownNow();
+
+    PlanExecutor.executePlanNodes(nodes, nodes.get("root"), resultMap, executor,
+        Duration.ofMinutes(1));
+
+    assertThat(resultMap).hasSize(2);
+  }
+
+  @Test
+  public void testExecutePlanNodesWithSaturatedExecutor() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    final ExecutorService saturatedExecutor = Executors.newSingleThreadExecutor();
+    try {
+      saturatedExecutor.submit(() -> {
+        release.await();
+        return null;
+      });
+      final List<PlanNodeBean> beans = List.of(
+          echoBean("current", "current_data"),
+          echoBean("baseline", "baseline_data"),
+          delayBean("root", "PT0S", "current", "baseline"));
+      final Map<String, PlanNode> nodes = planExecutor.buildPlanNodeMap(beans, newContext());
+      final Map<ContextKey, OperatorResult> resultMap = new HashMap<>();
+
+      // the branch queued behind the blocked task is run by the calling thread
+      PlanExecutor.executePlanNodes(nodes, nodes.get("root"), resultMap, saturatedExecutor,
+          Duration.ofMinutes(1));
+
+      assertThat(resultMap).hasSize(4);
+    } finally {
+      release.countDown();
+      saturatedExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExecutePlanNodesTimeout() {
+    // current runs on the calling thread, slow is offloaded to the executor
+    final List<PlanNodeBean> beans = List.of(
+        echoBean("current", "data"),
+        delayBean("slow", "PT2S"),
+        delayBean("root", "PT0S", "current", "slow"));
+    final Map<String, PlanNode> nodes = planExecutor.buildPlanNodeMap(beans, newContext());
+
+    assertThatThrownBy(() -> PlanExecutor.executePlanNodes(nodes,
+        nodes.get("root"),
+        new HashMap<>(),
+        executor,
+        Duration.ofMillis(100)))
+        .isInstanceOf(TimeoutException.class);
+  }
+
+  @Test
+  public void testExecutePlanNodesWithUnknownSource() {
+    final List<PlanNodeBean> beans = List.of(delayBean("root", "PT0S", "missing"));
+    final Map<String, PlanNode> nodes = planExecutor.buildPlanNodeMap(beans, newContext());
+
+    assertThatThrownBy(() -> PlanExecutor.executePlanNodes(nodes,
+        nodes.get("root"),
+        new HashMap<>(),
+        executor,
+        Duration.ofMinutes(1)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testExecutePlanNodesWithCycle() {
+    final List<PlanNodeBean> beans = List.of(
+        delayBean("a", "PT0S", "root"),
+        delayBean("root", "PT0S", "a"));
+    final Map<String, PlanNode> nodes = planExecutor.buildPlanNodeMap(beans, newContext());
+
+    assertThatThrownBy(() -> PlanExecutor.executePlanNodes(nodes,
+        nodes.get("root"),
+        new HashMap<>(),
+        executor,
+        Duration.ofMinutes(1)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Cycle");
+  }
+
+  @Test
+  public void testForkJoinRunsOneSubPipelinePerEnumerationItem() throws Exception {
+    when(enumerator.enumerate(any())).thenReturn(List.of(item("a"), item("b"), item("c")));
+
+    final Map<String, OperatorResult> outputs = planExecutor.runPipelineAndGetRootOutputs(
+        forkJoinPipeline(),
+        newContext().setUsage(DetectionPipelineUsage.EVALUATION));
+
+    assertThat(echoTexts(outputs)).containsExactly("a", "b", "c");
+  }
+
+  @Test
+  public void testForkJoinIsolatesFailedEnumerationItems() throws Exception {
+    // the second item does not define the text property used by the sub pipeline
+    when(enumerator.enumerate(any())).thenReturn(List.of(item("a"),
+        new EnumerationItemDTO().setParams(Map.of("other", "b")),
+        item("c")));
+
+    final Map<String, OperatorResult> outputs = planExecutor.runPipelineAndGetRootOutputs(
+        forkJoinPipeline(),
+        newContext().setUsage(DetectionPipelineUsage.EVALUATION));
+
+    assertThat(echoTexts(outputs)).containsExactly("a", "c");
+  }
+
+  @Test(timeOut = 10_000L)
+  public void testForkJoinRethrowsErrorsOfEnumerationItems() {
+    final EnumerationItemDTO failingItem = new EnumerationItemDTO() {
+      @Override
+      public Map<String, Object> getParams() {
+        throw new AssertionError("enumeration item failure");
+      }
+    };
+    final List<EnumerationItemDTO> items = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      items.add(i == 10 ? failingItem : item("text" + i));
+    }
+    when(enumerator.enumerate(any())).thenReturn(items);
+
+    // the error may be thrown on a helper thread: it must not be reported as a timeout
+    assertThatThrownBy(() -> planExecutor.runPipelineAndGetRootOutputs(
+        forkJoinPipeline(),
+        newContext().setUsage(DetectionPipelineUsage.EVALUATION)))
+        .hasStackTraceContaining("enumeration item failure");
+  }
+
+  @Test
+  public void testForkJoinPersistsEnumerationItemsInBulk() throws Exception {
+    when(enumerator.enumerate(any())).thenReturn(List.of(item("a"), item("b")));
+    when(enumerationItemManager.findExistingOrCreate(anyList(), nullable(List.class)))
+        .thenAnswer(i -> i.getArguments()[0]);
+
+    final Map<String, OperatorResult> outputs = planExecutor.runPipelineAndGetRootOutputs(
+        forkJoinPipeline(),
+        newContext().setUsage(DetectionPipelineUsage.DETECTION).setAlertId(1L));
+
+    assertThat(echoTexts(outputs)).containsExactly("a", "b");
+    verify(enumerationItemManager).findExistingOrCreate(anyList(), nullable(List.class));
+  }
 }
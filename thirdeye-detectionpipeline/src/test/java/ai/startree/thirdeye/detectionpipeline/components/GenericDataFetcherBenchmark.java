@@ -0,0 +1,211 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.components;
+
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MAX_TIME_MILLIS;
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MIN_TIME_MILLIS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.datasource.cache.DataSourceCache;
+import ai.startree.thirdeye.detectionpipeline.spec.DataFetcherSpec;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
+import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdEyeSqlParserConfig;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdeyeSqlDialect;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the segmented fetch with the full fetch of an hourly timeseries with a 60-day
+ * lookback, over consecutive hourly detection runs. The data source keeps the results of
+ * historical segments, like the Pinot time segment cache, and simulates a query latency that
+ * grows with the number of rows scanned. Run the main method manually.
+ */
+public class GenericDataFetcherBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GenericDataFetcherBenchmark.class);
+
+  private static final int N_RUNS = 24;
+  private static final int QUERY_PARALLELISM = 8;
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final Period LOOKBACK = Period.days(60);
+  private static final Period MUTABILITY_WINDOW = Period.days(1);
+  private static final DateTime FIRST_RUN_END = new DateTime(2022, 3, 1, 0, 0, DateTimeZone.UTC);
+  private static final long QUERY_LATENCY_MILLIS = 20;
+  private static final int ROWS_PER_MILLI = 100;
+  private static final String QUERY =
+      "SELECT __timeGroup(ts, 'EPOCH_MILLIS', 'PT1H') AS ts, SUM(met) AS met FROM tableName"
+          + " WHERE __timeFilter(ts, 'EPOCH_MILLIS') GROUP BY ts ORDER BY ts LIMIT 100000";
+  private static final SqlLanguage SQL_LANGUAGE = new SqlLanguage() {
+    @Override
+    public ThirdEyeSqlParserConfig getSqlParserConfig() {
+      return new ThirdEyeSqlParserConfig.Builder()
+          .withLex("MYSQL_ANSI")
+          .withConformance("BABEL")
+          .withParserFactory("SqlBabelParserImpl")
+          .build();
+    }
+
+    @Override
+    public ThirdeyeSqlDialect getSqlDialect() {
+      return new ThirdeyeSqlDialect.Builder()
+          .withBaseDialect("AnsiSqlDialect")
+          .withIdentifierQuoteString("\"")
+          .build();
+    }
+  };
+  private static final SqlExpressionBuilder SQL_EXPRESSION_BUILDER = new SqlExpressionBuilder() {
+    @Override
+    public String getTimeFilterExpression(final String timeColumn, final Interval filterInterval,
+        final String timeColumnFormat) {
+      return String.format("%s >= %d AND %s < %d", timeColumn, filterInterval.getStartMillis(),
+          timeColumn, filterInterval.getEndMillis());
+    }
+
+    @Override
+    public String getTimeGroupExpression(final String timeColumn, final String timeColumnFormat,
+        final Period granularity, final String timezone) {
+      return timeColumn;
+    }
+  };
+
+  private final ExecutorService queryExecutor = Executors.newFixedThreadPool(QUERY_PARALLELISM);
+
+  private void benchmarkSegmentedFetch() throws Exception {
+    benchmark("benchmarkSegmentedFetch", true);
+  }
+
+  private void benchmarkFullFetch() throws Exception {
+    benchmark("benchmarkFullFetch", false);
+  }
+
+  private void benchmark(final String name, final boolean cachesTimeSegments) throws Exception {
+    final SimulatedDataSource simulatedDataSource = new SimulatedDataSource();
+    final ThirdEyeDataSource dataSource = simulatedDataSource.toDataSource(cachesTimeSegments);
+    final DataSourceCache dataSourceCache = mock(DataSourceCache.class);
+    when(dataSourceCache.getDataSource(anyString())).thenReturn(dataSource);
+    when(dataSourceCache.getQueryExecutor(anyString())).thenReturn(queryExecutor);
+    final DataFetcherSpec spec = new DataFetcherSpec()
+        .setDataSourceCache(dataSourceCache)
+        .setTimeseriesFilters(List.of());
+    spec.setDataSource("dataSource");
+    spec.setQuery(QUERY);
+
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int i = 0; i < N_RUNS; i++) {
+      final DateTime end = FIRST_RUN_END.plusHours(i);
+      simulatedDataSource.now = end.getMillis();
+      final GenericDataFetcher genericDataFetcher = new GenericDataFetcher();
+      genericDataFetcher.init(spec);
+      checksum += genericDataFetcher
+          .getDataTable(new Interval(end.minus(LOOKBACK), end))
+          .getDataFrame()
+          .size();
+    }
+    final long tMillis = (System.nanoTime() - tStart) / 1_000_000;
+    LOG.info("{}: {} runs in {}ms ({}ms per run, {} rows scanned, checksum {})", name, N_RUNS,
+        tMillis, tMillis / N_RUNS, simulatedDataSource.scannedRows.get(), checksum);
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final GenericDataFetcherBenchmark benchmark = new GenericDataFetcherBenchmark();
+    try {
+      // warm up
+      benchmark.benchmarkSegmentedFetch();
+      benchmark.benchmarkFullFetch();
+
+      benchmark.benchmarkSegmentedFetch();
+      benchmark.benchmarkFullFetch();
+    } finally {
+      benchmark.queryExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Hourly timeseries. Results of the segments older than the mutability window are cached.
+   */
+  private static class SimulatedDataSource {
+
+    private final Map<String, DataFrame> historicalResults = new ConcurrentHashMap<>();
+    private final AtomicLong scannedRows = new AtomicLong();
+    private volatile long now;
+
+    private ThirdEyeDataSource toDataSource(final boolean cachesTimeSegments) throws Exception {
+      final ThirdEyeDataSource dataSource = mock(ThirdEyeDataSource.class);
+      when(dataSource.cachesTimeSegments()).thenReturn(cachesTimeSegments);
+      when(dataSource.getSqlLanguage()).thenReturn(SQL_LANGUAGE);
+      when(dataSource.getSqlExpressionBuilder()).thenReturn(SQL_EXPRESSION_BUILDER);
+      when(dataSource.fetchDataTable(any(DataSourceRequest.class))).thenAnswer(
+          invocation -> SimpleDataTable.fromDataFrame(
+              fetch(invocation.getArgument(0, DataSourceRequest.class))));
+      return dataSource;
+    }
+
+    private DataFrame fetch(final DataSourceRequest request) throws InterruptedException {
+      final long maxTime = Long.parseLong(request.getProperties().get(MAX_TIME_MILLIS.toString()));
+      final boolean historical = isHistorical(maxTime);
+      if (historical) {
+        final DataFrame cached = historicalResults.get(request.getQuery());
+        if (cached != null) {
+          return cached;
+        }
+      }
+      final DataFrame result = scan(request);
+      if (historical) {
+        historicalResults.put(request.getQuery(), result);
+      }
+      return result;
+    }
+
+    private boolean isHistorical(final long maxTime) {
+      return maxTime <= now - MUTABILITY_WINDOW.toStandardDuration().getMillis();
+    }
+
+    private DataFrame scan(final DataSourceRequest request) throws InterruptedException {
+      final long minTime = Long.parseLong(request.getProperties().get(MIN_TIME_MILLIS.toString()));
+      final long maxTime = Long.parseLong(request.getProperties().get(MAX_TIME_MILLIS.toString()));
+      final LongSeries.Builder ts = LongSeries.builder();
+      final LongSeries.Builder met = LongSeries.builder();
+      int rows = 0;
+      for (long t = minTime; t < maxTime; t += HOUR_MILLIS) {
+        ts.addValues(t);
+        met.addValues(t / HOUR_MILLIS);
+        rows++;
+      }
+      scannedRows.addAndGet(rows);
+      Thread.sleep(QUERY_LATENCY_MILLIS + rows / ROWS_PER_MILLI);
+      return new DataFrame().addSeries("ts", ts.build()).addSeries("met", met.build());
+    }
+  }
+}
@@ -13,12 +13,44 @@
  */
 package ai.startree.thirdeye.detectionpipeline.components;
 
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.GRANULARITY;
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MAX_TIME_MILLIS;
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MIN_TIME_MILLIS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import ai.startree.thirdeye.datasource.cache.DataSourceCache;
 import ai.startree.thirdeye.datasource.calcite.QueryPredicate;
+import ai.startree.thirdeye.detectionpipeline.spec.DataFetcherSpec;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
 import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.Predicate.OPER;
+import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
+import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdEyeSqlParserConfig;
+import ai.startree.thirdeye.spi.datasource.macro.ThirdeyeSqlDialect;
+import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import ai.startree.thirdeye.spi.metric.DimensionType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
 
 public class GenericDataFetcherTest {
@@ -38,4 +70,173 @@ public class GenericDataFetcherTest {
     assertThat(res.getDataset()).isEqualTo(TABLE_NAME);
     assertThat(res.getMetricType()).isEqualTo(DimensionType.STRING);
   }
+
+  private static final ExecutorService QUERY_EXECUTOR = Executors.newFixedThreadPool(2);
+  private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+  // 3 days of hourly data: split in 3 daily segments
+  private static final Interval DETECTION_INTERVAL = new Interval(
+      new DateTime(2022, 3, 1, 0, 0, DateTimeZone.UTC),
+      new DateTime(2022, 3, 4, 0, 0, DateTimeZone.UTC));
+  private static final String TIMESERIES_QUERY =
+      "SELECT __timeGroup(ts, 'EPOCH_MILLIS', 'PT1H') AS ts, SUM(met) AS met FROM tableName"
+          + " WHERE __timeFilter(ts, 'EPOCH_MILLIS') GROUP BY ts ORDER BY ts LIMIT %d";
+  private static final SqlLanguage SQL_LANGUAGE = new SqlLanguage() {
+    @Override
+    public ThirdEyeSqlParserConfig getSqlParserConfig() {
+      return new ThirdEyeSqlParserConfig.Builder()
+          .withLex("MYSQL_ANSI")
+          .withConformance("BABEL")
+          .withParserFactory("SqlBabelParserImpl")
+          .build();
+    }
+
+    @Override
+    public ThirdeyeSqlDialect getSqlDialect() {
+      return new ThirdeyeSqlDialect.Builder()
+          .withBaseDialect("AnsiSqlDialect")
+          .withIdentifierQuoteString("\"")
+          .build();
+    }
+  };
+  private static final SqlExpressionBuilder SQL_EXPRESSION_BUILDER = new SqlExpressionBuilder() {
+    @Override
+    public String getTimeFilterExpression(final String timeColumn, final Interval filterInterval,
+        final String timeColumnFormat) {
+      return String.format("%s >= %d AND %s < %d", timeColumn, filterInterval.getStartMillis(),
+          timeColumn, filterInterval.getEndMillis());
+    }
+
+    @Override
+    public String getTimeGroupExpression(final String timeColumn, final String timeColumnFormat,
+        final Period granularity, final String timezone) {
+      return timeColumn;
+    }
+  };
+
+  /**
+   * Hourly timeseries on the time range of the request.
+   */
+  private static DataFrame hourlyTimeseries(final DataSourceRequest request) {
+    final long minTime = Long.parseLong(request.getProperties().get(MIN_TIME_MILLIS.toString()));
+    final long maxTime = Long.parseLong(request.getProperties().get(MAX_TIME_MILLIS.toString()));
+    final LongSeries.Builder ts = LongSeries.builder();
+    final LongSeries.Builder met = LongSeries.builder();
+    for (long t = minTime; t < maxTime; t += HOUR_MILLIS) {
+      ts.addValues(t);
+      met.addValues(t / HOUR_MILLIS);
+    }
+    return new DataFrame().addSeries("ts", ts.build()).addSeries("met", met.build());
+  }
+
+  private static boolean isFullRequest(final DataSourceRequest request) {
+    return request.getProperties().get(MIN_TIME_MILLIS.toString())
+        .equals(String.valueOf(DETECTION_INTERVAL.getStartMillis()))
+        && request.getProperties().get(MAX_TIME_MILLIS.toString())
+        .equals(String.valueOf(DETECTION_INTERVAL.getEndMillis()));
+  }
+
+  private static ThirdEyeDataSource segmentCachingDataSource(
+      final Function<DataSourceRequest, DataFrame> results) throws Exception {
+    final ThirdEyeDataSource dataSource = mock(ThirdEyeDataSource.class);
+    when(dataSource.cachesTimeSegments()).thenReturn(true);
+    when(dataSource.getSqlLanguage()).thenReturn(SQL_LANGUAGE);
+    when(dataSource.getSqlExpressionBuilder()).thenReturn(SQL_EXPRESSION_BUILDER);
+    when(dataSource.fetchDataTable(any(DataSourceRequest.class))).thenAnswer(
+        invocation -> SimpleDataTable.fromDataFrame(
+            results.apply(invocation.getArgument(0, DataSourceRequest.class))));
+    return dataSource;
+  }
+
+  @AfterClass
+  public void tearDown() {
+    QUERY_EXECUTOR.shutdownNow();
+  }
+
+  private static DataTable fetch(final ThirdEyeDataSource dataSource, final int limit)
+      throws Exception {
+    final DataSourceCache dataSourceCache = mock(DataSourceCache.class);
+    when(dataSourceCache.getDataSource(anyString())).thenReturn(dataSource);
+    when(dataSourceCache.getQueryExecutor(anyString())).thenReturn(QUERY_EXECUTOR);
+    final DataFetcherSpec spec = new DataFetcherSpec()
+        .setDataSourceCache(dataSourceCache)
+        .setTimeseriesFilters(List.of());
+    spec.setDataSource("dataSource");
+    spec.setQuery(String.format(TIMESERIES_QUERY, limit));
+    final GenericDataFetcher genericDataFetcher = new GenericDataFetcher();
+    genericDataFetcher.init(spec);
+    return genericDataFetcher.getDataTable(DETECTION_INTERVAL);
+  }
+
+  @Test
+  public void testSegmentsAreAppendedInTimeOrder() throws Exception {
+    final ThirdEyeDataSource dataSource = segmentCachingDataSource(request -> {
+      if (isFullRequest(request)) {
+        throw new AssertionError("the full request should not be fetched");
+      }
+      return hourlyTimeseries(request);
+    });
+
+    final DataTable result = fetch(dataSource, 1000);
+
+    verify(dataSource, times(3)).fetchDataTable(any(DataSourceRequest.class));
+    final DataFrame expected = hourlyTimeseries(new DataSourceRequest(null, "",
+        Map.of(MIN_TIME_MILLIS.toString(), String.valueOf(DETECTION_INTERVAL.getStartMillis()),
+            MAX_TIME_MILLIS.toString(), String.valueOf(DETECTION_INTERVAL.getEndMillis()))));
+    assertThat(result.getDataFrame()).isEqualTo(expected);
+    assertThat(result.getProperties()).isEqualTo(Map.of(
+        MIN_TIME_MILLIS.toString(), String.valueOf(DETECTION_INTERVAL.getStartMillis()),
+        MAX_TIME_MILLIS.toString(), String.valueOf(DETECTION_INTERVAL.getEndMillis()),
+        GRANULARITY.toString(), "PT1H"));
+  }
+
+  @Test
+  public void testSegmentsAreTruncatedToTheLimit() throws Exception {
+    final ThirdEyeDataSource dataSource = segmentCachingDataSource(
+        GenericDataFetcherTest::hourlyTimeseries);
+
+    final DataFrame result = fetch(dataSource, 30).getDataFrame();
+
+    assertThat(result.size()).isEqualTo(30);
+    assertThat(result.getLong("ts", 0)).isEqualTo(DETECTION_INTERVAL.getStartMillis());
+    assertThat(result.getLong("ts", 29))
+        .isEqualTo(DETECTION_INTERVAL.getStartMillis() + 29 * HOUR_MILLIS);
+  }
+
+  @Test
+  public void testAllEmptySegments() throws Exception {
+    final DataFrame emptyFrame = new DataFrame()
+        .addSeries("ts", LongSeries.empty())
+        .addSeries("met", LongSeries.empty());
+    final ThirdEyeDataSource dataSource = segmentCachingDataSource(request -> emptyFrame);
+
+    final DataTable result = fetch(dataSource, 1000);
+
+    verify(dataSource, times(3)).fetchDataTable(any(DataSourceRequest.class));
+    assertThat(result.getDataFrame()).isEqualTo(emptyFrame);
+    assertThat(result.getProperties().get(MIN_TIME_MILLIS.toString()))
+        .isEqualTo(String.valueOf(DETECTION_INTERVAL.getStartMillis()));
+  }
+
+  @Test
+  public void testSegmentsWithDifferentColumnsFallBackToTheFullRequest() throws Exception {
+    final DataFrame fullResult = new DataFrame().addSeries("ts", -1L).addSeries("met", -1L);
+    final ThirdEyeDataSource dataSource = segmentCachingDataSource(request -> {
+      if (isFullRequest(request)) {
+        return fullResult;
+      }
+      final DataFrame segment = hourlyTimeseries(request);
+      // the last segment returns the metric as strings
+      if (request.getProperties().get(MAX_TIME_MILLIS.toString())
+          .equals(String.valueOf(DETECTION_INTERVAL.getEndMillis()))) {
+        return segment.addSeries("met", segment.get("met").getStrings());
+      }
+      return segment;
+    });
+
+    final DataTable result = fetch(dataSource, 1000);
+
+    assertThat(result.getDataFrame()).isEqualTo(fullResult);
+    assertThat(result.getProperties().get(MAX_TIME_MILLIS.toString()))
+        .isEqualTo(String.valueOf(DETECTION_INTERVAL.getEndMillis()));
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.components;
+
+import ai.startree.thirdeye.detectionpipeline.components.TimeIndexFiller.TimeLimitInferenceStrategy;
+import ai.startree.thirdeye.detectionpipeline.spec.TimeIndexFillerSpec;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
+import java.util.Random;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the index filling with the join-based reference implementation, on a 1-minute
+ * granularity timeseries with a 60-day lookback. Run the main method manually.
+ */
+public class TimeIndexFillerBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TimeIndexFillerBenchmark.class);
+
+  private static final int N_RUNS = 3;
+  private static final Period GRANULARITY = Period.minutes(1);
+  private static final Period LOOKBACK = Period.days(60);
+  private static final Interval DETECTION_INTERVAL = new Interval(
+      new DateTime(2021, 10, 22, 0, 0, DateTimeZone.UTC),
+      new DateTime(2021, 10, 23, 0, 0, DateTimeZone.UTC));
+
+  private final DataFrame rawData = generateRawData();
+
+  private void benchmarkTimeIndexFiller() throws Exception {
+    final TimeIndexFillerSpec spec = new TimeIndexFillerSpec();
+    spec
+        .setMinTimeInference(
+            TimeLimitInferenceStrategy.FROM_DETECTION_TIME_WITH_LOOKBACK.toString())
+        .setMaxTimeInference(TimeLimitInferenceStrategy.FROM_DETECTION_TIME.toString())
+        .setLookback(LOOKBACK.toString())
+        .setFillNullMethod("KEEP_NULL")
+        .setMonitoringGranularity(GRANULARITY.toString())
+        .setTimestamp("ts");
+    final DataTable dataTable = SimpleDataTable.fromDataFrame(rawData);
+
+    final long tStart = System.nanoTime();
+    long checksum = 0;
+    for (int i = 0; i < N_RUNS; i++) {
+      final TimeIndexFiller timeIndexFiller = new TimeIndexFiller();
+      timeIndexFiller.init(spec);
+      checksum += timeIndexFiller.fillIndex(DETECTION_INTERVAL, dataTable).getDataFrame().size();
+    }
+    LOG.info("benchmarkTimeIndexFiller: {} runs in {}ms (checksum {})", N_RUNS,
+        (System.nanoTime() - tStart) / 1_000_000, checksum);
+  }
+
+  private void benchmarkJoinReference() {
+    final long minTime = DETECTION_INTERVAL.getStart().minus(LOOKBACK).getMillis();
+
+    final long tStart = System.nanoTime();
+    long checksum = 0;
+    for (int i = 0; i < N_RUNS; i++) {
+      checksum += TimeIndexFillerReference.fillIndex(rawData, "ts", DETECTION_INTERVAL, minTime,
+          DETECTION_INTERVAL.getEndMillis(), GRANULARITY, true).size();
+    }
+    LOG.info("benchmarkJoinReference: {} runs in {}ms (checksum {})", N_RUNS,
+        (System.nanoTime() - tStart) / 1_000_000, checksum);
+  }
+
+  private static DataFrame generateRawData() {
+    // 1-minute timeseries with ~5% of missing points
+    final Random random = new Random(42);
+    final LongSeries.Builder ts = LongSeries.builder();
+    final DoubleSeries.Builder met = DoubleSeries.builder();
+    final long step = GRANULARITY.toStandardDuration().getMillis();
+    final long end = DETECTION_INTERVAL.getEndMillis();
+    for (long t = DETECTION_INTERVAL.getStart().minus(LOOKBACK).getMillis(); t < end; t += step) {
+      if (random.nextDouble() >= 0.05) {
+        ts.addValues(t);
+        met.addValues(random.nextDouble());
+      }
+    }
+    return new DataFrame()
+        .addSeries("ts", ts.build())
+        .addSeries("met", met.build());
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final TimeIndexFillerBenchmark benchmark = new TimeIndexFillerBenchmark();
+    // warm up
+    benchmark.benchmarkTimeIndexFiller();
+    benchmark.benchmarkJoinReference();
+
+    benchmark.benchmarkTimeIndexFiller();
+    benchmark.benchmarkJoinReference();
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.components;
+
+import static ai.startree.thirdeye.spi.dataframe.Series.SeriesType.OBJECT;
+
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.Series;
+import ai.startree.thirdeye.spi.dataframe.Series.LongConditional;
+import ai.startree.thirdeye.spi.util.TimeUtils;
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+
+/**
+ * Reference implementation of the index filling, based on a generic left join. Used to check the
+ * parity and the performance of {@link TimeIndexFiller}.
+ */
+final class TimeIndexFillerReference {
+
+  private TimeIndexFillerReference() {
+  }
+
+  static DataFrame fillIndex(final DataFrame rawData, final String timeColumn,
+      final Interval detectionInterval, final long minTime, final long maxTime,
+      final Period granularity, final boolean keepNull) {
+    final DateTime firstIndexValue = TimeUtils.getSmallestDatetime(
+        new DateTime(minTime, detectionInterval.getChronology()), granularity);
+    final DateTime lastIndexValue = TimeUtils.getBiggestDatetime(
+        new DateTime(maxTime, detectionInterval.getChronology()), granularity);
+    final LongSeries.Builder indexBuilder = LongSeries.builder();
+    DateTime indexValue = firstIndexValue;
+    while (!indexValue.isAfter(lastIndexValue)) {
+      indexBuilder.addValues(indexValue.getMillis());
+      indexValue = indexValue.plus(granularity);
+    }
+    final DataFrame correctIndex = new DataFrame();
+    correctIndex.addSeries(timeColumn, indexBuilder.build());
+
+    final DataFrame filledData = correctIndex.joinLeft(rawData, timeColumn, timeColumn);
+    for (final String seriesName : filledData.getSeriesNames()) {
+      final Series series = filledData.get(seriesName);
+      if (series.type() == OBJECT) {
+        filledData.addSeries(seriesName, series.getDoubles());
+      }
+    }
+
+    final long start = detectionInterval.getStartMillis();
+    final DataFrame beforeDetectionStart = filledData.filter((LongConditional) values ->
+        values[0] < start, timeColumn).dropNull(timeColumn);
+    final DataFrame afterDetectionStart = filledData.filter((LongConditional) values ->
+        values[0] >= start, timeColumn).dropNull(timeColumn);
+    return DataFrame.concatenate(
+        keepNull ? beforeDetectionStart
+            : beforeDetectionStart.fillNull(beforeDetectionStart.getSeriesNames()),
+        afterDetectionStart.fillNull(afterDetectionStart.getSeriesNames()));
+  }
+}
@@ -19,14 +19,26 @@ import static org.assertj.core.api.Assertions.fail;
 import ai.startree.thirdeye.detectionpipeline.components.TimeIndexFiller.TimeLimitInferenceStrategy;
 import ai.startree.thirdeye.detectionpipeline.spec.TimeIndexFillerSpec;
 import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.StringSeries;
 import ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
 import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.Stream;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.joda.time.chrono.ISOChronology;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 public class TimeIndexFillerTest {
@@ -372,4 +384,119 @@ public class TimeIndexFillerTest {
     }
     assertThat(output.getDataFrame()).isEqualTo(expectedDataFrame);
   }
+
+  @DataProvider
+  public Object[][] parityCases() {
+    final DateTimeZone utc = DateTimeZone.UTC;
+    final DateTimeZone losAngeles = DateTimeZone.forID("America/Los_Angeles");
+    // 2021-03-14 and 2021-11-07 are daylight saving time transitions in Los Angeles
+    return new Object[][]{
+        {"PT1M", utc, "2021-10-22T00:00", "2021-10-23T00:00", "P1D", "KEEP_NULL", false},
+        {"PT1M", utc, "2021-10-22T00:00", "2021-10-23T00:00", "P1D", "FILL_WITH_ZEROES", true},
+        {"PT5M", losAngeles, "2021-03-14T00:00", "2021-03-15T00:00", "P2D", "KEEP_NULL", true},
+        {"PT1H", losAngeles, "2021-11-07T00:00", "2021-11-09T00:00", "P7D", "KEEP_NULL", true},
+        {"P1D", utc, "2021-10-01T00:00", "2021-11-01T00:00", "P28D", "KEEP_NULL", true},
+        {"P1D", losAngeles, "2021-03-01T00:00", "2021-04-01T00:00", "P28D", "KEEP_NULL", true},
+        {"P1D", losAngeles, "2021-11-01T00:00", "2021-12-01T00:00", "P28D", "FILL_WITH_ZEROES",
+            false},
+        {"P7D", utc, "2021-10-04T00:00", "2021-12-27T00:00", "P28D", "KEEP_NULL", true},
+        {"P1M", utc, "2021-01-01T00:00", "2022-01-01T00:00", "P6M", "KEEP_NULL", true},
+        {"P1M", losAngeles, "2021-01-01T00:00", "2022-01-01T00:00", "P6M", "KEEP_NULL", false},
+    };
+  }
+
+  @Test(dataProvider = "parityCases")
+  public void testFillIndexParityWithJoinBasedFilling(final String granularity,
+      final DateTimeZone zone, final String start, final String end, final String lookback,
+      final String fillNullMethod, final boolean shuffle) throws Exception {
+    final Interval detectionInterval = new Interval(new DateTime(start, zone),
+        new DateTime(end, zone));
+    final Period granularityPeriod = Period.parse(granularity);
+    final Period lookbackPeriod = Period.parse(lookback);
+    final long minTime = detectionInterval.getStart().minus(lookbackPeriod).getMillis();
+    final DataFrame rawData = randomRawData(new DateTime(minTime, zone).minus(granularityPeriod),
+        detectionInterval.getEnd().plus(granularityPeriod), granularityPeriod, shuffle);
+
+    final TimeIndexFillerSpec spec = new TimeIndexFillerSpec();
+    spec
+        .setMinTimeInference(
+            TimeLimitInferenceStrategy.FROM_DETECTION_TIME_WITH_LOOKBACK.toString())
+        .setMaxTimeInference(TimeLimitInferenceStrategy.FROM_DETECTION_TIME.toString())
+        .setLookback(lookback)
+        .setFillNullMethod(fillNullMethod)
+        .setMonitoringGranularity(granularity)
+        .setTimestamp("ts");
+    final TimeIndexFiller timeIndexFiller = new TimeIndexFiller();
+    timeIndexFiller.init(spec);
+    final DataFrame output = timeIndexFiller.fillIndex(detectionInterval,
+        SimpleDataTable.fromDataFrame(rawData)).getDataFrame();
+
+    final DataFrame expected = TimeIndexFillerReference.fillIndex(rawData, "ts",
+        detectionInterval, minTime, detectionInterval.getEndMillis(), granularityPeriod,
+        fillNullMethod.equals("KEEP_NULL"));
+    assertThat(output.size()).isGreaterThan(0);
+    assertThat(output).isEqualTo(expected);
+  }
+
+  @Test
+  public void testFixedStepMillis() {
+    final Chronology utc = ISOChronology.getInstance(DateTimeZone.UTC);
+    final Chronology losAngeles = ISOChronology.getInstance(
+        DateTimeZone.forID("America/Los_Angeles"));
+
+    assertThat(TimeIndexFiller.fixedStepMillis(Period.parse("PT1M"), losAngeles))
+        .isEqualTo(60_000L);
+    assertThat(TimeIndexFiller.fixedStepMillis(Period.parse("PT1H"), losAngeles))
+        .isEqualTo(3_600_000L);
+    assertThat(TimeIndexFiller.fixedStepMillis(Period.parse("P1D"), utc))
+        .isEqualTo(86_400_000L);
+    assertThat(TimeIndexFiller.fixedStepMillis(Period.parse("P1W"), utc))
+        .isEqualTo(604_800_000L);
+    assertThat(TimeIndexFiller.fixedStepMillis(Period.parse("P1D"), losAngeles)).isEqualTo(-1);
+    assertThat(TimeIndexFiller.fixedStepMillis(Period.parse("P1M"), utc)).isEqualTo(-1);
+    assertThat(TimeIndexFiller.fixedStepMillis(Period.parse("P1Y"), utc)).isEqualTo(-1);
+  }
+
+  /**
+   * Generates a timeseries with missing, duplicated, off-grid and null values.
+   */
+  private static DataFrame randomRawData(final DateTime from, final DateTime to,
+      final Period granularity, final boolean shuffle) {
+    final Random random = new Random(42);
+    final List<Long> times = new ArrayList<>();
+    DateTime time = from;
+    while (time.isBefore(to)) {
+      final double draw = random.nextDouble();
+      if (draw < 0.2) {
+        // missing value
+      } else if (draw < 0.25) {
+        times.add(time.getMillis() + 1);
+      } else if (draw < 0.3) {
+        times.add(time.getMillis());
+        times.add(time.getMillis());
+      } else {
+        times.add(time.getMillis());
+      }
+      time = time.plus(granularity);
+    }
+    if (shuffle) {
+      Collections.shuffle(times, random);
+    }
+
+    final LongSeries.Builder ts = LongSeries.builder();
+    final DoubleSeries.Builder met = DoubleSeries.builder();
+    final LongSeries.Builder count = LongSeries.builder();
+    final StringSeries.Builder dim = StringSeries.builder();
+    for (final long t : times) {
+      ts.addValues(t);
+      met.addValues(random.nextDouble() < 0.1 ? null : random.nextDouble());
+      count.addValues(random.nextDouble() < 0.1 ? null : random.nextLong());
+      dim.addValues(random.nextDouble() < 0.1 ? null : "dim" + random.nextInt(3));
+    }
+    return new DataFrame()
+        .addSeries("ts", ts.build())
+        .addSeries("met", met.build())
+        .addSeries("count", count.build())
+        .addSeries("dim", dim.build());
+  }
 }
@@ -36,6 +36,7 @@ import ai.startree.thirdeye.spi.datalayer.dto.DatasetConfigDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
 import ai.startree.thirdeye.spi.detection.BaseComponent;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.HashMap;
@@ -73,7 +74,8 @@ public class DataFetcherOperatorTest {
                 datasetDao,
                 mock(ExecutorService.class),
                 mock(EnumerationItemManager.class),
-                new DetectionPipelineConfiguration()
+                new DetectionPipelineConfiguration(),
+                new MetricRegistry()
 
         )
     ));
@@ -37,6 +37,7 @@ import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean;
 import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean.OutputBean;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
 import java.util.Map;
@@ -102,7 +103,8 @@ public class EventFetcherOperatorTest {
                 mock(DatasetConfigManager.class),
                 mock(ExecutorService.class),
                 mock(EnumerationItemManager.class),
-                new DetectionPipelineConfiguration()
+                new DetectionPipelineConfiguration(),
+                new MetricRegistry()
             )
         ));
   }
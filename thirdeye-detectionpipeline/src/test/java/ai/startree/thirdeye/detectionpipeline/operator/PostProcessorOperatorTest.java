@@ -40,6 +40,7 @@ import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean;
 import ai.startree.thirdeye.spi.datalayer.dto.PlanNodeBean.InputBean;
 import ai.startree.thirdeye.spi.detection.postprocessing.AnomalyPostProcessor;
 import ai.startree.thirdeye.spi.detection.v2.OperatorResult;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
 import java.util.List;
@@ -89,7 +90,8 @@ public class PostProcessorOperatorTest {
                 mock(DatasetConfigManager.class),
                 mock(ExecutorService.class),
                 mock(EnumerationItemManager.class),
-                new DetectionPipelineConfiguration()
+                new DetectionPipelineConfiguration(),
+                new MetricRegistry()
         )));
   }
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.operator.sql;
+
+import ai.startree.thirdeye.spi.dataframe.BooleanSeries;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.StringSeries;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the batched prepared inserts of HyperSqlDataTableToSqlAdapter with the previous
+ * loading, which built and executed an INSERT statement for each row, at 10k, 100k and 1M rows.
+ * Run the main method manually.
+ */
+public class HyperSqlDataTableToSqlAdapterBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(
+      HyperSqlDataTableToSqlAdapterBenchmark.class);
+
+  private static final int[] SIZES = {10_000, 100_000, 1_000_000};
+  private static final String TABLE_NAME = "input";
+  private static final String CHECKSUM_QUERY = "SELECT COUNT(*) + SUM(met) FROM " + TABLE_NAME;
+  private static final String[] LABELS = {"US", "FR", "IN", "BR", "JP"};
+
+  private static DataFrame dataFrame(final int size) {
+    final Random random = new Random(42);
+    final long[] times = new long[size];
+    final double[] metrics = new double[size];
+    final String[] labels = new String[size];
+    final byte[] flags = new byte[size];
+    for (int i = 0; i < size; i++) {
+      times[i] = 1_600_000_000_000L + i * 60_000L;
+      metrics[i] = random.nextInt(1000) / 10.;
+      labels[i] = LABELS[random.nextInt(LABELS.length)];
+      flags[i] = random.nextBoolean() ? BooleanSeries.TRUE : BooleanSeries.FALSE;
+    }
+    return new DataFrame()
+        .addSeries("ts", LongSeries.buildFrom(times))
+        .addSeries("met", DoubleSeries.buildFrom(metrics))
+        .addSeries("label", StringSeries.buildFrom(labels))
+        .addSeries("flag", BooleanSeries.buildFrom(flags));
+  }
+
+  private static double checksum(final Connection connection) throws SQLException {
+    try (final Statement statement = connection.createStatement();
+        final ResultSet resultSet = statement.executeQuery(CHECKSUM_QUERY)) {
+      resultSet.next();
+      return resultSet.getDouble(1);
+    }
+  }
+
+  private static void benchmarkBatchedInserts(final DataFrame df) throws SQLException {
+    final HyperSqlDataTableToSqlAdapter adapter = new HyperSqlDataTableToSqlAdapter();
+    try (final Connection connection = DriverManager.getConnection(adapter.jdbcConnection(),
+        adapter.jdbcProperties())) {
+      final long tStart = System.nanoTime();
+      adapter.loadTables(connection, Map.of(TABLE_NAME, SimpleDataTable.fromDataFrame(df)));
+      final long tMillis = (System.nanoTime() - tStart) / 1_000_000;
+      final double checksum = checksum(connection);
+      adapter.tearDown(connection);
+      logResults("benchmarkBatchedInserts", df.size(), tMillis, checksum);
+    }
+  }
+
+  private static void benchmarkRowInserts(final DataFrame df) throws SQLException {
+    final HyperSqlDataTableToSqlAdapter adapter = new HyperSqlDataTableToSqlAdapter();
+    // same isolation as the adapter, so that both paths load in an empty schema
+    final String schemaName = "TE_" + UUID.randomUUID().toString().replace("-", "");
+    try (final Connection connection = DriverManager.getConnection(adapter.jdbcConnection(),
+        adapter.jdbcProperties());
+        final Statement statement = connection.createStatement()) {
+      statement.execute("CREATE SCHEMA " + schemaName);
+      statement.execute("SET SCHEMA " + schemaName);
+
+      final long tStart = System.nanoTime();
+      statement.execute("CREATE TABLE " + TABLE_NAME
+          + " (ts BIGINT, met DOUBLE, label VARCHAR(128), flag BOOLEAN)");
+      for (int rowIdx = 0; rowIdx < df.size(); rowIdx++) {
+        try (final CallableStatement call = connection.prepareCall(
+            rowInsertionStatement(df, rowIdx))) {
+          call.execute();
+        }
+      }
+      final long tMillis = (System.nanoTime() - tStart) / 1_000_000;
+      final double checksum = checksum(connection);
+      statement.execute("DROP SCHEMA " + schemaName + " IF EXISTS CASCADE");
+      logResults("benchmarkRowInserts", df.size(), tMillis, checksum);
+    }
+  }
+
+  private static String rowInsertionStatement(final DataFrame df, final int rowIdx) {
+    final StringBuilder sb = new StringBuilder("INSERT INTO " + TABLE_NAME + " VALUES (");
+    final List<String> seriesNames = df.getSeriesNames();
+    for (int colIdx = 0; colIdx < seriesNames.size(); colIdx++) {
+      final Object value = df.getObject(seriesNames.get(colIdx), rowIdx);
+      final String quoteWith = value instanceof String ? "'" : "";
+      sb.append(quoteWith).append(value).append(quoteWith);
+      if (colIdx < seriesNames.size() - 1) {
+        sb.append(", ");
+      }
+    }
+    return sb.append(")").toString();
+  }
+
+  private static void logResults(final String name, final int size, final long tMillis,
+      final double checksum) {
+    LOG.info("{}: {} rows loaded in {}ms ({}ns per row, checksum {})", name, size, tMillis,
+        tMillis * 1_000_000L / size, checksum);
+  }
+
+  public static void main(final String[] args) throws SQLException {
+    // warm up
+    final DataFrame warmUpDf = dataFrame(SIZES[0]);
+    benchmarkBatchedInserts(warmUpDf);
+    benchmarkRowInserts(warmUpDf);
+
+    for (final int size : SIZES) {
+      final DataFrame df = dataFrame(size);
+      benchmarkBatchedInserts(df);
+      benchmarkRowInserts(df);
+    }
+  }
+}
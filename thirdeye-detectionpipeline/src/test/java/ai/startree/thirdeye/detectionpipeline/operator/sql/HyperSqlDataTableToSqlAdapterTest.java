@@ -0,0 +1,121 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.detectionpipeline.operator.sql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import ai.startree.thirdeye.spi.dataframe.BooleanSeries;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.StringSeries;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
+import com.google.common.base.Strings;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import org.testng.annotations.Test;
+
+public class HyperSqlDataTableToSqlAdapterTest {
+
+  private static Connection connection(final HyperSqlDataTableToSqlAdapter adapter)
+      throws SQLException {
+    return DriverManager.getConnection(adapter.jdbcConnection(), adapter.jdbcProperties());
+  }
+
+  private static DataFrame query(final Connection connection, final String sql)
+      throws Exception {
+    try (final Statement statement = connection.createStatement();
+        final ResultSet resultSet = statement.executeQuery(sql)) {
+      return DataFrame.fromResultSet(resultSet);
+    }
+  }
+
+  @Test
+  public void testLoadTypedValuesAndNulls() throws Exception {
+    final String longString = Strings.repeat("a", 500);
+    final DataFrame df = new DataFrame()
+        .addSeries("ts", LongSeries.buildFrom(1L, LongSeries.NULL, 3L))
+        .addSeries("met", DoubleSeries.buildFrom(0.5, 1.5, DoubleSeries.NULL))
+        .addSeries("label", StringSeries.buildFrom("it's", null, longString))
+        .addSeries("flag", BooleanSeries.buildFrom(BooleanSeries.TRUE, BooleanSeries.NULL,
+            BooleanSeries.FALSE));
+
+    final HyperSqlDataTableToSqlAdapter adapter = new HyperSqlDataTableToSqlAdapter();
+    try (final Connection connection = connection(adapter)) {
+      adapter.loadTables(connection, Map.of("input", SimpleDataTable.fromDataFrame(df)));
+      final DataFrame result = query(connection,
+          "SELECT COUNT(ts) AS c_ts, COUNT(met) AS c_met, COUNT(label) AS c_label, "
+              + "COUNT(flag) AS c_flag, SUM(met) AS s_met, MAX(LENGTH(label)) AS l_label "
+              + "FROM input");
+      adapter.tearDown(connection);
+
+      assertThat(result.getLong("c_ts", 0)).isEqualTo(2);
+      assertThat(result.getLong("c_met", 0)).isEqualTo(2);
+      assertThat(result.getLong("c_label", 0)).isEqualTo(2);
+      assertThat(result.getLong("c_flag", 0)).isEqualTo(2);
+      assertThat(result.getDouble("s_met", 0)).isEqualTo(2.0);
+      assertThat(result.getLong("l_label", 0)).isEqualTo(500);
+    }
+  }
+
+  @Test
+  public void testLoadManyRows() throws Exception {
+    final int size = 25_000;
+    final long[] values = new long[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = i;
+    }
+    final DataFrame df = new DataFrame().addSeries("v", values);
+
+    final HyperSqlDataTableToSqlAdapter adapter = new HyperSqlDataTableToSqlAdapter();
+    try (final Connection connection = connection(adapter)) {
+      adapter.loadTables(connection, Map.of("input", SimpleDataTable.fromDataFrame(df)));
+      final DataFrame result = query(connection, "SELECT COUNT(*) AS c, SUM(v) AS s FROM input");
+      adapter.tearDown(connection);
+
+      assertThat(result.getLong("c", 0)).isEqualTo(size);
+      assertThat(result.getLong("s", 0)).isEqualTo((long) size * (size - 1) / 2);
+    }
+  }
+
+  @Test
+  public void testAdaptersAreIsolated() throws Exception {
+    final HyperSqlDataTableToSqlAdapter adapter1 = new HyperSqlDataTableToSqlAdapter();
+    final HyperSqlDataTableToSqlAdapter adapter2 = new HyperSqlDataTableToSqlAdapter();
+    try (final Connection connection1 = connection(adapter1);
+        final Connection connection2 = connection(adapter2)) {
+      adapter1.loadTables(connection1, Map.of("input",
+          SimpleDataTable.fromDataFrame(new DataFrame().addSeries("v", 1L))));
+      adapter2.loadTables(connection2, Map.of("input",
+          SimpleDataTable.fromDataFrame(new DataFrame().addSeries("v", 2L, 3L))));
+
+      assertThat(query(connection1, "SELECT SUM(v) AS s FROM input").getLong("s", 0))
+          .isEqualTo(1L);
+      assertThat(query(connection2, "SELECT SUM(v) AS s FROM input").getLong("s", 0))
+          .isEqualTo(5L);
+
+      adapter1.tearDown(connection1);
+      assertThatThrownBy(() -> query(connection1, "SELECT * FROM input"))
+          .isInstanceOf(SQLException.class);
+      assertThat(query(connection2, "SELECT SUM(v) AS s FROM input").getLong("s", 0))
+          .isEqualTo(5L);
+      adapter2.tearDown(connection2);
+    }
+  }
+}
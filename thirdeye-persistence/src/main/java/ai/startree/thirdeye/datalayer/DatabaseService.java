@@ -26,6 +26,11 @@ import com.google.inject.Singleton;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -62,6 +67,13 @@ public class DatabaseService {
   public <E extends AbstractEntity> List<E> findAll(final Predicate predicate, final Long limit,
       final Long offset, final Class<E> clazz, final Connection connection)
       throws Exception {
+    return findAll(predicate, limit, offset, null, false, clazz, connection);
+  }
+
+  public <E extends AbstractEntity> List<E> findAll(final Predicate predicate, final Long limit,
+      final Long offset, final String orderByKey, final boolean desc, final Class<E> clazz,
+      final Connection connection)
+      throws Exception {
     final long tStart = System.nanoTime();
     try {
       try (final PreparedStatement selectStatement = sqlQueryBuilder
@@ -69,7 +81,9 @@ public class DatabaseService {
               clazz,
               predicate,
               limit,
-              offset)) {
+              offset,
+              orderByKey,
+              desc)) {
         try (final ResultSet resultSet = selectStatement.executeQuery()) {
           return genericResultSetMapper.mapAll(resultSet, clazz);
         }
@@ -104,6 +118,83 @@ public class DatabaseService {
     }
   }
 
+  /**
+   * Inserts entities of the same class with a single batched statement.
+   *
+   * @return the generated ids, in the order of the entities
+   * @throws SQLException if the driver returns fewer generated keys than entities
+   */
+  public <E extends AbstractEntity> List<Long> saveAll(final List<E> entities,
+      final Connection connection) throws Exception {
+    if (entities.isEmpty()) {
+      return List.of();
+    }
+    final long tStart = System.nanoTime();
+    try {
+      try (final PreparedStatement batchInsertStmt = sqlQueryBuilder
+          .createBatchInsertStatement(connection, entities)) {
+        batchInsertStmt.executeBatch();
+        final List<Long> ids = new ArrayList<>(entities.size());
+        try (final ResultSet generatedKeys = batchInsertStmt.getGeneratedKeys()) {
+          while (ids.size() < entities.size()) {
+            if (!generatedKeys.next()) {
+              // a missing id would be silently written as the base id of the index rows
+              throw new SQLException(String.format(
+                  "Batch insert of %d %s returned %d generated keys",
+                  entities.size(),
+                  entities.get(0).getClass().getSimpleName(),
+                  ids.size()));
+            }
+            ids.add(generatedKeys.getLong(1));
+          }
+        }
+        return ids;
+      }
+    } finally {
+      dbWriteCallCounter.inc();
+      dbWriteDuration.update(System.nanoTime() - tStart);
+    }
+  }
+
+  /**
+   * Updates entities by id with batched statements. Unlike {@link #update}, the entities are not
+   * read before being updated: a null createTime is not written.
+   *
+   * @return the number of rows that are affected.
+   */
+  public <E extends AbstractEntity> int updateAll(final List<E> entities,
+      final Connection connection) throws Exception {
+    if (entities.isEmpty()) {
+      return 0;
+    }
+    final List<Predicate> predicates = new ArrayList<>(entities.size());
+    for (final E entity : entities) {
+      predicates.add(Predicate.EQ(getIdColumnName(entity.getClass()), entity.getId()));
+    }
+    final long tStart = System.nanoTime();
+    int updated = 0;
+    try {
+      final Collection<PreparedStatement> batchUpdateStmts = sqlQueryBuilder
+          .createBatchUpdateStatements(connection, entities, predicates);
+      try {
+        for (final PreparedStatement batchUpdateStmt : batchUpdateStmts) {
+          for (final int count : batchUpdateStmt.executeBatch()) {
+            // the driver may not report the count of each statement when batches are rewritten
+            updated += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+          }
+        }
+      } finally {
+        for (final PreparedStatement batchUpdateStmt : batchUpdateStmts) {
+          batchUpdateStmt.close();
+        }
+      }
+      return updated;
+    } finally {
+      dbWriteCallCounter.inc();
+      dbWriteDuration.update(System.nanoTime() - tStart);
+    }
+  }
+
   public <E extends AbstractEntity> Integer update(final E entity, final Predicate predicate,
       final Connection connection)
       throws Exception {
@@ -131,6 +222,26 @@ public class DatabaseService {
     return 0;
   }
 
+  /**
+   * Updates the given columns of the rows matching the predicate, without loading the entities.
+   *
+   * @param columnValues values to set, keyed by entity field name
+   */
+  public Integer updateColumns(final Class<? extends AbstractEntity> entityClass,
+      final Map<String, Object> columnValues, final Predicate predicate,
+      final Connection connection) throws Exception {
+    final long tStart = System.nanoTime();
+    try {
+      try (final PreparedStatement updateStatement = sqlQueryBuilder
+          .createPartialUpdateStatement(connection, entityClass, columnValues, predicate)) {
+        return updateStatement.executeUpdate();
+      }
+    } finally {
+      dbWriteCallCounter.inc();
+      dbWriteDuration.update(System.nanoTime() - tStart);
+    }
+  }
+
   public <E extends AbstractEntity> String getIdColumnName(final Class<E> clazz) {
     return AbstractIndexEntity.class.isAssignableFrom(clazz) ? "baseId" : "id";
   }
@@ -172,6 +283,39 @@ public class DatabaseService {
     }
   }
 
+  /**
+   * Counts the rows of clazz matching the predicate, grouped by a column of a joined table. See
+   * {@link SqlQueryBuilder#createJoinGroupByCountStatement}.
+   *
+   * @return the count per value of the groupByKey column of the joined table
+   */
+  public <E extends AbstractEntity> Map<String, Long> countGroupByJoinedColumn(
+      final Predicate predicate, final Class<E> clazz, final String joinKey,
+      final Class<? extends AbstractEntity> joinedClazz, final String groupByKey,
+      final Connection connection) throws Exception {
+    final long tStart = System.nanoTime();
+    try {
+      try (final PreparedStatement selectStatement = sqlQueryBuilder
+          .createJoinGroupByCountStatement(connection,
+              clazz,
+              predicate,
+              joinKey,
+              joinedClazz,
+              groupByKey)) {
+        try (final ResultSet resultSet = selectStatement.executeQuery()) {
+          final Map<String, Long> counts = new HashMap<>();
+          while (resultSet.next()) {
+            counts.merge(resultSet.getString(1), resultSet.getLong(2), Long::sum);
+          }
+          return counts;
+        }
+      }
+    } finally {
+      dbReadCallCounter.inc();
+      dbReadDuration.update(System.nanoTime() - tStart);
+    }
+  }
+
   public <E extends AbstractEntity> List<E> runSQL(
       final String parameterizedSQL,
       final Map<String, Object> parameterMap,
@@ -14,10 +14,16 @@
 package ai.startree.thirdeye.datalayer.bao;
 
 import ai.startree.thirdeye.datalayer.dao.GenericPojoDao;
+import ai.startree.thirdeye.datalayer.entity.AbstractIndexEntity;
+import ai.startree.thirdeye.datalayer.entity.AlertTemplateIndex;
+import ai.startree.thirdeye.spi.datalayer.DaoFilter;
+import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.bao.AlertTemplateManager;
 import ai.startree.thirdeye.spi.datalayer.dto.AlertTemplateDTO;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
 
 @Singleton
 public class AlertTemplateManagerImpl extends AbstractManagerImpl<AlertTemplateDTO>
@@ -27,4 +33,21 @@ public class AlertTemplateManagerImpl extends AbstractManagerImpl<AlertTemplateD
   public AlertTemplateManagerImpl(GenericPojoDao genericPojoDao) {
     super(AlertTemplateDTO.class, genericPojoDao);
   }
+
+  @Override
+  public List<AlertTemplateDTO> findVersions(final Predicate predicate) {
+    final List<? extends AbstractIndexEntity> indexes = genericPojoDao.filterIndexEntities(
+        new DaoFilter()
+            .setPredicate(predicate)
+            .setBeanClass(AlertTemplateDTO.class));
+    final List<AlertTemplateDTO> versions = new ArrayList<>(indexes.size());
+    for (final AbstractIndexEntity index : indexes) {
+      final AlertTemplateDTO version = new AlertTemplateDTO()
+          .setName(((AlertTemplateIndex) index).getName());
+      version.setId(index.getBaseId());
+      version.setUpdateTime(index.getUpdateTime());
+      versions.add(version);
+    }
+    return versions;
+  }
 }
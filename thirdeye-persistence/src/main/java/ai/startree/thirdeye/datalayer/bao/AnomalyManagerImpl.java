@@ -21,27 +21,24 @@ import ai.startree.thirdeye.spi.datalayer.AnomalyFilter;
 import ai.startree.thirdeye.spi.datalayer.DaoFilter;
 import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.bao.AnomalyManager;
+import ai.startree.thirdeye.spi.datalayer.dto.AbstractDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.AnomalyDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.AnomalyFeedbackDTO;
+import ai.startree.thirdeye.spi.detection.AnomalyFeedbackType;
 import com.google.common.base.Preconditions;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.commons.collections4.CollectionUtils;
@@ -61,10 +58,6 @@ public class AnomalyManagerImpl extends AbstractManagerImpl<AnomalyDTO>
 
   private static final String FIND_BY_FUNCTION_ID = "where functionId=:functionId";
 
-  // TODO inject as dependency
-  private static final ExecutorService EXECUTOR_SERVICE = Executors.newFixedThreadPool(10,
-      new ThreadFactoryBuilder().setNameFormat("anomaly-manager-%d").build());
-
   @Inject
   public AnomalyManagerImpl(final GenericPojoDao genericPojoDao) {
     super(AnomalyDTO.class, genericPojoDao);
@@ -105,6 +98,93 @@ public class AnomalyManagerImpl extends AbstractManagerImpl<AnomalyDTO>
     }
   }
 
+  @Override
+  public List<Long> saveAll(final List<AnomalyDTO> anomalies) {
+    persistAll(anomalies);
+    return anomalies.stream().map(AbstractDTO::getId).collect(Collectors.toList());
+  }
+
+  @Override
+  public int updateAll(final List<AnomalyDTO> anomalies) {
+    for (final AnomalyDTO anomaly : anomalies) {
+      checkArgument(anomaly.getId() != null,
+          "Anomaly id is null. Anomaly id should not be null for an update");
+    }
+    return persistAll(anomalies);
+  }
+
+  /**
+   * Persists the anomaly graph level by level, starting from the leaves: when a level is
+   * persisted, the ids of the children of its anomalies are known. All the levels are persisted in
+   * a single transaction: if a level fails, nothing is persisted and no parent references a child
+   * that does not exist.
+   *
+   * @return the number of anomalies that are persisted, children included. 0 if the
+   *     transaction failed: the ids of the anomalies to create are then left null.
+   */
+  private int persistAll(final List<AnomalyDTO> anomalies) {
+    final Map<AnomalyDTO, Integer> heights = new IdentityHashMap<>();
+    final List<List<AnomalyDTO>> levels = new ArrayList<>();
+    final Set<AnomalyDTO> path = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (final AnomalyDTO anomaly : anomalies) {
+      Preconditions.checkNotNull(anomaly);
+      collectByHeight(anomaly, heights, levels, path);
+    }
+    if (levels.isEmpty()) {
+      return 0;
+    }
+
+    final int persisted = genericPojoDao.executeWrites(writer -> {
+      int count = 0;
+      for (final List<AnomalyDTO> level : levels) {
+        final List<AnomalyDTO> toCreate = new ArrayList<>();
+        final List<AnomalyDTO> toUpdate = new ArrayList<>();
+        for (final AnomalyDTO anomaly : level) {
+          convertMergeAnomalyDTO2Bean(anomaly);
+          anomaly.setChildIds(optional(anomaly.getChildren()).orElse(Set.of()).stream()
+              .map(AbstractDTO::getId)
+              .collect(Collectors.toSet()));
+          (anomaly.getId() == null ? toCreate : toUpdate).add(anomaly);
+        }
+        count += writer.createAll(toCreate).size();
+        count += writer.updateAll(toUpdate);
+      }
+      return count;
+    }, 0);
+    if (persisted == 0) {
+      LOG.error("Failed to persist {} anomalies. First anomaly: {}", heights.size(),
+          levels.get(levels.size() - 1).get(0));
+    }
+    return persisted;
+  }
+
+  private int collectByHeight(final AnomalyDTO anomaly, final Map<AnomalyDTO, Integer> heights,
+      final List<List<AnomalyDTO>> levels, final Set<AnomalyDTO> path) {
+    final Integer knownHeight = heights.get(anomaly);
+    if (knownHeight != null) {
+      return knownHeight;
+    }
+    path.add(anomaly);
+    int height = 0;
+    for (final AnomalyDTO child : optional(anomaly.getChildren()).orElse(Set.of())) {
+      // Prevent cycles
+      if (path.contains(child)) {
+        throw new IllegalArgumentException("Loop detected! Child anomaly referencing ancestor");
+      }
+      child.setAuth(anomaly.getAuth());
+      child.setChild(true);
+      height = Math.max(height, collectByHeight(child, heights, levels, path) + 1);
+    }
+    path.remove(anomaly);
+
+    heights.put(anomaly, height);
+    while (levels.size() <= height) {
+      levels.add(new ArrayList<>());
+    }
+    levels.get(height).add(anomaly);
+    return height;
+  }
+
   private Long saveAnomaly(final AnomalyDTO anomalyDTO,
       final Set<AnomalyDTO> visitedAnomalies) {
     Preconditions.checkNotNull(anomalyDTO);
@@ -176,7 +256,7 @@ public class AnomalyManagerImpl extends AbstractManagerImpl<AnomalyDTO>
     if (anomaly == null) {
       return null;
     }
-    return decorate(anomaly, new HashSet<>());
+    return decorate(List.of(anomaly)).get(0);
   }
 
   @Override
@@ -273,8 +353,7 @@ public class AnomalyManagerImpl extends AbstractManagerImpl<AnomalyDTO>
       if (candidate.getChildIds() != null && !candidate.getChildIds().isEmpty()) {
         for (final Long id : candidate.getChildIds()) {
           if (entity.getId().equals(id)) {
-            return decorate(candidate,
-                new HashSet<>(Collections.singleton(candidate.getId())));
+            return decorate(List.of(candidate)).get(0);
           }
         }
       }
@@ -292,56 +371,60 @@ public class AnomalyManagerImpl extends AbstractManagerImpl<AnomalyDTO>
     return entity;
   }
 
-  public AnomalyDTO decorate(final AnomalyDTO anomaly,
-      final Set<Long> visitedAnomalyIds) {
-
-    if (anomaly.getAnomalyFeedbackId() != null) {
-      final AnomalyFeedbackDTO anomalyFeedbackDTO = genericPojoDao
-          .get(anomaly.getAnomalyFeedbackId(), AnomalyFeedbackDTO.class);
-      anomaly.setFeedback(anomalyFeedbackDTO);
+  /**
+   * Loads the feedback and the children of the anomalies. The anomaly graph is loaded level by
+   * level: each level is fetched with a single query, then the graph is assembled in memory.
+   * An anomaly referenced several times is loaded once. Cycles are cut: a child that is an
+   * ancestor of its parent is ignored.
+   */
+  @Override
+  public List<AnomalyDTO> decorate(final List<AnomalyDTO> anomalies) {
+    final Map<Long, AnomalyDTO> loaded = new HashMap<>();
+    anomalies.stream()
+        .filter(anomaly -> anomaly.getId() != null)
+        .forEach(anomaly -> loaded.putIfAbsent(anomaly.getId(), anomaly));
+
+    List<AnomalyDTO> level = anomalies;
+    while (!level.isEmpty()) {
+      decorateWithFeedback(level);
+      final List<Long> childIdsToLoad = level.stream()
+          .map(AnomalyDTO::getChildIds)
+          .filter(Objects::nonNull)
+          .flatMap(Set::stream)
+          .filter(id -> id != null && !loaded.containsKey(id))
+          .distinct()
+          .collect(Collectors.toList());
+      level = childIdsToLoad.isEmpty()
+          ? Collections.emptyList()
+          : genericPojoDao.get(childIdsToLoad, AnomalyDTO.class);
+      level.forEach(child -> loaded.put(child.getId(), child));
     }
 
-    visitedAnomalyIds.add(anomaly.getId());
-    anomaly
-        .setChildren(getChildAnomalies(anomaly, visitedAnomalyIds));
-
-    return anomaly;
-  }
-
-  private Set<AnomalyDTO> getChildAnomalies(
-      final AnomalyDTO anomalyDTO, final Set<Long> visitedAnomalyIds) {
-    final Set<AnomalyDTO> children = new HashSet<>();
-    if (anomalyDTO.getChildIds() != null) {
-      for (final Long id : anomalyDTO.getChildIds()) {
-        if (id == null || visitedAnomalyIds.contains(id)) {
-          continue;
-        }
-
-        final AnomalyDTO childBean = genericPojoDao.get(id,
-            AnomalyDTO.class);
-        final AnomalyDTO child = decorate(childBean, visitedAnomalyIds);
-        children.add(child);
-      }
+    final Set<AnomalyDTO> assembled = Collections.newSetFromMap(new IdentityHashMap<>());
+    final Set<Long> path = new HashSet<>();
+    for (final AnomalyDTO anomaly : anomalies) {
+      assembleChildren(anomaly, loaded, assembled, path);
     }
-    return children;
+    return anomalies;
   }
 
-  @Override
-  public List<AnomalyDTO> decorate(final List<AnomalyDTO> l) {
-    final List<Future<AnomalyDTO>> fList = l.stream()
-        .map(anomalyDTO -> EXECUTOR_SERVICE.submit(() -> decorate(anomalyDTO, new HashSet<>())))
-        .collect(Collectors.toList());
-
-    final List<AnomalyDTO> outList = new ArrayList<>(l.size());
-    for (final Future<AnomalyDTO> f : fList) {
-      try {
-        outList.add(f.get(60, TimeUnit.SECONDS));
-      } catch (final InterruptedException | TimeoutException | ExecutionException e) {
-        LOG.warn("Failed to convert MergedAnomalyResultDTO from bean: {}", e.toString());
+  private void assembleChildren(final AnomalyDTO anomaly, final Map<Long, AnomalyDTO> loaded,
+      final Set<AnomalyDTO> assembled, final Set<Long> path) {
+    if (!assembled.add(anomaly)) {
+      return;
+    }
+    path.add(anomaly.getId());
+    final Set<AnomalyDTO> children = new HashSet<>();
+    for (final Long childId : optional(anomaly.getChildIds()).orElse(Set.of())) {
+      final AnomalyDTO child = loaded.get(childId);
+      if (child == null || path.contains(childId)) {
+        continue;
       }
+      assembleChildren(child, loaded, assembled, path);
+      children.add(child);
     }
-
-    return outList;
+    path.remove(anomaly.getId());
+    anomaly.setChildren(children);
   }
 
   private List<AnomalyDTO> decorateWithFeedback(final List<AnomalyDTO> anomalies) {
@@ -383,9 +466,35 @@ public class AnomalyManagerImpl extends AbstractManagerImpl<AnomalyDTO>
     if (filters != null && filters.getPredicate() != null) {
       predicate = Predicate.AND(predicate, filters.getPredicate());
     }
-    return findByPredicate(predicate).stream()
-        .map(anomaly -> decorate(anomaly, new HashSet<>()))
-        .collect(Collectors.toList());
+    return findByPredicate(predicate);
+  }
+
+  @Override
+  public Map<AnomalyFeedbackType, Long> countParentAnomaliesByFeedbackType(
+      final DaoFilter filter) {
+    Predicate predicate = Predicate.AND(
+        Predicate.NEQ("anomalyFeedbackId", 0),
+        Predicate.EQ("child", false)
+    );
+    if (filter != null && filter.getPredicate() != null) {
+      predicate = Predicate.AND(predicate, filter.getPredicate());
+    }
+    // feedback types are stored in the type column of the feedback index
+    final Map<String, Long> countsByType = genericPojoDao.countGroupByJoinedColumn(predicate,
+        AnomalyDTO.class,
+        "anomalyFeedbackId",
+        AnomalyFeedbackDTO.class,
+        "type");
+
+    final Map<AnomalyFeedbackType, Long> counts = new EnumMap<>(AnomalyFeedbackType.class);
+    for (final AnomalyFeedbackType type : AnomalyFeedbackType.values()) {
+      counts.put(type, 0L);
+    }
+    countsByType.forEach((type, count) -> counts.merge(
+        optional(type).map(AnomalyFeedbackType::valueOf).orElse(AnomalyFeedbackType.NO_FEEDBACK),
+        count,
+        Long::sum));
+    return counts;
   }
 
   @Override
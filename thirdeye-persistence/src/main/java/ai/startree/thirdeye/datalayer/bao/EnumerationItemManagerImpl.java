@@ -19,6 +19,7 @@ import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 
 import ai.startree.thirdeye.datalayer.dao.GenericPojoDao;
 import ai.startree.thirdeye.spi.datalayer.AnomalyFilter;
@@ -31,9 +32,12 @@ import ai.startree.thirdeye.spi.datalayer.dto.AlertDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -159,6 +163,73 @@ public class EnumerationItemManagerImpl extends AbstractManagerImpl<EnumerationI
     return source;
   }
 
+  /**
+   * Resolves all the enumeration items of an alert with a single read of the existing items of the
+   * alert. Only the items that are not found fall back to the one-by-one logic, which takes care of
+   * creation and legacy migration.
+   */
+  @Override
+  public List<EnumerationItemDTO> findExistingOrCreate(final List<EnumerationItemDTO> sources,
+      final List<String> idKeys) {
+    if (sources.isEmpty()) {
+      return emptyList();
+    }
+    final Set<Long> alertIds = sources.stream()
+        .map(EnumerationItemDTO::getAlert)
+        .map(alert -> requireNonNull(alert, "enumeration item needs a source alert!").getId())
+        .collect(toSet());
+    checkState(alertIds.size() == 1,
+        "bulk findExistingOrCreate expects enumeration items of a single alert. Found: %s",
+        alertIds);
+    final Long alertId = requireNonNull(alertIds.iterator().next(),
+        "enumeration item needs a source alert with a valid id!");
+    final List<EnumerationItemDTO> existingItems = filter(new DaoFilter()
+        .setPredicate(Predicate.EQ("alertId", alertId)));
+
+    final boolean useIdKeys = idKeys != null && !idKeys.isEmpty();
+    final Map<Map<String, Object>, EnumerationItemDTO> existingByIdKeys = new HashMap<>();
+    if (useIdKeys) {
+      for (final EnumerationItemDTO existing : existingItems) {
+        final var previous = existingByIdKeys.put(key(existing, idKeys), existing);
+        checkState(previous == null,
+            "Found multiple EnumerationItems for alert %s with keys: %s ids: %s",
+            alertId,
+            key(existing, idKeys),
+            previous == null ? null : List.of(previous.getId(), existing.getId()));
+      }
+    }
+
+    final List<EnumerationItemDTO> resolved = new ArrayList<>(sources.size());
+    for (final EnumerationItemDTO source : sources) {
+      requireNonNull(source.getName(), "enumeration item name does not exist!");
+      if (useIdKeys) {
+        final EnumerationItemDTO existing = existingByIdKeys.get(key(source, idKeys));
+        if (existing == null) {
+          save(source);
+          requireNonNull(source.getId(), "expecting a generated ID");
+          // later sources of the batch with the same keys resolve to the created item
+          existingByIdKeys.put(key(source, idKeys), source);
+          resolved.add(source);
+        } else {
+          if (!existing.getParams().equals(source.getParams())) {
+            /* The alert is the source of truth. See findExistingOrCreate */
+            save(existing
+                .setParams(source.getParams())
+                .setName(source.getName()));
+          }
+          resolved.add(existing);
+        }
+        continue;
+      }
+      final EnumerationItemDTO existing = existingItems.stream()
+          .filter(e -> matches(source, e))
+          .findFirst()
+          .orElse(null);
+      resolved.add(existing != null ? existing : findExistingOrCreate(source, null));
+    }
+    return resolved;
+  }
+
   public EnumerationItemDTO findUsingIdKeys(final EnumerationItemDTO source,
       final List<String> idKeys) {
     final DaoFilter daoFilter = new DaoFilter()
@@ -13,24 +13,66 @@
  */
 package ai.startree.thirdeye.datalayer.bao;
 
+import static ai.startree.thirdeye.datalayer.mapper.GenericJsonEntityDtoMapper.copyOf;
+
 import ai.startree.thirdeye.datalayer.calcite.filter.SqlFilterRunner;
 import ai.startree.thirdeye.datalayer.calcite.object.adapter.EventToRelationAdapter;
 import ai.startree.thirdeye.datalayer.dao.GenericPojoDao;
 import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.bao.EventManager;
 import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+/**
+ * Time range queries are answered by in-memory event timelines, loaded per event type on first
+ * use. Timelines are invalidated by the writes of this manager. They also expire after a few
+ * minutes to pick up the writes of other instances: a write on another instance can be missed
+ * for up to TIMELINE_TTL_MINUTES.
+ *
+ * A timeline holds all the events of its type, whatever their time. The timeline of all types
+ * holds the whole events table. The cache is bounded by the total number of cached events, not
+ * by the number of timelines.
+ */
 @Singleton
 public class EventManagerImpl extends AbstractManagerImpl<EventDTO> implements EventManager {
 
+  private static final String ALL_TYPES = "";
+  private static final long TIMELINE_TTL_MINUTES = 5;
+  /**
+   * An event takes a few hundred bytes: the cache holds at most a few hundred MB.
+   */
+  private static final int MAXIMUM_CACHED_EVENTS = 1_000_000;
+
   private final SqlFilterRunner<EventDTO> sqlFilterRunner = new SqlFilterRunner<>(
       new EventToRelationAdapter());
 
+  // keyed by event type - ALL_TYPES contains the events of all types
+  private final LoadingCache<String, EventTimeline> timelines = CacheBuilder.newBuilder()
+      .maximumWeight(MAXIMUM_CACHED_EVENTS)
+      .weigher((String eventType, EventTimeline timeline) -> timeline.size())
+      .expireAfterWrite(TIMELINE_TTL_MINUTES, TimeUnit.MINUTES)
+      .build(new CacheLoader<>() {
+        @Override
+        public EventTimeline load(final @NonNull String eventType) {
+          return new EventTimeline(ALL_TYPES.equals(eventType)
+              ? findAll()
+              : findByEventType(eventType));
+        }
+      });
+
   @Inject
   public EventManagerImpl(GenericPojoDao genericPojoDao) {
     super(EventDTO.class, genericPojoDao);
@@ -43,23 +85,13 @@ public class EventManagerImpl extends AbstractManagerImpl<EventDTO> implements E
 
   @Override
   public List<EventDTO> findEventsBetweenTimeRange(final long startTime, final long endTime) {
-    Predicate predicate = Predicate
-        .AND(Predicate.GT("endTime", startTime),
-            Predicate.LT("startTime", endTime));
-    return findByPredicate(predicate);
+    return findEventsBetweenTimeRange(startTime, endTime, List.of());
   }
 
   @Override
   public List<EventDTO> findEventsBetweenTimeRange(final long startTime,
       final long endTime, @Nullable final List<@NonNull String> eventTypes) {
-    if (eventTypes == null || eventTypes.isEmpty()) {
-      return findEventsBetweenTimeRange(startTime, endTime);
-    }
-    final Predicate predicate = Predicate
-        .AND(Predicate.IN("eventType", eventTypes.toArray(new String[0])),
-            Predicate.GT("endTime", startTime),
-            Predicate.LT("startTime", endTime));
-    return findByPredicate(predicate);
+    return findEventsBetweenTimeRangeByDimensions(startTime, endTime, eventTypes, null);
   }
 
   @Override
@@ -70,12 +102,102 @@ public class EventManagerImpl extends AbstractManagerImpl<EventDTO> implements E
     return sqlFilterRunner.applyFilter(events, freeTextSqlFilter);
   }
 
+  @Override
+  public List<EventDTO> findEventsBetweenTimeRangeByDimensions(final long startTime,
+      final long endTime, @Nullable final List<@NonNull String> eventTypes,
+      @Nullable final Map<String, List<String>> dimensionFilters) {
+    final List<String> types = eventTypes == null || eventTypes.isEmpty()
+        ? List.of(ALL_TYPES)
+        : eventTypes.stream().distinct().collect(Collectors.toList());
+    final List<EventDTO> events = new ArrayList<>();
+    for (final String type : types) {
+      for (final EventDTO event : timelines.getUnchecked(type)
+          .findOverlapping(startTime, endTime, dimensionFilters)) {
+        // timelines are shared - callers get copies they are free to modify
+        events.add(copyOf(event, EventDTO.class));
+      }
+    }
+    // same order as the database
+    events.sort(Comparator.comparing(EventDTO::getId));
+    return events;
+  }
+
   @Override
   public List<EventDTO> findEventsBetweenTimeRangeByName(String eventType, String name, long start,
       long end) {
-    Predicate predicate = Predicate
-        .AND(Predicate.EQ("eventType", eventType), Predicate.EQ("name", name),
-            Predicate.GT("endTime", start), Predicate.LT("startTime", end));
-    return findByPredicate(predicate);
+    final List<EventDTO> events = findEventsBetweenTimeRange(start, end, List.of(eventType));
+    events.removeIf(e -> !Objects.equals(e.getName(), name));
+    return events;
+  }
+
+  @Override
+  public Long save(final EventDTO entity) {
+    final Long id = super.save(entity);
+    invalidateTimelines();
+    return id;
+  }
+
+  @Override
+  public int update(final EventDTO entity, final Predicate predicate) {
+    final int updated = super.update(entity, predicate);
+    invalidateTimelines();
+    return updated;
+  }
+
+  @Override
+  public int update(final EventDTO entity) {
+    final int updated = super.update(entity);
+    invalidateTimelines();
+    return updated;
+  }
+
+  @Override
+  public int update(final List<EventDTO> entities) {
+    final int updated = super.update(entities);
+    invalidateTimelines();
+    return updated;
+  }
+
+  @Override
+  public int delete(final EventDTO entity) {
+    final int deleted = super.delete(entity);
+    invalidateTimelines();
+    return deleted;
+  }
+
+  @Override
+  public int deleteById(final Long id) {
+    final int deleted = super.deleteById(id);
+    invalidateTimelines();
+    return deleted;
+  }
+
+  @Override
+  public int deleteByIds(final List<Long> ids) {
+    final int deleted = super.deleteByIds(ids);
+    invalidateTimelines();
+    return deleted;
+  }
+
+  @Override
+  public int deleteByPredicate(final Predicate predicate) {
+    final int deleted = super.deleteByPredicate(predicate);
+    invalidateTimelines();
+    return deleted;
+  }
+
+  /**
+   * Deletes through {@link #deleteByPredicate}, which already invalidates the timelines.
+   * Overridden to keep the invalidation explicit if the parent implementation changes.
+   */
+  @Override
+  public int deleteRecordsOlderThanDays(final int days) {
+    final int deleted = super.deleteRecordsOlderThanDays(days);
+    invalidateTimelines();
+    return deleted;
+  }
+
+  private void invalidateTimelines() {
+    timelines.invalidateAll();
   }
 }
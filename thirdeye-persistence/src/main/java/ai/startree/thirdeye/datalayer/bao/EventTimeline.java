@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.bao;
+
+import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Immutable in-memory index of events, answering time overlap and dimension queries.
+ *
+ * Events are sorted by start time, with the running maximum of the end times: an overlap query is
+ * a binary search on the start times followed by a backward scan that stops as soon as no earlier
+ * event can end after the query start.
+ *
+ * Dimension names and values are normalized once, the same way as the events dimension filter,
+ * into postings lists of event positions.
+ */
+class EventTimeline {
+
+  private final EventDTO[] events;
+  private final long[] startTimes;
+  private final long[] endTimes;
+  private final long[] maxEndTimes;
+  private final Map<String, Map<String, BitSet>> dimensionPostings = new HashMap<>();
+
+  EventTimeline(final List<EventDTO> events) {
+    this.events = events.toArray(new EventDTO[0]);
+    Arrays.sort(this.events, Comparator.comparingLong(EventDTO::getStartTime));
+
+    final int size = this.events.length;
+    startTimes = new long[size];
+    endTimes = new long[size];
+    maxEndTimes = new long[size];
+    long maxEndTime = Long.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      final EventDTO event = this.events[i];
+      startTimes[i] = event.getStartTime();
+      endTimes[i] = event.getEndTime();
+      maxEndTime = Math.max(maxEndTime, endTimes[i]);
+      maxEndTimes[i] = maxEndTime;
+      indexDimensions(i, event.getTargetDimensionMap());
+    }
+  }
+
+  private void indexDimensions(final int position,
+      final @Nullable Map<String, List<String>> dimensionMap) {
+    if (dimensionMap == null) {
+      return;
+    }
+    for (final Entry<String, List<String>> dimension : dimensionMap.entrySet()) {
+      if (dimension.getValue() == null) {
+        continue;
+      }
+      final Map<String, BitSet> postings = dimensionPostings.computeIfAbsent(
+          normalizeDimensionName(dimension.getKey()), k -> new HashMap<>());
+      for (final String value : dimension.getValue()) {
+        if (value != null) {
+          postings.computeIfAbsent(normalizeDimensionValue(value), k -> new BitSet())
+              .set(position);
+        }
+      }
+    }
+  }
+
+  int size() {
+    return events.length;
+  }
+
+  /**
+   * Returns the events with endTime > startTime and startTime < endTime, sorted by start time.
+   */
+  List<EventDTO> findOverlapping(final long startTime, final long endTime) {
+    return findOverlapping(startTime, endTime, null);
+  }
+
+  /**
+   * Same as findOverlapping, but only returns the events matching at least one value of one
+   * dimension filter. A filter dimension matches an event dimension if one normalized name
+   * contains the other. Empty filters match all events.
+   */
+  List<EventDTO> findOverlapping(final long startTime, final long endTime,
+      final @Nullable Map<String, List<String>> dimensionFilters) {
+    final BitSet mask = dimensionFilters == null || dimensionFilters.isEmpty()
+        ? null
+        : dimensionMask(dimensionFilters);
+    final List<EventDTO> matches = new ArrayList<>();
+    // events in [0, lastCandidate) start before the end of the query
+    final int lastCandidate = firstStartAtOrAfter(endTime);
+    for (int i = lastCandidate - 1; i >= 0 && maxEndTimes[i] > startTime; i--) {
+      if (endTimes[i] > startTime && (mask == null || mask.get(i))) {
+        matches.add(events[i]);
+      }
+    }
+    Collections.reverse(matches);
+    return matches;
+  }
+
+  private int firstStartAtOrAfter(final long time) {
+    int low = 0;
+    int high = startTimes.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (startTimes[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private BitSet dimensionMask(final Map<String, List<String>> dimensionFilters) {
+    final BitSet mask = new BitSet(events.length);
+    for (final Entry<String, List<String>> filter : dimensionFilters.entrySet()) {
+      if (filter.getValue() == null) {
+        continue;
+      }
+      final String filterName = normalizeDimensionName(filter.getKey());
+      for (final Entry<String, Map<String, BitSet>> postings : dimensionPostings.entrySet()) {
+        final String name = postings.getKey();
+        if (!name.contains(filterName) && !filterName.contains(name)) {
+          continue;
+        }
+        for (final String value : filter.getValue()) {
+          final BitSet positions = postings.getValue().get(normalizeDimensionValue(value));
+          if (positions != null) {
+            mask.or(positions);
+          }
+        }
+      }
+    }
+    return mask;
+  }
+
+  static String normalizeDimensionName(final String dimensionName) {
+    return dimensionName.toLowerCase().replaceAll("[^A-Za-z0-9]", "");
+  }
+
+  static String normalizeDimensionValue(final String dimensionValue) {
+    return dimensionValue.toLowerCase();
+  }
+}
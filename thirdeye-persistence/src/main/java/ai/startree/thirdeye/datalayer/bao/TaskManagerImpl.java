@@ -27,10 +27,13 @@ import ai.startree.thirdeye.spi.task.TaskInfo;
 import ai.startree.thirdeye.spi.task.TaskStatus;
 import ai.startree.thirdeye.spi.task.TaskType;
 import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.Transactional;
@@ -38,11 +41,15 @@ import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.joda.time.DateTime;
@@ -68,20 +75,68 @@ public class TaskManagerImpl implements TaskManager {
   private static final String FIND_BY_NAME_ORDER_BY_CREATE_TIME_DESC =
       " WHERE name = :name order by createTime desc limit ";
 
+  /**
+   * Bounds of the interval between two MAX(id) checks of the generation poller. The interval
+   * doubles while no task is created, up to 1 second. When tasks are created by another process,
+   * this poller is the only way to see them: the upper bound is the worst-case pickup latency. A
+   * process runs a single poller, only while threads wait, so the cost is at most one MAX(id)
+   * query per second.
+   */
+  private static final long MIN_GENERATION_POLL_INTERVAL_MILLIS = 50;
+  private static final long MAX_GENERATION_POLL_INTERVAL_MILLIS = 1_000;
+
   private static final Logger LOG = LoggerFactory.getLogger(TaskManagerImpl.class);
+  private static final Random RANDOM = new Random();
 
   private final Meter orphanTasksCount;
+  private final Timer taskAcquireTimer;
+  private final Counter taskAcquireContentionCounter;
   private final MetricRegistry metricRegistry;
+  /**
+   * Guards the generation fields below. Notified when the generation changes.
+   */
+  private final Object taskCreationMonitor = new Object();
+  /**
+   * Polls MAX(id) on behalf of all the threads blocked in waitForNewTasks, so that a process runs
+   * a single query at a time whatever its number of idle workers.
+   */
+  private final ScheduledThreadPoolExecutor generationPoller;
+  /**
+   * In-process counter. Incremented when a task is created or set back to WAITING by this process,
+   * and when the poller observes a task created by another process.
+   */
+  private long generation;
+  /** last MAX(id) known by this process. null if it could not be read yet */
+  private Long knownMaxId;
+  private int generationWaiters;
+  private boolean generationPolling;
+  private long generationPollIntervalMillis;
 
   @Inject
   public TaskManagerImpl(final TaskDao dao,
       final MetricRegistry metricRegistry) {
     this.dao = dao;
     orphanTasksCount = metricRegistry.meter("orphanTasksCount");
+    taskAcquireTimer = metricRegistry.timer("taskAcquireTimer");
+    taskAcquireContentionCounter = metricRegistry.counter("taskAcquireContentionCounter");
     this.metricRegistry = metricRegistry;
+    generationPoller = newGenerationPoller();
+    // tasks created before are visible to the first claim: only later tasks change the generation
+    knownMaxId = dao.getMaxId();
     registerMetrics();
   }
 
+  private static ScheduledThreadPoolExecutor newGenerationPoller() {
+    final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder()
+            .setNameFormat("task-generation-poller-%d")
+            .setDaemon(true)
+            .build());
+    executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   public TaskDTO createTaskDto(final long alertId, final TaskInfo taskInfo, final TaskType taskType)
       throws JsonProcessingException {
     final String taskInfoJson;
@@ -105,9 +160,110 @@ public class TaskManagerImpl implements TaskManager {
     }
     final Long id = dao.put(entity);
     entity.setId(id);
+    if (id != null) {
+      synchronized (taskCreationMonitor) {
+        if (knownMaxId == null || id > knownMaxId) {
+          knownMaxId = id;
+        }
+        nextGeneration();
+      }
+    }
     return id;
   }
 
+  @Override
+  public long getTaskGeneration() {
+    synchronized (taskCreationMonitor) {
+      return generation;
+    }
+  }
+
+  @Override
+  public long waitForNewTasks(final long generation, final Duration timeout)
+      throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + timeout.toMillis();
+    synchronized (taskCreationMonitor) {
+      generationWaiters++;
+      try {
+        if (!generationPolling) {
+          generationPolling = true;
+          generationPollIntervalMillis = MIN_GENERATION_POLL_INTERVAL_MILLIS;
+          generationPoller.schedule(this::pollGeneration,
+              generationPollIntervalMillis,
+              TimeUnit.MILLISECONDS);
+        }
+        long remainingMillis = deadline - System.currentTimeMillis();
+        while (this.generation == generation && remainingMillis > 0) {
+          taskCreationMonitor.wait(remainingMillis);
+          remainingMillis = deadline - System.currentTimeMillis();
+        }
+        return this.generation;
+      } finally {
+        generationWaiters--;
+      }
+    }
+  }
+
+  /**
+   * Reads MAX(id) and notifies the waiting threads if a task was created. Reschedules itself while
+   * threads are waiting. The interval doubles while no task is created.
+   */
+  private void pollGeneration() {
+    Long maxId = null;
+    try {
+      maxId = dao.getMaxId();
+    } finally {
+      synchronized (taskCreationMonitor) {
+        if (maxId != null && updateKnownMaxId(maxId)) {
+          generationPollIntervalMillis = MIN_GENERATION_POLL_INTERVAL_MILLIS;
+        } else {
+          generationPollIntervalMillis = Math.min(generationPollIntervalMillis * 2,
+              MAX_GENERATION_POLL_INTERVAL_MILLIS);
+        }
+        generationPolling = generationWaiters > 0;
+        if (generationPolling) {
+          generationPoller.schedule(this::pollGeneration,
+              generationPollIntervalMillis,
+              TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+  }
+
+  /**
+   * Must be called with the taskCreationMonitor lock.
+   *
+   * @return true if a task was created since the last known MAX(id)
+   */
+  private boolean updateKnownMaxId(final long maxId) {
+    if (knownMaxId != null && maxId <= knownMaxId) {
+      return false;
+    }
+    knownMaxId = maxId;
+    nextGeneration();
+    return true;
+  }
+
+  /**
+   * Must be called with the taskCreationMonitor lock.
+   */
+  private void nextGeneration() {
+    generation++;
+    taskCreationMonitor.notifyAll();
+  }
+
+  /**
+   * Wakes up the threads waiting for tasks if the task was set back to WAITING, for instance to
+   * be retried.
+   */
+  private void onStatusUpdate(final TaskStatus status, final int updated) {
+    if (status == TaskStatus.WAITING && updated > 0) {
+      synchronized (taskCreationMonitor) {
+        nextGeneration();
+      }
+    }
+  }
+
   @Override
   public List<TaskDTO> findByJobIdStatusNotIn(final Long jobId, final TaskStatus status) {
     final Predicate jobIdPredicate = Predicate.EQ("jobId", jobId);
@@ -138,6 +294,57 @@ public class TaskManagerImpl implements TaskManager {
     return dao.executeParameterizedSQL(queryClause, parameterMap);
   }
 
+  @Override
+  public List<TaskDTO> acquireNextTasks(final long workerId, final int n, final int fetchSize,
+      final Set<TaskType> types) {
+    final Timer.Context timer = taskAcquireTimer.time();
+    try {
+      final List<TaskDTO> claimed = dao.acquireNextTasks(workerId, n, types);
+      if (claimed != null) {
+        return claimed;
+      }
+      return acquireNextTasksWithOptimisticLocking(workerId, n, fetchSize, types);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  private List<TaskDTO> acquireNextTasksWithOptimisticLocking(final long workerId, final int n,
+      final int fetchSize, final Set<TaskType> types) {
+    // randomize fetching head and tail to reduce synchronized patterns across threads (and hosts)
+    final List<TaskDTO> candidates = new ArrayList<>(findByStatusOrderByCreateTime(
+        TaskStatus.WAITING,
+        Math.max(n, fetchSize),
+        RANDOM.nextBoolean()));
+    Collections.shuffle(candidates);
+
+    final List<TaskDTO> acquired = new ArrayList<>();
+    for (final TaskDTO candidate : candidates) {
+      if (acquired.size() >= n) {
+        break;
+      }
+      if (!types.isEmpty() && !types.contains(candidate.getTaskType())) {
+        continue;
+      }
+      final int expectedVersion = candidate.getVersion();
+      candidate
+          .setStatus(TaskStatus.RUNNING)
+          .setWorkerId(workerId)
+          .setStartTime(System.currentTimeMillis())
+          .setVersion(expectedVersion + 1);
+      // the candidate may be stale: only claim it if it is still the same waiting task
+      final Predicate stillWaiting = Predicate.AND(
+          Predicate.EQ("version", expectedVersion),
+          Predicate.EQ("status", TaskStatus.WAITING.toString()));
+      if (update(candidate, stillWaiting) == 1) {
+        acquired.add(candidate);
+      } else {
+        taskAcquireContentionCounter.inc();
+      }
+    }
+    return acquired;
+  }
+
   @Override
   public boolean updateStatusAndWorkerId(final Long workerId, final Long id,
       final Set<TaskStatus> permittedOldStatus,
@@ -161,27 +368,22 @@ public class TaskManagerImpl implements TaskManager {
   public void updateStatusAndTaskEndTime(final Long id, final TaskStatus oldStatus,
       final TaskStatus newStatus,
       final Long taskEndTime, final String message) {
-    final TaskDTO task = findById(id);
-    if (task.getStatus().equals(oldStatus)) {
-      task.setStatus(newStatus);
-      task.setEndTime(taskEndTime);
-      task.setMessage(message);
-      save(task);
-    }
+    final Map<String, Object> fields = new HashMap<>();
+    fields.put("status", newStatus);
+    fields.put("endTime", taskEndTime);
+    fields.put("message", message);
+    final int updated = dao.updateFields(id, fields, oldStatus);
+    onStatusUpdate(newStatus, updated);
   }
 
   @Override
   public void updateTaskStartTime(final Long id, final Long taskStartTime) {
-    final TaskDTO task = findById(id);
-    task.setStartTime(taskStartTime);
-    save(task);
+    dao.updateFields(id, Map.of("startTime", taskStartTime), null);
   }
 
   @Override
   public void updateLastActive(final Long id) {
-    final TaskDTO task = findById(id);
-    task.setLastActive(new Timestamp(System.currentTimeMillis()));
-    save(task);
+    dao.updateLastActive(id, new Timestamp(System.currentTimeMillis()));
   }
 
   @Override
@@ -342,18 +544,26 @@ public class TaskManagerImpl implements TaskManager {
 
   @Override
   public int update(final TaskDTO entity, final Predicate predicate) {
-    return dao.update(entity, predicate);
+    final int updated = dao.update(entity, predicate);
+    onStatusUpdate(entity.getStatus(), updated);
+    return updated;
   }
 
   @Override
   public int update(final TaskDTO entity) {
-    return dao.update(entity);
+    final int updated = dao.update(entity);
+    onStatusUpdate(entity.getStatus(), updated);
+    return updated;
   }
 
   // Test is located at TestAlertConfigManager.testBatchUpdate()
   @Override
   public int update(final List<TaskDTO> entities) {
-    return dao.update(entities);
+    final int updated = dao.update(entities);
+    if (entities.stream().anyMatch(e -> e.getStatus() == TaskStatus.WAITING)) {
+      onStatusUpdate(TaskStatus.WAITING, updated);
+    }
+    return updated;
   }
 
   @Override
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.calcite.filter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Compiles a validated WHERE clause into a java Predicate evaluated directly on the rows
+ * returned by an ObjectToRelationAdapter.
+ *
+ * Only a subset of SQL is supported: AND, OR, NOT, comparisons and IN lists between a column and
+ * literals, IS [NOT] NULL, boolean literals and MEMBER OF on a map item. Anything else is not
+ * compiled and must be run with Calcite. Evaluation follows the SQL three-valued logic: a row
+ * matches only if the condition is TRUE.
+ */
+class SqlFilterCompiler {
+
+  private final RelDataType rowType;
+
+  private SqlFilterCompiler(final RelDataType rowType) {
+    this.rowType = rowType;
+  }
+
+  /**
+   * Returns the compiled predicate, or null if the condition uses an unsupported expression.
+   */
+  static @Nullable Predicate<Object[]> compile(final SqlNode condition,
+      final RelDataType rowType) {
+    final Expression expression;
+    try {
+      expression = new SqlFilterCompiler(rowType).compileCondition(condition);
+    } catch (final UnsupportedExpressionException e) {
+      return null;
+    }
+    return row -> Boolean.TRUE.equals(expression.evaluate(row));
+  }
+
+  private Expression compileCondition(final SqlNode node) {
+    if (node instanceof SqlLiteral) {
+      final Boolean value = booleanLiteral((SqlLiteral) node);
+      return row -> value;
+    }
+    if (node instanceof SqlIdentifier) {
+      final RelDataTypeField field = field((SqlIdentifier) node);
+      checkSupported(field.getType().getSqlTypeName() == SqlTypeName.BOOLEAN);
+      final int index = field.getIndex();
+      return row -> row[index];
+    }
+    checkSupported(node instanceof SqlBasicCall);
+    final SqlCall call = (SqlCall) node;
+    if (call.getOperator() == SqlStdOperatorTable.MEMBER_OF) {
+      return compileMemberOf(call);
+    }
+    switch (call.getKind()) {
+      case AND:
+        return and(compileCondition(call.operand(0)), compileCondition(call.operand(1)));
+      case OR:
+        return or(compileCondition(call.operand(0)), compileCondition(call.operand(1)));
+      case NOT:
+        final Expression operand = compileCondition(call.operand(0));
+        return row -> {
+          final Boolean value = (Boolean) operand.evaluate(row);
+          return value == null ? null : !value;
+        };
+      case IS_NULL:
+        return compileIsNull(call.operand(0), false);
+      case IS_NOT_NULL:
+        return compileIsNull(call.operand(0), true);
+      case EQUALS:
+      case NOT_EQUALS:
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL:
+        return compileComparison(call);
+      case IN:
+        return compileIn(call, false);
+      case NOT_IN:
+        return compileIn(call, true);
+      default:
+        throw new UnsupportedExpressionException();
+    }
+  }
+
+  private static Expression and(final Expression left, final Expression right) {
+    return row -> {
+      final Boolean l = (Boolean) left.evaluate(row);
+      if (Boolean.FALSE.equals(l)) {
+        return false;
+      }
+      final Boolean r = (Boolean) right.evaluate(row);
+      if (Boolean.FALSE.equals(r)) {
+        return false;
+      }
+      return l == null || r == null ? null : true;
+    };
+  }
+
+  private static Expression or(final Expression left, final Expression right) {
+    return row -> {
+      final Boolean l = (Boolean) left.evaluate(row);
+      if (Boolean.TRUE.equals(l)) {
+        return true;
+      }
+      final Boolean r = (Boolean) right.evaluate(row);
+      if (Boolean.TRUE.equals(r)) {
+        return true;
+      }
+      return l == null || r == null ? null : false;
+    };
+  }
+
+  private Expression compileComparison(final SqlCall call) {
+    final SqlNode left = call.operand(0);
+    final SqlNode right = call.operand(1);
+    final boolean columnFirst = left instanceof SqlIdentifier;
+    final SqlNode column = columnFirst ? left : right;
+    final SqlNode literal = columnFirst ? right : left;
+    checkSupported(column instanceof SqlIdentifier && literal instanceof SqlLiteral);
+
+    final RelDataTypeField field = field((SqlIdentifier) column);
+    final SqlTypeFamily family = comparableFamily(field.getType());
+    final Object value = literalValue((SqlLiteral) literal, family);
+    final int index = field.getIndex();
+    final ComparisonOperator operator = ComparisonOperator.of(call, columnFirst);
+    return row -> {
+      final Object columnValue = row[index];
+      if (columnValue == null) {
+        return null;
+      }
+      return operator.test(compare(normalize(columnValue, family), value));
+    };
+  }
+
+  private Expression compileIn(final SqlCall call, final boolean negated) {
+    checkSupported(call.operand(0) instanceof SqlIdentifier
+        && call.operand(1) instanceof SqlNodeList);
+    final RelDataTypeField field = field(call.operand(0));
+    final SqlTypeFamily family = comparableFamily(field.getType());
+    final List<Object> values = new ArrayList<>();
+    for (final SqlNode node : (SqlNodeList) call.operand(1)) {
+      checkSupported(node instanceof SqlLiteral);
+      values.add(literalValue((SqlLiteral) node, family));
+    }
+    final int index = field.getIndex();
+    if (family == SqlTypeFamily.NUMERIC) {
+      // BigDecimal equality depends on the scale - compare instead of hashing
+      return row -> {
+        final Object columnValue = row[index];
+        if (columnValue == null) {
+          return null;
+        }
+        final Object normalized = normalize(columnValue, family);
+        boolean found = false;
+        for (final Object value : values) {
+          found |= compare(normalized, value) == 0;
+        }
+        return found != negated;
+      };
+    }
+    final Set<Object> valueSet = new HashSet<>(values);
+    return row -> {
+      final Object columnValue = row[index];
+      if (columnValue == null) {
+        return null;
+      }
+      return valueSet.contains(normalize(columnValue, family)) != negated;
+    };
+  }
+
+  /**
+   * Compiles {@code 'value' MEMBER OF mapColumn['key']}.
+   */
+  private Expression compileMemberOf(final SqlCall call) {
+    checkSupported(call.operand(0) instanceof SqlLiteral
+        && call.operand(1) instanceof SqlBasicCall);
+    final String member = (String) literalValue(call.operand(0), SqlTypeFamily.CHARACTER);
+    final SqlCall item = call.operand(1);
+    checkSupported(item.getOperator() == SqlStdOperatorTable.ITEM
+        && item.operand(0) instanceof SqlIdentifier
+        && item.operand(1) instanceof SqlLiteral);
+    final RelDataTypeField field = field(item.operand(0));
+    checkSupported(field.getType().getSqlTypeName() == SqlTypeName.MAP);
+    final String key = (String) literalValue(item.operand(1), SqlTypeFamily.CHARACTER);
+    final int index = field.getIndex();
+    return row -> {
+      final Map<?, ?> map = (Map<?, ?>) row[index];
+      if (map == null) {
+        return null;
+      }
+      final Collection<?> collection = (Collection<?>) map.get(key);
+      if (collection == null) {
+        return null;
+      }
+      return collection.contains(member);
+    };
+  }
+
+  private Expression compileIsNull(final SqlNode node, final boolean negated) {
+    checkSupported(node instanceof SqlIdentifier);
+    final RelDataTypeField field = field((SqlIdentifier) node);
+    if (!field.getType().isNullable()) {
+      // same as Calcite: the check is simplified to a constant for a non-nullable column
+      return row -> negated;
+    }
+    final int index = field.getIndex();
+    return row -> (row[index] == null) != negated;
+  }
+
+  private RelDataTypeField field(final SqlIdentifier identifier) {
+    // the parser is case insensitive - the validator may have prefixed the table name
+    final String name = identifier.names.get(identifier.names.size() - 1);
+    final RelDataTypeField field = rowType.getField(name, false, false);
+    checkSupported(field != null);
+    return field;
+  }
+
+  private static SqlTypeFamily comparableFamily(final RelDataType type) {
+    final SqlTypeFamily family = type.getSqlTypeName().getFamily();
+    checkSupported(family == SqlTypeFamily.CHARACTER
+        || family == SqlTypeFamily.NUMERIC
+        || family == SqlTypeFamily.BOOLEAN);
+    return family;
+  }
+
+  private static Boolean booleanLiteral(final SqlLiteral literal) {
+    checkSupported(literal.getTypeName() == SqlTypeName.BOOLEAN);
+    return literal.getValueAs(Boolean.class);
+  }
+
+  private static Object literalValue(final SqlLiteral literal, final SqlTypeFamily family) {
+    // type coercions between families are left to Calcite
+    checkSupported(literal.getTypeName().getFamily() == family);
+    switch (family) {
+      case CHARACTER:
+        return literal.getValueAs(String.class);
+      case NUMERIC:
+        return literal.getValueAs(BigDecimal.class);
+      case BOOLEAN:
+        return literal.getValueAs(Boolean.class);
+      default:
+        throw new UnsupportedExpressionException();
+    }
+  }
+
+  private static Object normalize(final Object value, final SqlTypeFamily family) {
+    switch (family) {
+      case CHARACTER:
+        return value.toString();
+      case NUMERIC:
+        if (value instanceof BigDecimal) {
+          return value;
+        }
+        if (value instanceof Long || value instanceof Integer
+            || value instanceof Short || value instanceof Byte) {
+          return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        return BigDecimal.valueOf(((Number) value).doubleValue());
+      default:
+        return value;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compare(final Object left, final Object right) {
+    return ((Comparable<Object>) left).compareTo(right);
+  }
+
+  private static void checkSupported(final boolean supported) {
+    if (!supported) {
+      throw new UnsupportedExpressionException();
+    }
+  }
+
+  private enum ComparisonOperator {
+    EQUALS, NOT_EQUALS, LESS_THAN, LESS_THAN_OR_EQUAL, GREATER_THAN, GREATER_THAN_OR_EQUAL;
+
+    private static ComparisonOperator of(final SqlCall call, final boolean columnFirst) {
+      switch (call.getKind()) {
+        case EQUALS:
+          return EQUALS;
+        case NOT_EQUALS:
+          return NOT_EQUALS;
+        case LESS_THAN:
+          return columnFirst ? LESS_THAN : GREATER_THAN;
+        case LESS_THAN_OR_EQUAL:
+          return columnFirst ? LESS_THAN_OR_EQUAL : GREATER_THAN_OR_EQUAL;
+        case GREATER_THAN:
+          return columnFirst ? GREATER_THAN : LESS_THAN;
+        case GREATER_THAN_OR_EQUAL:
+          return columnFirst ? GREATER_THAN_OR_EQUAL : LESS_THAN_OR_EQUAL;
+        default:
+          throw new UnsupportedExpressionException();
+      }
+    }
+
+    private boolean test(final int comparison) {
+      switch (this) {
+        case EQUALS:
+          return comparison == 0;
+        case NOT_EQUALS:
+          return comparison != 0;
+        case LESS_THAN:
+          return comparison < 0;
+        case LESS_THAN_OR_EQUAL:
+          return comparison <= 0;
+        case GREATER_THAN:
+          return comparison > 0;
+        default:
+          return comparison >= 0;
+      }
+    }
+  }
+
+  /**
+   * Evaluates a node on a row. Conditions return TRUE, FALSE or null for UNKNOWN.
+   */
+  @FunctionalInterface
+  private interface Expression {
+
+    @Nullable Object evaluate(Object[] row);
+  }
+
+  private static class UnsupportedExpressionException extends RuntimeException {
+
+    private UnsupportedExpressionException() {
+      super(null, null, false, false);
+    }
+  }
+}
@@ -19,17 +19,24 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import ai.startree.thirdeye.datalayer.calcite.object.ObjectSchema;
 import ai.startree.thirdeye.spi.ThirdEyeException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlSelect;
 import org.apache.calcite.sql.parser.SqlParseException;
 import org.apache.calcite.sql.parser.SqlParser;
 import org.apache.calcite.sql2rel.SqlToRelConverter;
@@ -45,9 +52,19 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Run sql filter predicates on any list of objects with a given ObjectWithIdToRelationAdapter
+ *
+ * Simple filters are compiled once into a java Predicate evaluated directly on the adapter rows.
+ * Compiled filters are cached by adapter and filter text. Filters using expressions not supported
+ * by the SqlFilterCompiler are run with Calcite.
  */
 public class SqlFilterRunner<T> {
 
+  private static final int MAXIMUM_CACHE_SIZE = 1000;
+
+  private static final Cache<Key, CompiledFilter> CACHE = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_CACHE_SIZE)
+      .build();
+
   private final ObjectWithIdToRelationAdapter<T> adapter;
 
   public SqlFilterRunner(final ObjectWithIdToRelationAdapter<T> adapter) {
@@ -65,6 +82,18 @@ public class SqlFilterRunner<T> {
           e);
     }
 
+    final Predicate<Object[]> predicate = compiledFilter(queryFilter).predicate;
+    if (predicate != null) {
+      return elements.stream()
+          .filter(e -> predicate.test(adapter.getRow(e)))
+          .collect(Collectors.toList());
+    }
+
+    return applyCalciteFilter(elements, queryFilter);
+  }
+
+  @VisibleForTesting
+  List<T> applyCalciteFilter(final List<T> elements, final String queryFilter) {
     final ObjectSchema<T> objectSchema = new ObjectSchema<>(elements, adapter);
     final SchemaPlus querySchema = Frameworks.createRootSchema(true)
         .add(objectSchema.singleTableName(), objectSchema);
@@ -82,6 +111,44 @@ public class SqlFilterRunner<T> {
     }
   }
 
+  @VisibleForTesting
+  boolean isCompiled(final String queryFilter) {
+    return compiledFilter(queryFilter).predicate != null;
+  }
+
+  private CompiledFilter compiledFilter(final String queryFilter) {
+    final Key key = new Key(adapter, cleanFreeTextPredicate(queryFilter).trim());
+    CompiledFilter compiledFilter = CACHE.getIfPresent(key);
+    if (compiledFilter == null) {
+      // compile outside of the cache loader to let exceptions propagate unwrapped
+      compiledFilter = compile(key.filter);
+      CACHE.put(key, compiledFilter);
+    }
+    return compiledFilter;
+  }
+
+  private CompiledFilter compile(final String cleanFilter) {
+    // the schema is only used for validation - no element is needed
+    final ObjectSchema<T> objectSchema = new ObjectSchema<>(List.of(), adapter);
+    final SchemaPlus querySchema = Frameworks.createRootSchema(true)
+        .add(objectSchema.singleTableName(), objectSchema);
+    final Planner planner = buildPlanner(querySchema);
+    final String sqlQuery = buildQueryString(cleanFilter, objectSchema.singleTableName());
+    final SqlNode sqlNode;
+    try {
+      sqlNode = planner.parse(sqlQuery);
+    } catch (SqlParseException e) {
+      throw new ThirdEyeException(e, ERR_INVALID_SQL, sqlQuery);
+    }
+    try {
+      final SqlSelect validated = (SqlSelect) planner.validate(sqlNode);
+      final RelDataType rowType = adapter.getRowType(planner.getTypeFactory());
+      return new CompiledFilter(SqlFilterCompiler.compile(validated.getWhere(), rowType));
+    } catch (ValidationException e) {
+      throw new ThirdEyeException(e, ERR_CALCITE_FILTERING, cleanFilter);
+    }
+  }
+
   @NonNull
   private Set<Long> getIdsFrom(final ResultSet resultSet) throws SQLException {
     final Set<Long> matchingIds = new HashSet<>();
@@ -127,6 +194,44 @@ public class SqlFilterRunner<T> {
     return Frameworks.getPlanner(config);
   }
 
+  private static class CompiledFilter {
+
+    // null if the filter must be run with Calcite
+    private final @Nullable Predicate<Object[]> predicate;
+
+    private CompiledFilter(final @Nullable Predicate<Object[]> predicate) {
+      this.predicate = predicate;
+    }
+  }
+
+  private static class Key {
+
+    private final ObjectWithIdToRelationAdapter<?> adapter;
+    private final String filter;
+
+    private Key(final ObjectWithIdToRelationAdapter<?> adapter, final String filter) {
+      this.adapter = adapter;
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      final Key key = (Key) o;
+      return adapter.equals(key.adapter) && filter.equals(key.filter);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(adapter, filter);
+    }
+  }
+
   // fixme cyril - duplicated - move calcite classes to a new module and consolidate
   @NonNull
   public static String cleanFreeTextPredicate(final String freeTextPredicate) {
@@ -42,9 +42,12 @@ import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.lang.reflect.Field;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -130,6 +133,84 @@ public class GenericPojoDao {
     }
   }
 
+  /**
+   * Creates pojos of the same class in a single transaction, with batched inserts in the json and
+   * index tables.
+   *
+   * @return the generated ids, in the order of the pojos. null if the transaction failed: the
+   *     ids of the pojos are then left null.
+   */
+  public <E extends AbstractDTO> List<Long> createAll(final List<E> pojos) {
+    if (pojos.isEmpty()) {
+      return List.of();
+    }
+    checkCreatable(pojos);
+    return executeWrites(writer -> writer.createAll(pojos), null);
+  }
+
+  /**
+   * Updates pojos in a single transaction, with batched updates in the json and index tables.
+   * The rows are not read before being updated.
+   *
+   * @return the number of rows that are affected. 0 if the transaction failed.
+   */
+  public <E extends AbstractDTO> int updateAll(final List<E> pojos) {
+    if (pojos.isEmpty()) {
+      return 0;
+    }
+    final List<Timestamp> lastUpdateTimes = new ArrayList<>(pojos.size());
+    for (final E pojo : pojos) {
+      requireNonNull(pojo.getId(), String.format("Need an ID to update the DB entity: %s", pojo));
+      lastUpdateTimes.add(pojo.getUpdateTime());
+    }
+    final int updated = executeWrites(writer -> writer.updateAll(pojos), 0);
+    if (updated == 0) {
+      restoreUpdateTimes(pojos, lastUpdateTimes);
+    }
+    return updated;
+  }
+
+  /**
+   * Runs all the writes of operation in a single transaction. Created pojos get their ids as soon
+   * as {@link BatchWriter#createAll(List)} returns, so later writes of the operation can reference
+   * them. If any write fails, the whole transaction is rolled back: the ids of the created pojos
+   * are reset to null and the update times of the updated pojos are restored.
+   *
+   * @return the value returned by operation. defaultReturn if the transaction failed.
+   */
+  public <T> T executeWrites(final WriteOperation<T> operation, final T defaultReturn) {
+    final TransactionBatchWriter writer = new TransactionBatchWriter();
+    try {
+      final T result = transactionService.executeTransaction(connection -> {
+        writer.connection = connection;
+        return operation.handle(writer);
+      }, null);
+      if (result != null) {
+        return result;
+      }
+    } catch (final SQLException e) {
+      LOG.error(e.getMessage(), e);
+    }
+    writer.rollback();
+    return defaultReturn;
+  }
+
+  private static <E extends AbstractDTO> void checkCreatable(final List<E> pojos) {
+    for (final E pojo : pojos) {
+      requireNonNull(pojo, "entity is null");
+      checkArgument(pojo.getId() == null, "id must be null for create flow.");
+      checkArgument(pojo.getClass() == pojos.get(0).getClass(),
+          "createAll requires pojos of a single class.");
+    }
+  }
+
+  private static <E extends AbstractDTO> void restoreUpdateTimes(final List<E> pojos,
+      final List<Timestamp> updateTimes) {
+    for (int i = 0; i < pojos.size(); i++) {
+      pojos.get(i).setUpdateTime(updateTimes.get(i));
+    }
+  }
+
   public <E extends AbstractDTO> int update(final E pojo) {
     return update(List.of(pojo));
   }
@@ -244,6 +325,35 @@ public class GenericPojoDao {
     }
   }
 
+  /**
+   * Counts the entities matching the predicate, grouped by an index column of the entity they
+   * reference. The aggregation runs in the database on the index tables.
+   *
+   * @param joinKey index column of beanClass that references the id of joinedBeanClass
+   * @param groupByKey index column of joinedBeanClass
+   * @return the count per value of groupByKey. Empty if the query fails.
+   */
+  public Map<String, Long> countGroupByJoinedColumn(final Predicate predicate,
+      final Class<? extends AbstractDTO> beanClass, final String joinKey,
+      final Class<? extends AbstractDTO> joinedBeanClass, final String groupByKey) {
+    final Class<? extends AbstractIndexEntity> indexClass = BEAN_INDEX_MAP.get(beanClass);
+    final Class<? extends AbstractIndexEntity> joinedIndexClass =
+        BEAN_INDEX_MAP.get(joinedBeanClass);
+    try {
+      return transactionService.executeTransaction(
+          (connection) -> databaseService.countGroupByJoinedColumn(predicate,
+              indexClass,
+              joinKey,
+              joinedIndexClass,
+              groupByKey,
+              connection),
+          Map.of());
+    } catch (final SQLException e) {
+      LOG.error(e.getMessage(), e);
+      return Map.of();
+    }
+  }
+
   public <E extends AbstractDTO> E get(final Long id, final Class<E> pojoClass) {
     try {
       final GenericJsonEntity genericJsonEntity = transactionService.executeTransaction(
@@ -333,7 +443,16 @@ public class GenericPojoDao {
     if (ids.isEmpty()) {
       return emptyList();
     }
-    return (List<E>) get(ids, beanClass);
+    final List<E> entities = (List<E>) get(ids, beanClass);
+    if (daoFilter.getOrderByKey() != null) {
+      // keep the order of the index query
+      final Map<Long, Integer> positions = new HashMap<>();
+      for (int i = 0; i < ids.size(); i++) {
+        positions.put(ids.get(i), i);
+      }
+      entities.sort(Comparator.comparing(e -> positions.get(e.getId())));
+    }
+    return entities;
   }
 
   /**
@@ -388,23 +507,31 @@ public class GenericPojoDao {
 
   public List<Long> filterIds(final DaoFilter daoFilter) {
     //apply the predicates and fetch the primary key ids
+    final List<? extends AbstractIndexEntity> indexEntities = filterIndexEntities(daoFilter);
+    final List<Long> idsToReturn = new ArrayList<>();
+    for (final AbstractIndexEntity entity : indexEntities) {
+      idsToReturn.add(entity.getBaseId());
+    }
+    return idsToReturn;
+  }
+
+  /**
+   * Returns the index rows matching the filter. Use this method to read indexed columns without
+   * decoding the json of the entities.
+   */
+  public List<? extends AbstractIndexEntity> filterIndexEntities(final DaoFilter daoFilter) {
     final Class<? extends AbstractIndexEntity> indexClass = BEAN_INDEX_MAP.get(daoFilter.getBeanClass());
     try {
       validate(daoFilter);
-      //find the matching ids
       final List<? extends AbstractIndexEntity> indexEntities = transactionService.executeTransaction(
           (connection) -> databaseService.findAll(daoFilter.getPredicate(),
               daoFilter.getLimit(),
               daoFilter.getOffset(),
+              daoFilter.getOrderByKey(),
+              daoFilter.isDesc(),
               indexClass,
               connection), emptyList());
-      final List<Long> idsToReturn = new ArrayList<>();
-      if (CollectionUtils.isNotEmpty(indexEntities)) {
-        for (final AbstractIndexEntity entity : indexEntities) {
-          idsToReturn.add(entity.getBaseId());
-        }
-      }
-      return idsToReturn;
+      return CollectionUtils.isNotEmpty(indexEntities) ? indexEntities : emptyList();
     } catch (final SQLException e) {
       LOG.error(e.getMessage(), e);
       return emptyList();
@@ -469,4 +596,117 @@ public class GenericPojoDao {
     final List<Long> idsToDelete = getIdsByPredicate(predicate, pojoClass);
     return delete(idsToDelete, pojoClass);
   }
+
+  public interface WriteOperation<T> {
+
+    /**
+     * @return the result of the operation. Must not be null: null means the transaction failed.
+     */
+    T handle(BatchWriter writer) throws Exception;
+  }
+
+  /**
+   * Batched writes that are part of the transaction of {@link #executeWrites}.
+   */
+  public interface BatchWriter {
+
+    /**
+     * Creates pojos of the same class, with batched inserts in the json and index tables.
+     *
+     * @return the generated ids, in the order of the pojos.
+     */
+    <E extends AbstractDTO> List<Long> createAll(List<E> pojos) throws Exception;
+
+    /**
+     * Updates pojos, with batched updates in the json and index tables. The rows are not read
+     * before being updated.
+     *
+     * @return the number of rows that are affected.
+     */
+    <E extends AbstractDTO> int updateAll(List<E> pojos) throws Exception;
+  }
+
+  private class TransactionBatchWriter implements BatchWriter {
+
+    private final List<AbstractDTO> created = new ArrayList<>();
+    private final List<AbstractDTO> updated = new ArrayList<>();
+    private final List<Timestamp> lastUpdateTimes = new ArrayList<>();
+    private Connection connection;
+
+    @Override
+    public <E extends AbstractDTO> List<Long> createAll(final List<E> pojos) throws Exception {
+      if (pojos.isEmpty()) {
+        return List.of();
+      }
+      checkCreatable(pojos);
+      final Timestamp now = new Timestamp(System.currentTimeMillis());
+      final List<GenericJsonEntity> jsonEntities = new ArrayList<>(pojos.size());
+      for (final E pojo : pojos) {
+        /* Populate createTime before DB insert if not present already */
+        if (pojo.getCreateTime() == null) {
+          pojo.setCreateTime(now);
+        }
+        jsonEntities.add(toGenericJsonEntity(pojo));
+      }
+      final List<Long> generatedKeys = databaseService.saveAll(jsonEntities, connection);
+      for (int i = 0; i < pojos.size(); i++) {
+        pojos.get(i).setId(generatedKeys.get(i));
+        created.add(pojos.get(i));
+      }
+      final Class<? extends AbstractIndexEntity> indexClass =
+          BEAN_INDEX_MAP.get(pojos.get(0).getClass());
+      if (indexClass != null) {
+        final List<AbstractIndexEntity> indexEntities = new ArrayList<>(pojos.size());
+        for (int i = 0; i < pojos.size(); i++) {
+          final E pojo = pojos.get(i);
+          final AbstractIndexEntity abstractIndexEntity = toAbstractIndexEntity(
+              pojo,
+              indexClass,
+              jsonEntities.get(i).getJsonVal());
+          abstractIndexEntity.setVersion(1);
+          abstractIndexEntity.setCreateTime(pojo.getCreateTime());
+          indexEntities.add(abstractIndexEntity);
+        }
+        databaseService.saveAll(indexEntities, connection);
+      }
+      return generatedKeys;
+    }
+
+    @Override
+    public <E extends AbstractDTO> int updateAll(final List<E> pojos) throws Exception {
+      if (pojos.isEmpty()) {
+        return 0;
+      }
+      final Timestamp now = new Timestamp(System.currentTimeMillis());
+      final List<GenericJsonEntity> jsonEntities = new ArrayList<>(pojos.size());
+      final List<AbstractIndexEntity> indexEntities = new ArrayList<>(pojos.size());
+      for (final E pojo : pojos) {
+        requireNonNull(pojo.getId(),
+            String.format("Need an ID to update the DB entity: %s", pojo));
+        updated.add(pojo);
+        lastUpdateTimes.add(pojo.getUpdateTime());
+        pojo.setUpdateTime(now);
+        final GenericJsonEntity genericJsonEntity = toGenericJsonEntity(pojo);
+        jsonEntities.add(genericJsonEntity);
+        final Class<? extends AbstractIndexEntity> indexClass =
+            BEAN_INDEX_MAP.get(pojo.getClass());
+        if (indexClass != null) {
+          indexEntities.add(toAbstractIndexEntity(pojo,
+              indexClass,
+              genericJsonEntity.getJsonVal()));
+        }
+      }
+      final int ret = databaseService.updateAll(jsonEntities, connection);
+      databaseService.updateAll(indexEntities, connection);
+      return ret;
+    }
+
+    /**
+     * Reverts the in-memory changes of the writes that were rolled back.
+     */
+    private void rollback() {
+      created.forEach(pojo -> pojo.setId(null));
+      restoreUpdateTimes(updated, lastUpdateTimes);
+    }
+  }
 }
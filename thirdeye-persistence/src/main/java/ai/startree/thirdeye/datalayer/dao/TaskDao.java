@@ -13,8 +13,6 @@
  */
 package ai.startree.thirdeye.datalayer.dao;
 
-import static java.util.Objects.requireNonNull;
-
 import ai.startree.thirdeye.datalayer.DatabaseService;
 import ai.startree.thirdeye.datalayer.DatabaseTransactionService;
 import ai.startree.thirdeye.datalayer.entity.TaskEntity;
@@ -23,18 +21,29 @@ import ai.startree.thirdeye.spi.datalayer.DaoFilter;
 import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.dto.TaskDTO;
 import ai.startree.thirdeye.spi.json.ThirdEyeSerialization;
+import ai.startree.thirdeye.spi.task.TaskStatus;
+import ai.startree.thirdeye.spi.task.TaskType;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,9 +55,30 @@ public class TaskDao {
   private static final boolean IS_DEBUG = LOG.isDebugEnabled();
   private static final ObjectMapper OBJECT_MAPPER = ThirdEyeSerialization.getObjectMapper();
 
+  private static final String SELECT_WAITING_FOR_UPDATE_SKIP_LOCKED =
+      "SELECT id, json_val, version, create_time FROM task_entity WHERE status = ?%s"
+          + " ORDER BY create_time ASC LIMIT ? FOR UPDATE SKIP LOCKED";
+  private static final String SELECT_FOR_UPDATE =
+      "SELECT json_val, version FROM task_entity WHERE id = ? FOR UPDATE";
+  /**
+   * TaskDTO fields that are also stored in a column of task_entity.
+   */
+  private static final Set<String> COLUMN_FIELDS = Set.of("status", "startTime", "endTime",
+      "workerId", "lastActive");
+  private static final String SELECT_MAX_ID = "SELECT MAX(id) FROM task_entity";
+  private static final String UPDATE_CLAIMED_TASK =
+      "UPDATE task_entity SET status = ?, worker_id = ?, start_time = ?, version = ?,"
+          + " update_time = ?, json_val = ? WHERE id = ?";
+
   private final DatabaseService databaseService;
   private final DatabaseTransactionService transactionService;
 
+  /**
+   * Whether the database supports SELECT ... FOR UPDATE SKIP LOCKED. Resolved lazily from the
+   * connection metadata.
+   */
+  private volatile Boolean skipLockedSupported;
+
   @Inject
   public TaskDao(final DatabaseService databaseService,
       final DatabaseTransactionService transactionService) {
@@ -74,6 +104,8 @@ public class TaskDao {
     dto.setCreateTime(entity.getCreateTime());
     dto.setUpdateTime(entity.getUpdateTime());
     dto.setVersion(entity.getVersion());
+    // lastActive is updated at column level by heartbeats: the column is the source of truth
+    dto.setLastActive(entity.getLastActive());
     return dto;
   }
 
@@ -143,9 +175,13 @@ public class TaskDao {
     return update(pojo, null);
   }
 
+  /**
+   * Updates the whole task, except the lastActive column: heartbeats update it without bumping
+   * the version, so the value of the given task may be stale. Null columns are not written.
+   */
   public int update(final TaskDTO pojo, final Predicate predicate) {
     try {
-      final TaskEntity entity = toEntity(pojo);
+      final TaskEntity entity = toEntity(pojo).setLastActive(null);
       return transactionService.executeTransaction(
           (connection) -> databaseService.update(entity, predicate, connection),
           null);
@@ -155,6 +191,93 @@ public class TaskDao {
     }
   }
 
+  /**
+   * Updates the lastActive column of a task. The json value is not read nor written. The version
+   * is not incremented: a heartbeat must not fail the optimistic updates of the running task.
+   * Full updates do not write lastActive, so they cannot overwrite a more recent heartbeat.
+   *
+   * @return the number of rows that are affected.
+   */
+  public int updateLastActive(final Long id, final Timestamp lastActive) {
+    try {
+      return transactionService.executeTransaction(
+          (connection) -> databaseService.updateColumns(TaskEntity.class,
+              Map.of("lastActive", lastActive, "updateTime", lastActive),
+              Predicate.EQ("id", id),
+              connection),
+          0);
+    } catch (SQLException e) {
+      LOG.error(e.getMessage(), e);
+      return 0;
+    }
+  }
+
+  /**
+   * Updates some fields of a task. Fields backed by a column are updated at column level. All
+   * fields are merged into the json value in the same transaction, without decoding the whole
+   * TaskDTO. The version is incremented, so that optimistic writers see the change.
+   *
+   * @param fields values to set, keyed by TaskDTO field name. A null value removes the field.
+   * @param expectedStatus if not null, the update is only applied if the task has this status
+   * @return the number of rows that are affected.
+   */
+  public int updateFields(final Long id, final Map<String, Object> fields,
+      final TaskStatus expectedStatus) {
+    try {
+      return transactionService.executeTransaction(connection -> {
+        final TaskEntity locked = selectForUpdate(connection, id);
+        if (locked == null) {
+          return 0;
+        }
+        final ObjectNode node = (ObjectNode) OBJECT_MAPPER.readTree(locked.getJsonVal());
+        final Map<String, Object> columnValues = new HashMap<>();
+        for (final Entry<String, Object> field : fields.entrySet()) {
+          if (field.getValue() == null) {
+            node.remove(field.getKey());
+          } else {
+            node.set(field.getKey(), OBJECT_MAPPER.valueToTree(field.getValue()));
+          }
+          if (COLUMN_FIELDS.contains(field.getKey())) {
+            columnValues.put(field.getKey(), field.getValue());
+          }
+        }
+        columnValues.put("jsonVal", OBJECT_MAPPER.writeValueAsString(node));
+        columnValues.put("updateTime", new Timestamp(System.currentTimeMillis()));
+        // the row is locked: the version cannot change between the read and the update
+        columnValues.put("version", locked.getVersion() + 1);
+
+        final Predicate predicate = expectedStatus == null
+            ? Predicate.EQ("id", id)
+            : Predicate.AND(Predicate.EQ("id", id),
+                Predicate.EQ("status", expectedStatus.toString()));
+        return databaseService.updateColumns(TaskEntity.class, columnValues, predicate,
+            connection);
+      }, 0);
+    } catch (SQLException e) {
+      LOG.error(e.getMessage(), e);
+      return 0;
+    }
+  }
+
+  /**
+   * Locks a task row. Only the json value and the version of the returned entity are set.
+   */
+  private TaskEntity selectForUpdate(final Connection connection, final Long id)
+      throws SQLException {
+    try (final PreparedStatement ps = connection.prepareStatement(SELECT_FOR_UPDATE)) {
+      ps.setLong(1, id);
+      try (final ResultSet rs = ps.executeQuery()) {
+        if (!rs.next()) {
+          return null;
+        }
+        final TaskEntity entity = new TaskEntity();
+        entity.setJsonVal(rs.getString("json_val"));
+        entity.setVersion(rs.getInt("version"));
+        return entity;
+      }
+    }
+  }
+
   public List<TaskDTO> getAll() {
     try {
       final List<TaskEntity> entities = transactionService.executeTransaction(
@@ -201,11 +324,29 @@ public class TaskDao {
     );
   }
 
+  /**
+   * Returns the tasks matching the filter. The predicate, limit, offset and order of the filter
+   * apply directly to task_entity: it is its own index table.
+   */
   public List<TaskDTO> filter(final DaoFilter daoFilter) {
-    requireNonNull(daoFilter.getPredicate(),
-        "If the predicate is null, you can just do "
-            + "getAll() which doesn't need to fetch IDs first");
-    return get(daoFilter.getPredicate());
+    try {
+      return toDto(filterEntities(daoFilter));
+    } catch (final JsonProcessingException | SQLException e) {
+      LOG.error(e.getMessage(), e);
+      return Collections.emptyList();
+    }
+  }
+
+  private List<TaskEntity> filterEntities(final DaoFilter daoFilter) throws SQLException {
+    return transactionService.executeTransaction(
+        (connection) -> databaseService.findAll(daoFilter.getPredicate(),
+            daoFilter.getLimit(),
+            daoFilter.getOffset(),
+            daoFilter.getOrderByKey(),
+            daoFilter.isDesc(),
+            TaskEntity.class,
+            connection),
+        Collections.emptyList());
   }
 
   public List<TaskDTO> get(final Map<String, Object> filterParams) {
@@ -253,6 +394,26 @@ public class TaskDao {
     }
   }
 
+  /**
+   * Returns the highest task id. Ids are auto-incremented, so the value changes whenever a task
+   * is created. This is a primary key lookup: it is cheap enough to be polled by idle workers.
+   *
+   * @return the highest task id, 0 if the table is empty, null if the query fails
+   */
+  public @Nullable Long getMaxId() {
+    try {
+      return transactionService.executeTransaction(connection -> {
+        try (final PreparedStatement ps = connection.prepareStatement(SELECT_MAX_ID);
+            final ResultSet rs = ps.executeQuery()) {
+          return rs.next() ? rs.getLong(1) : 0L;
+        }
+      }, null);
+    } catch (SQLException e) {
+      LOG.error(e.getMessage(), e);
+      return null;
+    }
+  }
+
   /**
    * @param parameterizedSQL second part of the sql (omit select from table section)
    */
@@ -272,6 +433,106 @@ public class TaskDao {
     }
   }
 
+  /**
+   * Claims up to limit WAITING tasks for the given worker in a single transaction. Rows locked by
+   * concurrent claimers are skipped instead of waited on, so workers never compete for the same
+   * row.
+   *
+   * @param types task types to claim. All types are considered if empty.
+   * @return the claimed tasks, in RUNNING status. null if the database does not support
+   *     SKIP LOCKED: the caller is expected to fall back to optimistic claiming.
+   * @throws IllegalStateException if the claim transaction fails. No task is claimed.
+   */
+  public List<TaskDTO> acquireNextTasks(final long workerId, final int limit,
+      final Set<TaskType> types) {
+    final Optional<List<TaskDTO>> claimed;
+    try {
+      // null on failure. An empty Optional means that SKIP LOCKED is not supported
+      claimed = transactionService.executeTransaction(connection -> {
+        if (!isSkipLockedSupported(connection)) {
+          return Optional.empty();
+        }
+        return Optional.of(claimWaitingTasks(connection, workerId, limit, types));
+      }, null);
+    } catch (final SQLException e) {
+      LOG.error("Failed to claim tasks for worker {}", workerId, e);
+      throw new IllegalStateException("Failed to claim tasks for worker " + workerId, e);
+    }
+    if (claimed == null) {
+      LOG.error("Failed to claim tasks for worker {}: the transaction was rolled back", workerId);
+      throw new IllegalStateException("Failed to claim tasks for worker " + workerId);
+    }
+    return claimed.orElse(null);
+  }
+
+  private List<TaskDTO> claimWaitingTasks(final Connection connection, final long workerId,
+      final int limit, final Set<TaskType> types) throws SQLException, JsonProcessingException {
+    final List<TaskDTO> claimed = selectWaitingForUpdate(connection, limit, types);
+    if (claimed.isEmpty()) {
+      return claimed;
+    }
+    final long startTime = System.currentTimeMillis();
+    final Timestamp updateTime = new Timestamp(startTime);
+    try (final PreparedStatement ps = connection.prepareStatement(UPDATE_CLAIMED_TASK)) {
+      for (final TaskDTO dto : claimed) {
+        dto.setStatus(TaskStatus.RUNNING);
+        dto.setWorkerId(workerId);
+        dto.setStartTime(startTime);
+        dto.setVersion(dto.getVersion() + 1);
+        dto.setUpdateTime(updateTime);
+
+        ps.setString(1, TaskStatus.RUNNING.toString());
+        ps.setLong(2, workerId);
+        ps.setLong(3, startTime);
+        ps.setInt(4, dto.getVersion());
+        ps.setTimestamp(5, updateTime);
+        ps.setString(6, toJsonString(dto));
+        ps.setLong(7, dto.getId());
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+    return claimed;
+  }
+
+  private List<TaskDTO> selectWaitingForUpdate(final Connection connection, final int limit,
+      final Set<TaskType> types) throws SQLException, JsonProcessingException {
+    final String typeClause = types.isEmpty()
+        ? ""
+        : " AND type IN (" + String.join(", ", Collections.nCopies(types.size(), "?")) + ")";
+    final List<TaskDTO> tasks = new ArrayList<>();
+    try (final PreparedStatement ps = connection.prepareStatement(
+        String.format(SELECT_WAITING_FOR_UPDATE_SKIP_LOCKED, typeClause))) {
+      int index = 1;
+      ps.setString(index++, TaskStatus.WAITING.toString());
+      for (final TaskType type : types) {
+        ps.setString(index++, type.toString());
+      }
+      ps.setInt(index, limit);
+      try (final ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          final TaskDTO dto = OBJECT_MAPPER.readValue(rs.getString("json_val"), TaskDTO.class);
+          dto.setId(rs.getLong("id"));
+          dto.setVersion(rs.getInt("version"));
+          dto.setCreateTime(rs.getTimestamp("create_time"));
+          tasks.add(dto);
+        }
+      }
+    }
+    return tasks;
+  }
+
+  private boolean isSkipLockedSupported(final Connection connection) throws SQLException {
+    Boolean supported = skipLockedSupported;
+    if (supported == null) {
+      final DatabaseMetaData metaData = connection.getMetaData();
+      supported = "MySQL".equalsIgnoreCase(metaData.getDatabaseProductName())
+          && metaData.getDatabaseMajorVersion() >= 8;
+      skipLockedSupported = supported;
+    }
+    return supported;
+  }
+
   /**
    * Dump all entities of type entityClass to logger
    * This utility is useful to dump the entire table. However, it gets executed in code regularly in
@@ -48,6 +48,14 @@ public class GenericJsonEntityDtoMapper {
     return entity;
   }
 
+  /**
+   * Returns a deep copy of the dto, with the same fields as a dto read from the database.
+   */
+  public static <DtoT extends AbstractDTO> DtoT copyOf(final DtoT dto,
+      final Class<DtoT> beanClass) {
+    return OBJECT_MAPPER.convertValue(dto, beanClass);
+  }
+
   public static <DtoT extends AbstractDTO> DtoT toDto(final GenericJsonEntity entity,
       final Class<DtoT> beanClass)
       throws JsonProcessingException {
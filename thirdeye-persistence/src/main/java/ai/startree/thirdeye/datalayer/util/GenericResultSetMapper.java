@@ -14,24 +14,47 @@
 package ai.startree.thirdeye.datalayer.util;
 
 import ai.startree.thirdeye.datalayer.entity.AbstractEntity;
+import ai.startree.thirdeye.spi.json.ThirdEyeSerialization;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.sql.Clob;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Maps result set rows to entities. A {@link RowMapper} is compiled once per entity class from
+ * the column mapping: rows are read with typed getters and set on the entity through method
+ * handles, without intermediate representation.
+ */
 @Singleton
 public class GenericResultSetMapper {
 
+  private static final ObjectMapper OBJECT_MAPPER = ThirdEyeSerialization.getObjectMapper();
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+  private static final int NANOS_PER_MILLI = 1_000_000;
+  // handles are adapted to generic types so that they can be called with invokeExact
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
   private final EntityMappingHolder entityMappingHolder;
+  private final Map<Class<? extends AbstractEntity>, RowMapper<?>> rowMappers =
+      new ConcurrentHashMap<>();
 
   @Inject
   public GenericResultSetMapper(final EntityMappingHolder entityMappingHolder) {
@@ -43,44 +66,163 @@ public class GenericResultSetMapper {
     return toEntityList(rs, entityClass);
   }
 
+  @SuppressWarnings("unchecked")
   private <E extends AbstractEntity> List<E> toEntityList(final ResultSet rs,
       final Class<E> entityClass) throws Exception {
+    final RowMapper<E> rowMapper = (RowMapper<E>) rowMappers.computeIfAbsent(entityClass,
+        this::compile);
+    // resolve the columns once per result set, not once per row
+    final ColumnBinding[] bindings = rowMapper.bind(rs.getMetaData());
+    final List<E> entityList = new ArrayList<>();
+    while (rs.next()) {
+      entityList.add(rowMapper.map(rs, bindings));
+    }
+    return entityList;
+  }
+
+  private <E extends AbstractEntity> RowMapper<E> compile(final Class<E> entityClass) {
     final String tableName =
         entityMappingHolder.tableToEntityNameMap.inverse().get(entityClass.getSimpleName());
     final LinkedHashMap<String, ColumnInfo> columnInfoMap =
         entityMappingHolder.columnInfoPerTable.get(tableName);
-    final List<E> entityList = new ArrayList<>();
-
-    final ObjectMapper mapper = new ObjectMapper();
-    while (rs.next()) {
-      final AbstractEntity entityObj;
-      final ResultSetMetaData resultSetMetaData = rs.getMetaData();
-      final int numColumns = resultSetMetaData.getColumnCount();
-      final ObjectNode objectNode = mapper.createObjectNode();
-      for (int i = 1; i <= numColumns; i++) {
-        final String dbColumnName = resultSetMetaData.getColumnLabel(i).toLowerCase();
-        final ColumnInfo columnInfo = columnInfoMap.get(dbColumnName);
+    try {
+      final Constructor<E> constructor = entityClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      final Map<String, ColumnBinding> bindings = new HashMap<>();
+      for (final ColumnInfo columnInfo : columnInfoMap.values()) {
         final Field field = columnInfo.getField();
-        final Object val;
-        if (columnInfo.getSqlType() == Types.CLOB) {
-          final Clob clob = rs.getClob(i);
-          val = clob.getSubString(1, (int) clob.length());
-        } else {
-          val = rs.getObject(i);
+        if (field != null) {
+          field.setAccessible(true);
+          bindings.put(columnInfo.getColumnNameInDB(), new ColumnBinding(
+              LOOKUP.unreflectSetter(field).asType(SETTER_TYPE),
+              readerFor(field.getType(), columnInfo.getSqlType())));
         }
-        if (val == null) {
-          continue;
-        }
-        if (field.getType().isAssignableFrom(Timestamp.class)) {
-          objectNode.put(field.getName(), ((Timestamp) val).getTime());
-        } else {
-          objectNode.put(field.getName(), val.toString());
+      }
+      return new RowMapper<>(LOOKUP.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE),
+          bindings);
+    } catch (final NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalStateException(
+          "Unable to build a row mapper for entity " + entityClass.getSimpleName(), e);
+    }
+  }
+
+  /**
+   * Returns a reader that gets the column with the getter matching the field type. A null value
+   * is returned for SQL NULL.
+   */
+  private static ColumnReader readerFor(final Class<?> type, final int sqlType) {
+    if (sqlType == Types.CLOB) {
+      return (rs, i) -> {
+        final Clob clob = rs.getClob(i);
+        final String s = clob == null ? null : clob.getSubString(1, (int) clob.length());
+        return type == String.class ? s : convert(s, type);
+      };
+    }
+    if (type == String.class) {
+      return ResultSet::getString;
+    }
+    if (type == long.class || type == Long.class) {
+      return (rs, i) -> {
+        final long v = rs.getLong(i);
+        return rs.wasNull() ? null : v;
+      };
+    }
+    if (type == int.class || type == Integer.class) {
+      return (rs, i) -> {
+        final int v = rs.getInt(i);
+        return rs.wasNull() ? null : v;
+      };
+    }
+    if (type == boolean.class || type == Boolean.class) {
+      return (rs, i) -> {
+        final boolean v = rs.getBoolean(i);
+        return rs.wasNull() ? null : v;
+      };
+    }
+    if (type == double.class || type == Double.class) {
+      return (rs, i) -> {
+        final double v = rs.getDouble(i);
+        return rs.wasNull() ? null : v;
+      };
+    }
+    if (type == Timestamp.class) {
+      return (rs, i) -> {
+        final Timestamp ts = rs.getTimestamp(i);
+        if (ts != null) {
+          // entities have always been read at millisecond precision
+          ts.setNanos(ts.getNanos() / NANOS_PER_MILLI * NANOS_PER_MILLI);
         }
+        return ts;
+      };
+    }
+    // rare types: fall back to the json conversion of the string value
+    return (rs, i) -> convert(rs.getString(i), type);
+  }
+
+  private static Object convert(final String value, final Class<?> type) {
+    return value == null ? null : OBJECT_MAPPER.convertValue(value, type);
+  }
+
+  @FunctionalInterface
+  private interface ColumnReader {
+
+    Object read(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  private static class ColumnBinding {
+
+    private final MethodHandle setter;
+    private final ColumnReader reader;
+
+    private ColumnBinding(final MethodHandle setter, final ColumnReader reader) {
+      this.setter = setter;
+      this.reader = reader;
+    }
+  }
+
+  private static class RowMapper<E extends AbstractEntity> {
+
+    private final MethodHandle constructor;
+    private final Map<String, ColumnBinding> bindingsByColumn;
+
+    private RowMapper(final MethodHandle constructor,
+        final Map<String, ColumnBinding> bindingsByColumn) {
+      this.constructor = constructor;
+      this.bindingsByColumn = bindingsByColumn;
+    }
+
+    /**
+     * Returns the binding of each column of the result set, by column index - 1. Columns that
+     * are not mapped to a field are ignored.
+     */
+    private ColumnBinding[] bind(final ResultSetMetaData metaData) throws SQLException {
+      final ColumnBinding[] bindings = new ColumnBinding[metaData.getColumnCount()];
+      for (int i = 0; i < bindings.length; i++) {
+        bindings[i] = bindingsByColumn.get(metaData.getColumnLabel(i + 1).toLowerCase());
       }
-      entityObj = mapper.treeToValue(objectNode, entityClass);
-      entityList.add((E) entityObj);
+      return bindings;
     }
 
-    return entityList;
+    @SuppressWarnings("unchecked")
+    private E map(final ResultSet rs, final ColumnBinding[] bindings) throws Exception {
+      try {
+        final Object entity = (Object) constructor.invokeExact();
+        for (int i = 0; i < bindings.length; i++) {
+          final ColumnBinding binding = bindings[i];
+          if (binding == null) {
+            continue;
+          }
+          final Object value = binding.reader.read(rs, i + 1);
+          if (value != null) {
+            binding.setter.invokeExact(entity, value);
+          }
+        }
+        return (E) entity;
+      } catch (final Exception | Error e) {
+        throw e;
+      } catch (final Throwable t) {
+        throw new IllegalStateException(t);
+      }
+    }
   }
 }
@@ -13,6 +13,7 @@
  */
 package ai.startree.thirdeye.datalayer.util;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Objects.requireNonNull;
 
@@ -26,9 +27,11 @@ import java.lang.reflect.Array;
 import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -95,15 +98,46 @@ public class SqlQueryBuilder {
 
   public PreparedStatement createInsertStatement(final Connection conn, final String tableName,
       final AbstractEntity entity) throws Exception {
+    final PreparedStatement preparedStatement =
+        conn.prepareStatement(getInsertSql(tableName), Statement.RETURN_GENERATED_KEYS);
+    bindInsertParameters(conn, preparedStatement, tableName, entity);
+    return preparedStatement;
+  }
+
+  /**
+   * Creates a batched INSERT statement for entities of the same class. Generated keys are
+   * returned in the order of the entities.
+   */
+  public PreparedStatement createBatchInsertStatement(final Connection conn,
+      final List<? extends AbstractEntity> entities) throws Exception {
+    checkArgument(!entities.isEmpty(), "Entities to insert cannot be empty");
+    final Class<? extends AbstractEntity> entityClass = entities.get(0).getClass();
+    final String tableName = requireNonNull(
+        entityMappingHolder.tableToEntityNameMap.inverse().get(entityClass.getSimpleName()));
+    final PreparedStatement preparedStatement =
+        conn.prepareStatement(getInsertSql(tableName), Statement.RETURN_GENERATED_KEYS);
+    for (final AbstractEntity entity : entities) {
+      checkArgument(entity.getClass() == entityClass,
+          "Batch insert requires entities of a single class. Found %s and %s",
+          entityClass.getSimpleName(), entity.getClass().getSimpleName());
+      bindInsertParameters(conn, preparedStatement, tableName, entity);
+      preparedStatement.addBatch();
+    }
+    return preparedStatement;
+  }
+
+  private String getInsertSql(final String tableName) {
     if (!insertSqlMap.containsKey(tableName)) {
       final String insertSql = generateInsertSql(tableName,
           entityMappingHolder.columnInfoPerTable.get(tableName.toLowerCase()));
       insertSqlMap.put(tableName, insertSql);
     }
+    return insertSqlMap.get(tableName);
+  }
 
-    final String sql = insertSqlMap.get(tableName);
-    final PreparedStatement preparedStatement =
-        conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+  private void bindInsertParameters(final Connection conn,
+      final PreparedStatement preparedStatement, final String tableName,
+      final AbstractEntity entity) throws Exception {
     final LinkedHashMap<String, ColumnInfo> columnInfoMap =
         entityMappingHolder.columnInfoPerTable.get(tableName);
     int parameterIndex = 1;
@@ -126,19 +160,66 @@ public class SqlQueryBuilder {
         }
       }
     }
-    return preparedStatement;
   }
 
   public PreparedStatement createUpdateStatement(final Connection connection, final AbstractEntity entity,
       final Set<String> fieldsToUpdate, final Predicate predicate) throws Exception {
     final String tableName =
         entityMappingHolder.tableToEntityNameMap.inverse().get(entity.getClass().getSimpleName());
+    final List<Pair<String, Object>> parametersList = new ArrayList<>();
+    final String sql = generateUpdateSql(tableName, entity, fieldsToUpdate, predicate,
+        parametersList);
+    final PreparedStatement prepareStatement = connection.prepareStatement(sql);
+    bindParameters(prepareStatement, tableName, parametersList);
+    return prepareStatement;
+  }
+
+  /**
+   * Creates batched UPDATE statements: entities that result in the same SQL are grouped in the
+   * same statement.
+   *
+   * @param predicates the predicate of each entity, in the order of the entities
+   */
+  public Collection<PreparedStatement> createBatchUpdateStatements(final Connection connection,
+      final List<? extends AbstractEntity> entities, final List<Predicate> predicates)
+      throws Exception {
+    checkArgument(entities.size() == predicates.size(),
+        "Expected one predicate per entity. Found %s entities and %s predicates",
+        entities.size(), predicates.size());
+    final Map<String, PreparedStatement> statementsBySql = new LinkedHashMap<>();
+    try {
+      for (int i = 0; i < entities.size(); i++) {
+        final AbstractEntity entity = entities.get(i);
+        final String tableName = entityMappingHolder.tableToEntityNameMap.inverse()
+            .get(entity.getClass().getSimpleName());
+        final List<Pair<String, Object>> parametersList = new ArrayList<>();
+        final String sql = generateUpdateSql(tableName, entity, null, predicates.get(i),
+            parametersList);
+        PreparedStatement prepareStatement = statementsBySql.get(sql);
+        if (prepareStatement == null) {
+          prepareStatement = connection.prepareStatement(sql);
+          statementsBySql.put(sql, prepareStatement);
+        }
+        bindParameters(prepareStatement, tableName, parametersList);
+        prepareStatement.addBatch();
+      }
+    } catch (final Exception e) {
+      for (final PreparedStatement prepareStatement : statementsBySql.values()) {
+        prepareStatement.close();
+      }
+      throw e;
+    }
+    return statementsBySql.values();
+  }
+
+  private String generateUpdateSql(final String tableName, final AbstractEntity entity,
+      final Set<String> fieldsToUpdate, final Predicate predicate,
+      final List<Pair<String, Object>> parametersList) throws IllegalAccessException {
     final LinkedHashMap<String, ColumnInfo> columnInfoMap =
         entityMappingHolder.columnInfoPerTable.get(tableName);
 
     final StringBuilder sqlBuilder = new StringBuilder("UPDATE " + tableName + " SET ");
     String delim = "";
-    final List<Pair<String, Object>> parametersList = new ArrayList<>();
     for (final ColumnInfo columnInfo : columnInfoMap.values()) {
       final String columnNameInDB = columnInfo.getColumnNameInDB();
       if (!AUTO_UPDATE_COLUMN_SET.contains(columnNameInDB)
@@ -162,13 +243,71 @@ public class SqlQueryBuilder {
     final StringBuilder whereClause = new StringBuilder(" WHERE ");
     generateWhereClause(entityNameToDBNameMapping, predicate, parametersList, whereClause);
     sqlBuilder.append(whereClause);
+    return sqlBuilder.toString();
+  }
+
+  private void bindParameters(final PreparedStatement prepareStatement, final String tableName,
+      final List<Pair<String, Object>> parametersList) throws SQLException {
+    final LinkedHashMap<String, ColumnInfo> columnInfoMap =
+        entityMappingHolder.columnInfoPerTable.get(tableName);
     int parameterIndex = 1;
-    final PreparedStatement prepareStatement = connection.prepareStatement(sqlBuilder.toString());
     for (final Pair<String, Object> paramEntry : parametersList) {
       final String dbFieldName = paramEntry.getKey();
       final ColumnInfo info = columnInfoMap.get(dbFieldName);
       prepareStatement.setObject(parameterIndex++, paramEntry.getValue(), info.getSqlType());
     }
+  }
+
+  /**
+   * Creates an UPDATE statement that only sets the given columns. Other columns, including the
+   * json value, are neither read nor written.
+   *
+   * @param columnValues values to set, keyed by entity field name
+   */
+  public PreparedStatement createPartialUpdateStatement(final Connection connection,
+      final Class<? extends AbstractEntity> entityClass, final Map<String, Object> columnValues,
+      final Predicate predicate) throws Exception {
+    if (columnValues.isEmpty()) {
+      throw new IllegalArgumentException("Columns to update cannot be empty");
+    }
+    if (predicate == null || predicate.getOper() == null) {
+      throw new IllegalArgumentException("Predicate to update cannot be null/empty");
+    }
+    final String tableName =
+        entityMappingHolder.tableToEntityNameMap.inverse().get(entityClass.getSimpleName());
+    final LinkedHashMap<String, ColumnInfo> columnInfoMap =
+        entityMappingHolder.columnInfoPerTable.get(tableName);
+    final BiMap<String, String> entityNameToDBNameMapping =
+        entityMappingHolder.columnMappingPerTable.get(tableName).inverse();
+
+    final StringBuilder sqlBuilder = new StringBuilder("UPDATE " + tableName + " SET ");
+    String delim = "";
+    final List<Pair<String, Object>> parametersList = new ArrayList<>();
+    for (final Entry<String, Object> entry : columnValues.entrySet()) {
+      final String columnNameInDB = entityNameToDBNameMapping.get(entry.getKey());
+      checkNotNull(columnNameInDB, String.format("Found field '%s' but expected %s",
+          entry.getKey(), entityNameToDBNameMapping.keySet()));
+      Object val = entry.getValue();
+      if (val != null && Enum.class.isAssignableFrom(val.getClass())) {
+        val = val.toString();
+      }
+      sqlBuilder.append(delim).append(columnNameInDB).append("=?");
+      delim = ",";
+      parametersList.add(new ImmutablePair<>(columnNameInDB, val));
+    }
+    final StringBuilder whereClause = new StringBuilder(" WHERE ");
+    generateWhereClause(entityNameToDBNameMapping, predicate, parametersList, whereClause);
+    sqlBuilder.append(whereClause);
+    final PreparedStatement prepareStatement = connection.prepareStatement(sqlBuilder.toString());
+    int parameterIndex = 1;
+    for (final Pair<String, Object> paramEntry : parametersList) {
+      final ColumnInfo info = columnInfoMap.get(paramEntry.getKey());
+      if (paramEntry.getValue() == null) {
+        prepareStatement.setNull(parameterIndex++, info.getSqlType());
+      } else {
+        prepareStatement.setObject(parameterIndex++, paramEntry.getValue(), info.getSqlType());
+      }
+    }
     return prepareStatement;
   }
 
@@ -202,17 +341,34 @@ public class SqlQueryBuilder {
   public PreparedStatement createFindByParamsStatementWithLimit(final Connection connection,
       final Class<? extends AbstractEntity> entityClass, final Predicate predicate, final Long limit, final Long offset)
       throws Exception {
+    return createFindByParamsStatementWithLimit(connection, entityClass, predicate, limit, offset,
+        null, false);
+  }
+
+  /**
+   * @param orderByKey entity field to order by. Rows are not ordered if null.
+   */
+  public PreparedStatement createFindByParamsStatementWithLimit(final Connection connection,
+      final Class<? extends AbstractEntity> entityClass, final Predicate predicate,
+      final Long limit, final Long offset, final String orderByKey, final boolean desc)
+      throws Exception {
     final String tableName = entityMappingHolder.tableToEntityNameMap.inverse()
         .get(entityClass.getSimpleName());
     final StringBuilder sqlBuilder = new StringBuilder("SELECT * FROM " + tableName);
     final List<Pair<String, Object>> parametersList = new ArrayList<>();
+    final BiMap<String, String> entityNameToDBNameMapping =
+        entityMappingHolder.columnMappingPerTable.get(tableName).inverse();
     if(predicate != null) {
-      final BiMap<String, String> entityNameToDBNameMapping =
-          entityMappingHolder.columnMappingPerTable.get(tableName).inverse();
       final StringBuilder whereClause = new StringBuilder(" WHERE ");
       generateWhereClause(entityNameToDBNameMapping, predicate, parametersList, whereClause);
       sqlBuilder.append(whereClause);
     }
+    if (orderByKey != null) {
+      final String orderByColumn = entityNameToDBNameMapping.get(orderByKey);
+      checkArgument(orderByColumn != null, "Unknown order by key %s in table %s", orderByKey,
+          tableName);
+      sqlBuilder.append(" ORDER BY ").append(orderByColumn).append(desc ? " DESC" : " ASC");
+    }
     if (limit != null) {
       sqlBuilder.append(" LIMIT ").append(limit);
     }
@@ -270,6 +426,64 @@ public class SqlQueryBuilder {
     return preparedStatement;
   }
 
+  /**
+   * Counts the rows of entityClass matching the predicate, grouped by a column of a joined table.
+   * The joinKey column of entityClass references the base_id of joinedEntityClass. Rows without a
+   * joined row are not counted.
+   *
+   * The result set has 2 columns: the value of the groupByKey column and the count.
+   */
+  public PreparedStatement createJoinGroupByCountStatement(final Connection connection,
+      final Class<? extends AbstractEntity> entityClass, final Predicate predicate,
+      final String joinKey, final Class<? extends AbstractEntity> joinedEntityClass,
+      final String groupByKey) throws Exception {
+    final String tableName =
+        entityMappingHolder.tableToEntityNameMap.inverse().get(entityClass.getSimpleName());
+    final String joinedTableName =
+        entityMappingHolder.tableToEntityNameMap.inverse().get(joinedEntityClass.getSimpleName());
+    final BiMap<String, String> entityNameToDBNameMapping =
+        entityMappingHolder.columnMappingPerTable.get(tableName).inverse();
+    final BiMap<String, String> joinedEntityNameToDBNameMapping =
+        entityMappingHolder.columnMappingPerTable.get(joinedTableName).inverse();
+    final String joinColumn = requireNonNull(entityNameToDBNameMapping.get(joinKey),
+        () -> String.format("Unknown join key %s in table %s", joinKey, tableName));
+    final String groupByColumn = requireNonNull(joinedEntityNameToDBNameMapping.get(groupByKey),
+        () -> String.format("Unknown group by key %s in table %s", groupByKey, joinedTableName));
+
+    // the filter is applied in a derived table: columns common to both tables stay unambiguous
+    final StringBuilder sqlBuilder = new StringBuilder("SELECT j.")
+        .append(groupByColumn)
+        .append(", count(*) FROM (SELECT ")
+        .append(joinColumn)
+        .append(" FROM ")
+        .append(tableName);
+    final List<Pair<String, Object>> parametersList = new ArrayList<>();
+    if (predicate != null) {
+      final StringBuilder whereClause = new StringBuilder(" WHERE ");
+      generateWhereClause(entityNameToDBNameMapping, predicate, parametersList, whereClause);
+      sqlBuilder.append(whereClause);
+    }
+    sqlBuilder.append(") t JOIN ")
+        .append(joinedTableName)
+        .append(" j ON t.")
+        .append(joinColumn)
+        .append(" = j.base_id GROUP BY j.")
+        .append(groupByColumn);
+
+    final PreparedStatement preparedStatement = connection.prepareStatement(sqlBuilder.toString());
+    int parameterIndex = 1;
+    final Map<String, ColumnInfo> columnInfoMap =
+        entityMappingHolder.columnInfoPerTable.get(tableName);
+    for (final Pair<String, Object> pair : parametersList) {
+      final String dbFieldName = pair.getKey();
+      final ColumnInfo info = columnInfoMap.get(dbFieldName);
+      checkNotNull(info,
+          String.format("Found field '%s' but expected %s", dbFieldName, columnInfoMap.keySet()));
+      preparedStatement.setObject(parameterIndex++, pair.getValue(), info.getSqlType());
+    }
+    return preparedStatement;
+  }
+
   private void generateWhereClause(final BiMap<String, String> entityNameToDBNameMapping,
       final Predicate predicate, final List<Pair<String, Object>> parametersList, final StringBuilder whereClause) {
     String columnName = null;
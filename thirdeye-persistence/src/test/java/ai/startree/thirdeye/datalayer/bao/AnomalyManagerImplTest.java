@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.bao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.datalayer.dao.GenericPojoDao;
+import ai.startree.thirdeye.datalayer.dao.GenericPojoDao.BatchWriter;
+import ai.startree.thirdeye.datalayer.dao.GenericPojoDao.WriteOperation;
+import ai.startree.thirdeye.spi.datalayer.dto.AbstractDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AnomalyDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AnomalyFeedbackDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.testng.annotations.Test;
+
+public class AnomalyManagerImplTest {
+
+  private static AnomalyDTO anomaly(final long id, final Long... childIds) {
+    final AnomalyDTO anomaly = new AnomalyDTO()
+        .setStartTime(id)
+        .setEndTime(id + 1)
+        .setChildIds(Set.of(childIds));
+    anomaly.setId(id);
+    return anomaly;
+  }
+
+  private static GenericPojoDao daoWith(final AnomalyDTO... anomalies) {
+    final Map<Long, AnomalyDTO> byId = Set.of(anomalies).stream()
+        .collect(Collectors.toMap(AnomalyDTO::getId, a -> a));
+    final GenericPojoDao dao = mock(GenericPojoDao.class);
+    when(dao.get(anyList(), eq(AnomalyDTO.class))).thenAnswer(i -> {
+      final List<Long> ids = i.getArgument(0);
+      return ids.stream().map(byId::get).collect(Collectors.toList());
+    });
+    when(dao.get(anyList(), eq(AnomalyFeedbackDTO.class))).thenReturn(List.of());
+    return dao;
+  }
+
+  @Test
+  public void testDecorateLoadsOneLevelPerQuery() {
+    final AnomalyDTO grandChild = anomaly(4);
+    final AnomalyDTO child1 = anomaly(2, 4L);
+    final AnomalyDTO child2 = anomaly(3, 4L);
+    final AnomalyDTO parent1 = anomaly(1, 2L, 3L);
+    final AnomalyDTO parent2 = anomaly(5, 3L);
+    final GenericPojoDao dao = daoWith(grandChild, child1, child2);
+
+    final List<AnomalyDTO> decorated = new AnomalyManagerImpl(dao)
+        .decorate(List.of(parent1, parent2));
+
+    assertThat(decorated).containsExactly(parent1, parent2);
+    assertThat(parent1.getChildren()).containsExactlyInAnyOrder(child1, child2);
+    assertThat(parent2.getChildren()).containsExactly(child2);
+    assertThat(child1.getChildren()).containsExactly(grandChild);
+    assertThat(child2.getChildren()).containsExactly(grandChild);
+    assertThat(grandChild.getChildren()).isEmpty();
+    // one query for the children, one for the grandchildren
+    verify(dao, times(2)).get(anyList(), eq(AnomalyDTO.class));
+  }
+
+  @Test
+  public void testDecorateCutsCycles() {
+    final AnomalyDTO child = anomaly(2, 1L);
+    final AnomalyDTO parent = anomaly(1, 2L);
+    final GenericPojoDao dao = daoWith(parent, child);
+
+    new AnomalyManagerImpl(dao).decorate(List.of(parent));
+
+    assertThat(parent.getChildren()).containsExactly(child);
+    assertThat(child.getChildren()).isEmpty();
+  }
+
+  @Test
+  public void testSaveAllPersistsAllLevelsInOneTransaction() {
+    final AnomalyDTO grandChild = new AnomalyDTO().setStartTime(3).setEndTime(4);
+    final AnomalyDTO child = new AnomalyDTO().setStartTime(2).setEndTime(5);
+    child.setChildren(Set.of(grandChild));
+    final AnomalyDTO parent = new AnomalyDTO().setStartTime(1).setEndTime(6);
+    parent.setChildren(Set.of(child));
+    final List<List<Long>> createdLevels = new ArrayList<>();
+    final BatchWriter writer = new BatchWriter() {
+      private long nextId = 1;
+
+      @Override
+      public <E extends AbstractDTO> List<Long> createAll(final List<E> pojos) {
+        final List<Long> ids = new ArrayList<>();
+        for (final E pojo : pojos) {
+          pojo.setId(nextId++);
+          ids.add(pojo.getId());
+        }
+        createdLevels.add(ids);
+        return ids;
+      }
+
+      @Override
+      public <E extends AbstractDTO> int updateAll(final List<E> pojos) {
+        return pojos.size();
+      }
+    };
+    final GenericPojoDao dao = mock(GenericPojoDao.class);
+    when(dao.executeWrites(any(), any())).thenAnswer(
+        i -> ((WriteOperation<?>) i.getArgument(0)).handle(writer));
+
+    final List<Long> ids = new AnomalyManagerImpl(dao).saveAll(List.of(parent));
+
+    verify(dao, times(1)).executeWrites(any(), any());
+    // leaves first
+    assertThat(createdLevels).containsExactly(List.of(1L), List.of(2L), List.of(3L));
+    assertThat(ids).containsExactly(3L);
+    assertThat(parent.getChildIds()).containsExactly(2L);
+    assertThat(child.getChildIds()).containsExactly(1L);
+    assertThat(child.isChild()).isTrue();
+  }
+
+  @Test
+  public void testSaveAllDoesNotReturnIdsWhenTheTransactionFails() {
+    final AnomalyDTO child = new AnomalyDTO().setStartTime(2).setEndTime(3);
+    final AnomalyDTO parent = new AnomalyDTO().setStartTime(1).setEndTime(4);
+    parent.setChildren(Set.of(child));
+    final GenericPojoDao dao = mock(GenericPojoDao.class);
+    when(dao.executeWrites(any(), any())).thenAnswer(i -> i.getArgument(1));
+
+    final List<Long> ids = new AnomalyManagerImpl(dao).saveAll(List.of(parent));
+
+    assertThat(ids).containsExactly((Long) null);
+    assertThat(child.getId()).isNull();
+  }
+}
@@ -276,4 +276,25 @@ public class EnumerationItemManagerImplTest {
     assertThat(ei1Updated.getId()).isEqualTo(ei1.getId());
     assertThat(ei1Updated.getParams()).isEqualTo(source.getParams());
   }
+
+  @Test
+  public void testBulkFindExistingOrCreateWithSharedIdKeys() {
+    final String key = "key";
+    final EnumerationItemDTO source1 = ei("ei1", Map.of(key, 1, "b", 1))
+        .setAlert(toAlertDTO(ALERT_ID));
+    final EnumerationItemDTO source2 = ei("ei2", Map.of(key, 1, "b", 2))
+        .setAlert(toAlertDTO(ALERT_ID));
+
+    final List<EnumerationItemDTO> resolved = enumerationItemManager.findExistingOrCreate(
+        List.of(source1, source2), List.of(key));
+    assertThat(resolved.size()).isEqualTo(2);
+    assertThat(resolved.get(1).getId()).isEqualTo(resolved.get(0).getId());
+    assertThat(enumerationItemManager.findAll().size()).isEqualTo(1);
+
+    // the next run must not find duplicates
+    final List<EnumerationItemDTO> resolvedAgain = enumerationItemManager.findExistingOrCreate(
+        List.of(source1, source2), List.of(key));
+    assertThat(resolvedAgain.get(0).getId()).isEqualTo(resolved.get(0).getId());
+    assertThat(enumerationItemManager.findAll().size()).isEqualTo(1);
+  }
 }
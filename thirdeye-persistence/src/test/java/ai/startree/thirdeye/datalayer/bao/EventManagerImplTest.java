@@ -0,0 +1,77 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.bao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.datalayer.dao.GenericPojoDao;
+import ai.startree.thirdeye.spi.datalayer.dto.AuthorizationConfigurationDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import org.testng.annotations.Test;
+
+public class EventManagerImplTest {
+
+  private static EventDTO event(final long id, final long startTime, final long endTime) {
+    final EventDTO event = new EventDTO()
+        .setName("event" + id)
+        .setEventType("HOLIDAY")
+        .setStartTime(startTime)
+        .setEndTime(endTime)
+        .setTargetDimensionMap(Map.of("country", List.of("us", "fr")));
+    event.setId(id)
+        .setVersion(2)
+        .setCreateTime(new Timestamp(1000))
+        .setCreatedBy("creator")
+        .setAuth(new AuthorizationConfigurationDTO().setNamespace("namespace"));
+    return event;
+  }
+
+  @Test
+  public void testTimeRangeQueriesReturnCopies() {
+    final EventDTO event = event(1, 10, 20);
+    final GenericPojoDao dao = mock(GenericPojoDao.class);
+    when(dao.getAll(EventDTO.class)).thenReturn(List.of(event));
+    final EventManagerImpl eventManager = new EventManagerImpl(dao);
+
+    final List<EventDTO> events = eventManager.findEventsBetweenTimeRange(15, 30);
+    assertThat(events).hasSize(1);
+    final EventDTO copy = events.get(0);
+    assertThat(copy).isNotSameAs(event);
+    assertThat(copy).usingRecursiveComparison().isEqualTo(event);
+
+    copy.getTargetDimensionMap().get("country").add("de");
+    assertThat(eventManager.findEventsBetweenTimeRange(15, 30).get(0).getTargetDimensionMap())
+        .isEqualTo(Map.of("country", List.of("us", "fr")));
+  }
+
+  @Test
+  public void testDeleteRecordsOlderThanDaysInvalidatesTheTimelines() {
+    final GenericPojoDao dao = mock(GenericPojoDao.class);
+    when(dao.getAll(EventDTO.class)).thenReturn(List.of(event(1, 10, 20)), List.of());
+    final EventManagerImpl eventManager = new EventManagerImpl(dao);
+
+    assertThat(eventManager.findEventsBetweenTimeRange(15, 30)).hasSize(1);
+    eventManager.deleteRecordsOlderThanDays(1);
+    assertThat(eventManager.findEventsBetweenTimeRange(15, 30)).isEmpty();
+    verify(dao, times(2)).getAll(eq(EventDTO.class));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.bao;
+
+import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the event timeline with a linear scan of all events. Run the main method manually.
+ */
+public class EventTimelineBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventTimelineBenchmark.class);
+
+  private static final int N_EVENTS = 100_000;
+  private static final int N_QUERIES = 1_000;
+  private static final long DAY_MILLIS = 86_400_000L;
+  private static final long TEN_YEARS_MILLIS = 3650 * DAY_MILLIS;
+  private static final String[] COUNTRIES = new String[]{"US", "FR", "DE", "IN", "JP", "BR"};
+  private static final Map<String, List<String>> DIMENSION_FILTERS = Map.of("country",
+      List.of("us"));
+
+  private final Random random = new Random(42);
+  private final List<EventDTO> events = generateEvents();
+
+  private void benchmarkTimeline() {
+    final long tStart = System.nanoTime();
+    final EventTimeline timeline = new EventTimeline(events);
+    final long tBuilt = System.nanoTime();
+    long checksum = 0;
+    final Random queries = new Random(7);
+    for (int q = 0; q < N_QUERIES; q++) {
+      final long start = (long) (queries.nextDouble() * TEN_YEARS_MILLIS);
+      checksum += timeline.findOverlapping(start, start + 30 * DAY_MILLIS, DIMENSION_FILTERS)
+          .size();
+    }
+    LOG.info("benchmarkTimeline: built in {}ms, {} queries in {}ms (checksum {})",
+        (tBuilt - tStart) / 1_000_000, N_QUERIES, (System.nanoTime() - tBuilt) / 1_000_000,
+        checksum);
+  }
+
+  private void benchmarkLinearScan() {
+    final long tStart = System.nanoTime();
+    long checksum = 0;
+    final Random queries = new Random(7);
+    for (int q = 0; q < N_QUERIES; q++) {
+      final long start = (long) (queries.nextDouble() * TEN_YEARS_MILLIS);
+      final long end = start + 30 * DAY_MILLIS;
+      for (final EventDTO e : events) {
+        if (e.getEndTime() > start && e.getStartTime() < end && matches(e)) {
+          checksum++;
+        }
+      }
+    }
+    LOG.info("benchmarkLinearScan: {} queries in {}ms (checksum {})", N_QUERIES,
+        (System.nanoTime() - tStart) / 1_000_000, checksum);
+  }
+
+  private static boolean matches(final EventDTO event) {
+    for (final String value : event.getTargetDimensionMap().get("countryCode")) {
+      if (value.toLowerCase().equals("us")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<EventDTO> generateEvents() {
+    final List<EventDTO> events = new ArrayList<>(N_EVENTS);
+    for (int i = 0; i < N_EVENTS; i++) {
+      final long start = (long) (random.nextDouble() * TEN_YEARS_MILLIS);
+      events.add((EventDTO) new EventDTO().setName("event" + i)
+          .setEventType("HOLIDAY")
+          .setStartTime(start)
+          .setEndTime(start + (1 + random.nextInt(3)) * DAY_MILLIS)
+          .setTargetDimensionMap(Map.of("countryCode",
+              List.of(COUNTRIES[random.nextInt(COUNTRIES.length)])))
+          .setId((long) i));
+    }
+    return events;
+  }
+
+  public static void main(final String[] args) {
+    final EventTimelineBenchmark benchmark = new EventTimelineBenchmark();
+    // warm up
+    benchmark.benchmarkTimeline();
+    benchmark.benchmarkLinearScan();
+
+    benchmark.benchmarkTimeline();
+    benchmark.benchmarkLinearScan();
+  }
+}
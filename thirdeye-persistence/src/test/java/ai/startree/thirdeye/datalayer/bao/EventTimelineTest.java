@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.bao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.testng.annotations.Test;
+
+public class EventTimelineTest {
+
+  private static EventDTO event(final long id, final long startTime, final long endTime,
+      final Map<String, List<String>> dimensions) {
+    return (EventDTO) new EventDTO().setName("event" + id)
+        .setStartTime(startTime)
+        .setEndTime(endTime)
+        .setTargetDimensionMap(dimensions)
+        .setId(id);
+  }
+
+  private static List<Long> ids(final List<EventDTO> events) {
+    return events.stream().map(EventDTO::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testFindOverlapping() {
+    final EventTimeline timeline = new EventTimeline(List.of(
+        event(1, 0, 100, null),
+        event(2, 10, 20, null),
+        event(3, 30, 40, null),
+        event(4, 40, 50, null),
+        event(5, 60, 60, null)));
+
+    assertThat(ids(timeline.findOverlapping(15, 35))).containsExactly(1L, 2L, 3L);
+    // bounds are exclusive
+    assertThat(ids(timeline.findOverlapping(40, 60))).containsExactly(1L, 4L);
+    assertThat(ids(timeline.findOverlapping(100, 200))).isEmpty();
+    assertThat(ids(timeline.findOverlapping(-10, 0))).isEmpty();
+  }
+
+  @Test
+  public void testFindOverlappingWithLongEventStartingFirst() {
+    // the running maximum of the end times must not stop the scan too early
+    final EventTimeline timeline = new EventTimeline(List.of(
+        event(1, 0, 1000, null),
+        event(2, 10, 20, null),
+        event(3, 30, 40, null),
+        event(4, 900, 950, null)));
+
+    assertThat(ids(timeline.findOverlapping(500, 600))).containsExactly(1L);
+    assertThat(ids(timeline.findOverlapping(940, 2000))).containsExactly(1L, 4L);
+  }
+
+  @Test
+  public void testFindOverlappingWithDimensionFilters() {
+    final EventTimeline timeline = new EventTimeline(List.of(
+        event(1, 0, 10, Map.of("country_code", List.of("US", "FR"))),
+        event(2, 0, 10, Map.of("Country", List.of("fr"))),
+        event(3, 0, 10, Map.of("browser", List.of("chrome"))),
+        event(4, 0, 10, Map.of())));
+
+    // names match if one contains the other after normalization - values are compared lower-cased
+    assertThat(ids(timeline.findOverlapping(0, 10, Map.of("country", List.of("Fr")))))
+        .containsExactly(1L, 2L);
+    assertThat(ids(timeline.findOverlapping(0, 10, Map.of("countryCode", List.of("us")))))
+        .containsExactly(1L);
+    assertThat(ids(timeline.findOverlapping(0, 10,
+        Map.of("country", List.of("us"), "browser", List.of("chrome")))))
+        .containsExactly(1L, 3L);
+    assertThat(ids(timeline.findOverlapping(0, 10, Map.of("os", List.of("linux"))))).isEmpty();
+    // empty filters match all events
+    assertThat(ids(timeline.findOverlapping(0, 10, Map.of()))).containsExactly(1L, 2L, 3L, 4L);
+  }
+
+  @Test
+  public void testFindOverlappingMatchesLinearScan() {
+    final Random random = new Random(42);
+    final List<EventDTO> events = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      final long start = random.nextInt(10_000);
+      events.add(event(i, start, start + random.nextInt(random.nextBoolean() ? 50 : 2_000),
+          null));
+    }
+    final EventTimeline timeline = new EventTimeline(events);
+
+    for (int q = 0; q < 100; q++) {
+      final long start = random.nextInt(12_000) - 1_000;
+      final long end = start + random.nextInt(500);
+      final List<Long> expected = events.stream()
+          .filter(e -> e.getEndTime() > start && e.getStartTime() < end)
+          .map(EventDTO::getId)
+          .sorted()
+          .collect(Collectors.toList());
+      final List<Long> actual = ids(timeline.findOverlapping(start, end));
+      actual.sort(Long::compare);
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+}
@@ -14,7 +14,7 @@
 package ai.startree.thirdeye.datalayer.bao;
 
 import static java.util.stream.Collectors.toSet;
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 
 import ai.startree.thirdeye.datalayer.MySqlTestDatabase;
 import ai.startree.thirdeye.spi.datalayer.AnomalyFilter;
@@ -41,6 +41,7 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
@@ -247,6 +248,31 @@ public class TestAnomalyManager {
     assertThat(findAnomalyById(filterAnomalies, id2).getFeedback()).isNull();
   }
 
+  @Test
+  public void testCountParentAnomaliesByFeedbackType() {
+    final long alertId = 987654L;
+    final List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      ids.add(mergedAnomalyResultDAO.save(anomaly(10000, 11000).setDetectionConfigId(alertId)));
+    }
+    final Long childId = mergedAnomalyResultDAO.save(anomaly(10000, 11000)
+        .setDetectionConfigId(alertId)
+        .setChild(true));
+    provideFeedbackToAnomaly(ids.get(0), AnomalyFeedbackType.ANOMALY, "");
+    provideFeedbackToAnomaly(ids.get(1), AnomalyFeedbackType.ANOMALY, "");
+    provideFeedbackToAnomaly(ids.get(2), AnomalyFeedbackType.NOT_ANOMALY, "");
+    provideFeedbackToAnomaly(childId, AnomalyFeedbackType.ANOMALY, "");
+
+    final Map<AnomalyFeedbackType, Long> counts = mergedAnomalyResultDAO
+        .countParentAnomaliesByFeedbackType(new DaoFilter()
+            .setPredicate(Predicate.EQ("detectionConfigId", alertId)));
+
+    assertThat(counts.get(AnomalyFeedbackType.ANOMALY)).isEqualTo(2L);
+    assertThat(counts.get(AnomalyFeedbackType.NOT_ANOMALY)).isEqualTo(1L);
+    assertThat(counts.get(AnomalyFeedbackType.ANOMALY_EXPECTED)).isEqualTo(0L);
+    assertThat(counts.get(AnomalyFeedbackType.NO_FEEDBACK)).isEqualTo(0L);
+  }
+
   @Test
   public void testSaveChildren() {
     mergedResult = anomaly(1000, 2000);
@@ -388,6 +414,57 @@ public class TestAnomalyManager {
     Assert.assertEquals(readChildren.get(1).getChildren().iterator().next().getEndTime(), 1800);
   }
 
+  @Test
+  public void testSaveAllHierarchicalAnomalies() {
+    final AnomalyDTO parent = new AnomalyDTO();
+    parent.setStartTime(1000);
+    parent.setEndTime(2000);
+
+    final AnomalyDTO child1 = new AnomalyDTO();
+    child1.setStartTime(1000);
+    child1.setEndTime(1500);
+
+    final AnomalyDTO child2 = new AnomalyDTO();
+    child2.setStartTime(1500);
+    child2.setEndTime(2000);
+
+    final AnomalyDTO grandChild = new AnomalyDTO();
+    grandChild.setStartTime(1600);
+    grandChild.setEndTime(1800);
+
+    final AnomalyDTO other = new AnomalyDTO();
+    other.setStartTime(3000);
+    other.setEndTime(4000);
+
+    child2.setChildren(new HashSet<>(Arrays.asList(grandChild)));
+    parent.setChildren(new HashSet<>(Arrays.asList(child1, child2)));
+
+    final List<Long> ids = mergedAnomalyResultDAO.saveAll(List.of(parent, other));
+    assertThat(ids).containsExactly(parent.getId(), other.getId());
+    assertThat(ids).doesNotContainNull();
+    assertThat(grandChild.getId()).isNotNull();
+
+    final AnomalyDTO read = mergedAnomalyResultDAO.findById(parent.getId());
+    Assert.assertFalse(read.isChild());
+    assertThat(read.getChildIds()).containsExactlyInAnyOrder(child1.getId(), child2.getId());
+    final AnomalyDTO readChild2 = mergedAnomalyResultDAO.findById(child2.getId());
+    Assert.assertTrue(readChild2.isChild());
+    assertThat(readChild2.getChildIds()).containsExactly(grandChild.getId());
+    Assert.assertEquals(mergedAnomalyResultDAO.findById(other.getId()).getStartTime(), 3000);
+
+    // update the existing graph and add a new child
+    final AnomalyDTO child3 = new AnomalyDTO();
+    child3.setStartTime(1800);
+    child3.setEndTime(1900);
+    child2.getChildren().add(child3);
+    other.setEndTime(5000);
+    assertThat(mergedAnomalyResultDAO.updateAll(List.of(parent, other))).isEqualTo(6);
+
+    assertThat(mergedAnomalyResultDAO.findById(child2.getId()).getChildIds())
+        .containsExactlyInAnyOrder(grandChild.getId(), child3.getId());
+    Assert.assertEquals(mergedAnomalyResultDAO.findById(other.getId()).getEndTime(), 5000);
+  }
+
   @Test
   public void testUpdateToAnomalyHierarchy() {
     final AnomalyDTO parent = new AnomalyDTO();
@@ -125,6 +125,7 @@ public class TestAnomalyTaskManager {
   public void testUpdateStatusAndTaskEndTime() {
     TaskStatus oldStatus = TaskStatus.RUNNING;
     TaskStatus newStatus = TaskStatus.COMPLETED;
+    final int versionBefore = taskDAO.findById(anomalyTaskId1).getVersion();
     CLOCK.tick(50);
     long taskEndTime = System.currentTimeMillis();
     taskDAO.updateStatusAndTaskEndTime(anomalyTaskId1, oldStatus, newStatus, taskEndTime,
@@ -133,9 +134,24 @@ public class TestAnomalyTaskManager {
     Assert.assertEquals(anomalyTask.getStatus(), newStatus);
     Assert.assertEquals(anomalyTask.getEndTime(), taskEndTime);
     Assert.assertEquals(anomalyTask.getMessage(), "testMessage");
+    // optimistic writers must see the change
+    Assert.assertEquals(anomalyTask.getVersion(), versionBefore + 1);
   }
 
   @Test(dependsOnMethods = {"testUpdateStatusAndTaskEndTime"})
+  public void testUpdateStatusAndTaskEndTimeWithUnexpectedOldStatus() {
+    TaskDTO before = taskDAO.findById(anomalyTaskId1);
+    CLOCK.tick(50);
+    taskDAO.updateStatusAndTaskEndTime(anomalyTaskId1, TaskStatus.RUNNING, TaskStatus.FAILED,
+        System.currentTimeMillis(), "ignored");
+    TaskDTO anomalyTask = taskDAO.findById(anomalyTaskId1);
+    Assert.assertEquals(anomalyTask.getStatus(), before.getStatus());
+    Assert.assertEquals(anomalyTask.getEndTime(), before.getEndTime());
+    Assert.assertEquals(anomalyTask.getMessage(), before.getMessage());
+    Assert.assertEquals(anomalyTask.getVersion(), before.getVersion());
+  }
+
+  @Test(dependsOnMethods = {"testUpdateStatusAndTaskEndTimeWithUnexpectedOldStatus"})
   public void testFindByJobIdStatusNotIn() throws InterruptedException {
     TaskStatus status = TaskStatus.COMPLETED;
     List<TaskDTO> anomalyTaskSpecs = taskDAO.findByJobIdStatusNotIn(anomalyJobId, status);
@@ -151,7 +167,17 @@ public class TestAnomalyTaskManager {
     Assert.assertEquals(anomalyTask.getStartTime(), taskStartTime);
   }
 
-  @Test(dependsOnMethods = {"testFindByJobIdStatusNotIn"})
+  @Test(dependsOnMethods = {"testCreate"})
+  public void testUpdateLastActive() {
+    CLOCK.tick(50);
+    long lastActive = System.currentTimeMillis();
+    taskDAO.updateLastActive(anomalyTaskId2);
+    TaskDTO anomalyTask = taskDAO.findById(anomalyTaskId2);
+    Assert.assertEquals(anomalyTask.getLastActive().getTime(), lastActive);
+    Assert.assertEquals(anomalyTask.getStatus(), TaskStatus.WAITING);
+  }
+
+  @Test(dependsOnMethods = {"testFindByJobIdStatusNotIn", "testUpdateLastActive"})
   public void testDeleteRecordOlderThanDaysWithStatus() {
     TaskStatus status = TaskStatus.COMPLETED;
     int numRecordsDeleted = taskDAO.deleteRecordsOlderThanDaysWithStatus(0, status);
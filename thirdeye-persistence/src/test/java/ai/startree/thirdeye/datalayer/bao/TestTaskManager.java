@@ -15,15 +15,36 @@ package ai.startree.thirdeye.datalayer.bao;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ai.startree.thirdeye.datalayer.dao.TaskDao;
+import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.dto.TaskDTO;
 import ai.startree.thirdeye.spi.task.TaskStatus;
 import ai.startree.thirdeye.spi.task.TaskType;
 import com.codahale.metrics.MetricRegistry;
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import org.mockito.Mockito;
 import org.testng.annotations.Test;
 
@@ -63,6 +84,201 @@ public class TestTaskManager {
     assertThat(getGaugeValue(List.of(), "notificationTaskLatencyInMillis")).isZero();
   }
 
+  @Test
+  public void acquireNextTasksUsesDaoClaimWhenSupported() {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    final TaskDTO claimed = buildTask("test-job-1", TaskType.DETECTION, TaskStatus.RUNNING,
+        new Timestamp(System.currentTimeMillis()));
+    when(dao.acquireNextTasks(eq(1L), eq(1), anySet())).thenReturn(List.of(claimed));
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    assertThat(taskManager.acquireNextTasks(1L, 1, 10, Set.of())).isEqualTo(List.of(claimed));
+    verify(dao, never()).executeParameterizedSQL(anyString(), any());
+  }
+
+  @Test
+  public void acquireNextTasksFallsBackToOptimisticLocking() {
+    final Timestamp createTime = new Timestamp(System.currentTimeMillis());
+    final TaskDTO lost = buildTask("test-job-1", TaskType.DETECTION, TaskStatus.WAITING,
+        createTime);
+    lost.setId(1L);
+    final TaskDTO won = buildTask("test-job-2", TaskType.DETECTION, TaskStatus.WAITING,
+        createTime);
+    won.setId(2L);
+    final TaskDTO otherType = buildTask("test-job-3", TaskType.NOTIFICATION, TaskStatus.WAITING,
+        createTime);
+    otherType.setId(3L);
+
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    when(dao.acquireNextTasks(anyLong(), anyInt(), anySet())).thenReturn(null);
+    when(dao.executeParameterizedSQL(anyString(), any()))
+        .thenReturn(List.of(lost, won, otherType));
+    when(dao.update(eq(lost), any())).thenReturn(0);
+    when(dao.update(eq(won), any())).thenReturn(1);
+
+    final MetricRegistry metricRegistry = new MetricRegistry();
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, metricRegistry);
+    final List<TaskDTO> acquired = taskManager.acquireNextTasks(7L, 2, 10,
+        Set.of(TaskType.DETECTION));
+
+    assertThat(acquired).isEqualTo(List.of(won));
+    assertThat(won.getStatus()).isEqualTo(TaskStatus.RUNNING);
+    assertThat(won.getWorkerId()).isEqualTo(7L);
+    assertThat(metricRegistry.counter("taskAcquireContentionCounter").getCount()).isEqualTo(1);
+    verify(dao, never()).update(eq(otherType), any());
+    verify(dao).executeParameterizedSQL(endsWith("limit 10"), any());
+  }
+
+  @Test
+  public void acquireNextTasksDoesNotClaimATaskWhoseStatusChangedAfterTheRead() {
+    final TaskDTO stale = buildTask("test-job-1", TaskType.DETECTION, TaskStatus.WAITING,
+        new Timestamp(System.currentTimeMillis()));
+    stale.setId(1L);
+    stale.setVersion(3);
+    // the row in the database: completed by a column-level update after the candidate read
+    final Map<String, Object> row = Map.of("id", 1L,
+        "version", 3,
+        "status", TaskStatus.COMPLETED.toString());
+
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    when(dao.acquireNextTasks(anyLong(), anyInt(), anySet())).thenReturn(null);
+    when(dao.executeParameterizedSQL(anyString(), any())).thenReturn(List.of(stale));
+    when(dao.update(eq(stale), any())).thenAnswer(i -> matches(i.getArgument(1), row) ? 1 : 0);
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    assertThat(taskManager.acquireNextTasks(7L, 1, 10, Set.of())).isEqualTo(List.of());
+  }
+
+  @Test(timeOut = 10000)
+  public void waitForNewTasksReturnsWhenGenerationChanges() throws InterruptedException {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    // read at construction, then by the poller: a task is created by another process
+    when(dao.getMaxId()).thenReturn(3L, 3L, 4L);
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    final long generation = taskManager.getTaskGeneration();
+    assertThat(taskManager.waitForNewTasks(generation, Duration.ofMinutes(1)))
+        .isEqualTo(generation + 1);
+  }
+
+  @Test(timeOut = 10000)
+  public void waitForNewTasksReturnsAtTimeout() throws InterruptedException {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    when(dao.getMaxId()).thenReturn(3L);
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    final long generation = taskManager.getTaskGeneration();
+    assertThat(taskManager.waitForNewTasks(generation, Duration.ofMillis(200)))
+        .isEqualTo(generation);
+  }
+
+  @Test(timeOut = 10000)
+  public void waitForNewTasksIsWokenUpByTaskCreation() throws Exception {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    final AtomicLong maxId = new AtomicLong(3L);
+    when(dao.getMaxId()).thenAnswer(i -> maxId.get());
+    when(dao.put(any())).thenAnswer(i -> maxId.incrementAndGet());
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    final long generation = taskManager.getTaskGeneration();
+    final CompletableFuture<Long> newGeneration = waitAsync(taskManager, generation);
+    taskManager.save(buildTask("test-job-1", TaskType.DETECTION, TaskStatus.WAITING,
+        new Timestamp(System.currentTimeMillis())));
+    assertThat(newGeneration.get()).isEqualTo(generation + 1);
+  }
+
+  @Test(timeOut = 10000)
+  public void waitForNewTasksIsWokenUpByATaskSetBackToWaiting() throws Exception {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    when(dao.getMaxId()).thenReturn(3L);
+    when(dao.update(any(TaskDTO.class))).thenReturn(1);
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    final long generation = taskManager.getTaskGeneration();
+    final CompletableFuture<Long> newGeneration = waitAsync(taskManager, generation);
+    final TaskDTO retried = buildTask("test-job-1", TaskType.DETECTION, TaskStatus.WAITING,
+        new Timestamp(System.currentTimeMillis()));
+    retried.setId(1L);
+    taskManager.update(retried);
+    assertThat(newGeneration.get()).isEqualTo(generation + 1);
+  }
+
+  @Test(timeOut = 10000)
+  public void waitForNewTasksSharesOneGenerationPoller() throws Exception {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    when(dao.getMaxId()).thenReturn(3L);
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<CompletableFuture<Long>> waiters = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        waiters.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return taskManager.waitForNewTasks(0L, Duration.ofMillis(500));
+          } catch (final InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }, executor));
+      }
+      for (final CompletableFuture<Long> waiter : waiters) {
+        assertThat(waiter.get()).isEqualTo(0L);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    // read at construction, then polls at 50, 150 and 350ms for all the waiters, whatever their
+    // number
+    verify(dao, atMost(5)).getMaxId();
+  }
+
+  @Test
+  public void getTaskGenerationDoesNotQueryTheDatabase() {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    when(dao.getMaxId()).thenReturn(5L);
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    final long generation = taskManager.getTaskGeneration();
+    assertThat(taskManager.getTaskGeneration()).isEqualTo(generation);
+    verify(dao, times(1)).getMaxId();
+  }
+
+  @Test(timeOut = 10000)
+  public void waitForNewTasksIsWokenUpAfterAFailedFirstRead() throws InterruptedException {
+    final TaskDao dao = Mockito.mock(TaskDao.class);
+    when(dao.getMaxId()).thenReturn(null, 5L);
+
+    final TaskManagerImpl taskManager = new TaskManagerImpl(dao, new MetricRegistry());
+    final long generation = taskManager.getTaskGeneration();
+    assertThat(taskManager.waitForNewTasks(generation, Duration.ofMinutes(1)))
+        .isEqualTo(generation + 1);
+  }
+
+  private static CompletableFuture<Long> waitAsync(final TaskManagerImpl taskManager,
+      final long generation) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return taskManager.waitForNewTasks(generation, Duration.ofMinutes(1));
+      } catch (final InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  /**
+   * Evaluates an AND/EQ predicate against a row, as the database would.
+   */
+  private static boolean matches(final Predicate predicate, final Map<String, Object> row) {
+    switch (predicate.getOper()) {
+      case AND:
+        return Arrays.stream(predicate.getChildPredicates()).allMatch(p -> matches(p, row));
+      case EQ:
+        return Objects.equals(row.get(predicate.getLhs()), predicate.getRhs());
+      default:
+        throw new UnsupportedOperationException(predicate.toString());
+    }
+  }
+
   private Long getGaugeValue(final List<TaskDTO> tasks, final String gaugeName) {
     final TaskDao dao = Mockito.mock(TaskDao.class);
     when(dao.filter(any())).thenReturn(tasks);
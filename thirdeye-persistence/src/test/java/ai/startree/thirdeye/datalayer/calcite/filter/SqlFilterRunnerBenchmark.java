@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.calcite.filter;
+
+import ai.startree.thirdeye.datalayer.calcite.object.adapter.EventToRelationAdapter;
+import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the compiled filters with the Calcite filters. Run the main method manually.
+ */
+public class SqlFilterRunnerBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SqlFilterRunnerBenchmark.class);
+
+  private static final int N_ROUNDS = 20;
+  private static final int N_EVENTS = 10_000;
+  private static final String FILTER = "type = 'HOLIDAY' and 'US' member of dimensionMap['country']";
+  private static final String[] COUNTRIES = new String[]{"US", "FR", "DE", "IN"};
+
+  private final SqlFilterRunner<EventDTO> runner = new SqlFilterRunner<>(
+      new EventToRelationAdapter());
+  private final List<EventDTO> events = generateEvents();
+
+  private void benchmarkCompiled() {
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      checksum += runner.applyFilter(events, FILTER).size();
+    }
+    logResults("benchmarkCompiled", tStart, checksum);
+  }
+
+  private void benchmarkCalcite() {
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      checksum += runner.applyCalciteFilter(events, FILTER).size();
+    }
+    logResults("benchmarkCalcite", tStart, checksum);
+  }
+
+  private static List<EventDTO> generateEvents() {
+    final List<EventDTO> events = new ArrayList<>(N_EVENTS);
+    for (int i = 0; i < N_EVENTS; i++) {
+      events.add((EventDTO) new EventDTO().setName("event" + i)
+          .setEventType(i % 2 == 0 ? "HOLIDAY" : "CUSTOM")
+          .setTargetDimensionMap(Map.of("country", List.of(COUNTRIES[i % COUNTRIES.length])))
+          .setId((long) i));
+    }
+    return events;
+  }
+
+  private static void logResults(final String name, final long tStart, final long checksum) {
+    final long tMillis = (System.nanoTime() - tStart) / 1_000_000;
+    LOG.info("{}: {} rounds of {} events in {}ms ({}ms per round, checksum {})", name, N_ROUNDS,
+        N_EVENTS, tMillis, tMillis / N_ROUNDS, checksum);
+  }
+
+  public static void main(final String[] args) {
+    final SqlFilterRunnerBenchmark benchmark = new SqlFilterRunnerBenchmark();
+    // warm up
+    benchmark.benchmarkCompiled();
+    benchmark.benchmarkCalcite();
+
+    benchmark.benchmarkCompiled();
+    benchmark.benchmarkCalcite();
+  }
+}
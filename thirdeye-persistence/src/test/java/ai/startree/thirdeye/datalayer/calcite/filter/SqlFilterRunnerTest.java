@@ -17,9 +17,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import ai.startree.thirdeye.datalayer.calcite.object.adapter.EventToRelationAdapter;
+import ai.startree.thirdeye.spi.ThirdEyeException;
 import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
 import java.util.List;
 import java.util.Map;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Ignore;
 import org.testng.annotations.Test;
 
@@ -158,4 +160,58 @@ public class SqlFilterRunnerTest {
     assertThat(FILTER_RUNNER.applyFilter(EVENT_LIST,
         sqlFiler)).isEqualTo(List.of(DEV_ENV_ONLY_EVENT));
   }
+
+  @DataProvider(name = "compiledFilters")
+  public static Object[][] compiledFilters() {
+    return new Object[][]{
+        {"true"},
+        {"false"},
+        {"and type='HOLIDAY'"},
+        {"TYPE = 'HOLIDAY'"},
+        {"'HOLIDAY' <> type"},
+        {"type in ('HOLIDAY', 'CUSTOM')"},
+        {"type not in ('HOLIDAY')"},
+        {"name > 'D' and name <= 'EASTER'"},
+        {"_id >= 2 and _id < 4.5"},
+        {"_id in (1, 4)"},
+        {"type is null"},
+        {"name is not null and not (type = 'CUSTOM')"},
+        {"'US' member of dimensionMap['country']"},
+        {"not ('prod' member of dimensionMap['environment'])"},
+        {"'US' member of dimensionMap['unknownKey']"},
+        {"'US' member of dimensionMap['country'] OR (type = 'CUSTOM' and 'prod' member of dimensionMap['environment'])"},
+        {"type = 'HOLIDAY' or name = 'NO_TYPE_EVENT'"},
+        {"not (type = 'HOLIDAY' or name = 'NO_TYPE_EVENT')"},
+    };
+  }
+
+  @Test(dataProvider = "compiledFilters")
+  public void testCompiledFilterMatchesCalcite(final String sqlFilter) {
+    final EventDTO noTypeEvent = (EventDTO) new EventDTO().setName("NO_TYPE_EVENT").setId(5L);
+    final List<EventDTO> events = List.of(CHRISTMAS_EVENT,
+        EASTER_EVENT,
+        FR_ONLY_EVENT,
+        DEV_ENV_ONLY_EVENT,
+        noTypeEvent);
+
+    assertThat(FILTER_RUNNER.isCompiled(sqlFilter)).isTrue();
+    assertThat(FILTER_RUNNER.applyFilter(events, sqlFilter)).isEqualTo(
+        FILTER_RUNNER.applyCalciteFilter(events, sqlFilter));
+  }
+
+  @Test
+  public void testUnsupportedFilterIsRunWithCalcite() {
+    final String sqlFiler = "(MULTISET['dev', 'abc'] MULTISET INTERSECT dimensionMap['environment']) is not empty";
+    assertThat(FILTER_RUNNER.isCompiled(sqlFiler)).isFalse();
+    assertThat(FILTER_RUNNER.isCompiled("name like 'EAST%'")).isFalse();
+    assertThat(FILTER_RUNNER.isCompiled("_id = '1'")).isFalse();
+  }
+
+  @Test
+  public void testInvalidFilterThrows() {
+    assertThatThrownBy(() -> FILTER_RUNNER.applyFilter(EVENT_LIST, "unknownColumn = 'a'"))
+        .isInstanceOf(ThirdEyeException.class);
+    assertThatThrownBy(() -> FILTER_RUNNER.applyFilter(EVENT_LIST, "type = = 'a'"))
+        .isInstanceOf(ThirdEyeException.class);
+  }
 }
@@ -21,6 +21,7 @@ import ai.startree.thirdeye.spi.datalayer.dto.TaskDTO;
 import ai.startree.thirdeye.spi.task.TaskStatus;
 import ai.startree.thirdeye.spi.task.TaskType;
 import com.google.inject.Injector;
+import java.sql.Timestamp;
 import java.util.List;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -78,6 +79,22 @@ public class TestTaskDao {
     assertThat(dao.count()).isEqualTo(tasks.size()-1);
   }
 
+  @Test
+  public void updateDoesNotOverwriteLastActive() {
+    final TaskDTO dto = buildTask().setJobName("updateDoesNotOverwriteLastActive");
+    final Long id = dao.put(dto);
+    final TaskDTO stale = dao.get(id);
+    final Timestamp heartbeat = new Timestamp(System.currentTimeMillis() / 1000 * 1000);
+    assertThat(dao.updateLastActive(id, heartbeat)).isEqualTo(1);
+
+    stale.setStatus(TaskStatus.RUNNING);
+    assertThat(dao.update(stale)).isEqualTo(1);
+    final TaskDTO updated = dao.get(id);
+    assertThat(updated.getStatus()).isEqualTo(TaskStatus.RUNNING);
+    assertThat(updated.getLastActive()).isEqualTo(heartbeat);
+    dao.delete(id);
+  }
+
   @Test
   public void deleteByPredicateTest() {
     TaskDTO dto = buildTask()
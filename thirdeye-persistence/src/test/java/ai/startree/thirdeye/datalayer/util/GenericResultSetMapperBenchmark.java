@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.util;
+
+import ai.startree.thirdeye.datalayer.entity.AbstractEntity;
+import ai.startree.thirdeye.datalayer.entity.GenericJsonEntity;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.HashBiMap;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the precompiled row mappers with the previous reflective mapping through a JSON tree,
+ * on generic_json_entity rows read from an in-memory result set. Run the main method manually.
+ */
+public class GenericResultSetMapperBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GenericResultSetMapperBenchmark.class);
+
+  private static final int N_ROUNDS = 20;
+  private static final int N_ROWS = 10_000;
+  private static final String TABLE_NAME = "generic_json_entity";
+  private static final String[] COLUMNS = new String[]{
+      "id", "json_val", "type", "create_time", "update_time", "version"};
+  private static final String[] FIELDS = new String[]{
+      "id", "jsonVal", "type", "createTime", "updateTime", "version"};
+  private static final int[] SQL_TYPES = new int[]{
+      Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.INTEGER};
+
+  private final EntityMappingHolder entityMappingHolder = entityMappingHolder();
+  private final CachedRowSet rows = generateRows();
+
+  private void benchmarkRowMappers() throws Exception {
+    final GenericResultSetMapper mapper = new GenericResultSetMapper(entityMappingHolder);
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      rows.beforeFirst();
+      for (final GenericJsonEntity entity : mapper.mapAll(rows, GenericJsonEntity.class)) {
+        checksum += entity.getId() + entity.getVersion();
+      }
+    }
+    logResults("benchmarkRowMappers", tStart, checksum);
+  }
+
+  private void benchmarkReflective() throws Exception {
+    long checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_ROUNDS; r++) {
+      rows.beforeFirst();
+      for (final GenericJsonEntity entity : mapReflective(rows, GenericJsonEntity.class)) {
+        checksum += entity.getId() + entity.getVersion();
+      }
+    }
+    logResults("benchmarkReflective", tStart, checksum);
+  }
+
+  /**
+   * The mapping before the row mappers: each row is converted to a JSON tree, then to the entity.
+   */
+  @SuppressWarnings("unchecked")
+  private <E extends AbstractEntity> List<E> mapReflective(final ResultSet rs,
+      final Class<E> entityClass) throws Exception {
+    final String tableName =
+        entityMappingHolder.tableToEntityNameMap.inverse().get(entityClass.getSimpleName());
+    final LinkedHashMap<String, ColumnInfo> columnInfoMap =
+        entityMappingHolder.columnInfoPerTable.get(tableName);
+    final List<E> entityList = new ArrayList<>();
+
+    final ObjectMapper mapper = new ObjectMapper();
+    while (rs.next()) {
+      final ResultSetMetaData resultSetMetaData = rs.getMetaData();
+      final int numColumns = resultSetMetaData.getColumnCount();
+      final ObjectNode objectNode = mapper.createObjectNode();
+      for (int i = 1; i <= numColumns; i++) {
+        final String dbColumnName = resultSetMetaData.getColumnLabel(i).toLowerCase();
+        final Field field = columnInfoMap.get(dbColumnName).getField();
+        final Object val = rs.getObject(i);
+        if (val == null) {
+          continue;
+        }
+        if (field.getType().isAssignableFrom(Timestamp.class)) {
+          objectNode.put(field.getName(), ((Timestamp) val).getTime());
+        } else {
+          objectNode.put(field.getName(), val.toString());
+        }
+      }
+      entityList.add((E) mapper.treeToValue(objectNode, entityClass));
+    }
+    return entityList;
+  }
+
+  private static EntityMappingHolder entityMappingHolder() {
+    final EntityMappingHolder holder = new EntityMappingHolder();
+    holder.tableToEntityNameMap.put(TABLE_NAME, GenericJsonEntity.class.getSimpleName());
+    holder.columnMappingPerTable.put(TABLE_NAME, HashBiMap.create());
+    final LinkedHashMap<String, ColumnInfo> columnInfoMap = new LinkedHashMap<>();
+    for (int i = 0; i < COLUMNS.length; i++) {
+      columnInfoMap.put(COLUMNS[i], new ColumnInfo()
+          .setColumnNameInDB(COLUMNS[i])
+          .setColumnNameInEntity(FIELDS[i])
+          .setField(field(GenericJsonEntity.class, FIELDS[i]))
+          .setSqlType(SQL_TYPES[i]));
+      holder.columnMappingPerTable.get(TABLE_NAME).put(COLUMNS[i], FIELDS[i]);
+    }
+    holder.columnInfoPerTable.put(TABLE_NAME, columnInfoMap);
+    return holder;
+  }
+
+  private static Field field(final Class<?> clazz, final String name) {
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      try {
+        return c.getDeclaredField(name);
+      } catch (final NoSuchFieldException e) {
+        // look in the superclass
+      }
+    }
+    throw new IllegalArgumentException(name);
+  }
+
+  private static CachedRowSet generateRows() {
+    try {
+      final RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+      metaData.setColumnCount(COLUMNS.length);
+      for (int i = 0; i < COLUMNS.length; i++) {
+        metaData.setColumnName(i + 1, COLUMNS[i].toUpperCase());
+        metaData.setColumnLabel(i + 1, COLUMNS[i].toUpperCase());
+        metaData.setColumnType(i + 1, SQL_TYPES[i]);
+      }
+      final CachedRowSet rowSet = RowSetProvider.newFactory().createCachedRowSet();
+      rowSet.setMetaData(metaData);
+      // an alert-sized json body
+      final String jsonVal = "{\"name\":\"alert\",\"template\":{\"name\":\"startree-threshold\"},"
+          + "\"templateProperties\":{" + "\"p\":\"value\",".repeat(50) + "\"q\":\"value\"}}";
+      final long now = System.currentTimeMillis();
+      for (int i = 0; i < N_ROWS; i++) {
+        rowSet.moveToInsertRow();
+        rowSet.updateLong(1, i);
+        rowSet.updateString(2, jsonVal);
+        rowSet.updateString(3, "ALERT");
+        rowSet.updateTimestamp(4, new Timestamp(now - i));
+        rowSet.updateTimestamp(5, new Timestamp(now));
+        rowSet.updateInt(6, 1);
+        rowSet.insertRow();
+      }
+      rowSet.moveToCurrentRow();
+      return rowSet;
+    } catch (final SQLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void logResults(final String name, final long tStart, final long checksum) {
+    final long tMillis = (System.nanoTime() - tStart) / 1_000_000;
+    LOG.info("{}: {} rounds of {} rows in {}ms ({}ms per round, checksum {})", name, N_ROUNDS,
+        N_ROWS, tMillis, tMillis / N_ROUNDS, checksum);
+  }
+
+  public static void main(final String[] args) throws Exception {
+    final GenericResultSetMapperBenchmark benchmark = new GenericResultSetMapperBenchmark();
+    // warm up
+    benchmark.benchmarkRowMappers();
+    benchmark.benchmarkReflective();
+
+    benchmark.benchmarkRowMappers();
+    benchmark.benchmarkReflective();
+  }
+}
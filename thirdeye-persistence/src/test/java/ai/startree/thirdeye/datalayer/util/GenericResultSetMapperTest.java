@@ -0,0 +1,175 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.datalayer.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.datalayer.entity.AbstractEntity;
+import ai.startree.thirdeye.datalayer.entity.DetectionConfigIndex;
+import ai.startree.thirdeye.datalayer.entity.GenericJsonEntity;
+import com.google.common.collect.HashBiMap;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+
+public class GenericResultSetMapperTest {
+
+  private static Field field(final Class<?> clazz, final String name) {
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      try {
+        return c.getDeclaredField(name);
+      } catch (final NoSuchFieldException e) {
+        // look in the superclass
+      }
+    }
+    throw new IllegalArgumentException(name);
+  }
+
+  /**
+   * Registers the table without database metadata.
+   *
+   * @param columns triplets of column name in db, field name, sql type
+   */
+  private static void register(final EntityMappingHolder holder, final String tableName,
+      final Class<? extends AbstractEntity> entityClass, final Object... columns) {
+    holder.tableToEntityNameMap.put(tableName, entityClass.getSimpleName());
+    holder.columnMappingPerTable.put(tableName, HashBiMap.create());
+    final LinkedHashMap<String, ColumnInfo> columnInfoMap = new LinkedHashMap<>();
+    for (int i = 0; i < columns.length; i += 3) {
+      final String column = (String) columns[i];
+      final String fieldName = (String) columns[i + 1];
+      columnInfoMap.put(column, new ColumnInfo()
+          .setColumnNameInDB(column)
+          .setColumnNameInEntity(fieldName)
+          .setField(field(entityClass, fieldName))
+          .setSqlType((int) columns[i + 2]));
+      holder.columnMappingPerTable.get(tableName).put(column, fieldName);
+    }
+    holder.columnInfoPerTable.put(tableName, columnInfoMap);
+  }
+
+  /**
+   * Builds a result set mock.
+   *
+   * @param labels column labels
+   * @param rows row values, in the order of the labels
+   */
+  private static ResultSet resultSet(final List<String> labels, final Object[]... rows)
+      throws Exception {
+    final ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+    when(metaData.getColumnCount()).thenReturn(labels.size());
+    when(metaData.getColumnLabel(anyInt())).thenAnswer(i -> labels.get(
+        (int) i.getArgument(0) - 1));
+
+    final AtomicInteger row = new AtomicInteger(-1);
+    final AtomicInteger lastColumn = new AtomicInteger();
+    final ResultSet rs = mock(ResultSet.class);
+    when(rs.getMetaData()).thenReturn(metaData);
+    when(rs.next()).thenAnswer(i -> row.incrementAndGet() < rows.length);
+    when(rs.wasNull()).thenAnswer(i -> rows[row.get()][lastColumn.get() - 1] == null);
+    when(rs.getString(anyInt())).thenAnswer(i -> {
+      lastColumn.set(i.getArgument(0));
+      final Object v = rows[row.get()][lastColumn.get() - 1];
+      return v == null ? null : v.toString();
+    });
+    when(rs.getLong(anyInt())).thenAnswer(i -> {
+      lastColumn.set(i.getArgument(0));
+      final Object v = rows[row.get()][lastColumn.get() - 1];
+      return v == null ? 0L : ((Number) v).longValue();
+    });
+    when(rs.getInt(anyInt())).thenAnswer(i -> {
+      lastColumn.set(i.getArgument(0));
+      final Object v = rows[row.get()][lastColumn.get() - 1];
+      return v == null ? 0 : ((Number) v).intValue();
+    });
+    when(rs.getBoolean(anyInt())).thenAnswer(i -> {
+      lastColumn.set(i.getArgument(0));
+      final Object v = rows[row.get()][lastColumn.get() - 1];
+      return v != null && (Boolean) v;
+    });
+    when(rs.getTimestamp(anyInt())).thenAnswer(i -> {
+      lastColumn.set(i.getArgument(0));
+      final Timestamp v = (Timestamp) rows[row.get()][lastColumn.get() - 1];
+      return v == null ? null : new Timestamp(v.getTime());
+    });
+    return rs;
+  }
+
+  @Test
+  public void testMapJsonEntities() throws Exception {
+    final EntityMappingHolder holder = new EntityMappingHolder();
+    register(holder, "generic_json_entity", GenericJsonEntity.class,
+        "id", "id", Types.BIGINT,
+        "json_val", "jsonVal", Types.VARCHAR,
+        "type", "type", Types.VARCHAR,
+        "create_time", "createTime", Types.TIMESTAMP,
+        "update_time", "updateTime", Types.TIMESTAMP,
+        "version", "version", Types.INTEGER);
+    final Timestamp createTime = new Timestamp(1640998861123L);
+    createTime.setNanos(123_456_789);
+
+    final ResultSet rs = resultSet(
+        Arrays.asList("ID", "JSON_VAL", "TYPE", "CREATE_TIME", "UPDATE_TIME", "VERSION"),
+        new Object[]{1L, "{}", "ALERT", createTime, null, 3},
+        new Object[]{2L, null, "ANOMALY", null, null, 1});
+
+    final List<GenericJsonEntity> entities = new GenericResultSetMapper(holder)
+        .mapAll(rs, GenericJsonEntity.class);
+
+    assertThat(entities).hasSize(2);
+    final GenericJsonEntity first = entities.get(0);
+    assertThat(first.getId()).isEqualTo(1L);
+    assertThat(first.getJsonVal()).isEqualTo("{}");
+    assertThat(first.getType()).isEqualTo("ALERT");
+    // entities are read at millisecond precision
+    assertThat(first.getCreateTime()).isEqualTo(new Timestamp(1640998861123L));
+    assertThat(first.getUpdateTime()).isNull();
+    assertThat(first.getVersion()).isEqualTo(3);
+
+    final GenericJsonEntity second = entities.get(1);
+    assertThat(second.getId()).isEqualTo(2L);
+    assertThat(second.getJsonVal()).isNull();
+    assertThat(second.getCreateTime()).isNull();
+  }
+
+  @Test
+  public void testMapIndexEntitiesAndIgnoreUnmappedColumns() throws Exception {
+    final EntityMappingHolder holder = new EntityMappingHolder();
+    register(holder, "detection_config_index", DetectionConfigIndex.class,
+        "base_id", "baseId", Types.BIGINT,
+        "name", "name", Types.VARCHAR,
+        "active", "active", Types.BOOLEAN);
+
+    final ResultSet rs = resultSet(Arrays.asList("base_id", "name", "active", "unknown"),
+        new Object[]{10L, "alert", true, "ignored"});
+
+    final List<DetectionConfigIndex> entities = new GenericResultSetMapper(holder)
+        .mapAll(rs, DetectionConfigIndex.class);
+
+    assertThat(entities).hasSize(1);
+    assertThat(entities.get(0).getBaseId()).isEqualTo(10L);
+    assertThat(entities.get(0).getName()).isEqualTo("alert");
+    assertThat(entities.get(0).isActive()).isTrue();
+  }
+}
@@ -21,6 +21,13 @@ public enum Cost {
         final double contributionToOverallChangePercentage) {
       return Math.abs(valueChangePercentage);
     }
+
+    @Override
+    public double upperBound(final double parentBaselineValue, final double parentCurrentValue,
+        final double baselineTotal, final double currentTotal) {
+      // a small child of a stable parent can have any value change
+      return Double.POSITIVE_INFINITY;
+    }
   }, CONTRIBUTION_CHANGE {
     @Override
     public double compute(final double valueChangePercentage,
@@ -28,6 +35,15 @@ public enum Cost {
         final double contributionToOverallChangePercentage) {
       return Math.abs(contributionChangePercentage);
     }
+
+    @Override
+    public double upperBound(final double parentBaselineValue, final double parentCurrentValue,
+        final double baselineTotal, final double currentTotal) {
+      return contributionChangeUpperBound(parentBaselineValue,
+          parentCurrentValue,
+          baselineTotal,
+          currentTotal);
+    }
   }, CONTRIBUTION_TO_OVERALL_CHANGE {
     @Override
     public double compute(final double valueChangePercentage,
@@ -40,6 +56,15 @@ public enum Cost {
       }
       return Math.abs(contributionToOverallChangePercentage);
     }
+
+    @Override
+    public double upperBound(final double parentBaselineValue, final double parentCurrentValue,
+        final double baselineTotal, final double currentTotal) {
+      return contributionToOverallChangeUpperBound(parentBaselineValue,
+          parentCurrentValue,
+          baselineTotal,
+          currentTotal);
+    }
   }, BAlANCED_SIMPLE {
     @Override
     public double compute(final double valueChangePercentage,
@@ -54,6 +79,18 @@ public enum Cost {
       return Math.abs(contributionToOverallChangePercentage) + Math.abs(
           contributionChangePercentage);
     }
+
+    @Override
+    public double upperBound(final double parentBaselineValue, final double parentCurrentValue,
+        final double baselineTotal, final double currentTotal) {
+      return contributionToOverallChangeUpperBound(parentBaselineValue,
+          parentCurrentValue,
+          baselineTotal,
+          currentTotal) + contributionChangeUpperBound(parentBaselineValue,
+          parentCurrentValue,
+          baselineTotal,
+          currentTotal);
+    }
   };
 
   public static final int MINIMUM_CONTRIBUTION_OF_INTEREST_PERCENTAGE = 3;
@@ -61,4 +98,35 @@ public enum Cost {
   public abstract double compute(final double valueChangePercentage,
       final double contributionChangePercentage,
       final double contributionToOverallChangePercentage);
+
+  /**
+   * Upper bound of the cost of any child of a parent contributor, ie of any contributor obtained by
+   * adding a dimension to the parent.
+   *
+   * Only valid for additive metrics with non-negative values: the baseline and current values of a
+   * child are then between 0 and the values of the parent.
+   */
+  public abstract double upperBound(final double parentBaselineValue,
+      final double parentCurrentValue, final double baselineTotal, final double currentTotal);
+
+  private static double contributionChangeUpperBound(final double parentBaselineValue,
+      final double parentCurrentValue, final double baselineTotal, final double currentTotal) {
+    // |c/cT - b/bT| <= max(c/cT, b/bT)
+    return 100 * Math.max(ratio(parentCurrentValue, currentTotal),
+        ratio(parentBaselineValue, baselineTotal));
+  }
+
+  private static double contributionToOverallChangeUpperBound(final double parentBaselineValue,
+      final double parentCurrentValue, final double baselineTotal, final double currentTotal) {
+    // |c - b| / |cT - bT| <= max(c, b) / |cT - bT|
+    return 100 * ratio(Math.max(parentBaselineValue, parentCurrentValue),
+        currentTotal - baselineTotal);
+  }
+
+  private static double ratio(final double value, final double total) {
+    if (total == 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Math.abs(value / total);
+  }
 }
@@ -26,22 +26,49 @@ import ai.startree.thirdeye.spi.api.DimensionAnalysisResultApi;
 import ai.startree.thirdeye.spi.dataframe.DataFrame;
 import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
 import ai.startree.thirdeye.spi.dataframe.Series.DoubleConditional;
+import ai.startree.thirdeye.spi.datalayer.Predicate;
+import ai.startree.thirdeye.spi.datalayer.dto.MetricConfigDTO;
 import ai.startree.thirdeye.spi.datasource.loader.AggregationLoader;
+import ai.startree.thirdeye.spi.metric.MetricAggFunction;
 import ai.startree.thirdeye.spi.metric.MetricSlice;
 import ai.startree.thirdeye.spi.rca.ContributorsFinder;
 import ai.startree.thirdeye.spi.rca.ContributorsFinderResult;
 import ai.startree.thirdeye.spi.rca.ContributorsSearchConfiguration;
 import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Breakdown by one dimension, for each dimension. Same as the heatmap.
  * Then uses a cost function to determine which changes are important.
+ * If depth > 1, drills down into combinations of up to depth dimensions.
  */
 public class SimpleContributorsFinder implements ContributorsFinder {
 
   private static final int LIMIT_DEFAULT = 100;
+  private static final int MAX_EXPANDED_CONTRIBUTORS_PER_LEVEL = 10;
+  /**
+   * Separates the dimensions of a combination in COL_DIMENSION_NAME and COL_DIMENSION_VALUE.
+   */
+  public static final String DIMENSION_SEPARATOR = "\u001F";
+  /**
+   * Replaces a null dimension value in a combination of dimensions.
+   */
+  private static final String NULL_DIMENSION_VALUE = "\u0000";
   private static final Logger LOG = LoggerFactory.getLogger(SimpleContributorsFinder.class);
   public static final String BASELINE_SUFFIX = "baseline_";
   public static final String COL_BASELINE_VALUE = BASELINE_SUFFIX + COL_VALUE;
@@ -89,27 +116,326 @@ public class SimpleContributorsFinder implements ContributorsFinder {
     current.dropSeries(COL_TIME);
     final double currentTotal = getTotalFromBreakdown(current);
 
-    DataFrame stats = computeStats(baseline,
-        baselineTotal,
-        current,
-        currentTotal);
+    final ChangeSide changeSide = searchConfiguration.isDoOneSideError()
+        ? (currentTotal >= baselineTotal ? ChangeSide.UP : ChangeSide.DOWN)
+        : null;
+    final List<String> dimensions = dimensionsOf(baseline, current);
+    DataFrame stats = scored(computeStats(baseline, baselineTotal, current, currentTotal),
+        changeSide);
 
-    if (searchConfiguration.isDoOneSideError()) {
-      final ChangeSide changeSide = currentTotal >= baselineTotal ? ChangeSide.UP : ChangeSide.DOWN;
-      stats = stats.addSeries("change",
-              stats.getDoubles(COL_CURRENT_VALUE).subtract(stats.getDoubles(COL_BASELINE_VALUE)))
-          .filter(changeSide.conditional, "change");
+    if (searchConfiguration.getDepth() > 1) {
+      stats = drillDown(searchConfiguration,
+          dimensions,
+          stats,
+          baselineTotal,
+          currentTotal,
+          changeSide);
     }
 
-    stats = stats.addSeries(COL_COST, computeCost(stats))
-        .sortedBy(COL_COST)
-        .slice(stats.size() - searchConfiguration.getSummarySize(), stats.size());
+    stats = stats.sortedBy(COL_COST)
+        .slice(Math.max(0, stats.size() - searchConfiguration.getSummarySize()), stats.size());
 
     return new SimpleContributorsFinderResult(stats,
         searchConfiguration.getMetricConfigDTO().getName(),
         searchConfiguration.getDatasetConfigDTO().getDataset());
   }
 
+  /**
+   * Drills down level by level: the contributors of a level are combinations of
+   * {@code level} dimensions. Only the most promising contributors of a level are expanded to the
+   * next level. For additive metrics, a contributor is only expanded if the upper bound of the
+   * cost of its children can beat the current top contributors.
+   * The queries of a level are grouped by set of dimensions and sent concurrently.
+   *
+   * @return the contributors of all levels
+   */
+  private DataFrame drillDown(final ContributorsSearchConfiguration searchConfiguration,
+      final List<String> dimensions, final DataFrame firstLevel, final double baselineTotal,
+      final double currentTotal, final ChangeSide changeSide) throws Exception {
+    final boolean additive = isAdditive(searchConfiguration.getMetricConfigDTO());
+    DataFrame all = firstLevel;
+    DataFrame level = firstLevel;
+    for (int depth = 2; depth <= searchConfiguration.getDepth(); depth++) {
+      final List<Integer> parents = parentsToExpand(level,
+          all,
+          searchConfiguration.getSummarySize(),
+          additive,
+          baselineTotal,
+          currentTotal);
+      if (parents.isEmpty()) {
+        break;
+      }
+      level = loadLevel(searchConfiguration,
+          dimensions,
+          level,
+          parents,
+          baselineTotal,
+          currentTotal,
+          changeSide);
+      LOG.debug("Drill down level {}: expanded {} contributors into {} contributors",
+          depth,
+          parents.size(),
+          level.size());
+      all = all.append(level);
+    }
+    return all;
+  }
+
+  /**
+   * @return the indexes of the contributors of the level that should be expanded, by decreasing
+   *     order of interest.
+   */
+  private List<Integer> parentsToExpand(final DataFrame level, final DataFrame all,
+      final int summarySize, final boolean additive, final double baselineTotal,
+      final double currentTotal) {
+    final Cost costFunction = simpleConfiguration.getCostFunction();
+    final double threshold = lowestTopCost(all, summarySize);
+    final double[] upperBounds = new double[level.size()];
+    final List<Integer> parents = new ArrayList<>();
+    for (int i = 0; i < level.size(); i++) {
+      upperBounds[i] = additive
+          ? costFunction.upperBound(level.getDouble(COL_BASELINE_VALUE, i),
+          level.getDouble(COL_CURRENT_VALUE, i),
+          baselineTotal,
+          currentTotal)
+          : Double.POSITIVE_INFINITY;
+      if (upperBounds[i] > threshold) {
+        parents.add(i);
+      }
+    }
+    parents.sort(Comparator.<Integer>comparingDouble(i -> upperBounds[i])
+        .thenComparingDouble(i -> level.getDouble(COL_COST, i))
+        .reversed());
+    return parents.subList(0, Math.min(MAX_EXPANDED_CONTRIBUTORS_PER_LEVEL, parents.size()));
+  }
+
+  /**
+   * @return the cost a new contributor has to beat to enter the top contributors
+   */
+  private static double lowestTopCost(final DataFrame stats, final int summarySize) {
+    if (summarySize <= 0 || stats.size() < summarySize) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    final double[] costs = stats.getDoubles(COL_COST).values().clone();
+    Arrays.sort(costs);
+    return costs[costs.length - summarySize];
+  }
+
+  private DataFrame loadLevel(final ContributorsSearchConfiguration searchConfiguration,
+      final List<String> dimensions, final DataFrame level, final List<Integer> parents,
+      final double baselineTotal, final double currentTotal, final ChangeSide changeSide)
+      throws Exception {
+    // group expansions by query dimensions: parent dimensions + the new dimension
+    final Map<List<String>, Set<List<String>>> toExpand = new LinkedHashMap<>();
+    for (final int i : parents) {
+      final List<String> parentDimensions = splitDimensions(level.getString(COL_DIMENSION_NAME, i));
+      final List<String> parentValues = splitDimensions(level.getString(COL_DIMENSION_VALUE, i));
+      for (final String dimension : dimensions) {
+        if (canExpand(parentDimensions, dimension, searchConfiguration.getHierarchies())) {
+          final List<String> queryDimensions = new ArrayList<>(parentDimensions);
+          queryDimensions.add(dimension);
+          toExpand.computeIfAbsent(queryDimensions, k -> new HashSet<>())
+              .add(parentValues);
+        }
+      }
+    }
+
+    // submit all the queries of the level before waiting for the results
+    final List<Expansion> expansions = new ArrayList<>();
+    for (final Entry<List<String>, Set<List<String>>> e : toExpand.entrySet()) {
+      final List<String> queryDimensions = e.getKey();
+      final Set<List<String>> parentValues = e.getValue();
+      final List<Predicate> predicates = new ArrayList<>(searchConfiguration.getFilters());
+      for (int d = 0; d < queryDimensions.size() - 1; d++) {
+        final int index = d;
+        final List<String> values = parentValues.stream()
+            .map(v -> v.get(index))
+            .distinct()
+            .collect(Collectors.toList());
+        predicates.add(inOrIsNull(queryDimensions.get(d), values));
+      }
+      final MetricSlice baselineSlice = MetricSlice.from(searchConfiguration.getMetricConfigDTO(),
+          searchConfiguration.getBaselineInterval(),
+          predicates,
+          searchConfiguration.getDatasetConfigDTO());
+      final MetricSlice currentSlice = MetricSlice.from(searchConfiguration.getMetricConfigDTO(),
+          searchConfiguration.getCurrentInterval(),
+          predicates,
+          searchConfiguration.getDatasetConfigDTO());
+      final int limit = LIMIT_DEFAULT * parentValues.size();
+      expansions.add(new Expansion(queryDimensions,
+          parentValues,
+          aggregationLoader.loadAggregateAsync(baselineSlice, queryDimensions, limit),
+          aggregationLoader.loadAggregateAsync(currentSlice, queryDimensions, limit)));
+    }
+
+    final Map<List<String>, Double> baselineValues = new LinkedHashMap<>();
+    final Map<List<String>, Double> currentValues = new LinkedHashMap<>();
+    for (final Expansion expansion : expansions) {
+      collect(expansion.baseline.get(), expansion, dimensions, baselineValues);
+      collect(expansion.current.get(), expansion, dimensions, currentValues);
+    }
+    if (baselineValues.isEmpty() && currentValues.isEmpty()) {
+      return level.slice(0, 0);
+    }
+
+    return scored(computeStats(breakdownOf(baselineValues),
+        baselineTotal,
+        breakdownOf(currentValues),
+        currentTotal), changeSide);
+  }
+
+  /**
+   * Returns a predicate matching the given values of a dimension. IN never matches null: a null
+   * value is matched with IS NULL.
+   */
+  protected static Predicate inOrIsNull(final String dimension, final List<String> values) {
+    final String[] nonNullValues = values.stream()
+        .filter(Objects::nonNull)
+        .toArray(String[]::new);
+    if (nonNullValues.length == values.size()) {
+      return Predicate.IN(dimension, nonNullValues);
+    } else if (nonNullValues.length == 0) {
+      return Predicate.IS_NULL(dimension);
+    }
+    return Predicate.OR(Predicate.IN(dimension, nonNullValues), Predicate.IS_NULL(dimension));
+  }
+
+  /**
+   * Adds the rows of an aggregation that are children of the expanded contributors, with the
+   * dimensions in canonical order.
+   */
+  private static void collect(final DataFrame aggregate, final Expansion expansion,
+      final List<String> dimensions, final Map<List<String>, Double> dimensionsToValue) {
+    final List<String> queryDimensions = expansion.queryDimensions;
+    final int parentSize = queryDimensions.size() - 1;
+    final List<Integer> canonicalOrder = new ArrayList<>();
+    for (int d = 0; d < queryDimensions.size(); d++) {
+      canonicalOrder.add(d);
+    }
+    canonicalOrder.sort(Comparator.comparingInt(d -> dimensions.indexOf(queryDimensions.get(d))));
+
+    for (int i = 0; i < aggregate.size(); i++) {
+      final List<String> values = new ArrayList<>();
+      for (final String dimension : queryDimensions) {
+        values.add(aggregate.getString(dimension, i));
+      }
+      if (!expansion.parentValues.contains(values.subList(0, parentSize))) {
+        continue;
+      }
+      final List<String> names = new ArrayList<>();
+      final List<String> orderedValues = new ArrayList<>();
+      for (final int d : canonicalOrder) {
+        names.add(queryDimensions.get(d));
+        orderedValues.add(values.get(d));
+      }
+      // a contributor can be reached from different parents
+      dimensionsToValue.putIfAbsent(Arrays.asList(joinDimensions(names),
+              joinDimensions(orderedValues)),
+          aggregate.getDouble(COL_VALUE, i));
+    }
+  }
+
+  private static DataFrame breakdownOf(final Map<List<String>, Double> dimensionsToValue) {
+    final DataFrame.Builder builder = DataFrame.builder(COL_DIMENSION_NAME + ":STRING",
+        COL_DIMENSION_VALUE + ":STRING",
+        COL_VALUE + ":DOUBLE");
+    for (final Entry<List<String>, Double> e : dimensionsToValue.entrySet()) {
+      builder.append(e.getKey().get(0), e.getKey().get(1), e.getValue());
+    }
+    return builder.build();
+  }
+
+  /**
+   * A dimension can be added to a contributor if it is not in the contributor yet and if it
+   * respects the hierarchies: a child dimension is only added after its parent dimension, and a
+   * parent dimension is never added after its child dimension.
+   */
+  @VisibleForTesting
+  protected static boolean canExpand(final List<String> parentDimensions, final String dimension,
+      final List<List<String>> hierarchies) {
+    if (parentDimensions.contains(dimension)) {
+      return false;
+    }
+    if (hierarchies == null) {
+      return true;
+    }
+    for (final List<String> hierarchy : hierarchies) {
+      final int index = hierarchy.indexOf(dimension);
+      if (index < 0) {
+        continue;
+      }
+      if (index > 0 && !parentDimensions.contains(hierarchy.get(index - 1))) {
+        return false;
+      }
+      for (int j = index + 1; j < hierarchy.size(); j++) {
+        if (parentDimensions.contains(hierarchy.get(j))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The cost upper bound of the children of a contributor requires an additive metric.
+   */
+  private static boolean isAdditive(final MetricConfigDTO metricConfigDTO) {
+    final String aggFunction = metricConfigDTO.getDefaultAggFunction();
+    return MetricAggFunction.SUM.name().equalsIgnoreCase(aggFunction)
+        || MetricAggFunction.COUNT.name().equalsIgnoreCase(aggFunction);
+  }
+
+  private static List<String> dimensionsOf(final DataFrame baseline, final DataFrame current) {
+    final Set<String> dimensions = new LinkedHashSet<>();
+    dimensions.addAll(Arrays.asList(baseline.getStrings(COL_DIMENSION_NAME).values()));
+    dimensions.addAll(Arrays.asList(current.getStrings(COL_DIMENSION_NAME).values()));
+    return new ArrayList<>(dimensions);
+  }
+
+  /**
+   * Applies the one side error filter if changeSide is not null, then adds the cost.
+   */
+  private DataFrame scored(DataFrame stats, final ChangeSide changeSide) {
+    if (changeSide != null) {
+      stats = stats.addSeries("change",
+              stats.getDoubles(COL_CURRENT_VALUE).subtract(stats.getDoubles(COL_BASELINE_VALUE)))
+          .filter(changeSide.conditional, "change")
+          .dropNull(COL_DIMENSION_NAME);
+    }
+    return stats.addSeries(COL_COST, computeCost(stats));
+  }
+
+  /**
+   * A single dimension is not encoded, so a null dimension value stays null. In a combination, a
+   * null dimension value is encoded with NULL_DIMENSION_VALUE.
+   */
+  protected static String joinDimensions(final List<String> dimensions) {
+    if (dimensions.size() == 1) {
+      return dimensions.get(0);
+    }
+    return dimensions.stream()
+        .map(d -> d == null ? NULL_DIMENSION_VALUE : d)
+        .collect(Collectors.joining(DIMENSION_SEPARATOR));
+  }
+
+  /**
+   * Inverse of {@link #joinDimensions(List)}. Null dimension values are returned as null
+   * elements.
+   */
+  protected static List<String> splitDimensions(final String dimensions) {
+    if (dimensions == null) {
+      return Collections.singletonList(null);
+    }
+    final String[] values = dimensions.split(DIMENSION_SEPARATOR, -1);
+    for (int i = 0; i < values.length; i++) {
+      if (NULL_DIMENSION_VALUE.equals(values[i])) {
+        values[i] = null;
+      }
+    }
+    return Arrays.asList(values);
+  }
+
   private ContributorsFinderResult cannotComputeResult(final String message) {
     return () -> new DimensionAnalysisResultApi()
         .setAnalysisRunInfo(new AnalysisRunInfo().setSuccess(false).setMessage(message));
@@ -175,6 +501,22 @@ public class SimpleContributorsFinder implements ContributorsFinder {
         .getDouble(0);
   }
 
+  private static class Expansion {
+
+    private final List<String> queryDimensions;
+    private final Set<List<String>> parentValues;
+    private final Future<DataFrame> baseline;
+    private final Future<DataFrame> current;
+
+    private Expansion(final List<String> queryDimensions, final Set<List<String>> parentValues,
+        final Future<DataFrame> baseline, final Future<DataFrame> current) {
+      this.queryDimensions = queryDimensions;
+      this.parentValues = parentValues;
+      this.baseline = baseline;
+      this.current = current;
+    }
+  }
+
   private enum ChangeSide {
     DOWN(change -> change[0] < 0), UP(change -> change[0] >= 0);
 
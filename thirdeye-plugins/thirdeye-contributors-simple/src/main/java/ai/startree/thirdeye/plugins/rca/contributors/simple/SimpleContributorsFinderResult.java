@@ -19,6 +19,7 @@ import static ai.startree.thirdeye.plugins.rca.contributors.simple.SimpleContrib
 import static ai.startree.thirdeye.plugins.rca.contributors.simple.SimpleContributorsFinder.COL_COST;
 import static ai.startree.thirdeye.plugins.rca.contributors.simple.SimpleContributorsFinder.COL_CURRENT_VALUE;
 import static ai.startree.thirdeye.plugins.rca.contributors.simple.SimpleContributorsFinder.COL_VALUE_CHANGE_PERCENTAGE;
+import static ai.startree.thirdeye.plugins.rca.contributors.simple.SimpleContributorsFinder.splitDimensions;
 import static ai.startree.thirdeye.spi.api.DimensionAnalysisResultApi.ALL;
 import static ai.startree.thirdeye.spi.datasource.loader.AggregationLoader.COL_DIMENSION_NAME;
 import static ai.startree.thirdeye.spi.datasource.loader.AggregationLoader.COL_DIMENSION_VALUE;
@@ -57,10 +58,12 @@ public class SimpleContributorsFinderResult implements ContributorsFinderResult
     final Map<String, Integer> dimensionToIndex = new HashMap<>();
     final List<String> dimensions = new ArrayList<>();
     int index = 0;
-    for (String dimensionName : stats.getStrings(COL_DIMENSION_NAME).values()) {
-      if (!dimensionToIndex.containsKey(dimensionName)) {
-        dimensionToIndex.put(dimensionName, index++);
-        dimensions.add(dimensionName);
+    for (String dimensionNames : stats.getStrings(COL_DIMENSION_NAME).values()) {
+      for (String dimensionName : splitDimensions(dimensionNames)) {
+        if (!dimensionToIndex.containsKey(dimensionName)) {
+          dimensionToIndex.put(dimensionName, index++);
+          dimensions.add(dimensionName);
+        }
       }
     }
     dimensionAnalysisResultApi.setDimensions(dimensions);
@@ -68,10 +71,12 @@ public class SimpleContributorsFinderResult implements ContributorsFinderResult
     for (int i = 0; i < stats.size(); i++) {
       final SummaryResponseRow row = new SummaryResponseRow();
       final List<String> names = new ArrayList<>(Collections.nCopies(dimensions.size(),ALL));
-      final String dimensionName = stats.getString(COL_DIMENSION_NAME, i);
-      final int dimensionIndex = dimensionToIndex.get(dimensionName);
-      final String dimensionValue = stats.getString(COL_DIMENSION_VALUE, i);
-      names.set(dimensionIndex, dimensionValue);
+      // a contributor can be a combination of dimensions
+      final List<String> dimensionNames = splitDimensions(stats.getString(COL_DIMENSION_NAME, i));
+      final List<String> dimensionValues = splitDimensions(stats.getString(COL_DIMENSION_VALUE, i));
+      for (int j = 0; j < dimensionNames.size(); j++) {
+        names.set(dimensionToIndex.get(dimensionNames.get(j)), dimensionValues.get(j));
+      }
 
       row.setNames(names)
           .setCost(stats.getDouble(COL_COST, i))
@@ -21,8 +21,14 @@ import static ai.startree.thirdeye.spi.api.DimensionAnalysisResultApi.ALL;
 import static ai.startree.thirdeye.spi.datasource.loader.AggregationLoader.COL_DIMENSION_NAME;
 import static ai.startree.thirdeye.spi.datasource.loader.AggregationLoader.COL_DIMENSION_VALUE;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ai.startree.thirdeye.spi.api.DimensionAnalysisResultApi;
@@ -38,11 +44,16 @@ import ai.startree.thirdeye.spi.datasource.loader.AggregationLoader;
 import ai.startree.thirdeye.spi.metric.MetricSlice;
 import ai.startree.thirdeye.spi.rca.ContributorsFinderResult;
 import ai.startree.thirdeye.spi.rca.ContributorsSearchConfiguration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.testng.annotations.Test;
 
@@ -66,7 +77,7 @@ public class SimpleContributorsFinderTest {
   private static final MetricConfigDTO METRIC_CONFIG_DTO = new MetricConfigDTO();
   private static final DatasetConfigDTO DATASET_CONFIG_DTO = new DatasetConfigDTO();
   private static final int SUMMARY_SIZE = 2;
-  private static final int DEPTH = 2; // not used by the algorithm
+  private static final int DEPTH = 1; // breakdown by one dimension only
   private static final boolean DO_ONE_SIDE_ERROR = true;
   private static final List<Predicate> FILTERS = List.of();
   private static final List<List<String>> HIERARCHIES = null;
@@ -95,6 +106,13 @@ public class SimpleContributorsFinderTest {
       .addSeries(COL_VALUE, DoubleSeries.buildFrom(50, 70, 50, 70))
       .addSeries(COL_TIME, LongSeries.buildFrom(2L, 2L, 2L, 2L));
 
+  // os, browser, baseline value, current value - consistent with the breakdowns above
+  private static final List<Object[]> COMBINATIONS = List.of(
+      new Object[]{"android", "chrome", 30D, 10D},
+      new Object[]{"android", "safari", 10D, 40D},
+      new Object[]{"osx", "chrome", 50D, 40D},
+      new Object[]{"osx", "safari", 10D, 30D});
+
   @Test
   public void testSearchNominalCase() throws Exception {
     final AggregationLoader aggregationLoader = mock(AggregationLoader.class);
@@ -182,6 +200,263 @@ public class SimpleContributorsFinderTest {
     assertThat(res.getAnalysisRunInfo().getMessage()).contains("current");
   }
 
+  @Test
+  public void testSearchWithCombinationsOfDimensions() throws Exception {
+    final AggregationLoader aggregationLoader = mockAggregationLoader(BASELINE_DATAFRAME.get(),
+        CURRENT_DATAFRAME.get(),
+        COMBINATIONS);
+    final SimpleContributorsFinder contributorsFinder = new SimpleContributorsFinder(
+        aggregationLoader,
+        new SimpleConfiguration());
+
+    final DimensionAnalysisResultApi output = contributorsFinder.search(
+        new ContributorsSearchConfiguration(
+            METRIC_CONFIG_DTO,
+            DATASET_CONFIG_DTO,
+            CURRENT_INTERVAL,
+            BASELINE_INTERVAL,
+            SUMMARY_SIZE,
+            2,
+            DO_ONE_SIDE_ERROR,
+            FILTERS,
+            HIERARCHIES)).getDimensionAnalysisResult();
+
+    assertThat(output.getDimensions()).containsExactly("os", "browser");
+    final List<SummaryResponseRow> rowsOutput = output.getResponseRows();
+    assertThat(rowsOutput).hasSize(SUMMARY_SIZE);
+    assertThat(rowsOutput.get(0).getNames()).containsExactly("android", "safari");
+    assertThat(rowsOutput.get(0).getBaselineValue()).isEqualTo(10);
+    assertThat(rowsOutput.get(0).getCurrentValue()).isEqualTo(40);
+    assertThat(rowsOutput.get(1).getNames()).containsExactly(ALL, "safari");
+    // os and browser are drilled down from both sides - one query per period
+    verify(aggregationLoader, times(2)).loadAggregateAsync(any(MetricSlice.class),
+        eq(List.of("os", "browser")),
+        anyInt());
+    verify(aggregationLoader, times(2)).loadAggregateAsync(any(MetricSlice.class),
+        eq(List.of("browser", "os")),
+        anyInt());
+  }
+
+  @Test
+  public void testSearchWithCombinationsRespectsHierarchies() throws Exception {
+    final AggregationLoader aggregationLoader = mockAggregationLoader(BASELINE_DATAFRAME.get(),
+        CURRENT_DATAFRAME.get(),
+        COMBINATIONS);
+    final SimpleContributorsFinder contributorsFinder = new SimpleContributorsFinder(
+        aggregationLoader,
+        new SimpleConfiguration());
+
+    final DimensionAnalysisResultApi output = contributorsFinder.search(
+        new ContributorsSearchConfiguration(
+            METRIC_CONFIG_DTO,
+            DATASET_CONFIG_DTO,
+            CURRENT_INTERVAL,
+            BASELINE_INTERVAL,
+            SUMMARY_SIZE,
+            2,
+            DO_ONE_SIDE_ERROR,
+            FILTERS,
+            List.of(List.of("os", "browser")))).getDimensionAnalysisResult();
+
+    assertThat(output.getResponseRows().get(0).getNames()).containsExactly("android", "safari");
+    // browser is a child of os: browser values are not drilled down by os
+    verify(aggregationLoader, times(2)).loadAggregateAsync(any(MetricSlice.class),
+        eq(List.of("os", "browser")),
+        anyInt());
+    verify(aggregationLoader, never()).loadAggregateAsync(any(MetricSlice.class),
+        eq(List.of("browser", "os")),
+        anyInt());
+  }
+
+  @Test
+  public void testJoinAndSplitDimensionsWithNullValues() {
+    final List<String> combination = Arrays.asList("android", null);
+
+    assertThat(SimpleContributorsFinder.splitDimensions(
+        SimpleContributorsFinder.joinDimensions(combination))).isEqualTo(combination);
+    assertThat(SimpleContributorsFinder.joinDimensions(Arrays.asList((String) null))).isNull();
+    assertThat(SimpleContributorsFinder.splitDimensions(null)).containsExactly((String) null);
+  }
+
+  @Test
+  public void testResultWithNullDimensionValue() {
+    final DataFrame stats = new DataFrame()
+        .addSeries(COL_DIMENSION_NAME, StringSeries.buildFrom("os", "os",
+            SimpleContributorsFinder.joinDimensions(List.of("os", "browser"))))
+        .addSeries(COL_DIMENSION_VALUE, StringSeries.buildFrom("android", null,
+            SimpleContributorsFinder.joinDimensions(Arrays.asList(null, "chrome"))))
+        .addSeries(SimpleContributorsFinder.COL_COST, DoubleSeries.buildFrom(1, 2, 3))
+        .addSeries(SimpleContributorsFinder.COL_BASELINE_VALUE, DoubleSeries.buildFrom(1, 2, 3))
+        .addSeries(SimpleContributorsFinder.COL_CURRENT_VALUE, DoubleSeries.buildFrom(2, 3, 4))
+        .addSeries(COL_VALUE_CHANGE_PERCENTAGE, DoubleSeries.buildFrom(0, 0, 0))
+        .addSeries(COL_CONTRIBUTION_CHANGE_PERCENTAGE, DoubleSeries.buildFrom(0, 0, 0))
+        .addSeries(SimpleContributorsFinder.COL_CONTRIBUTION_TO_OVERALL_CHANGE_PERCENTAGE,
+            DoubleSeries.buildFrom(0, 0, 0));
+
+    final DimensionAnalysisResultApi output = new SimpleContributorsFinderResult(stats, "metric",
+        "dataset").getDimensionAnalysisResult();
+
+    assertThat(output.getDimensions()).containsExactly("os", "browser");
+    final List<SummaryResponseRow> rows = output.getResponseRows();
+    assertThat(rows.get(0).getNames()).containsExactly("android", ALL);
+    assertThat(rows.get(1).getNames()).containsExactly(null, ALL);
+    assertThat(rows.get(2).getNames()).containsExactly(null, "chrome");
+  }
+
+  @Test
+  public void testCanExpand() {
+    final List<List<String>> hierarchies = List.of(List.of("country", "region", "city"));
+    assertThat(SimpleContributorsFinder.canExpand(List.of("os"), "browser", null)).isTrue();
+    assertThat(SimpleContributorsFinder.canExpand(List.of("os"), "os", null)).isFalse();
+    assertThat(SimpleContributorsFinder.canExpand(List.of("os"), "country", hierarchies)).isTrue();
+    assertThat(SimpleContributorsFinder.canExpand(List.of("os"), "region", hierarchies)).isFalse();
+    assertThat(SimpleContributorsFinder.canExpand(List.of("country"), "region", hierarchies))
+        .isTrue();
+    assertThat(SimpleContributorsFinder.canExpand(List.of("region"), "country", hierarchies))
+        .isFalse();
+  }
+
+  @Test
+  public void testSearchWithCombinationsPrunesSmallContributorsOfAdditiveMetrics()
+      throws Exception {
+    final MetricConfigDTO metricConfigDTO = new MetricConfigDTO().setDefaultAggFunction("SUM");
+    final DataFrame baseline = new DataFrame()
+        .addSeries(COL_DIMENSION_NAME,
+            StringSeries.buildFrom("os", "os", "os", "browser", "browser", "browser"))
+        .addSeries(COL_DIMENSION_VALUE,
+            StringSeries.buildFrom("android", "osx", "linux", "chrome", "safari", "firefox"))
+        .addSeries(COL_VALUE, DoubleSeries.buildFrom(40, 60, 1, 80, 20, 1))
+        .addSeries(COL_TIME, LongSeries.buildFrom(1L, 1L, 1L, 1L, 1L, 1L));
+    final DataFrame current = new DataFrame()
+        .addSeries(COL_DIMENSION_NAME,
+            StringSeries.buildFrom("os", "os", "os", "browser", "browser", "browser"))
+        .addSeries(COL_DIMENSION_VALUE,
+            StringSeries.buildFrom("android", "osx", "linux", "chrome", "safari", "firefox"))
+        .addSeries(COL_VALUE, DoubleSeries.buildFrom(50, 70, 1, 50, 70, 1))
+        .addSeries(COL_TIME, LongSeries.buildFrom(2L, 2L, 2L, 2L, 2L, 2L));
+    final List<Object[]> combinations = new ArrayList<>(COMBINATIONS);
+    combinations.add(new Object[]{"linux", "firefox", 1D, 1D});
+    final AggregationLoader aggregationLoader = mockAggregationLoader(baseline,
+        current,
+        combinations);
+    final SimpleContributorsFinder contributorsFinder = new SimpleContributorsFinder(
+        aggregationLoader,
+        new SimpleConfiguration());
+
+    final DimensionAnalysisResultApi output = contributorsFinder.search(
+        new ContributorsSearchConfiguration(
+            metricConfigDTO,
+            DATASET_CONFIG_DTO,
+            CURRENT_INTERVAL,
+            BASELINE_INTERVAL,
+            1,
+            2,
+            DO_ONE_SIDE_ERROR,
+            FILTERS,
+            HIERARCHIES)).getDimensionAnalysisResult();
+
+    assertThat(output.getResponseRows()).hasSize(1);
+    assertThat(output.getResponseRows().get(0).getNames()).containsExactly("safari");
+
+    // the children of linux and firefox cannot beat the top contributor: they are not queried
+    final ArgumentCaptor<MetricSlice> slices = ArgumentCaptor.forClass(MetricSlice.class);
+    verify(aggregationLoader, times(4)).loadAggregateAsync(slices.capture(), anyList(), anyInt());
+    final List<Object> drilledDownValues = slices.getAllValues().stream()
+        .flatMap(slice -> slice.getPredicates().stream())
+        .flatMap(predicate -> Arrays.stream((Object[]) predicate.getRhs()))
+        .collect(Collectors.toList());
+    assertThat(drilledDownValues).contains("android", "osx", "safari")
+        .doesNotContain("linux", "firefox");
+  }
+
+  @Test
+  public void testSearchWithCombinationsDrillsDownNullParentValues() throws Exception {
+    // osx is replaced by a null os
+    final DataFrame baseline = BASELINE_DATAFRAME.get()
+        .addSeries(COL_DIMENSION_VALUE, StringSeries.buildFrom("android", null, "chrome", "safari"));
+    final DataFrame current = CURRENT_DATAFRAME.get()
+        .addSeries(COL_DIMENSION_VALUE, StringSeries.buildFrom("android", null, "chrome", "safari"));
+    final List<Object[]> combinations = COMBINATIONS.stream()
+        .map(c -> new Object[]{"osx".equals(c[0]) ? null : c[0], c[1], c[2], c[3]})
+        .collect(Collectors.toList());
+    final AggregationLoader aggregationLoader = mockAggregationLoader(baseline,
+        current,
+        combinations);
+    final SimpleContributorsFinder contributorsFinder = new SimpleContributorsFinder(
+        aggregationLoader,
+        new SimpleConfiguration());
+
+    final DimensionAnalysisResultApi output = contributorsFinder.search(
+        new ContributorsSearchConfiguration(
+            METRIC_CONFIG_DTO,
+            DATASET_CONFIG_DTO,
+            CURRENT_INTERVAL,
+            BASELINE_INTERVAL,
+            SUMMARY_SIZE,
+            2,
+            DO_ONE_SIDE_ERROR,
+            FILTERS,
+            HIERARCHIES)).getDimensionAnalysisResult();
+    assertThat(output.getResponseRows()).isNotEmpty();
+
+    final ArgumentCaptor<MetricSlice> slices = ArgumentCaptor.forClass(MetricSlice.class);
+    verify(aggregationLoader, times(4)).loadAggregateAsync(slices.capture(), anyList(), anyInt());
+    final List<Predicate> osPredicates = slices.getAllValues().stream()
+        .flatMap(slice -> slice.getPredicates().stream())
+        .filter(p -> p.getOper() == Predicate.OPER.OR)
+        .collect(Collectors.toList());
+    assertThat(osPredicates).isNotEmpty();
+    for (final Predicate predicate : osPredicates) {
+      final Predicate in = predicate.getChildPredicates()[0];
+      assertThat(in.getOper()).isEqualTo(Predicate.OPER.IN);
+      assertThat(in.getLhs()).isEqualTo("os");
+      assertThat((Object[]) in.getRhs()).containsExactly("android");
+      assertThat(predicate.getChildPredicates()[1]).isEqualTo(Predicate.IS_NULL("os"));
+    }
+  }
+
+  @Test
+  public void testInOrIsNull() {
+    assertThat(SimpleContributorsFinder.inOrIsNull("os", Arrays.asList((String) null)))
+        .isEqualTo(Predicate.IS_NULL("os"));
+    final Predicate in = SimpleContributorsFinder.inOrIsNull("os", List.of("android"));
+    assertThat(in.getOper()).isEqualTo(Predicate.OPER.IN);
+    assertThat((Object[]) in.getRhs()).containsExactly("android");
+  }
+
+  /**
+   * Mocks breakdowns and aggregations by os and browser.
+   *
+   * @param combinations rows of os, browser, baseline value, current value
+   */
+  private static AggregationLoader mockAggregationLoader(final DataFrame baselineBreakdown,
+      final DataFrame currentBreakdown, final List<Object[]> combinations) throws Exception {
+    final AggregationLoader aggregationLoader = mock(AggregationLoader.class);
+    when(aggregationLoader.loadBreakdown(any(MetricSlice.class), anyInt())).thenAnswer(
+        invocation -> isBaseline(invocation.getArgument(0)) ? baselineBreakdown : currentBreakdown);
+    when(aggregationLoader.loadAggregateAsync(any(MetricSlice.class), anyList(), anyInt()))
+        .thenAnswer(invocation -> {
+          final List<String> dimensions = invocation.getArgument(1);
+          final int valueIndex = isBaseline(invocation.getArgument(0)) ? 2 : 3;
+          final List<String> columns = new ArrayList<>();
+          dimensions.forEach(d -> columns.add(d + ":STRING"));
+          columns.add(COL_VALUE + ":DOUBLE");
+          final DataFrame.Builder builder = DataFrame.builder(columns);
+          for (final Object[] combination : combinations) {
+            final List<Object> row = new ArrayList<>();
+            dimensions.forEach(d -> row.add(combination[d.equals("os") ? 0 : 1]));
+            row.add(combination[valueIndex]);
+            builder.append(row.toArray());
+          }
+          return CompletableFuture.completedFuture(builder.build());
+        });
+    return aggregationLoader;
+  }
+
+  private static boolean isBaseline(final MetricSlice slice) {
+    return slice.getInterval().equals(BASELINE_INTERVAL);
+  }
+
   @Test
   public void testMergeAndComputeStatsWithDifferentValuesInBreakdown() {
     final DataFrame baseline = new DataFrame()
@@ -20,6 +20,8 @@ import ai.startree.thirdeye.spi.datalayer.dto.MetricConfigDTO;
 import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSourceContext;
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
 import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import com.google.common.collect.Collections2;
@@ -40,6 +42,7 @@ import org.slf4j.LoggerFactory;
  * The type CSV third eye data source, which can make CSV file the data source of ThirdEye.
  * Can be used for testing purposes. The CSV file must have a column called 'timestamp', which is
  * the timestamp of the time series.
+ * Queries are executed in memory by {@link CsvQueryExecutor}.
  */
 public class CSVThirdEyeDataSource implements ThirdEyeDataSource {
 
@@ -50,7 +53,11 @@ public class CSVThirdEyeDataSource implements ThirdEyeDataSource {
    */
   public static final String COL_TIMESTAMP = "timestamp";
 
+  private static final SqlLanguage SQL_LANGUAGE = new CsvSqlLanguage();
+  private static final SqlExpressionBuilder SQL_EXPRESSION_BUILDER = new CsvSqlExpressionBuilder();
+
   private Map<String, DataFrame> datasets;
+  private CsvQueryExecutor queryExecutor;
   private TranslateDelegator translator; // The Translator from metric Id to metric name.
   private String name; // datasource name
 
@@ -67,6 +74,7 @@ public class CSVThirdEyeDataSource implements ThirdEyeDataSource {
    */
   CSVThirdEyeDataSource(Map<String, DataFrame> datasets, Map<Long, String> metricNameMap) {
     this.datasets = datasets;
+    this.queryExecutor = new CsvQueryExecutor(datasets);
     this.translator = new StaticTranslator(metricNameMap);
     this.name = CSVThirdEyeDataSource.class.getSimpleName();
   }
@@ -85,6 +93,7 @@ public class CSVThirdEyeDataSource implements ThirdEyeDataSource {
     }
 
     this.datasets = dataframes;
+    this.queryExecutor = new CsvQueryExecutor(dataframes);
     this.translator = new DAOTranslator(null);
     this.name = MapUtils.getString(properties, "name", CSVThirdEyeDataSource.class.getSimpleName());
   }
@@ -134,12 +143,17 @@ public class CSVThirdEyeDataSource implements ThirdEyeDataSource {
 
   @Override
   public DataTable fetchDataTable(final DataSourceRequest request) throws Exception {
-    LOG.error(
-        "fetchDataTable not implemented in CSVThirdEyeDataSource but returns an empty Df for e2e tests.");
-    DataFrame dataFrame = new DataFrame()
-        .addSeries("ts", new double[0])
-        .addSeries("met", new long[0]);
-    return SimpleDataTable.fromDataFrame(dataFrame);
+    return SimpleDataTable.fromDataFrame(queryExecutor.execute(request.getQuery()));
+  }
+
+  @Override
+  public SqlLanguage getSqlLanguage() {
+    return SQL_LANGUAGE;
+  }
+
+  @Override
+  public SqlExpressionBuilder getSqlExpressionBuilder() {
+    return SQL_EXPRESSION_BUILDER;
   }
 
   @Override
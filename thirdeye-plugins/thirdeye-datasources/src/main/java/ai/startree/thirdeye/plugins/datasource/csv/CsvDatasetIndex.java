@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.datasource.csv;
+
+import static ai.startree.thirdeye.plugins.datasource.csv.CSVThirdEyeDataSource.COL_TIMESTAMP;
+
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.Series;
+import ai.startree.thirdeye.spi.dataframe.Series.SeriesType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Column indexes of a dataset, used to avoid full scans.
+ * The rows are sorted by time: a time range is found by binary search.
+ * String columns get an inverted index - value to row ids - built at first use.
+ */
+class CsvDatasetIndex {
+
+  private final DataFrame data;
+  private final long[] times;
+  private final Map<String, Map<String, int[]>> valueIndexes = new ConcurrentHashMap<>();
+
+  CsvDatasetIndex(final DataFrame dataFrame) {
+    if (dataFrame.contains(COL_TIMESTAMP) && isNumeric(dataFrame.get(COL_TIMESTAMP))) {
+      data = dataFrame.sortedBy(COL_TIMESTAMP);
+      times = data.getLongs(COL_TIMESTAMP).values();
+    } else {
+      data = dataFrame;
+      times = null;
+    }
+  }
+
+  DataFrame getData() {
+    return data;
+  }
+
+  boolean isTimeColumn(final String column) {
+    return times != null && COL_TIMESTAMP.equals(column);
+  }
+
+  boolean isIndexed(final String column) {
+    return data.contains(column) && data.get(column).type() == SeriesType.STRING;
+  }
+
+  /**
+   * @return the index of the first row with a time greater or equal to the given time
+   */
+  int firstRowAtOrAfter(final long time) {
+    int low = 0;
+    int high = times.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (times[mid] < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the sorted ids of the rows with one of the given values
+   */
+  int[] rowsWithValues(final String column, final Collection<String> values) {
+    final Map<String, int[]> index = valueIndexes.computeIfAbsent(column, this::buildValueIndex);
+    final List<int[]> rows = new ArrayList<>();
+    int size = 0;
+    for (final String value : values) {
+      final int[] valueRows = index.get(value);
+      if (valueRows != null) {
+        rows.add(valueRows);
+        size += valueRows.length;
+      }
+    }
+    if (rows.size() == 1) {
+      return rows.get(0);
+    }
+    final int[] merged = new int[size];
+    int offset = 0;
+    for (final int[] valueRows : rows) {
+      System.arraycopy(valueRows, 0, merged, offset, valueRows.length);
+      offset += valueRows.length;
+    }
+    Arrays.sort(merged);
+    return merged;
+  }
+
+  private Map<String, int[]> buildValueIndex(final String column) {
+    final Series series = data.get(column);
+    final Map<String, int[]> counts = new HashMap<>();
+    for (int i = 0; i < series.size(); i++) {
+      if (!series.isNull(i)) {
+        counts.computeIfAbsent(series.getString(i), k -> new int[1])[0]++;
+      }
+    }
+    final Map<String, int[]> index = new HashMap<>();
+    final Map<String, int[]> positions = new HashMap<>();
+    counts.forEach((value, count) -> {
+      index.put(value, new int[count[0]]);
+      positions.put(value, new int[1]);
+    });
+    for (int i = 0; i < series.size(); i++) {
+      if (!series.isNull(i)) {
+        final String value = series.getString(i);
+        index.get(value)[positions.get(value)[0]++] = i;
+      }
+    }
+    return index;
+  }
+
+  private static boolean isNumeric(final Series series) {
+    return series.type() == SeriesType.LONG || series.type() == SeriesType.DOUBLE;
+  }
+}
@@ -0,0 +1,724 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.datasource.csv;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.Series;
+import ai.startree.thirdeye.spi.dataframe.Series.SeriesType;
+import ai.startree.thirdeye.spi.util.TimeUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlIdentifier;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.SqlOrderBy;
+import org.apache.calcite.sql.SqlSelect;
+import org.apache.calcite.sql.parser.SqlParseException;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.util.Litmus;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Period;
+
+/**
+ * Executes SQL queries on in-memory DataFrames.
+ *
+ * Supports single table SELECT queries with WHERE, GROUP BY, ORDER BY, LIMIT and OFFSET.
+ * Aggregations: SUM, COUNT, AVG, MIN, MAX. Time bucketing: TIME_FLOOR, see
+ * {@link CsvSqlExpressionBuilder}.
+ * Time range and equality filters use the dataset indexes. Expressions are evaluated column by
+ * column.
+ */
+public class CsvQueryExecutor {
+
+  public static final String TIME_FLOOR_FUNCTION = "TIME_FLOOR";
+  private static final SqlParser.Config PARSER_CONFIG = SqlParser.config()
+      .withLex(Lex.MYSQL_ANSI);
+  private static final Set<String> AGGREGATIONS = Set.of("SUM", "COUNT", "AVG", "MIN", "MAX");
+  private static final String EXPRESSION_PREFIX = "EXPR$";
+
+  private final Map<String, CsvDatasetIndex> indexes = new HashMap<>();
+
+  public CsvQueryExecutor(final Map<String, DataFrame> datasets) {
+    datasets.forEach((name, dataFrame) -> indexes.put(name, new CsvDatasetIndex(dataFrame)));
+  }
+
+  public DataFrame execute(final String query) throws SqlParseException {
+    SqlNode node = SqlParser.create(query, PARSER_CONFIG).parseQuery();
+    SqlNodeList orderList = null;
+    SqlNode offset = null;
+    SqlNode fetch = null;
+    if (node instanceof SqlOrderBy) {
+      final SqlOrderBy orderBy = (SqlOrderBy) node;
+      node = orderBy.query;
+      orderList = orderBy.orderList;
+      offset = orderBy.offset;
+      fetch = orderBy.fetch;
+    }
+    checkArgument(node instanceof SqlSelect, "Only SELECT queries are supported: %s", query);
+    final SqlSelect select = (SqlSelect) node;
+    checkArgument(select.getHaving() == null && !select.isDistinct(),
+        "HAVING and SELECT DISTINCT are not supported: %s",
+        query);
+    if (orderList == null) {
+      orderList = select.getOrderList();
+      offset = select.getOffset();
+      fetch = select.getFetch();
+    }
+
+    final DataFrame rows = filter(indexOf(select.getFrom()), select.getWhere());
+    final List<SqlNode> selectItems = expandStar(select.getSelectList(), rows);
+    final List<String> names = outputNames(selectItems);
+    final List<SqlNode> expressions = selectItems.stream()
+        .map(CsvQueryExecutor::unalias)
+        .collect(Collectors.toList());
+
+    final boolean isAggregation = select.getGroup() != null
+        || expressions.stream().anyMatch(CsvQueryExecutor::isAggregation);
+    DataFrame output;
+    if (isAggregation) {
+      output = aggregate(rows,
+          expressions,
+          names,
+          groupExpressions(select.getGroup(), selectItems));
+    } else {
+      output = new DataFrame();
+      for (int i = 0; i < expressions.size(); i++) {
+        output.addSeries(names.get(i), evaluate(rows, expressions.get(i)));
+      }
+    }
+
+    if (orderList != null && orderList.size() > 0) {
+      output = orderBy(output, orderList, expressions, names);
+    }
+    final int from = offset == null ? 0 : Math.min(intValue(offset), output.size());
+    final int to = fetch == null ? output.size() : Math.min(from + intValue(fetch), output.size());
+    if (from > 0 || to < output.size()) {
+      output = output.slice(from, to);
+    }
+    return output;
+  }
+
+  private CsvDatasetIndex indexOf(final SqlNode from) {
+    SqlNode table = from;
+    if (table != null && table.getKind() == SqlKind.AS) {
+      table = ((SqlCall) table).operand(0);
+    }
+    checkArgument(table instanceof SqlIdentifier, "Only single table queries are supported.");
+    final String name = lastName((SqlIdentifier) table);
+    final CsvDatasetIndex index = indexes.get(name);
+    checkArgument(index != null, "Dataset not found: %s", name);
+    return index;
+  }
+
+  /**
+   * Time range and equality predicates of the top level conjunction are resolved with the
+   * indexes. Other predicates are evaluated on the remaining rows.
+   */
+  private static DataFrame filter(final CsvDatasetIndex index, @Nullable final SqlNode where) {
+    final DataFrame data = index.getData();
+    if (where == null) {
+      return data;
+    }
+    int from = 0;
+    int to = data.size();
+    int[] rows = null;
+    final List<SqlNode> remaining = new ArrayList<>();
+    for (final SqlNode predicate : conjunctsOf(where)) {
+      final Comparison comparison = Comparison.from(predicate);
+      if (comparison != null && index.isTimeColumn(comparison.column)
+          && comparison.isIntegralRange()) {
+        final long bound = comparison.literals.get(0).longValue(true);
+        switch (comparison.kind) {
+          case GREATER_THAN_OR_EQUAL:
+            from = Math.max(from, index.firstRowAtOrAfter(bound));
+            break;
+          case GREATER_THAN:
+            from = Math.max(from, index.firstRowAtOrAfter(bound + 1));
+            break;
+          case LESS_THAN:
+            to = Math.min(to, index.firstRowAtOrAfter(bound));
+            break;
+          default:
+            to = Math.min(to, index.firstRowAtOrAfter(bound + 1));
+        }
+      } else if (comparison != null && index.isIndexed(comparison.column)
+          && (comparison.kind == SqlKind.EQUALS || comparison.kind == SqlKind.IN)) {
+        final int[] valueRows = index.rowsWithValues(comparison.column, comparison.stringValues());
+        rows = rows == null ? valueRows : intersect(rows, valueRows);
+      } else {
+        remaining.add(predicate);
+      }
+    }
+
+    DataFrame filtered;
+    if (rows == null) {
+      filtered = data.slice(from, Math.max(from, to));
+    } else {
+      final int lower = from;
+      final int upper = to;
+      filtered = data.project(Arrays.stream(rows).filter(r -> r >= lower && r < upper).toArray());
+    }
+    if (!remaining.isEmpty()) {
+      final boolean[] mask = evaluatePredicate(filtered, remaining.get(0));
+      for (int i = 1; i < remaining.size(); i++) {
+        and(mask, evaluatePredicate(filtered, remaining.get(i)));
+      }
+      filtered = filtered.project(indexesOf(mask));
+    }
+    return filtered;
+  }
+
+  private static boolean[] evaluatePredicate(final DataFrame df, final SqlNode predicate) {
+    switch (predicate.getKind()) {
+      case AND:
+      case OR: {
+        final List<SqlNode> operands = ((SqlCall) predicate).getOperandList();
+        final boolean[] result = evaluatePredicate(df, operands.get(0));
+        for (int i = 1; i < operands.size(); i++) {
+          final boolean[] other = evaluatePredicate(df, operands.get(i));
+          if (predicate.getKind() == SqlKind.AND) {
+            and(result, other);
+          } else {
+            for (int j = 0; j < result.length; j++) {
+              result[j] |= other[j];
+            }
+          }
+        }
+        return result;
+      }
+      case NOT: {
+        final boolean[] result = evaluatePredicate(df, ((SqlCall) predicate).operand(0));
+        for (int i = 0; i < result.length; i++) {
+          result[i] = !result[i];
+        }
+        return result;
+      }
+      case IS_NULL:
+      case IS_NOT_NULL: {
+        final Series series = evaluate(df, ((SqlCall) predicate).operand(0));
+        final boolean expected = predicate.getKind() == SqlKind.IS_NULL;
+        final boolean[] result = new boolean[series.size()];
+        for (int i = 0; i < result.length; i++) {
+          result[i] = series.isNull(i) == expected;
+        }
+        return result;
+      }
+      default:
+        final Comparison comparison = Comparison.from(predicate);
+        checkArgument(comparison != null, "Unsupported predicate: %s", predicate);
+        checkArgument(df.contains(comparison.column), "Column not found: %s", comparison.column);
+        return comparison.evaluate(df.get(comparison.column));
+    }
+  }
+
+  private static DataFrame aggregate(final DataFrame rows, final List<SqlNode> expressions,
+      final List<String> names, final List<SqlNode> groupExpressions) {
+    final List<Series> keys = new ArrayList<>();
+    for (final SqlNode groupExpression : groupExpressions) {
+      keys.add(evaluate(rows, groupExpression));
+    }
+    final int[] groupIds = new int[rows.size()];
+    final int[] firstRows = groupIds(keys, groupIds);
+    final int numGroups = keys.isEmpty() ? 1 : firstRows.length;
+
+    final DataFrame output = new DataFrame();
+    for (int i = 0; i < expressions.size(); i++) {
+      final SqlNode expression = expressions.get(i);
+      if (isAggregation(expression)) {
+        output.addSeries(names.get(i),
+            aggregate(rows, (SqlCall) expression, groupIds, numGroups));
+        continue;
+      }
+      final int keyIndex = indexOfGroupExpression(groupExpressions, expression);
+      checkArgument(keyIndex >= 0, "Expression is not aggregated nor grouped: %s", expression);
+      output.addSeries(names.get(i),
+          new DataFrame().addSeries(names.get(i), keys.get(keyIndex))
+              .project(firstRows)
+              .get(names.get(i)));
+    }
+    return output;
+  }
+
+  /**
+   * Assigns a group id to each row.
+   *
+   * @return the first row of each group
+   */
+  private static int[] groupIds(final List<Series> keys, final int[] groupIds) {
+    if (keys.isEmpty()) {
+      return new int[0];
+    }
+    final Map<Object, Integer> groups = new HashMap<>();
+    final List<Integer> firstRows = new ArrayList<>();
+    for (int i = 0; i < groupIds.length; i++) {
+      final Object key;
+      if (keys.size() == 1) {
+        key = keys.get(0).getObject(i);
+      } else {
+        final Object[] values = new Object[keys.size()];
+        for (int k = 0; k < values.length; k++) {
+          values[k] = keys.get(k).getObject(i);
+        }
+        key = Arrays.asList(values);
+      }
+      Integer groupId = groups.get(key);
+      if (groupId == null) {
+        groupId = groups.size();
+        groups.put(key, groupId);
+        firstRows.add(i);
+      }
+      groupIds[i] = groupId;
+    }
+    return firstRows.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static Series aggregate(final DataFrame rows, final SqlCall call, final int[] groupIds,
+      final int numGroups) {
+    final String function = call.getOperator().getName().toUpperCase(Locale.ENGLISH);
+    final SqlNode operand = call.operand(0);
+    final boolean distinct = call.getFunctionQuantifier() != null;
+    if ("COUNT".equals(function)) {
+      final long[] counts = new long[numGroups];
+      if (isStar(operand)) {
+        for (final int groupId : groupIds) {
+          counts[groupId]++;
+        }
+      } else {
+        final Series series = evaluate(rows, operand);
+        final List<Set<Object>> distinctValues = new ArrayList<>();
+        for (int g = 0; distinct && g < numGroups; g++) {
+          distinctValues.add(new HashSet<>());
+        }
+        for (int i = 0; i < groupIds.length; i++) {
+          if (!series.isNull(i)
+              && (!distinct || distinctValues.get(groupIds[i]).add(series.getObject(i)))) {
+            counts[groupIds[i]]++;
+          }
+        }
+      }
+      return LongSeries.buildFrom(counts);
+    }
+    checkArgument(!distinct, "DISTINCT is only supported with COUNT: %s", call);
+
+    final double[] values = evaluate(rows, operand).getDoubles().values();
+    final double[] results = new double[numGroups];
+    final long[] counts = new long[numGroups];
+    switch (function) {
+      case "SUM":
+      case "AVG":
+        for (int i = 0; i < values.length; i++) {
+          if (!DoubleSeries.isNull(values[i])) {
+            results[groupIds[i]] += values[i];
+            counts[groupIds[i]]++;
+          }
+        }
+        break;
+      case "MIN":
+        Arrays.fill(results, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < values.length; i++) {
+          if (!DoubleSeries.isNull(values[i])) {
+            results[groupIds[i]] = Math.min(results[groupIds[i]], values[i]);
+            counts[groupIds[i]]++;
+          }
+        }
+        break;
+      default:
+        Arrays.fill(results, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < values.length; i++) {
+          if (!DoubleSeries.isNull(values[i])) {
+            results[groupIds[i]] = Math.max(results[groupIds[i]], values[i]);
+            counts[groupIds[i]]++;
+          }
+        }
+    }
+    for (int g = 0; g < numGroups; g++) {
+      if (counts[g] == 0) {
+        results[g] = DoubleSeries.NULL;
+      } else if ("AVG".equals(function)) {
+        results[g] /= counts[g];
+      }
+    }
+    return DoubleSeries.buildFrom(results);
+  }
+
+  private static Series evaluate(final DataFrame df, final SqlNode expression) {
+    if (expression instanceof SqlIdentifier) {
+      final String column = lastName((SqlIdentifier) expression);
+      checkArgument(df.contains(column), "Column not found: %s", column);
+      return df.get(column);
+    }
+    if (expression instanceof SqlCall && TIME_FLOOR_FUNCTION.equalsIgnoreCase(
+        ((SqlCall) expression).getOperator().getName())) {
+      return timeFloor(df, (SqlCall) expression);
+    }
+    throw new IllegalArgumentException("Unsupported expression: " + expression);
+  }
+
+  /**
+   * TIME_FLOOR(timeColumn, 'period', 'timezone', unitMillis): floors epoch values to the period in
+   * the timezone and returns epoch milliseconds. Rows are sorted by time, so consecutive rows
+   * usually fall in the same bucket: the bucket bounds are only recomputed when leaving a bucket.
+   */
+  private static Series timeFloor(final DataFrame df, final SqlCall call) {
+    checkArgument(call.operandCount() == 4,
+        "%s expects 4 operands: timeColumn, period, timezone, unitMillis",
+        TIME_FLOOR_FUNCTION);
+    final Series times = evaluate(df, call.operand(0));
+    final Period period = Period.parse(((SqlLiteral) call.operand(1)).toValue());
+    final DateTimeZone timezone = DateTimeZone.forID(((SqlLiteral) call.operand(2)).toValue());
+    final long unitMillis = ((SqlLiteral) call.operand(3)).longValue(true);
+
+    final long[] buckets = new long[times.size()];
+    long bucketStart = 0;
+    long bucketEnd = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      if (times.isNull(i)) {
+        buckets[i] = LongSeries.NULL;
+        continue;
+      }
+      final long millis = times.getLong(i) * unitMillis;
+      if (millis < bucketStart || millis >= bucketEnd) {
+        final DateTime floor = TimeUtils.floorByPeriod(new DateTime(millis, timezone), period);
+        bucketStart = floor.getMillis();
+        bucketEnd = floor.plus(period).getMillis();
+      }
+      buckets[i] = bucketStart;
+    }
+    return LongSeries.buildFrom(buckets);
+  }
+
+  private static DataFrame orderBy(final DataFrame output, final SqlNodeList orderList,
+      final List<SqlNode> expressions, final List<String> names) {
+    Comparator<Integer> comparator = null;
+    for (final SqlNode orderItem : orderList) {
+      SqlNode node = orderItem;
+      if (node.getKind() == SqlKind.NULLS_FIRST || node.getKind() == SqlKind.NULLS_LAST) {
+        node = ((SqlCall) node).operand(0);
+      }
+      final boolean descending = node.getKind() == SqlKind.DESCENDING;
+      if (descending) {
+        node = ((SqlCall) node).operand(0);
+      }
+      final Series series = output.get(resolveOutputName(node, expressions, names));
+      final Comparator<Integer> itemComparator = descending
+          ? (a, b) -> compare(series, b, a)
+          : (a, b) -> compare(series, a, b);
+      comparator = comparator == null ? itemComparator : comparator.thenComparing(itemComparator);
+    }
+    final Integer[] order = new Integer[output.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, comparator);
+    return output.project(Arrays.stream(order).mapToInt(Integer::intValue).toArray());
+  }
+
+  private static String resolveOutputName(final SqlNode node, final List<SqlNode> expressions,
+      final List<String> names) {
+    if (node instanceof SqlNumericLiteral) {
+      return names.get(((SqlNumericLiteral) node).intValue(true) - 1);
+    }
+    if (node instanceof SqlIdentifier && names.contains(lastName((SqlIdentifier) node))) {
+      return lastName((SqlIdentifier) node);
+    }
+    for (int i = 0; i < expressions.size(); i++) {
+      if (expressions.get(i).equalsDeep(node, Litmus.IGNORE)) {
+        return names.get(i);
+      }
+    }
+    throw new IllegalArgumentException("ORDER BY expression must be selected: " + node);
+  }
+
+  private static int compare(final Series series, final int a, final int b) {
+    final boolean aNull = series.isNull(a);
+    final boolean bNull = series.isNull(b);
+    if (aNull || bNull) {
+      return Boolean.compare(!aNull, !bNull);
+    }
+    if (series.type() == SeriesType.LONG || series.type() == SeriesType.DOUBLE) {
+      return Double.compare(series.getDouble(a), series.getDouble(b));
+    }
+    return series.getString(a).compareTo(series.getString(b));
+  }
+
+  private static List<SqlNode> groupExpressions(@Nullable final SqlNodeList group,
+      final List<SqlNode> selectItems) {
+    final List<SqlNode> groupExpressions = new ArrayList<>();
+    if (group == null) {
+      return groupExpressions;
+    }
+    for (final SqlNode groupItem : group) {
+      SqlNode resolved = groupItem;
+      if (groupItem instanceof SqlIdentifier && ((SqlIdentifier) groupItem).isSimple()) {
+        // GROUP BY alias
+        for (final SqlNode selectItem : selectItems) {
+          if (selectItem.getKind() == SqlKind.AS
+              && lastName(((SqlCall) selectItem).operand(1)).equals(lastName(
+              (SqlIdentifier) groupItem))) {
+            resolved = ((SqlCall) selectItem).operand(0);
+          }
+        }
+      }
+      groupExpressions.add(resolved);
+    }
+    return groupExpressions;
+  }
+
+  private static int indexOfGroupExpression(final List<SqlNode> groupExpressions,
+      final SqlNode expression) {
+    for (int i = 0; i < groupExpressions.size(); i++) {
+      final SqlNode groupExpression = groupExpressions.get(i);
+      if (groupExpression.equalsDeep(expression, Litmus.IGNORE)
+          || (groupExpression instanceof SqlIdentifier && expression instanceof SqlIdentifier
+          && lastName((SqlIdentifier) groupExpression).equals(lastName(
+          (SqlIdentifier) expression)))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static List<SqlNode> expandStar(final SqlNodeList selectList, final DataFrame rows) {
+    final List<SqlNode> items = new ArrayList<>();
+    for (final SqlNode item : selectList) {
+      if (isStar(item)) {
+        rows.getSeriesNames()
+            .forEach(name -> items.add(new SqlIdentifier(name, item.getParserPosition())));
+      } else {
+        items.add(item);
+      }
+    }
+    return items;
+  }
+
+  private static List<String> outputNames(final List<SqlNode> selectItems) {
+    final List<String> names = new ArrayList<>();
+    for (int i = 0; i < selectItems.size(); i++) {
+      final SqlNode item = selectItems.get(i);
+      if (item.getKind() == SqlKind.AS) {
+        names.add(lastName(((SqlCall) item).operand(1)));
+      } else if (item instanceof SqlIdentifier) {
+        names.add(lastName((SqlIdentifier) item));
+      } else {
+        names.add(EXPRESSION_PREFIX + i);
+      }
+    }
+    return names;
+  }
+
+  private static SqlNode unalias(final SqlNode node) {
+    return node.getKind() == SqlKind.AS ? ((SqlCall) node).operand(0) : node;
+  }
+
+  private static boolean isAggregation(final SqlNode node) {
+    return node instanceof SqlCall && AGGREGATIONS.contains(
+        ((SqlCall) node).getOperator().getName().toUpperCase(Locale.ENGLISH));
+  }
+
+  private static boolean isStar(final SqlNode node) {
+    return node instanceof SqlIdentifier && ((SqlIdentifier) node).isStar();
+  }
+
+  private static String lastName(final SqlNode identifier) {
+    final List<String> names = ((SqlIdentifier) identifier).names;
+    return names.get(names.size() - 1);
+  }
+
+  private static int intValue(final SqlNode literal) {
+    checkArgument(literal instanceof SqlNumericLiteral, "Expected a number: %s", literal);
+    return ((SqlNumericLiteral) literal).intValue(true);
+  }
+
+  private static List<SqlNode> conjunctsOf(final SqlNode predicate) {
+    if (predicate.getKind() != SqlKind.AND) {
+      return List.of(predicate);
+    }
+    final List<SqlNode> conjuncts = new ArrayList<>();
+    for (final SqlNode operand : ((SqlCall) predicate).getOperandList()) {
+      conjuncts.addAll(conjunctsOf(operand));
+    }
+    return conjuncts;
+  }
+
+  private static void and(final boolean[] result, final boolean[] other) {
+    for (int i = 0; i < result.length; i++) {
+      result[i] &= other[i];
+    }
+  }
+
+  private static int[] indexesOf(final boolean[] mask) {
+    int size = 0;
+    for (final boolean b : mask) {
+      size += b ? 1 : 0;
+    }
+    final int[] indexes = new int[size];
+    int j = 0;
+    for (int i = 0; i < mask.length; i++) {
+      if (mask[i]) {
+        indexes[j++] = i;
+      }
+    }
+    return indexes;
+  }
+
+  private static int[] intersect(final int[] sortedA, final int[] sortedB) {
+    final int[] result = new int[Math.min(sortedA.length, sortedB.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < sortedA.length && j < sortedB.length) {
+      if (sortedA[i] < sortedB[j]) {
+        i++;
+      } else if (sortedA[i] > sortedB[j]) {
+        j++;
+      } else {
+        result[size++] = sortedA[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  /**
+   * A comparison between a column and literals: col = 'a', col < 42, col IN ('a', 'b'), etc.
+   */
+  private static class Comparison {
+
+    private static final Set<SqlKind> COMPARISONS = Set.of(SqlKind.EQUALS,
+        SqlKind.NOT_EQUALS,
+        SqlKind.LESS_THAN,
+        SqlKind.LESS_THAN_OR_EQUAL,
+        SqlKind.GREATER_THAN,
+        SqlKind.GREATER_THAN_OR_EQUAL);
+    private static final Set<SqlKind> RANGES = Set.of(SqlKind.LESS_THAN,
+        SqlKind.LESS_THAN_OR_EQUAL,
+        SqlKind.GREATER_THAN,
+        SqlKind.GREATER_THAN_OR_EQUAL);
+
+    private final String column;
+    private final SqlKind kind;
+    private final List<SqlLiteral> literals;
+
+    private Comparison(final String column, final SqlKind kind, final List<SqlLiteral> literals) {
+      this.column = column;
+      this.kind = kind;
+      this.literals = literals;
+    }
+
+    private static @Nullable Comparison from(final SqlNode node) {
+      if (!(node instanceof SqlBasicCall)) {
+        return null;
+      }
+      final SqlBasicCall call = (SqlBasicCall) node;
+      final SqlKind kind = call.getKind();
+      if (COMPARISONS.contains(kind)) {
+        final SqlNode left = call.operand(0);
+        final SqlNode right = call.operand(1);
+        if (left instanceof SqlIdentifier && right instanceof SqlLiteral) {
+          return new Comparison(lastName(left), kind, List.of((SqlLiteral) right));
+        }
+        if (left instanceof SqlLiteral && right instanceof SqlIdentifier) {
+          return new Comparison(lastName(right), kind.reverse(), List.of((SqlLiteral) left));
+        }
+      } else if ((kind == SqlKind.IN || kind == SqlKind.NOT_IN)
+          && call.operand(0) instanceof SqlIdentifier && call.operand(1) instanceof SqlNodeList) {
+        final List<SqlLiteral> literals = new ArrayList<>();
+        for (final SqlNode value : (SqlNodeList) call.operand(1)) {
+          if (!(value instanceof SqlLiteral)) {
+            return null;
+          }
+          literals.add((SqlLiteral) value);
+        }
+        return new Comparison(lastName(call.operand(0)), kind, literals);
+      }
+      return null;
+    }
+
+    private boolean isIntegralRange() {
+      return RANGES.contains(kind) && literals.get(0) instanceof SqlNumericLiteral
+          && ((SqlNumericLiteral) literals.get(0)).isInteger();
+    }
+
+    private List<String> stringValues() {
+      return literals.stream().map(SqlLiteral::toValue).collect(Collectors.toList());
+    }
+
+    private boolean[] evaluate(final Series series) {
+      final boolean[] result = new boolean[series.size()];
+      final boolean numeric = series.type() == SeriesType.LONG
+          || series.type() == SeriesType.DOUBLE;
+      if (kind == SqlKind.IN || kind == SqlKind.NOT_IN) {
+        final boolean expected = kind == SqlKind.IN;
+        final Set<Object> values = literals.stream()
+            .map(l -> numeric ? (Object) Double.parseDouble(l.toValue()) : l.toValue())
+            .collect(Collectors.toSet());
+        for (int i = 0; i < result.length; i++) {
+          result[i] = !series.isNull(i) && values.contains(
+              numeric ? (Object) series.getDouble(i) : series.getString(i)) == expected;
+        }
+        return result;
+      }
+      final String literal = literals.get(0).toValue();
+      final double numericLiteral = numeric ? Double.parseDouble(literal) : 0;
+      for (int i = 0; i < result.length; i++) {
+        if (series.isNull(i)) {
+          continue;
+        }
+        final int comparison = numeric
+            ? Double.compare(series.getDouble(i), numericLiteral)
+            : series.getString(i).compareTo(literal);
+        result[i] = matches(comparison);
+      }
+      return result;
+    }
+
+    private boolean matches(final int comparison) {
+      switch (kind) {
+        case EQUALS:
+          return comparison == 0;
+        case NOT_EQUALS:
+          return comparison != 0;
+        case LESS_THAN:
+          return comparison < 0;
+        case LESS_THAN_OR_EQUAL:
+          return comparison <= 0;
+        case GREATER_THAN:
+          return comparison > 0;
+        default:
+          return comparison >= 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.datasource.csv;
+
+import static ai.startree.thirdeye.plugins.datasource.csv.CsvQueryExecutor.TIME_FLOOR_FUNCTION;
+
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+
+/**
+ * Generates expressions understood by {@link CsvQueryExecutor}.
+ * Only epoch time columns are supported. Formats: EPOCH_MILLIS or 1:{TimeUnit}:EPOCH.
+ */
+public class CsvSqlExpressionBuilder implements SqlExpressionBuilder {
+
+  private static final String EPOCH_MILLIS = "EPOCH_MILLIS";
+  private static final String EPOCH = "EPOCH";
+
+  @Override
+  public String getTimeFilterExpression(final String timeColumn, final Interval filterInterval,
+      final String timeColumnFormat) {
+    final long unitMillis = unitMillis(timeColumnFormat);
+    return timeColumn + " >= " + Math.floorDiv(filterInterval.getStartMillis(), unitMillis)
+        + " AND " + timeColumn + " < " + Math.floorDiv(filterInterval.getEndMillis(), unitMillis);
+  }
+
+  @Override
+  public String getTimeFilterExpression(final String timeColumn, final Interval filterInterval,
+      @Nullable final String timeFormat, @Nullable final String timeUnit) {
+    return getTimeFilterExpression(timeColumn, filterInterval, columnFormat(timeFormat, timeUnit));
+  }
+
+  @Override
+  public String getTimeGroupExpression(final String timeColumn, final String timeColumnFormat,
+      final Period granularity, @Nullable final String timezone) {
+    return String.format("%s(%s, '%s', '%s', %s)",
+        TIME_FLOOR_FUNCTION,
+        timeColumn,
+        granularity,
+        timezone == null ? DateTimeZone.UTC.getID() : timezone,
+        unitMillis(timeColumnFormat));
+  }
+
+  @Override
+  public String getTimeGroupExpression(final String timeColumn, @Nullable final String timeFormat,
+      final Period granularity, @Nullable final String timeUnit, @Nullable final String timezone) {
+    return getTimeGroupExpression(timeColumn,
+        columnFormat(timeFormat, timeUnit),
+        granularity,
+        timezone);
+  }
+
+  private static String columnFormat(@Nullable final String timeFormat,
+      @Nullable final String timeUnit) {
+    if (timeFormat == null) {
+      return EPOCH_MILLIS;
+    }
+    if (EPOCH.equals(timeFormat)) {
+      Objects.requireNonNull(timeUnit);
+      return "1:" + timeUnit + ":" + EPOCH;
+    }
+    return timeFormat;
+  }
+
+  private static long unitMillis(final String timeColumnFormat) {
+    if (EPOCH_MILLIS.equals(timeColumnFormat)) {
+      return 1;
+    }
+    final String[] parts = timeColumnFormat.split(":");
+    if (parts.length == 3 && EPOCH.equals(parts[2])) {
+      return Long.parseLong(parts[0]) * TimeUnit.valueOf(parts[1]).toMillis(1);
+    }
+    throw new UnsupportedOperationException(String.format(
+        "Time format %s is not supported by the CSV data source. Use %s or 1:{TimeUnit}:%s.",
+        timeColumnFormat,
+        EPOCH_MILLIS,
+        EPOCH));
+  }
+}
@@ -31,6 +31,8 @@ import ai.startree.thirdeye.spi.datalayer.dto.DatasetConfigDTO;
 import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSourceContext;
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
 import ai.startree.thirdeye.spi.detection.ConfigUtils;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
 import ai.startree.thirdeye.spi.util.SpiUtils;
@@ -440,6 +442,17 @@ public class MockThirdEyeDataSource implements ThirdEyeDataSource {
   public DataTable fetchDataTable(final DataSourceRequest request) throws Exception {
     return this.delegate.fetchDataTable(request);
   }
+
+  @Override
+  public SqlLanguage getSqlLanguage() {
+    return this.delegate.getSqlLanguage();
+  }
+
+  @Override
+  public SqlExpressionBuilder getSqlExpressionBuilder() {
+    return this.delegate.getSqlExpressionBuilder();
+  }
+
   @Override
   public void clear() throws Exception {
     // left blank
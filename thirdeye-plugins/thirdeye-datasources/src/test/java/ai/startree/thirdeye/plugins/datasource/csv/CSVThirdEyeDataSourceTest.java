@@ -0,0 +1,135 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.datasource.csv;
+
+import static ai.startree.thirdeye.plugins.datasource.csv.CSVThirdEyeDataSource.COL_TIMESTAMP;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.StringSeries;
+import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
+import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
+import java.util.Map;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CSVThirdEyeDataSourceTest {
+
+  private static final String DATASET = "business";
+  private static final long HOUR_MILLIS = 3600_000L;
+  private static final DateTime START = new DateTime(2022, 1, 1, 0, 0, DateTimeZone.UTC);
+  private static final long T0 = START.getMillis();
+
+  private CSVThirdEyeDataSource dataSource;
+
+  @BeforeMethod
+  public void setUp() {
+    // rows are not sorted by time
+    final DataFrame data = new DataFrame()
+        .addSeries(COL_TIMESTAMP,
+            LongSeries.buildFrom(T0 + 24 * HOUR_MILLIS,
+                T0,
+                T0 + 48 * HOUR_MILLIS,
+                T0 + 12 * HOUR_MILLIS,
+                T0 + 36 * HOUR_MILLIS))
+        .addSeries("country", StringSeries.buildFrom("us", "us", "us", "fr", "fr"))
+        .addSeries("browser",
+            StringSeries.buildFrom("safari", "chrome", "safari", "chrome", "chrome"))
+        .addSeries("views", LongSeries.buildFrom(3, 1, 5, 2, 4));
+    dataSource = CSVThirdEyeDataSource.fromDataFrame(Map.of(DATASET, data), Map.of());
+  }
+
+  @Test
+  public void testTimeGroupAggregation() throws Exception {
+    final SqlExpressionBuilder builder = dataSource.getSqlExpressionBuilder();
+    final String timeColumn = "\"" + COL_TIMESTAMP + "\"";
+    final String query = String.format(
+        "SELECT %s AS ts, SUM(views) AS met FROM %s WHERE %s GROUP BY ts ORDER BY ts",
+        builder.getTimeGroupExpression(timeColumn, null, Period.days(1), null, null),
+        DATASET,
+        builder.getTimeFilterExpression(timeColumn,
+            new Interval(START, START.plusDays(2)),
+            null,
+            null));
+
+    final DataFrame result = fetch(query);
+
+    assertThat(result.getLongs("ts").values()).containsExactly(T0, T0 + 24 * HOUR_MILLIS);
+    assertThat(result.getDoubles("met").values()).containsExactly(3, 7);
+  }
+
+  @Test
+  public void testTimeGroupWithTimezone() throws Exception {
+    final String query = String.format(
+        "SELECT %s AS ts, COUNT(*) AS met FROM %s GROUP BY ts ORDER BY ts DESC",
+        dataSource.getSqlExpressionBuilder().getTimeGroupExpression("\"" + COL_TIMESTAMP + "\"",
+            null,
+            Period.days(1),
+            null,
+            "America/Los_Angeles"),
+        DATASET);
+
+    final DataFrame result = fetch(query);
+
+    // 2022-01-01 00:00 UTC is 2021-12-31 16:00 in Los Angeles
+    final long firstBucket = new DateTime(2021, 12, 31, 0, 0,
+        DateTimeZone.forID("America/Los_Angeles")).getMillis();
+    assertThat(result.getLongs("ts").values()).containsExactly(firstBucket + 48 * HOUR_MILLIS,
+        firstBucket + 24 * HOUR_MILLIS,
+        firstBucket);
+    assertThat(result.getLongs("met").values()).containsExactly(2, 2, 1);
+  }
+
+  @Test
+  public void testGroupByDimensionsWithFilters() throws Exception {
+    final DataFrame result = fetch("SELECT country, browser, COUNT(*) AS cnt,"
+        + " AVG(views) AS avg_views FROM business WHERE browser IN ('chrome', 'safari') AND country <> 'fr'"
+        + " GROUP BY country, browser ORDER BY cnt DESC, browser LIMIT 1");
+
+    assertThat(result.getStrings("country").values()).containsExactly("us");
+    assertThat(result.getStrings("browser").values()).containsExactly("safari");
+    assertThat(result.getLongs("cnt").values()).containsExactly(2);
+    assertThat(result.getDoubles("avg_views").values()).containsExactly(4);
+  }
+
+  @Test
+  public void testAggregationWithoutGroupByOnEmptyRange() throws Exception {
+    final DataFrame result = fetch(
+        "SELECT SUM(views) AS met, COUNT(*) AS cnt FROM business WHERE \"timestamp\" >= 0"
+            + " AND \"timestamp\" < 1");
+
+    assertThat(result.size()).isEqualTo(1);
+    assertThat(result.getDoubles("met").isNull(0)).isTrue();
+    assertThat(result.getLongs("cnt").values()).containsExactly(0);
+  }
+
+  @Test
+  public void testSelectRows() throws Exception {
+    final DataFrame result = fetch(
+        "SELECT * FROM business WHERE country = 'fr' OR views > 4 ORDER BY views DESC");
+
+    assertThat(result.getSeriesNames()).contains(COL_TIMESTAMP, "country", "browser", "views");
+    assertThat(result.getLongs("views").values()).containsExactly(5, 4, 2);
+  }
+
+  private DataFrame fetch(final String query) throws Exception {
+    return dataSource.fetchDataTable(new DataSourceRequest(DATASET, query, Map.of()))
+        .getDataFrame();
+  }
+}
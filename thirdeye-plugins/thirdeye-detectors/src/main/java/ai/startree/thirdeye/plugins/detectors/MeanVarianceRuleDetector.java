@@ -34,9 +34,9 @@ import ai.startree.thirdeye.spi.detection.AnomalyDetector;
 import ai.startree.thirdeye.spi.detection.AnomalyDetectorResult;
 import ai.startree.thirdeye.spi.detection.Pattern;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
 import org.joda.time.Period;
@@ -61,7 +61,8 @@ public class MeanVarianceRuleDetector implements AnomalyDetector<MeanVarianceRul
   private double sensitivity;
   private int lookback;
   private MeanVarianceRuleDetectorSpec spec;
-  private Period seasonality = Period.ZERO; // PT0S: special period for no seasonality
+  private long seasonalityMillis = 0; // 0: special value for no seasonality
+  private DateTimeZone timeZone = DateTimeZone.UTC;
 
   /**
    * Mapping of sensitivity to sigma on range of 0.5 - 1.5
@@ -128,7 +129,11 @@ public class MeanVarianceRuleDetector implements AnomalyDetector<MeanVarianceRul
               spec.getSeasonalityPeriod(),
               minimumLookbackRequired));
 
-      this.seasonality = seasonality;
+      this.seasonalityMillis = seasonality.toStandardDuration().getMillis();
+    }
+
+    if (spec.getTimezone() != null) {
+      this.timeZone = DateTimeZone.forID(spec.getTimezone());
     }
 
     checkArgument(lookback >= 5, "Lookback is %s points. Lookback should be greater than 5 points.", lookback);
@@ -178,16 +183,32 @@ public class MeanVarianceRuleDetector implements AnomalyDetector<MeanVarianceRul
     final double[] lowerBoundArray = new double[size];
     final long[] resultTimeArray = new long[size];
 
-    // todo cyril compute mean and std in a single pass
-    // https://nestedsoftware.com/2018/03/20/calculating-a-moving-average-on-streaming-data-5a7k.22879.html
-    // https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Welford's_online_algorithm
+    final long[] times = inputDF.getLongs(COL_TIME).values();
+    final Map<Long, Integer> indexByTime = new HashMap<>();
+    for (int i = times.length - 1; i >= 0; i--) {
+      indexByTime.put(times[i], i);
+    }
+    final long[] seasonalKeys = new long[times.length];
+    for (int i = 0; i < times.length; i++) {
+      seasonalKeys[i] = seasonalKey(times[i]);
+    }
+    final SeasonalWindow lookbackWindow = new SeasonalWindow(seasonalKeys,
+        inputDF.getDoubles(COL_VALUE).values());
+
     for (int k = 0; k < size; k++) {
       final long forecastTime = forecastDF.getLong(COL_TIME, k);
-      final DataFrame lookbackDf = getLookbackDf(inputDF, forecastTime);
-      final DoubleSeries periodMask = buildPeriodMask(lookbackDf, forecastTime);
+      final Integer indexEnd = indexByTime.get(forecastTime);
+      checkArgument(indexEnd != null,
+          "Could not find index of endTime. endTime should exist in inputDf. This should not happen.");
+      final int indexStart = indexEnd - lookback;
+      checkArgument(indexStart >= 0,
+          "Invalid index. Insufficient data to compute mean/variance on lookback. index: "
+              + indexStart);
+      lookbackWindow.moveTo(indexStart, indexEnd);
       // todo cyril implement median
-      final double mean = lookbackDf.getDoubles(COL_VALUE).multiply(periodMask).mean().value();
-      final double std = lookbackDf.getDoubles(COL_VALUE).multiply(periodMask).std().value();
+      final BucketStats stats = lookbackWindow.stats(seasonalKey(forecastTime));
+      final double mean = stats.mean();
+      final double std = stats.std();
       //calculate baseline, error , upper and lower bound for prediction window.
       resultTimeArray[k] = forecastTime;
       baselineArray[k] = mean;
@@ -208,47 +229,112 @@ public class MeanVarianceRuleDetector implements AnomalyDetector<MeanVarianceRul
     return resultDF;
   }
 
-  private DoubleSeries buildPeriodMask(final DataFrame lookbackDf, final long forecastTime) {
-    if (seasonality.equals(Period.ZERO)) {
-      // no seasonality --> no mask
-      return DoubleSeries.fillValues(lookbackDf.size(), 1);
-    }
-    // fixme cyril this implem does not not fail at DST - but datetimeZone is hardcoded to UTC so not DST
-    DateTime forecastDateTime = new DateTime(forecastTime, DateTimeZone.UTC);
-    DoubleSeries.Builder mask = DoubleSeries.builder();
-    LongSeries lookbackEpochs = lookbackDf.get(COL_TIME).getLongs();
-    for (int idx = 0; idx < lookbackEpochs.size(); idx++) {
-      DateTime lookbackDateTime = new DateTime(lookbackEpochs.get(idx), DateTimeZone.UTC);
-      mask.addValues(isSeasonalityMatch(forecastDateTime, lookbackDateTime) ? 1. : null);
+  /**
+   * Returns a key that is equal for two timestamps if and only if they are at the same time of
+   * the seasonality period, in the detector time zone. Eg for P7D: same day of week and same
+   * time in the day.
+   */
+  private long seasonalKey(final long epochMillis) {
+    if (seasonalityMillis == 0) {
+      // no seasonality --> a single bucket
+      return 0;
     }
-    return mask.build();
+    // the local epoch is a thursday at midnight in any time zone
+    return Math.floorMod(timeZone.convertUTCToLocal(epochMillis), seasonalityMillis);
   }
 
-  private boolean isSeasonalityMatch(final DateTime dt1, final DateTime dt2) {
-    final boolean isSameTimeInDay =
-        dt1.getHourOfDay() == dt2.getHourOfDay() && dt1.getMinuteOfHour() == dt2.getMinuteOfHour()
-            && dt1.getSecondOfMinute() == dt2.getSecondOfMinute()
-            && dt1.getMillisOfSecond() == dt2.getMillisOfSecond();
-    if (seasonality.equals(Period.days(7))) {
-      return isSameTimeInDay && dt1.getDayOfWeek() == dt2.getDayOfWeek();
-    } else if (seasonality.equals(Period.days(1))) {
-      return isSameTimeInDay;
-    } else {
-      throw new UnsupportedOperationException();
+  /**
+   * Lookback window of the values, by index. Maintains the statistics of the values of each
+   * seasonal bucket when the window moves, so that the values are added and removed once.
+   */
+  private static class SeasonalWindow {
+
+    private final long[] seasonalKeys;
+    private final double[] values;
+    private final Map<Long, BucketStats> statsByKey = new HashMap<>();
+    // window is [start, end)
+    private int start = 0;
+    private int end = 0;
+
+    private SeasonalWindow(final long[] seasonalKeys, final double[] values) {
+      this.seasonalKeys = seasonalKeys;
+      this.values = values;
+    }
+
+    private void moveTo(final int newStart, final int newEnd) {
+      if (newStart < start || newEnd < end || newStart >= end) {
+        // moving backward or jumping over the window: rebuild from scratch
+        statsByKey.clear();
+        start = newStart;
+        end = newStart;
+      }
+      while (end < newEnd) {
+        stats(seasonalKeys[end]).add(values[end]);
+        end++;
+      }
+      while (start < newStart) {
+        stats(seasonalKeys[start]).remove(values[start]);
+        start++;
+      }
+    }
+
+    private BucketStats stats(final long seasonalKey) {
+      return statsByKey.computeIfAbsent(seasonalKey, k -> new BucketStats());
     }
   }
 
-  private DataFrame getLookbackDf(final DataFrame inputDF, final long endTimeMillis) {
-    final int indexEnd = inputDF.getLongs(COL_TIME).find(endTimeMillis);
-    checkArgument(indexEnd != -1,
-        "Could not find index of endTime. endTime should exist in inputDf. This should not happen.");
-
-    DataFrame loobackDf = DataFrame.builder(COL_TIME, COL_VALUE).build();
-    final int indexStart = indexEnd - lookback;
-    checkArgument(indexStart >= 0,
-        "Invalid index. Insufficient data to compute mean/variance on lookback. index: "
-            + indexStart);
-    loobackDf = loobackDf.append(inputDF.slice(indexStart, indexEnd));
-    return loobackDf;
+  /**
+   * Count, sum and sum of squares of the non-null values of a bucket. Values are shifted by the
+   * first value of the bucket to limit the cancellation error of the variance.
+   */
+  private static class BucketStats {
+
+    private int count = 0;
+    private double shift = 0;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+
+    private void add(final double value) {
+      if (DoubleSeries.isNull(value)) {
+        return;
+      }
+      if (count == 0) {
+        shift = value;
+        sum = 0;
+        sumOfSquares = 0;
+      }
+      final double shifted = value - shift;
+      count++;
+      sum += shifted;
+      sumOfSquares += shifted * shifted;
+    }
+
+    private void remove(final double value) {
+      if (DoubleSeries.isNull(value)) {
+        return;
+      }
+      final double shifted = value - shift;
+      count--;
+      sum -= shifted;
+      sumOfSquares -= shifted * shifted;
+    }
+
+    private double mean() {
+      if (count <= 0) {
+        return DoubleSeries.NULL;
+      }
+      return shift + sum / count;
+    }
+
+    /**
+     * Sample standard deviation, as {@link DoubleSeries#std()}.
+     */
+    private double std() {
+      if (count <= 1) {
+        return DoubleSeries.NULL;
+      }
+      final double variance = (sumOfSquares - sum * sum / count) / (count - 1);
+      return Math.sqrt(Math.max(variance, 0));
+    }
   }
 }
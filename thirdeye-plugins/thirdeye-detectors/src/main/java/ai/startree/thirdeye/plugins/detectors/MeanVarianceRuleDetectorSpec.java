@@ -28,6 +28,8 @@ public class MeanVarianceRuleDetectorSpec extends AbstractSpec {
   private String lookbackPeriod = null;
   /**Biggest period in ISO-8601 format. Possible values are P7D and P1D. Used to take into account seasonality when computing mean-variance.*/
   private String seasonalityPeriod = null;
+  /**Time zone id used to match the seasonality, eg America/Los_Angeles. Defaults to UTC.*/
+  private String timezone = null;
 
   public int getLookback() {
     return lookback;
@@ -74,4 +76,13 @@ public class MeanVarianceRuleDetectorSpec extends AbstractSpec {
     this.seasonalityPeriod = seasonalityPeriod;
     return this;
   }
+
+  public String getTimezone() {
+    return timezone;
+  }
+
+  public MeanVarianceRuleDetectorSpec setTimezone(final String timezone) {
+    this.timezone = timezone;
+    return this;
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.detectors;
+
+import static ai.startree.thirdeye.plugins.detectors.MeanVarianceRuleDetector.computeSteps;
+
+import ai.startree.thirdeye.spi.Constants;
+import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.detection.AnomalyDetector;
+import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
+import java.util.Map;
+import java.util.Random;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the rolling seasonal window of the detector with the previous per-point computation,
+ * which sliced the lookback and built a seasonality mask for each point, on 6 months of hourly
+ * data with a 28-day lookback and a weekly seasonality. Run the main method manually.
+ */
+public class MeanVarianceRuleDetectorBenchmark {
+
+  private static final Logger LOG = LoggerFactory.getLogger(
+      MeanVarianceRuleDetectorBenchmark.class);
+
+  private static final int N_RUNS = 3;
+  private static final long HOUR_MILLIS = 3600_000L;
+  private static final DateTime START = new DateTime(2021, 1, 1, 0, 0, DateTimeZone.UTC);
+  private static final int SIZE = 182 * 24;
+  private static final String LOOKBACK_PERIOD = "P28D";
+  private static final String MONITORING_GRANULARITY = "PT1H";
+  // the first month is the lookback of the first detected point
+  private static final Interval DETECTION_INTERVAL = new Interval(
+      START.plusDays(28).getMillis(), START.getMillis() + SIZE * HOUR_MILLIS, DateTimeZone.UTC);
+
+  private final long[] times = new long[SIZE];
+  private final double[] values = new double[SIZE];
+
+  private MeanVarianceRuleDetectorBenchmark() {
+    final Random random = new Random(42);
+    for (int i = 0; i < SIZE; i++) {
+      times[i] = START.getMillis() + i * HOUR_MILLIS;
+      values[i] = 1000
+          + 100 * Math.sin(i * 2 * Math.PI / 24)
+          + 50 * (i / 24 % 7)
+          + 20 * random.nextGaussian();
+    }
+  }
+
+  private void benchmarkDetector() {
+    final MeanVarianceRuleDetectorSpec spec = new MeanVarianceRuleDetectorSpec()
+        .setLookbackPeriod(LOOKBACK_PERIOD)
+        .setSeasonalityPeriod("P7D");
+    spec.setMonitoringGranularity(MONITORING_GRANULARITY);
+
+    double checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_RUNS; r++) {
+      final MeanVarianceRuleDetector detector = new MeanVarianceRuleDetector();
+      detector.init(spec);
+      final DataFrame currentDf = new DataFrame()
+          .addSeries(Constants.COL_TIME, times)
+          .addSeries(Constants.COL_VALUE, values);
+      checksum += detector.runDetection(DETECTION_INTERVAL,
+              Map.of(AnomalyDetector.KEY_CURRENT, SimpleDataTable.fromDataFrame(currentDf)))
+          .getDataFrame()
+          .getDoubles(Constants.COL_VALUE)
+          .sum()
+          .value();
+    }
+    logResults("benchmarkDetector", tStart, checksum);
+  }
+
+  private void benchmarkPerPoint() {
+    final int lookback = computeSteps(LOOKBACK_PERIOD, MONITORING_GRANULARITY);
+
+    double checksum = 0;
+    final long tStart = System.nanoTime();
+    for (int r = 0; r < N_RUNS; r++) {
+      final DataFrame inputDf = new DataFrame()
+          .addSeries(Constants.COL_TIME, times)
+          .addSeries(Constants.COL_VALUE, values);
+      final double[] baselines = new double[SIZE];
+      final double[] stds = new double[SIZE];
+      for (int index = 0; index < SIZE; index++) {
+        if (times[index] < DETECTION_INTERVAL.getStartMillis()) {
+          continue;
+        }
+        final DataFrame lookbackDf = inputDf.slice(index - lookback, index);
+        final DoubleSeries periodMask = weeklyMask(lookbackDf, times[index]);
+        final DoubleSeries masked = lookbackDf.getDoubles(Constants.COL_VALUE).multiply(periodMask);
+        baselines[index] = masked.mean().value();
+        stds[index] = masked.std().value();
+      }
+      checksum += DoubleSeries.buildFrom(baselines).sum().value();
+    }
+    logResults("benchmarkPerPoint", tStart, checksum);
+  }
+
+  private static DoubleSeries weeklyMask(final DataFrame lookbackDf, final long forecastTime) {
+    final DateTime forecastDateTime = new DateTime(forecastTime, DateTimeZone.UTC);
+    final DoubleSeries.Builder mask = DoubleSeries.builder();
+    final long[] lookbackEpochs = lookbackDf.getLongs(Constants.COL_TIME).values();
+    for (final long lookbackEpoch : lookbackEpochs) {
+      final DateTime lookbackDateTime = new DateTime(lookbackEpoch, DateTimeZone.UTC);
+      final boolean match = lookbackDateTime.getMillisOfDay() == forecastDateTime.getMillisOfDay()
+          && lookbackDateTime.getDayOfWeek() == forecastDateTime.getDayOfWeek();
+      mask.addValues(match ? 1. : null);
+    }
+    return mask.build();
+  }
+
+  private static void logResults(final String name, final long tStart, final double checksum) {
+    final long tMillis = (System.nanoTime() - tStart) / 1_000_000;
+    LOG.info("{}: {} runs on {} points in {}ms ({}ms per run, checksum {})", name, N_RUNS, SIZE,
+        tMillis, tMillis / N_RUNS, checksum);
+  }
+
+  public static void main(final String[] args) {
+    final MeanVarianceRuleDetectorBenchmark benchmark = new MeanVarianceRuleDetectorBenchmark();
+    // warm up
+    benchmark.benchmarkDetector();
+    benchmark.benchmarkPerPoint();
+
+    benchmark.benchmarkDetector();
+    benchmark.benchmarkPerPoint();
+  }
+}
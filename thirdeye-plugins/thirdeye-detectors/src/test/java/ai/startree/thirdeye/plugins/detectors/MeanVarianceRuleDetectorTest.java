@@ -15,6 +15,7 @@ package ai.startree.thirdeye.plugins.detectors;
 
 import static ai.startree.thirdeye.plugins.detectors.MeanVarianceRuleDetector.computeSteps;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 
 import ai.startree.thirdeye.spi.Constants;
 import ai.startree.thirdeye.spi.dataframe.BooleanSeries;
@@ -28,6 +29,8 @@ import ai.startree.thirdeye.spi.detection.v2.DataTable;
 import ai.startree.thirdeye.spi.detection.v2.SimpleDataTable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
+import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
 import org.testng.annotations.Test;
@@ -441,4 +444,120 @@ public class MeanVarianceRuleDetectorTest {
     int output = computeSteps(period, monitoringGranularity);
     assertThat(output).isEqualTo(365);
   }
+
+  @Test
+  public void testParityWithReferenceImplementation() {
+    // 90 days of hourly data with noise, seasonality and missing values
+    final long start = DECEMBER_18_2020;
+    final long hour = 3600_000L;
+    final int size = 90 * 24;
+    final Random random = new Random(42);
+    final long[] times = new long[size];
+    final double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      times[i] = start + i * hour;
+      values[i] = random.nextInt(50) == 0 ? DoubleSeries.NULL
+          : 1000
+              + 100 * Math.sin(i * 2 * Math.PI / 24)
+              + 50 * (i / 24 % 7)
+              + 20 * random.nextGaussian();
+    }
+    final DataFrame currentDf = new DataFrame()
+        .addSeries(Constants.COL_TIME, times)
+        .addSeries(Constants.COL_VALUE, values);
+    final Interval interval = new Interval(start + 60 * 24 * hour, start + size * hour,
+        DateTimeZone.UTC);
+
+    for (final String seasonality : new String[]{null, "PT0S", "P1D", "P7D"}) {
+      final MeanVarianceRuleDetectorSpec spec = new MeanVarianceRuleDetectorSpec()
+          .setLookbackPeriod("P21D")
+          .setSeasonalityPeriod(seasonality)
+          .setSensitivity(3);
+      spec.setMonitoringGranularity("PT1H");
+      final MeanVarianceRuleDetector detector = new MeanVarianceRuleDetector();
+      detector.init(spec);
+
+      final DataFrame outputDf = detector.runDetection(interval,
+          Map.of(AnomalyDetector.KEY_CURRENT, SimpleDataTable.fromDataFrame(currentDf.copy())))
+          .getDataFrame();
+
+      final int lookback = computeSteps("P21D", "PT1H");
+      final double sigma = 0.5 + 0.1 * (10 - 3);
+      int checked = 0;
+      for (int k = 0; k < size; k++) {
+        if (times[k] < interval.getStartMillis() || DoubleSeries.isNull(values[k])) {
+          assertThat(outputDf.getDouble(Constants.COL_VALUE, k)).isNaN();
+          continue;
+        }
+        final double[] expected = referenceMeanAndStd(times, values, k, lookback, seasonality);
+        assertThat(outputDf.getDouble(Constants.COL_VALUE, k))
+            .isCloseTo(expected[0], within(1e-6));
+        assertThat(outputDf.getDouble(Constants.COL_UPPER_BOUND, k))
+            .isCloseTo(expected[0] + sigma * expected[1], within(1e-6));
+        assertThat(outputDf.getDouble(Constants.COL_LOWER_BOUND, k))
+            .isCloseTo(expected[0] - sigma * expected[1], within(1e-6));
+        checked++;
+      }
+      assertThat(checked).isGreaterThan(600);
+    }
+  }
+
+  /**
+   * Mean and std of the lookback values matching the seasonality, computed independently for
+   * each point.
+   */
+  private static double[] referenceMeanAndStd(final long[] times, final double[] values,
+      final int index, final int lookback, final String seasonality) {
+    final DateTime forecastDateTime = new DateTime(times[index], DateTimeZone.UTC);
+    final DoubleSeries.Builder builder = DoubleSeries.builder();
+    for (int i = index - lookback; i < index; i++) {
+      final DateTime dateTime = new DateTime(times[i], DateTimeZone.UTC);
+      final boolean sameTimeInDay = dateTime.getMillisOfDay() == forecastDateTime.getMillisOfDay();
+      final boolean match = seasonality == null || seasonality.equals("PT0S")
+          || (seasonality.equals("P1D") && sameTimeInDay)
+          || (seasonality.equals("P7D") && sameTimeInDay
+          && dateTime.getDayOfWeek() == forecastDateTime.getDayOfWeek());
+      if (match) {
+        builder.addValues(values[i]);
+      }
+    }
+    final DoubleSeries lookbackValues = builder.build();
+    return new double[]{lookbackValues.mean().value(), lookbackValues.std().value()};
+  }
+
+  @Test
+  public void testWithDailySeasonalityInTimezone() {
+    // hourly data in Los Angeles time: 10 at 9:00 local time, 1 otherwise
+    final DateTimeZone timeZone = DateTimeZone.forID("America/Los_Angeles");
+    final long start = new DateTime(2021, 1, 1, 0, 0, timeZone).getMillis();
+    final long hour = 3600_000L;
+    final int size = 5 * 24;
+    final long[] times = new long[size];
+    final double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      times[i] = start + i * hour;
+      values[i] = new DateTime(times[i], timeZone).getHourOfDay() == 9 ? 10 : 1;
+    }
+    final DataFrame currentDf = new DataFrame()
+        .addSeries(Constants.COL_TIME, times)
+        .addSeries(Constants.COL_VALUE, values);
+    final Interval interval = new Interval(start + 3 * 24 * hour, start + size * hour, timeZone);
+
+    final MeanVarianceRuleDetectorSpec spec = new MeanVarianceRuleDetectorSpec()
+        .setLookbackPeriod("P3D")
+        .setSeasonalityPeriod("P1D")
+        .setTimezone("America/Los_Angeles");
+    spec.setMonitoringGranularity("PT1H");
+    final MeanVarianceRuleDetector detector = new MeanVarianceRuleDetector();
+    detector.init(spec);
+
+    final DataFrame outputDf = detector.runDetection(interval,
+        Map.of(AnomalyDetector.KEY_CURRENT, SimpleDataTable.fromDataFrame(currentDf)))
+        .getDataFrame();
+
+    for (int k = 3 * 24; k < size; k++) {
+      assertThat(outputDf.getDouble(Constants.COL_VALUE, k)).isEqualTo(values[k]);
+    }
+    assertThat(outputDf.getBooleans(Constants.COL_ANOMALY).sum().value()).isEqualTo(0);
+  }
 }
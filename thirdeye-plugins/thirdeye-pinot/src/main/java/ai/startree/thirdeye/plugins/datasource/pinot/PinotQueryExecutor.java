@@ -14,6 +14,11 @@
 package ai.startree.thirdeye.plugins.datasource.pinot;
 
 import ai.startree.thirdeye.spi.dataframe.DataFrame;
+import ai.startree.thirdeye.spi.dataframe.DoubleSeries;
+import ai.startree.thirdeye.spi.dataframe.LongSeries;
+import ai.startree.thirdeye.spi.dataframe.ObjectSeries;
+import ai.startree.thirdeye.spi.dataframe.Series;
+import ai.startree.thirdeye.spi.dataframe.StringSeries;
 import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeDataFrameResultSet;
 import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeResultSet;
 import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeResultSetGroup;
@@ -21,9 +26,13 @@ import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeResultSetMetaData;
 import ai.startree.thirdeye.spi.detection.v2.ColumnType;
 import ai.startree.thirdeye.spi.detection.v2.ColumnType.ColumnDataType;
 import ai.startree.thirdeye.spi.util.Pair;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheLoader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -100,7 +109,8 @@ public class PinotQueryExecutor extends CacheLoader<PinotQuery, ThirdEyeResultSe
    * @param resultSet A result set from Pinot.
    * @return an unified {@link ThirdEyeDataFrameResultSet}.
    */
-  private static ThirdEyeDataFrameResultSet fromPinotResultSet(final ResultSet resultSet) {
+  @VisibleForTesting
+  static ThirdEyeDataFrameResultSet fromPinotResultSet(final ResultSet resultSet) {
     // Build the meta data of this result set
     final List<String> groupKeyColumnNames = new ArrayList<>();
     final List<ColumnType> groupKeyColumnTypes = new ArrayList<>();
@@ -138,45 +148,129 @@ public class PinotQueryExecutor extends CacheLoader<PinotQuery, ThirdEyeResultSe
             groupKeyColumnTypes,
             metricColumnTypes);
 
-    // Build the DataFrame
-    final List<String> columnNameWithDataType = new ArrayList<>();
+    // Build the DataFrame column by column
+    final int rowCount = resultSet.getRowCount();
+    final DataFrame dataFrame = new DataFrame();
     //   Always cast dimension values to STRING type
-    for (final String groupColumnName : thirdEyeResultSetMetaData.getGroupKeyColumnNames()) {
-      columnNameWithDataType.add(groupColumnName + ":STRING");
+    for (int groupByColumnIdx = 0; groupByColumnIdx < groupByColumnCount; groupByColumnIdx++) {
+      dataFrame.addSeries(groupKeyColumnNames.get(groupByColumnIdx),
+          groupKeyColumn(resultSet, groupByColumnIdx, rowCount));
     }
-    columnNameWithDataType.addAll(thirdEyeResultSetMetaData.getMetricColumnNames());
-    final DataFrame.Builder dfBuilder = DataFrame.builder(columnNameWithDataType);
-    final int rowCount = resultSet.getRowCount();
-    final int metricColumnCount = resultSet.getColumnCount();
-    final int totalColumnCount = groupByColumnCount + metricColumnCount;
-    // Dump the values in ResultSet to the DataFrame
+    for (int metricColumnIdx = 0; metricColumnIdx < metricColumnNames.size(); metricColumnIdx++) {
+      dataFrame.addSeries(metricColumnNames.get(metricColumnIdx),
+          metricColumn(resultSet, metricColumnIdx, rowCount));
+    }
+    // Build ThirdEye's result set
+    return new ThirdEyeDataFrameResultSet(thirdEyeResultSetMetaData, dataFrame);
+  }
+
+  /**
+   * Reads a group key column. Repeated dimension values share the same String instance.
+   */
+  private static StringSeries groupKeyColumn(final ResultSet resultSet, final int columnIdx,
+      final int rowCount) {
+    final String[] values = new String[rowCount];
+    final Map<String, String> dictionary = new HashMap<>();
     for (int rowIdx = 0; rowIdx < rowCount; rowIdx++) {
-      final String[] columnsOfTheRow = new String[totalColumnCount];
-      // GroupBy column value(i.e., dimension values)
-      for (int groupByColumnIdx = 0; groupByColumnIdx < groupByColumnCount; groupByColumnIdx++) {
-        String valueString = null;
-        try {
-          valueString = resultSet.getGroupKeyString(rowIdx, groupByColumnIdx);
-        } catch (final Exception e) {
-          // Do nothing and subsequently insert a null value to the current series.
-        }
-        columnsOfTheRow[groupByColumnIdx] = valueString;
+      String valueString = null;
+      try {
+        valueString = resultSet.getGroupKeyString(rowIdx, columnIdx);
+      } catch (final Exception e) {
+        // Do nothing and subsequently insert a null value to the current series.
       }
-      // Metric column's value
-      for (int metricColumnIdx = 0; metricColumnIdx < metricColumnCount; metricColumnIdx++) {
-        String valueString = null;
-        try {
-          valueString = resultSet.getString(rowIdx, metricColumnIdx);
-        } catch (final Exception e) {
-          // Do nothing and subsequently insert a null value to the current series.
+      if (valueString != null) {
+        values[rowIdx] = dictionary.computeIfAbsent(valueString, Function.identity());
+      }
+    }
+    return StringSeries.buildFrom(values);
+  }
+
+  /**
+   * Reads a metric column into a series of the Pinot column type when it is numeric. Other
+   * columns, and numeric columns with values that cannot be parsed, get the type inferred from
+   * the values.
+   */
+  private static Series metricColumn(final ResultSet resultSet, final int columnIdx,
+      final int rowCount) {
+    final String[] values = new String[rowCount];
+    for (int rowIdx = 0; rowIdx < rowCount; rowIdx++) {
+      try {
+        values[rowIdx] = resultSet.getString(rowIdx, columnIdx);
+      } catch (final Exception e) {
+        // Do nothing and subsequently insert a null value to the current series.
+      }
+    }
+    if (rowCount > 0) {
+      final ColumnDataType columnDataType = pinotColumnDataType(resultSet, columnIdx);
+      if (columnDataType == ColumnDataType.INT || columnDataType == ColumnDataType.LONG) {
+        final LongSeries series = toLongSeries(values);
+        if (series != null) {
+          return series;
+        }
+      } else if (columnDataType == ColumnDataType.FLOAT
+          || columnDataType == ColumnDataType.DOUBLE) {
+        final DoubleSeries series = toDoubleSeries(values);
+        if (series != null) {
+          return series;
         }
-        columnsOfTheRow[metricColumnIdx + groupByColumnCount] = valueString;
       }
-      dfBuilder.append(columnsOfTheRow);
     }
-    final DataFrame dataFrame = dfBuilder.build();
-    // Build ThirdEye's result set
-    return new ThirdEyeDataFrameResultSet(thirdEyeResultSetMetaData, dataFrame);
+    final ObjectSeries series = ObjectSeries.buildFrom((Object[]) values);
+    return series.get(series.inferType());
+  }
+
+  /**
+   * Returns the type declared by Pinot for the column, or null if it is not available.
+   */
+  private static ColumnDataType pinotColumnDataType(final ResultSet resultSet,
+      final int columnIdx) {
+    try {
+      return ColumnType.pinotTypeToColumnType(resultSet.getColumnDataType(columnIdx)).getType();
+    } catch (final Exception e) {
+      // Pinot client doesn't provide type for pql
+      return null;
+    }
+  }
+
+  /**
+   * Returns null if a value is not a long.
+   */
+  private static LongSeries toLongSeries(final String[] values) {
+    final long[] longs = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        longs[i] = LongSeries.NULL;
+        continue;
+      }
+      try {
+        longs[i] = Long.parseLong(values[i]);
+      } catch (final NumberFormatException e) {
+        return null;
+      }
+    }
+    return LongSeries.buildFrom(longs);
+  }
+
+  /**
+   * Returns null if a value is not a finite double.
+   */
+  private static DoubleSeries toDoubleSeries(final String[] values) {
+    final double[] doubles = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        doubles[i] = DoubleSeries.NULL;
+        continue;
+      }
+      try {
+        doubles[i] = Double.parseDouble(values[i]);
+      } catch (final NumberFormatException e) {
+        return null;
+      }
+      if (!Double.isFinite(doubles[i])) {
+        return null;
+      }
+    }
+    return DoubleSeries.buildFrom(doubles);
   }
 
   private static List<Pair<Integer, Integer>> rowColCounts(final ResultSetGroup resultSetGroup) {
@@ -13,7 +13,9 @@
  */
 package ai.startree.thirdeye.plugins.datasource.pinot;
 
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MAX_TIME_MILLIS;
 import static ai.startree.thirdeye.spi.util.SpiUtils.optional;
+import static ai.startree.thirdeye.spi.util.TimeUtils.isoPeriod;
 import static java.util.Objects.requireNonNull;
 
 import ai.startree.thirdeye.spi.Constants;
@@ -22,14 +24,17 @@ import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
 import ai.startree.thirdeye.spi.datasource.RelationalQuery;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSource;
 import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSourceContext;
+import ai.startree.thirdeye.spi.datasource.TimeSegmentCacheStats;
 import ai.startree.thirdeye.spi.datasource.macro.SqlExpressionBuilder;
 import ai.startree.thirdeye.spi.datasource.macro.SqlLanguage;
 import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeResultSet;
 import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeResultSetGroup;
 import ai.startree.thirdeye.spi.detection.v2.DataTable;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
@@ -37,9 +42,12 @@ import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.apache.commons.io.FileUtils;
+import org.joda.time.DateTime;
+import org.joda.time.Period;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,14 +57,19 @@ public class PinotThirdEyeDataSource implements ThirdEyeDataSource {
   public static final String HTTP_SCHEME = "http";
   public static final String HTTPS_SCHEME = "https";
   private static final Logger LOG = LoggerFactory.getLogger(PinotThirdEyeDataSource.class);
+  private static final Period DEFAULT_HISTORICAL_RESULTS_TTL = Period.hours(6);
 
   private final String name;
   private final SqlExpressionBuilder sqlExpressionBuilder;
   private final SqlLanguage sqlLanguage;
   private final PinotDatasetOnboarder datasetOnboarder;
   private final LoadingCache<PinotQuery, ThirdEyeResultSetGroup> queryCache;
+  /* Results of queries on time ranges that are not expected to change anymore */
+  private final LoadingCache<PinotQuery, ThirdEyeResultSetGroup> historicalQueryCache;
   private final PinotThirdEyeDataSourceConfig config;
   private final PinotConnectionManager connectionManager;
+  /* Number of rows served by the historical query cache instead of Pinot */
+  private final AtomicLong historicalSavedRows = new AtomicLong();
 
   /* Use case: Log Query Cache stats few min */
   private long queryCacheTs = 0;
@@ -80,6 +93,11 @@ public class PinotThirdEyeDataSource implements ThirdEyeDataSource {
     /* Uses LoadingCache to cache queries */
     queryCache = requireNonNull(buildQueryCache(queryExecutor),
         String.format("%s doesn't connect to Pinot or cache is not initialized.", getName()));
+    historicalQueryCache = buildHistoricalQueryCache(queryExecutor,
+        optional(config.getTimeSegmentCache())
+            .map(PinotTimeSegmentCacheConfiguration::getHistoricalResultsTtl)
+            .map(ttl -> isoPeriod(ttl))
+            .orElse(DEFAULT_HISTORICAL_RESULTS_TTL));
     this.config = config;
   }
 
@@ -103,6 +121,20 @@ public class PinotThirdEyeDataSource implements ThirdEyeDataSource {
         .build(cacheLoader);
   }
 
+  private static LoadingCache<PinotQuery, ThirdEyeResultSetGroup> buildHistoricalQueryCache(
+      final CacheLoader<PinotQuery, ThirdEyeResultSetGroup> cacheLoader, final Period ttl) {
+    // historical results rarely change: refresh them after the ttl to get late or corrected data
+    final long maxBucketNumber = getApproximateMaxBucketNumber(
+        Constants.DEFAULT_HEAP_PERCENTAGE_FOR_HISTORICAL_RESULTSETGROUP_CACHE);
+
+    return CacheBuilder.newBuilder()
+        .expireAfterWrite(ttl.toStandardDuration().getMillis(), TimeUnit.MILLISECONDS)
+        .maximumWeight(maxBucketNumber)
+        .weigher(PinotThirdEyeDataSource::cacheWeigher)
+        .recordStats()
+        .build(cacheLoader);
+  }
+
   private static int cacheWeigher(final RelationalQuery relationalQuery,
       final ThirdEyeResultSetGroup resultSetGroup) {
     final int resultSetCount = resultSetGroup.size();
@@ -150,37 +182,106 @@ public class PinotThirdEyeDataSource implements ThirdEyeDataSource {
    *     Pinot.
    */
   public ThirdEyeResultSetGroup executeSQL(final PinotQuery pinotQuery) throws ExecutionException {
+    return executeSQL(pinotQuery, queryCache);
+  }
+
+  private ThirdEyeResultSetGroup executeSQL(final PinotQuery pinotQuery,
+      final LoadingCache<PinotQuery, ThirdEyeResultSetGroup> cache) throws ExecutionException {
     try {
-      final ThirdEyeResultSetGroup thirdEyeResultSetGroup = queryCache.get(pinotQuery);
+      final ThirdEyeResultSetGroup thirdEyeResultSetGroup = cache.get(pinotQuery);
       final long current = System.currentTimeMillis();
 
       /* Log query stats with min interval of x minutes */
       if (current - queryCacheTs > Duration.ofMinutes(5).toMillis()) {
         LOG.info("queryCache.stats: {}", queryCache.stats());
+        LOG.info("historicalQueryCache.stats: {} - saved rows: {}", historicalQueryCache.stats(),
+            historicalSavedRows.get());
         queryCacheTs = current;
       }
       return thirdEyeResultSetGroup;
     } catch (final ExecutionException e) {
       LOG.error("Failed to execute PQL: {}", pinotQuery.getQuery());
-      LOG.error("queryCache.stats: {}", queryCache.stats());
+      LOG.error("queryCache.stats: {}", cache.stats());
       throw e;
     }
   }
 
+  private ThirdEyeResultSetGroup executeHistoricalSQL(final PinotQuery pinotQuery)
+      throws ExecutionException {
+    // does not record a cache hit or miss
+    final boolean cached = historicalQueryCache.asMap().containsKey(pinotQuery);
+    final ThirdEyeResultSetGroup thirdEyeResultSetGroup = executeSQL(pinotQuery,
+        historicalQueryCache);
+    if (cached) {
+      historicalSavedRows.addAndGet(rowCount(thirdEyeResultSetGroup));
+    }
+    return thirdEyeResultSetGroup;
+  }
+
+  private static long rowCount(final ThirdEyeResultSetGroup resultSetGroup) {
+    long rowCount = 0;
+    for (int idx = 0; idx < resultSetGroup.size(); ++idx) {
+      rowCount += resultSetGroup.get(idx).getRowCount();
+    }
+    return rowCount;
+  }
+
+  @VisibleForTesting
+  CacheStats historicalQueryCacheStats() {
+    return historicalQueryCache.stats();
+  }
+
+  @Override
+  public TimeSegmentCacheStats getTimeSegmentCacheStats() {
+    if (!cachesTimeSegments()) {
+      return null;
+    }
+    final CacheStats stats = historicalQueryCache.stats();
+    return new TimeSegmentCacheStats(stats.requestCount(), stats.hitCount(),
+        historicalSavedRows.get());
+  }
+
+  /**
+   * Returns true if the request filters on a time range that ended before the mutability window.
+   */
+  private boolean isHistorical(final DataSourceRequest request) {
+    final PinotTimeSegmentCacheConfiguration timeSegmentCache = config.getTimeSegmentCache();
+    if (timeSegmentCache == null || !timeSegmentCache.isEnabled()) {
+      return false;
+    }
+    final String maxTimeMillis = optional(request.getProperties())
+        .map(p -> p.get(MAX_TIME_MILLIS.toString()))
+        .orElse(null);
+    if (maxTimeMillis == null) {
+      return false;
+    }
+    final DateTime mutableDataStart = DateTime.now()
+        .minus(isoPeriod(timeSegmentCache.getMutabilityWindow()));
+    return Long.parseLong(maxTimeMillis) <= mutableDataStart.getMillis();
+  }
+
   @Override
   public DataTable fetchDataTable(final DataSourceRequest request) throws Exception {
     try {
       // Use pinot SQL.
-      final ThirdEyeResultSet thirdEyeResultSet = executeSQL(new PinotQuery(
-          request.getQuery(),
-          request.getTable(),
-          true)).get(0);
+      final PinotQuery pinotQuery = new PinotQuery(request.getQuery(), request.getTable(), true);
+      final ThirdEyeResultSetGroup resultSetGroup = isHistorical(request)
+          ? executeHistoricalSQL(pinotQuery)
+          : executeSQL(pinotQuery);
+      final ThirdEyeResultSet thirdEyeResultSet = resultSetGroup.get(0);
       return new ThirdEyeResultSetDataTable(thirdEyeResultSet);
     } catch (final ExecutionException e) {
       throw e;
     }
   }
 
+  @Override
+  public boolean cachesTimeSegments() {
+    return optional(config.getTimeSegmentCache())
+        .map(PinotTimeSegmentCacheConfiguration::isEnabled)
+        .orElse(false);
+  }
+
   @Override
   public boolean validate() {
     try {
@@ -23,6 +23,8 @@ public class PinotThirdEyeDataSourceConfig {
 
   private PinotOauthConfiguration oauth;
   private PinotHealthCheckConfiguration healthCheck = new PinotHealthCheckConfiguration();
+  private PinotTimeSegmentCacheConfiguration timeSegmentCache =
+      new PinotTimeSegmentCacheConfiguration();
   private String zookeeperUrl;
   private String controllerHost;
   private int controllerPort;
@@ -57,6 +59,16 @@ public class PinotThirdEyeDataSourceConfig {
     return this;
   }
 
+  public PinotTimeSegmentCacheConfiguration getTimeSegmentCache() {
+    return timeSegmentCache;
+  }
+
+  public PinotThirdEyeDataSourceConfig setTimeSegmentCache(
+      final PinotTimeSegmentCacheConfiguration timeSegmentCache) {
+    this.timeSegmentCache = timeSegmentCache;
+    return this;
+  }
+
   public String getZookeeperUrl() {
     return zookeeperUrl;
   }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.datasource.pinot;
+
+/**
+ * Results of time segments that ended before the mutability window are cached longer, because
+ * Pinot data older than the mutability window is not expected to change often.
+ * Disabled by default: data that arrives after the mutability window, for instance with a daily
+ * offline push, is only visible once the cached results expire.
+ */
+public class PinotTimeSegmentCacheConfiguration {
+
+  private boolean enabled = false;
+  /**
+   * ISO-8601 period. Late data is expected within this period.
+   */
+  private String mutabilityWindow = "PT1H";
+  /**
+   * ISO-8601 period. Cached historical results are refreshed after this period, so that
+   * corrected or backfilled data eventually shows up.
+   */
+  private String historicalResultsTtl = "PT6H";
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public PinotTimeSegmentCacheConfiguration setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+    return this;
+  }
+
+  public String getMutabilityWindow() {
+    return mutabilityWindow;
+  }
+
+  public PinotTimeSegmentCacheConfiguration setMutabilityWindow(final String mutabilityWindow) {
+    this.mutabilityWindow = mutabilityWindow;
+    return this;
+  }
+
+  public String getHistoricalResultsTtl() {
+    return historicalResultsTtl;
+  }
+
+  public PinotTimeSegmentCacheConfiguration setHistoricalResultsTtl(
+      final String historicalResultsTtl) {
+    this.historicalResultsTtl = historicalResultsTtl;
+    return this;
+  }
+}
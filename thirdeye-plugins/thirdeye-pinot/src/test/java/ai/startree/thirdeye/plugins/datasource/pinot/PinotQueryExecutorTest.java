@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.datasource.pinot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeDataFrameResultSet;
+import org.apache.pinot.client.ResultSet;
+import org.testng.annotations.Test;
+
+public class PinotQueryExecutorTest {
+
+  /**
+   * Mocks a result set of columns of the given types. values[row][column]
+   */
+  private static ResultSet resultSet(final String[] columnNames, final String[] columnTypes,
+      final String[][] values) {
+    final ResultSet resultSet = mock(ResultSet.class);
+    when(resultSet.getGroupKeyLength()).thenReturn(0);
+    when(resultSet.getRowCount()).thenReturn(values.length);
+    when(resultSet.getColumnCount()).thenReturn(columnNames.length);
+    when(resultSet.getColumnName(anyInt())).thenAnswer(i -> columnNames[(int) i.getArgument(0)]);
+    when(resultSet.getColumnDataType(anyInt())).thenAnswer(
+        i -> columnTypes[(int) i.getArgument(0)]);
+    when(resultSet.getString(anyInt(), anyInt())).thenAnswer(
+        i -> values[(int) i.getArgument(0)][(int) i.getArgument(1)]);
+    return resultSet;
+  }
+
+  @Test
+  public void testFromPinotResultSetTypedColumns() {
+    final ResultSet resultSet = resultSet(
+        new String[]{"ts", "value", "label"},
+        new String[]{"LONG", "DOUBLE", "STRING"},
+        new String[][]{
+            {"1640995200000", "1.5", "a"},
+            {"1641081600000", "2", "b"},
+        });
+
+    final ThirdEyeDataFrameResultSet result = PinotQueryExecutor.fromPinotResultSet(resultSet);
+
+    assertThat(result.getRowCount()).isEqualTo(2);
+    assertThat(result.getString(0, 0)).isEqualTo("1640995200000");
+    assertThat(result.getString(1, 0)).isEqualTo("1641081600000");
+    assertThat(result.getString(0, 1)).isEqualTo("1.5");
+    // the Pinot column type is used, not the type of the values
+    assertThat(result.getString(1, 1)).isEqualTo("2.0");
+    assertThat(result.getString(1, 2)).isEqualTo("b");
+  }
+
+  @Test
+  public void testFromPinotResultSetInvalidNumbersAreInferred() {
+    final ResultSet resultSet = resultSet(
+        new String[]{"value"},
+        new String[]{"DOUBLE"},
+        new String[][]{{"1.5"}, {"NaN"}});
+
+    final ThirdEyeDataFrameResultSet result = PinotQueryExecutor.fromPinotResultSet(resultSet);
+
+    assertThat(result.getString(0, 0)).isEqualTo("1.5");
+    assertThat(result.getString(1, 0)).isEqualTo("NaN");
+  }
+
+  @Test
+  public void testFromPinotResultSetGroupKeys() {
+    final ResultSet resultSet = resultSet(
+        new String[]{"value"},
+        new String[]{"LONG"},
+        new String[][]{{"1"}, {"2"}, {"3"}});
+    when(resultSet.getGroupKeyLength()).thenReturn(1);
+    when(resultSet.getGroupKeyColumnName(0)).thenReturn("country");
+    when(resultSet.getGroupKeyString(anyInt(), anyInt())).thenAnswer(
+        i -> new String[]{"US", "FR", "US"}[(int) i.getArgument(0)]);
+
+    final ThirdEyeDataFrameResultSet result = PinotQueryExecutor.fromPinotResultSet(resultSet);
+
+    assertThat(result.getGroupKeyLength()).isEqualTo(1);
+    assertThat(result.getGroupKeyColumnValue(0, 0)).isEqualTo("US");
+    assertThat(result.getGroupKeyColumnValue(1, 0)).isEqualTo("FR");
+    assertThat(result.getGroupKeyColumnValue(2, 0)).isEqualTo("US");
+    assertThat(result.getString(2, 0)).isEqualTo("3");
+  }
+}
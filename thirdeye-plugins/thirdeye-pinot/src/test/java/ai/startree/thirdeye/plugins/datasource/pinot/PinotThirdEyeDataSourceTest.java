@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.plugins.datasource.pinot;
+
+import static ai.startree.thirdeye.spi.datasource.macro.MacroMetadataKeys.MAX_TIME_MILLIS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.spi.datalayer.dto.DataSourceDTO;
+import ai.startree.thirdeye.spi.datasource.DataSourceRequest;
+import ai.startree.thirdeye.spi.datasource.ThirdEyeDataSourceContext;
+import ai.startree.thirdeye.spi.datasource.TimeSegmentCacheStats;
+import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeResultSet;
+import ai.startree.thirdeye.spi.datasource.resultset.ThirdEyeResultSetGroup;
+import java.util.List;
+import java.util.Map;
+import org.joda.time.DateTime;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PinotThirdEyeDataSourceTest {
+
+  private PinotQueryExecutor queryExecutor;
+  private PinotThirdEyeDataSourceConfig config;
+  private PinotThirdEyeDataSource dataSource;
+
+  private static DataSourceRequest request(final String query, final DateTime maxTime) {
+    return new DataSourceRequest("tableName", query,
+        Map.of(MAX_TIME_MILLIS.toString(), String.valueOf(maxTime.getMillis())));
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    final ThirdEyeResultSet resultSet = mock(ThirdEyeResultSet.class);
+    when(resultSet.getRowCount()).thenReturn(24);
+    queryExecutor = mock(PinotQueryExecutor.class);
+    when(queryExecutor.load(any())).thenReturn(new ThirdEyeResultSetGroup(List.of(resultSet)));
+    config = new PinotThirdEyeDataSourceConfig();
+    config.getTimeSegmentCache().setEnabled(true);
+    dataSource = newDataSource();
+  }
+
+  private PinotThirdEyeDataSource newDataSource() {
+    return new PinotThirdEyeDataSource(
+        new ThirdEyeDataSourceContext().setDataSourceDTO(new DataSourceDTO().setName("pinot")),
+        mock(PinotSqlExpressionBuilder.class),
+        mock(PinotSqlLanguage.class),
+        mock(PinotDatasetOnboarder.class),
+        mock(PinotConnectionManager.class),
+        queryExecutor,
+        config);
+  }
+
+  @Test
+  public void testHistoricalRequestsAreServedFromTheHistoricalCache() throws Exception {
+    final DataSourceRequest request = request("SELECT 1", DateTime.now().minusDays(1));
+
+    dataSource.fetchDataTable(request);
+    dataSource.fetchDataTable(request);
+
+    verify(queryExecutor, times(1)).load(any());
+    assertThat(dataSource.cachesTimeSegments()).isTrue();
+    assertThat(dataSource.historicalQueryCacheStats().missCount()).isEqualTo(1);
+    assertThat(dataSource.historicalQueryCacheStats().hitCount()).isEqualTo(1);
+    final TimeSegmentCacheStats stats = dataSource.getTimeSegmentCacheStats();
+    assertThat(stats.getRequestCount()).isEqualTo(2);
+    assertThat(stats.getHitCount()).isEqualTo(1);
+    assertThat(stats.getSavedRowCount()).isEqualTo(24);
+  }
+
+  @Test
+  public void testRequestsInTheMutabilityWindowAreNotHistorical() throws Exception {
+    dataSource.fetchDataTable(request("SELECT 1", DateTime.now().minusMinutes(30)));
+    dataSource.fetchDataTable(new DataSourceRequest("tableName", "SELECT 2", Map.of()));
+
+    verify(queryExecutor, times(2)).load(any());
+    assertThat(dataSource.historicalQueryCacheStats().requestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testHistoricalCacheIsDisabledByDefault() throws Exception {
+    config.setTimeSegmentCache(new PinotTimeSegmentCacheConfiguration());
+    dataSource = newDataSource();
+
+    dataSource.fetchDataTable(request("SELECT 1", DateTime.now().minusDays(1)));
+
+    assertThat(dataSource.cachesTimeSegments()).isFalse();
+    assertThat(dataSource.getTimeSegmentCacheStats()).isNull();
+    assertThat(dataSource.historicalQueryCacheStats().requestCount()).isEqualTo(0);
+  }
+}
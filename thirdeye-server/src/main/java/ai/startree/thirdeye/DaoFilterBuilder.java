@@ -42,7 +42,13 @@ import javax.ws.rs.core.MultivaluedMap;
 
 public class DaoFilterBuilder {
 
-  private static final ImmutableSet<String> KEYWORDS = ImmutableSet.of("limit", "offset");
+  /**
+   * Default index column of the entity id. Used for the keyset pagination with the after
+   * parameter. Entities stored in their own index table map the id api field to another column.
+   */
+  public static final String ID_COLUMN = "baseId";
+
+  private static final ImmutableSet<String> KEYWORDS = ImmutableSet.of("limit", "offset", "after");
   private static final ImmutableMap<String, OPER> OPERATOR_MAP = ImmutableMap.<String, OPER>builder()
       .put("eq", OPER.EQ)
       .put("gt", OPER.GT)
@@ -54,9 +60,11 @@ public class DaoFilterBuilder {
       .build();
   private static final Pattern PATTERN = Pattern.compile("\\[(\\w+)\\](\\S+)");
   private final ImmutableMap<String, String> apiToBeanMap;
+  private final String idColumn;
 
   public DaoFilterBuilder(final ImmutableMap<String, String> apiToBeanMap) {
     this.apiToBeanMap = apiToBeanMap;
+    idColumn = optional(apiToBeanMap.get("id")).orElse(ID_COLUMN);
   }
 
   static Pair<OPER, String> toPair(final Object o) {
@@ -98,7 +106,24 @@ public class DaoFilterBuilder {
           daoFilter.setOffset(offset);
         });
 
-    return daoFilter.setPredicate(buildPredicate(queryParameters));
+    final Predicate predicate = buildPredicate(queryParameters);
+    final Predicate afterPredicate = optional(queryParameters.getFirst("after"))
+        .map(Long::valueOf)
+        .map(after -> Predicate.GT(idColumn, after))
+        .orElse(null);
+    if (daoFilter.getLimit() != null || afterPredicate != null) {
+      // pages are only consistent if rows are ordered
+      daoFilter.setOrderByKey(idColumn);
+    }
+
+    return daoFilter.setPredicate(and(predicate, afterPredicate));
+  }
+
+  private static Predicate and(final Predicate left, final Predicate right) {
+    if (left == null || right == null) {
+      return left == null ? right : left;
+    }
+    return Predicate.AND(left, right);
   }
 
   private Predicate buildPredicate(final MultivaluedMap<String, String> queryParameters) {
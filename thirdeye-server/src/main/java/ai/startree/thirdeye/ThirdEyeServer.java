@@ -23,6 +23,7 @@ import ai.startree.thirdeye.auth.AuthDisabledRequestFilter;
 import ai.startree.thirdeye.auth.ThirdEyePrincipal;
 import ai.startree.thirdeye.config.ThirdEyeServerConfiguration;
 import ai.startree.thirdeye.datalayer.DataSourceBuilder;
+import ai.startree.thirdeye.datasource.cache.DataSourceCache;
 import ai.startree.thirdeye.detectionpipeline.PlanExecutor;
 import ai.startree.thirdeye.healthcheck.DatabaseHealthCheck;
 import ai.startree.thirdeye.json.ThirdEyeJsonProcessingExceptionMapper;
@@ -185,6 +186,7 @@ public class ThirdEyeServer extends Application<ThirdEyeServerConfiguration> {
 
         /* Shutdown the Plan Executor threads */
         injector.getInstance(PlanExecutor.class).close();
+        injector.getInstance(DataSourceCache.class).close();
       }
     };
   }
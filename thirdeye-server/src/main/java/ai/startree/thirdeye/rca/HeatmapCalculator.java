@@ -31,11 +31,15 @@ import ai.startree.thirdeye.spi.datalayer.dto.DatasetConfigDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.MetricConfigDTO;
 import ai.startree.thirdeye.spi.datasource.loader.AggregationLoader;
 import ai.startree.thirdeye.spi.metric.MetricSlice;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import javax.inject.Inject;
@@ -46,20 +50,26 @@ import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+@Singleton
 public class HeatmapCalculator {
 
   public static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormat.forStyle("LL");
   private static final Logger LOG = LoggerFactory.getLogger(HeatmapCalculator.class);
   private static final long TIMEOUT_MILLIS = 60_000;
+  private static final int PARALLELISM = 5;
 
   private final RcaInfoFetcher rcaInfoFetcher;
   private final AggregationLoader aggregationLoader;
+  /* Used to compute the baseline breakdown while the current breakdown is computed */
+  private final ExecutorService executorService;
 
   @Inject
   public HeatmapCalculator(final RcaInfoFetcher rcaInfoFetcher,
       final AggregationLoader aggregationLoader) {
     this.rcaInfoFetcher = rcaInfoFetcher;
     this.aggregationLoader = aggregationLoader;
+    executorService = Executors.newFixedThreadPool(PARALLELISM,
+        new ThreadFactoryBuilder().setNameFormat("heatmap-calculator-%d").build());
   }
 
   public HeatMapResponseApi compute(final long anomalyId,
@@ -86,19 +96,27 @@ public class HeatmapCalculator {
         datasetConfigDTO);
     datasetConfigDTO.setDimensions(Templatable.of(rcaDimensions));
 
-    final Map<String, Map<String, Double>> anomalyBreakdown = computeBreakdown(
-        rcaInfo.getMetric(),
-        parseAndCombinePredicates(filters),
-        currentInterval,
-        limit,
-        datasetConfigDTO);
-
-    final Map<String, Map<String, Double>> baselineBreakdown = computeBreakdown(
-        rcaInfo.getMetric(),
-        parseAndCombinePredicates(filters),
-        baselineInterval,
-        limit,
-        datasetConfigDTO);
+    final Future<Map<String, Map<String, Double>>> baselineBreakdownFuture = executorService
+        .submit(() -> computeBreakdown(
+            rcaInfo.getMetric(),
+            parseAndCombinePredicates(filters),
+            baselineInterval,
+            limit,
+            datasetConfigDTO));
+
+    final Map<String, Map<String, Double>> anomalyBreakdown;
+    final Map<String, Map<String, Double>> baselineBreakdown;
+    try {
+      anomalyBreakdown = computeBreakdown(
+          rcaInfo.getMetric(),
+          parseAndCombinePredicates(filters),
+          currentInterval,
+          limit,
+          datasetConfigDTO);
+      baselineBreakdown = baselineBreakdownFuture.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    } finally {
+      baselineBreakdownFuture.cancel(true);
+    }
 
     // if a dimension value is not observed in a breakdown but observed in the other, add it with a count of 0
     fillMissingKeysWithZeroes(baselineBreakdown, anomalyBreakdown);
@@ -149,8 +167,11 @@ public class HeatmapCalculator {
         DATE_TIME_FORMATTER.print(baseSlice.getInterval().getStartMillis()),
         DATE_TIME_FORMATTER.print(baseSlice.getInterval().getStartMillis()));
 
+    final Future<DataFrame> aggregateFuture = aggregationLoader.loadAggregateAsync(baseSlice,
+        Collections.emptyList(),
+        2);
     final DataFrame dataBreakdown = aggregationLoader.loadBreakdown(baseSlice, limit);
-    final DataFrame dataAggregate = fetchAggregate(baseSlice);
+    final DataFrame dataAggregate = fetchAggregate(baseSlice, aggregateFuture);
 
     return DefaultAggregationLoader.makeBreakdownMap(dataBreakdown, dataAggregate);
   }
@@ -159,13 +180,12 @@ public class HeatmapCalculator {
    * Returns aggregates for the given set of metric slices.
    *
    * @param slice metric slice
+   * @param future aggregate query of the slice
    * @return map of dataframes (keyed by metric slice, columns: [COL_TIME(1), COL_VALUE])
    * @throws Exception on catch-all execution failure
    */
-  private DataFrame fetchAggregate(final MetricSlice slice) throws Exception {
-    final Future<DataFrame> future = aggregationLoader.loadAggregateAsync(slice,
-        Collections.emptyList(),
-        2);
+  private DataFrame fetchAggregate(final MetricSlice slice, final Future<DataFrame> future)
+      throws Exception {
     DataFrame df = future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     if (df.isEmpty()) {
       df = new DataFrame().addSeries(Constants.COL_VALUE, Double.NaN);
@@ -32,44 +32,68 @@ import ai.startree.thirdeye.spi.datalayer.bao.AlertManager;
 import ai.startree.thirdeye.spi.datalayer.bao.AnomalyManager;
 import ai.startree.thirdeye.spi.datalayer.dto.AlertDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.AlertMetadataDTO;
-import ai.startree.thirdeye.spi.datalayer.dto.AnomalyDTO;
-import ai.startree.thirdeye.spi.detection.AnomalyFeedback;
 import ai.startree.thirdeye.spi.detection.AnomalyFeedbackType;
 import com.codahale.metrics.CachedGauge;
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.io.IOException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 import javax.ws.rs.BadRequestException;
 import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Computes the app analytics: monitored metrics and anomaly feedback statistics.
+ *
+ * The anomaly statistics are not maintained incrementally. Each refresh runs aggregate queries on
+ * the anomaly index - the feedback type counts are a single GROUP BY query - so their cost grows
+ * with the number of anomalies. Values without a time filter are memoized for
+ * {@link ai.startree.thirdeye.spi.Constants#METRICS_CACHE_TIMEOUT}. Monitored metrics keep the
+ * rendered metadata of each alert, and only render alerts again when they are updated.
+ */
 @Singleton
 public class AppAnalyticsService {
 
   private static final Logger log = LoggerFactory.getLogger(AppAnalyticsService.class);
 
+  /**
+   * Alerts are only rendered again when they are updated. Their templates can change too: rendered
+   * metadata is refreshed after this delay.
+   */
+  private static final long RENDERED_METADATA_TTL_MINUTES = 60;
+
   private final AlertManager alertManager;
   private final AlertTemplateRenderer renderer;
   private final AnomalyManager anomalyManager;
 
-  public Supplier<List<AnomalyFeedback>> anomalyFeedbacksSupplier =
-      Suppliers.memoizeWithExpiration(this::getAllAnomalyFeedbacks,
+  public Supplier<Map<AnomalyFeedbackType, Long>> feedbackTypeCountsSupplier =
+      Suppliers.memoizeWithExpiration(this::getAllFeedbackTypeCounts,
           METRICS_CACHE_TIMEOUT.toMinutes(), TimeUnit.MINUTES)::get;
   public Supplier<Set<MonitoredMetricWrapper>> uniqueMonitoredMetricsSupplier =
       Suppliers.memoizeWithExpiration(this::getUniqueMonitoredMetrics,
           METRICS_CACHE_TIMEOUT.toMinutes(), TimeUnit.MINUTES)::get;
+  public Supplier<ConfusionMatrix> confusionMatrixSupplier =
+      Suppliers.memoizeWithExpiration(this::loadConfusionMatrix,
+          METRICS_CACHE_TIMEOUT.toMinutes(), TimeUnit.MINUTES)::get;
+
+  // keyed by alert id
+  private final Cache<Long, RenderedMetric> renderedMetrics = CacheBuilder.newBuilder()
+      .expireAfterWrite(RENDERED_METADATA_TTL_MINUTES, TimeUnit.MINUTES)
+      .build();
 
   @Inject
   public AppAnalyticsService(final AlertManager alertManager,
@@ -132,12 +156,25 @@ public class AppAnalyticsService {
     return uniqueMonitoredMetricsSupplier.get().size();
   }
 
-  private Set<MonitoredMetricWrapper> getUniqueMonitoredMetrics() {
-    return alertManager.findAllActive().stream()
-        .map(this::getMetadata)
-        .filter(Objects::nonNull)
-        .map(this::wrapMonitoredMetric)
-        .collect(Collectors.toSet());
+  @VisibleForTesting
+  Set<MonitoredMetricWrapper> getUniqueMonitoredMetrics() {
+    final Set<MonitoredMetricWrapper> metrics = new HashSet<>();
+    final Set<Long> activeAlertIds = new HashSet<>();
+    for (final AlertDTO alert : alertManager.findAllActive()) {
+      activeAlertIds.add(alert.getId());
+      RenderedMetric rendered = renderedMetrics.getIfPresent(alert.getId());
+      if (rendered == null || !Objects.equals(rendered.alertUpdateTime, alert.getUpdateTime())) {
+        rendered = new RenderedMetric(alert.getUpdateTime(), optional(getMetadata(alert))
+            .map(this::wrapMonitoredMetric)
+            .orElse(null));
+        renderedMetrics.put(alert.getId(), rendered);
+      }
+      if (rendered.metric != null) {
+        metrics.add(rendered.metric);
+      }
+    }
+    renderedMetrics.asMap().keySet().retainAll(activeAlertIds);
+    return metrics;
   }
 
   private AlertMetadataDTO getMetadata(final AlertDTO alertDTO) {
@@ -160,6 +197,10 @@ public class AppAnalyticsService {
   }
 
   public ConfusionMatrix computeConfusionMatrixForAnomalies() {
+    return confusionMatrixSupplier.get();
+  }
+
+  private ConfusionMatrix loadConfusionMatrix() {
     final ConfusionMatrix matrix = new ConfusionMatrix();
     // filter to get anomalies without feedback and which are not ignored
     final Predicate unclassified = Predicate.AND(notIgnored(),
@@ -167,8 +208,7 @@ public class AppAnalyticsService {
     matrix.addUnclassified((int) anomalyManager.countParentAnomalies(
         new DaoFilter().setPredicate(unclassified)));
 
-    final List<AnomalyFeedback> allFeedbacks = anomalyFeedbacksSupplier.get();
-    final Map<AnomalyFeedbackType, Long> typeMap = aggregateFeedbackTypes(allFeedbacks);
+    final Map<AnomalyFeedbackType, Long> typeMap = feedbackTypeCountsSupplier.get();
     matrix.addUnclassified(Math.toIntExact(typeMap.get(NO_FEEDBACK)));
     matrix.addFalsePositive(Math.toIntExact(typeMap.get(NOT_ANOMALY)));
     matrix.addTruePositive(Math.toIntExact(typeMap.get(ANOMALY))
@@ -177,29 +217,27 @@ public class AppAnalyticsService {
     return matrix;
   }
 
-  private List<AnomalyFeedback> getAllAnomalyFeedbacks() {
-    return getAnomalyFeedbacks(null);
+  private Map<AnomalyFeedbackType, Long> getAllFeedbackTypeCounts() {
+    return getFeedbackTypeCounts(null);
   }
 
-  private List<AnomalyFeedback> getAnomalyFeedbacks(final Predicate predicate) {
+  private Map<AnomalyFeedbackType, Long> getFeedbackTypeCounts(final Predicate predicate) {
     Predicate finalPredicate = notIgnored();
     if (predicate != null) {
       finalPredicate = Predicate.AND(finalPredicate, predicate);
     }
-    return anomalyManager.findParentAnomaliesWithFeedback(
-            new DaoFilter().setPredicate(finalPredicate)).stream()
-        .map(AnomalyDTO::getFeedback)
-        .collect(Collectors.toList());
+    return anomalyManager.countParentAnomaliesByFeedbackType(
+        new DaoFilter().setPredicate(finalPredicate));
   }
 
   public AnomalyStatsApi computeAnomalyStats(final Predicate predicate) {
-    final List<AnomalyFeedback> allFeedbacks = predicate == null
-        ? anomalyFeedbacksSupplier.get()
-        : getAnomalyFeedbacks(predicate);
+    final Map<AnomalyFeedbackType, Long> feedbackTypeCounts = predicate == null
+        ? feedbackTypeCountsSupplier.get()
+        : getFeedbackTypeCounts(predicate);
     return new AnomalyStatsApi()
         .setTotalCount(countTotal(predicate))
         .setCountWithFeedback(countFeedbacks(predicate))
-        .setFeedbackStats(aggregateFeedbackTypes(allFeedbacks));
+        .setFeedbackStats(feedbackTypeCounts);
   }
 
   private Long countTotal(final Predicate predicate) {
@@ -219,20 +257,6 @@ public class AppAnalyticsService {
     return countTotal(finalPredicate);
   }
 
-  private Map<AnomalyFeedbackType, Long> aggregateFeedbackTypes(
-      final List<AnomalyFeedback> feedbacks) {
-    final Map<AnomalyFeedbackType, Long> feedbackStats = new HashMap<>();
-    for (final AnomalyFeedbackType type : AnomalyFeedbackType.values()) {
-      feedbackStats.put(type, 0L);
-    }
-    feedbacks.forEach(feedback -> {
-      final AnomalyFeedbackType type = feedback.getFeedbackType();
-      final long count = feedbackStats.get(type);
-      feedbackStats.put(type, count + 1);
-    });
-    return feedbackStats;
-  }
-
   public AppAnalyticsApi getAppAnalytics(final Long startTime, final Long endTime) {
     final List<Predicate> predicates = new ArrayList<>();
     optional(startTime).ifPresent(start -> predicates.add(Predicate.GE("startTime", startTime)));
@@ -244,4 +268,16 @@ public class AppAnalyticsService {
         .setnMonitoredMetrics(uniqueMonitoredMetricsCount())
         .setAnomalyStats(computeAnomalyStats(predicate));
   }
+
+  private static class RenderedMetric {
+
+    private final Timestamp alertUpdateTime;
+    // null if the alert could not be rendered
+    private final MonitoredMetricWrapper metric;
+
+    private RenderedMetric(final Timestamp alertUpdateTime, final MonitoredMetricWrapper metric) {
+      this.alertUpdateTime = alertUpdateTime;
+      this.metric = metric;
+    }
+  }
 }
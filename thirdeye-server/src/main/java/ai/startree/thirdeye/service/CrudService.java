@@ -14,6 +14,7 @@
 
 package ai.startree.thirdeye.service;
 
+import static ai.startree.thirdeye.DaoFilterBuilder.ID_COLUMN;
 import static ai.startree.thirdeye.spi.ThirdEyeStatus.ERR_ID_UNEXPECTED_AT_CREATION;
 import static ai.startree.thirdeye.spi.ThirdEyeStatus.ERR_MISSING_ID;
 import static ai.startree.thirdeye.spi.ThirdEyeStatus.ERR_MISSING_NAME;
@@ -38,8 +39,12 @@ import ai.startree.thirdeye.spi.datalayer.bao.AbstractManager;
 import ai.startree.thirdeye.spi.datalayer.dto.AbstractDTO;
 import com.google.common.collect.ImmutableMap;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -52,20 +57,33 @@ import org.slf4j.LoggerFactory;
 public abstract class CrudService<ApiT extends ThirdEyeCrudApi<ApiT>, DtoT extends AbstractDTO> {
 
   private static final Logger log = LoggerFactory.getLogger(CrudService.class);
+  /**
+   * Maximum number of entities read by a single query of list. All the pages are read before the
+   * response is built, so that a database error fails the request instead of truncating it.
+   */
+  private static final long LIST_PAGE_SIZE = 500;
+
   protected final AuthorizationManager authorizationManager;
 
   protected final AbstractManager<DtoT> dtoManager;
   protected final ImmutableMap<String, String> apiToIndexMap;
+  /**
+   * Index column of the entity id. baseId unless the entity is stored in its own index table.
+   */
+  private final String idColumn;
 
   public CrudService(final AuthorizationManager authorizationManager,
       final AbstractManager<DtoT> dtoManager,
       final ImmutableMap<String, String> apiToIndexMap) {
     this.authorizationManager = authorizationManager;
     this.dtoManager = dtoManager;
-    this.apiToIndexMap = ImmutableMap.<String, String>builder()
-        .put("id", "baseId")
-        .putAll(apiToIndexMap)
-        .build();
+    this.apiToIndexMap = apiToIndexMap.containsKey("id")
+        ? apiToIndexMap
+        : ImmutableMap.<String, String>builder()
+            .put("id", ID_COLUMN)
+            .putAll(apiToIndexMap)
+            .build();
+    idColumn = this.apiToIndexMap.get("id");
   }
 
   public ApiT get(
@@ -102,13 +120,16 @@ public abstract class CrudService<ApiT extends ThirdEyeCrudApi<ApiT>, DtoT exten
       final ThirdEyePrincipal principal,
       final MultivaluedMap<String, String> queryParameters
   ) {
-    final List<DtoT> results = queryParameters.size() > 0
-        ? dtoManager.filter(new DaoFilterBuilder(apiToIndexMap).buildFilter(queryParameters))
-        : dtoManager.findAll();
+    final DaoFilter daoFilter = new DaoFilterBuilder(apiToIndexMap).buildFilter(queryParameters);
+
+    // access is decided per entity by the access control - it cannot be pushed down to the db
+    final List<DtoT> results = new ArrayList<>();
+    new PageIterator(daoFilter).forEachRemaining(page -> page.stream()
+        .filter(dto -> authorizationManager.hasAccess(principal, dto, AccessType.READ))
+        .forEach(results::add));
 
     final RequestCache cache = createRequestCache();
     return results.stream()
-        .filter(dto -> authorizationManager.hasAccess(principal, dto, AccessType.READ))
         .map(dto -> toApi(dto, cache));
   }
 
@@ -293,4 +314,70 @@ public abstract class CrudService<ApiT extends ThirdEyeCrudApi<ApiT>, DtoT exten
   protected void deleteDto(DtoT dto) {
     dtoManager.delete(dto);
   }
+
+  /**
+   * Reads the entities matching a filter page by page, with a keyset pagination on the id.
+   * The limit and offset of the filter apply to the whole iteration.
+   *
+   * Pages are read with the filter of the manager, so entities are decorated as in any other
+   * filter. An orphan index row or an entity that fails to decode gives a short page: the
+   * iteration continues after the last entity read, and ends on an empty page.
+   */
+  private class PageIterator implements Iterator<List<DtoT>> {
+
+    private final @Nullable Predicate predicate;
+    private @Nullable Long offset;
+    private @Nullable Long remaining;
+    private @Nullable Long lastId = null;
+    private boolean hasNext = true;
+
+    private PageIterator(final DaoFilter daoFilter) {
+      predicate = daoFilter.getPredicate();
+      offset = daoFilter.getOffset();
+      remaining = daoFilter.getLimit();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return hasNext && (remaining == null || remaining > 0);
+    }
+
+    @Override
+    public List<DtoT> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final long pageSize = remaining == null ? LIST_PAGE_SIZE : Math.min(remaining,
+          LIST_PAGE_SIZE);
+      final List<DtoT> page = new ArrayList<>(dtoManager.filter(new DaoFilter()
+          .setPredicate(pagePredicate())
+          .setLimit(pageSize)
+          .setOffset(offset)
+          .setOrderByKey(idColumn)));
+      // the order of the filter is not guaranteed by all the managers
+      page.sort(Comparator.comparing(AbstractDTO::getId));
+
+      offset = null;
+      if (remaining != null) {
+        remaining -= page.size();
+      }
+      if (page.isEmpty()) {
+        hasNext = false;
+        return page;
+      }
+      final Long pageLastId = page.get(page.size() - 1).getId();
+      // stop if the manager does not apply the keyset predicate, instead of looping on a page
+      hasNext = lastId == null || pageLastId > lastId;
+      lastId = pageLastId;
+      return page;
+    }
+
+    private @Nullable Predicate pagePredicate() {
+      if (lastId == null) {
+        return predicate;
+      }
+      final Predicate afterLastId = Predicate.GT(idColumn, lastId);
+      return predicate == null ? afterLastId : Predicate.AND(predicate, afterLastId);
+    }
+  }
 }
@@ -93,6 +93,12 @@ public class DataSourceService extends CrudService<DataSourceApi, DataSourceDTO>
     dataSourceCache.removeDataSource(existing.getName());
   }
 
+  @Override
+  protected void postUpdate(final DataSourceDTO dto) {
+    // a read between prepareUpdatedDto and the db update may have cached the previous version
+    dataSourceCache.removeDataSource(dto.getName());
+  }
+
   public List<DatasetApi> getDatasets(final String name) {
     final ThirdEyeDataSource dataSource = dataSourceCache.getDataSource(name);
     return dataSource.getDatasets().stream()
@@ -29,6 +29,8 @@ import javax.inject.Singleton;
 public class TaskService extends CrudService<TaskApi, TaskDTO> {
 
   public static final ImmutableMap<String, String> API_TO_INDEX_FILTER_MAP = ImmutableMap.<String, String>builder()
+      // task_entity is its own index table: the id is not stored in a baseId column
+      .put("id", "id")
       .put("type", "type")
       .put("status", "status")
       .put("created", "createTime")
@@ -19,6 +19,7 @@ import static ai.startree.thirdeye.spi.util.Pair.pair;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import ai.startree.thirdeye.spi.datalayer.DaoFilter;
 import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.Predicate.OPER;
 import com.google.common.collect.ImmutableMap;
@@ -90,6 +91,27 @@ public class DaoFilterBuilderTest {
     ).isEqualTo(offset);
   }
 
+  @Test
+  public void testAfterParam() {
+    final DaoFilter filter = builder().buildFilter(queryParams("after", "42", "limit", "10"));
+    assertThat(filter.getPredicate()).isEqualTo(Predicate.GT("baseId", 42L));
+    assertThat(filter.getOrderByKey()).isEqualTo("baseId");
+    assertThat(filter.getLimit()).isEqualTo(10L);
+
+    final DaoFilter withPredicate = new DaoFilterBuilder(ImmutableMap.of("name", "name"))
+        .buildFilter(queryParams("name", "a", "after", "42"));
+    assertThat(withPredicate.getPredicate()).isEqualTo(Predicate.AND(
+        Predicate.AND(Predicate.AND(Predicate.EQ("name", "a"))),
+        Predicate.GT("baseId", 42L)));
+  }
+
+  @Test
+  public void testLimitOrdersById() {
+    assertThat(builder().buildFilter(queryParams("limit", "10")).getOrderByKey())
+        .isEqualTo("baseId");
+    assertThat(builder().buildFilter(queryParams()).getOrderByKey()).isNull();
+  }
+
   @Test
   public void testNegativeLimitValue() {
     assertBadRequestException(queryParams("limit", "-1"));
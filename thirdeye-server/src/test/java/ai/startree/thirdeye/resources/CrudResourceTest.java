@@ -13,29 +13,57 @@
  */
 package ai.startree.thirdeye.resources;
 
+import static ai.startree.thirdeye.spi.util.SpiUtils.optional;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ai.startree.thirdeye.alert.AlertTemplateRenderer;
 import ai.startree.thirdeye.auth.AccessControlProvider;
 import ai.startree.thirdeye.auth.AuthorizationManager;
 import ai.startree.thirdeye.auth.ThirdEyePrincipal;
+import ai.startree.thirdeye.datalayer.DatabaseService;
+import ai.startree.thirdeye.datalayer.DatabaseTransactionService;
+import ai.startree.thirdeye.datalayer.DatabaseTransactionService.DBOperation;
 import ai.startree.thirdeye.datalayer.bao.AbstractManagerImpl;
+import ai.startree.thirdeye.datalayer.bao.AnomalyManagerImpl;
+import ai.startree.thirdeye.datalayer.bao.TaskManagerImpl;
 import ai.startree.thirdeye.datalayer.dao.GenericPojoDao;
+import ai.startree.thirdeye.datalayer.dao.TaskDao;
+import ai.startree.thirdeye.datalayer.entity.TaskEntity;
+import ai.startree.thirdeye.service.AnomalyService;
+import ai.startree.thirdeye.service.AppAnalyticsService;
 import ai.startree.thirdeye.service.CrudService;
+import ai.startree.thirdeye.service.TaskService;
 import ai.startree.thirdeye.spi.accessControl.AccessControl;
 import ai.startree.thirdeye.spi.accessControl.AccessType;
 import ai.startree.thirdeye.spi.accessControl.ResourceIdentifier;
+import ai.startree.thirdeye.spi.api.AnomalyApi;
+import ai.startree.thirdeye.spi.api.TaskApi;
 import ai.startree.thirdeye.spi.api.ThirdEyeCrudApi;
+import ai.startree.thirdeye.spi.datalayer.DaoFilter;
+import ai.startree.thirdeye.spi.datalayer.Predicate;
+import ai.startree.thirdeye.spi.datalayer.Predicate.OPER;
 import ai.startree.thirdeye.spi.datalayer.bao.AbstractManager;
+import ai.startree.thirdeye.spi.datalayer.bao.AlertManager;
 import ai.startree.thirdeye.spi.datalayer.dto.AbstractDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AnomalyDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AnomalyFeedbackDTO;
+import ai.startree.thirdeye.spi.task.TaskStatus;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableMap;
+import java.sql.Connection;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.ws.rs.ForbiddenException;
@@ -127,11 +155,11 @@ public class CrudResourceTest {
     final DummyManager manager = mock(DummyManager.class);
     final UriInfo uriInfo = mock(UriInfo.class);
     when(uriInfo.getQueryParameters()).thenReturn(new MultivaluedHashMap<>());
-    when(manager.findAll()).thenReturn(Arrays.asList(
+    when(manager.filter(any(DaoFilter.class))).thenReturn(Arrays.asList(
         (DummyDto) new DummyDto().setId(1L),
         (DummyDto) new DummyDto().setId(2L),
         (DummyDto) new DummyDto().setId(3L)
-    ));
+    ), List.of());
 
     final DummyResource resource = new DummyResource(manager, ImmutableMap.of(),
         AccessControlProvider.alwaysDeny);
@@ -148,11 +176,11 @@ public class CrudResourceTest {
     final DummyManager manager = mock(DummyManager.class);
     final UriInfo uriInfo = mock(UriInfo.class);
     when(uriInfo.getQueryParameters()).thenReturn(new MultivaluedHashMap<>());
-    when(manager.findAll()).thenReturn(Arrays.asList(
+    when(manager.filter(any(DaoFilter.class))).thenReturn(Arrays.asList(
         (DummyDto) new DummyDto().setId(1L),
         (DummyDto) new DummyDto().setId(2L),
         (DummyDto) new DummyDto().setId(3L)
-    ));
+    ), List.of());
 
     final DummyResource resource = new DummyResource(manager, ImmutableMap.of(),
         (String token, ResourceIdentifier identifiers, AccessType accessType)
@@ -167,6 +195,194 @@ public class CrudResourceTest {
     }
   }
 
+  @Test
+  public void testGetAll_readsPagesWithKeysetPagination() {
+    final List<DummyDto> dtos = new ArrayList<>();
+    for (long id = 1; id <= 1200; id++) {
+      dtos.add((DummyDto) new DummyDto().setId(id));
+    }
+    final DummyManager manager = mock(DummyManager.class);
+    final List<DaoFilter> filters = new ArrayList<>();
+    mockPages(manager, dtos, filters);
+    final MultivaluedHashMap<String, String> queryParameters = new MultivaluedHashMap<>();
+    queryParameters.add("limit", "1100");
+    queryParameters.add("offset", "50");
+    final UriInfo uriInfo = mock(UriInfo.class);
+    when(uriInfo.getQueryParameters()).thenReturn(queryParameters);
+
+    final DummyResource resource = new DummyResource(manager, ImmutableMap.of(),
+        AccessControlProvider.alwaysAllow);
+    try (Response resp = resource.list(nobody(), uriInfo)) {
+      // pages are read before the response is built
+      assertThat(filters).hasSize(3);
+      final List<DummyApi> entities = ((Stream<DummyApi>) resp.getEntity())
+          .collect(Collectors.toList());
+
+      assertThat(entities).hasSize(1100);
+      assertThat(entities.get(0).getId()).isEqualTo(51L);
+      assertThat(entities.get(1099).getId()).isEqualTo(1150L);
+      assertThat(filters).hasSize(3);
+      assertThat(filters.get(0).getOffset()).isEqualTo(50L);
+      assertThat(filters.get(1).getOffset()).isNull();
+      assertThat(filters.get(2).getLimit()).isEqualTo(100L);
+      assertThat(filters).allMatch(f -> "baseId".equals(f.getOrderByKey()));
+    }
+  }
+
+  @Test
+  public void testGetAll_continuesAfterUnreadableEntities() {
+    final List<DummyDto> dtos = new ArrayList<>();
+    for (long id = 1; id <= 1200; id++) {
+      dtos.add((DummyDto) new DummyDto().setId(id));
+    }
+    final DummyManager manager = mock(DummyManager.class);
+    final List<DaoFilter> filters = new ArrayList<>();
+    mockPages(manager, dtos, filters);
+    // orphan index rows or entities that fail to decode: filter returns short pages
+    when(manager.filter(any(DaoFilter.class))).thenAnswer(invocation -> {
+      final DaoFilter filter = invocation.getArgument(0);
+      filters.add(filter);
+      final long after = afterId(filter.getPredicate());
+      return dtos.stream()
+          .filter(dto -> dto.getId() > after)
+          .limit(filter.getLimit())
+          .filter(dto -> dto.getId() % 100 != 0)
+          .collect(Collectors.toList());
+    });
+    final UriInfo uriInfo = mock(UriInfo.class);
+    when(uriInfo.getQueryParameters()).thenReturn(new MultivaluedHashMap<>());
+
+    final DummyResource resource = new DummyResource(manager, ImmutableMap.of(),
+        AccessControlProvider.alwaysAllow);
+    try (Response resp = resource.list(nobody(), uriInfo)) {
+      final List<DummyApi> entities = ((Stream<DummyApi>) resp.getEntity())
+          .collect(Collectors.toList());
+
+      assertThat(entities).hasSize(1188);
+      assertThat(entities.get(1187).getId()).isEqualTo(1199L);
+      // the last page is empty
+      assertThat(filters).hasSize(4);
+    }
+  }
+
+  @Test
+  public void testGetAll_tasksWithoutParams() throws Exception {
+    final List<TaskEntity> entities = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      final TaskEntity entity = new TaskEntity()
+          .setStatus(TaskStatus.COMPLETED.toString())
+          .setJsonVal("{\"status\":\"COMPLETED\"}");
+      entity.setId(id);
+      entities.add(entity);
+    }
+    final List<Predicate> predicates = new ArrayList<>();
+    final DatabaseService databaseService = mock(DatabaseService.class);
+    when(databaseService.findAll(any(), any(), any(), eq("id"), eq(false), eq(TaskEntity.class),
+        any())).thenAnswer(invocation -> {
+      predicates.add(invocation.getArgument(0));
+      return filterTasks(entities, invocation.getArgument(0), invocation.getArgument(1));
+    });
+    final DatabaseTransactionService transactionService = mock(DatabaseTransactionService.class);
+    when(transactionService.executeTransaction(any(), any())).thenAnswer(invocation ->
+        ((DBOperation<?>) invocation.getArgument(0)).handle(mock(Connection.class)));
+    final TaskResource resource = new TaskResource(new TaskService(
+        new TaskManagerImpl(new TaskDao(databaseService, transactionService),
+            new MetricRegistry()),
+        new AuthorizationManager(mock(AlertTemplateRenderer.class),
+            AccessControlProvider.alwaysAllow)));
+
+    final UriInfo uriInfo = mock(UriInfo.class);
+    when(uriInfo.getQueryParameters()).thenReturn(new MultivaluedHashMap<>());
+    try (Response resp = resource.list(nobody(), uriInfo)) {
+      final List<TaskApi> tasks = ((Stream<TaskApi>) resp.getEntity())
+          .collect(Collectors.toList());
+      assertThat(tasks).extracting(TaskApi::getId).containsExactly(1L, 2L, 3L);
+      // the second page is empty
+      assertThat(predicates).hasSize(2);
+      assertThat(predicates.get(0)).isNull();
+    }
+
+    final MultivaluedHashMap<String, String> queryParameters = new MultivaluedHashMap<>();
+    queryParameters.add("limit", "2");
+    when(uriInfo.getQueryParameters()).thenReturn(queryParameters);
+    try (Response resp = resource.list(nobody(), uriInfo)) {
+      final List<TaskApi> tasks = ((Stream<TaskApi>) resp.getEntity())
+          .collect(Collectors.toList());
+      assertThat(tasks).extracting(TaskApi::getId).containsExactly(1L, 2L);
+    }
+  }
+
+  @Test
+  public void testGetAll_anomaliesAreDecoratedWithFeedback() {
+    final GenericPojoDao genericPojoDao = mock(GenericPojoDao.class);
+    final AnomalyDTO anomaly = new AnomalyDTO()
+        .setAnomalyFeedbackId(10L)
+        .setChildIds(Set.of(2L));
+    anomaly.setId(1L);
+    when(genericPojoDao.filter(any(DaoFilter.class))).thenReturn(List.of(anomaly), List.of());
+    final AnomalyFeedbackDTO feedback = new AnomalyFeedbackDTO();
+    feedback.setId(10L);
+    when(genericPojoDao.get(List.of(10L), AnomalyFeedbackDTO.class))
+        .thenReturn(List.of(feedback));
+    final AnomalyResource resource = new AnomalyResource(new AnomalyService(
+        new AnomalyManagerImpl(genericPojoDao),
+        mock(AlertManager.class),
+        mock(AppAnalyticsService.class),
+        new AuthorizationManager(mock(AlertTemplateRenderer.class),
+            AccessControlProvider.alwaysAllow)));
+
+    final UriInfo uriInfo = mock(UriInfo.class);
+    when(uriInfo.getQueryParameters()).thenReturn(new MultivaluedHashMap<>());
+    try (Response resp = resource.list(nobody(), uriInfo)) {
+      final List<AnomalyApi> anomalies = ((Stream<AnomalyApi>) resp.getEntity())
+          .collect(Collectors.toList());
+      assertThat(anomalies).extracting(AnomalyApi::getId).containsExactly(1L);
+      assertThat(anomalies.get(0).getFeedback().getId()).isEqualTo(10L);
+    }
+    // the list is decorated like any anomaly filter: the children are not loaded
+    verify(genericPojoDao, never()).get(anyList(), eq(AnomalyDTO.class));
+  }
+
+  /**
+   * Evaluates the id predicates of the task list queries: GT on the id for the pages.
+   */
+  private static List<TaskEntity> filterTasks(final List<TaskEntity> entities,
+      final Predicate predicate, final Long limit) {
+    final long after = afterId(predicate);
+    return entities.stream()
+        .filter(e -> e.getId() > after)
+        .limit(optional(limit).orElse(Long.MAX_VALUE))
+        .collect(Collectors.toList());
+  }
+
+  private static void mockPages(final DummyManager manager, final List<DummyDto> dtos,
+      final List<DaoFilter> filters) {
+    when(manager.filter(any(DaoFilter.class))).thenAnswer(invocation -> {
+      final DaoFilter filter = invocation.getArgument(0);
+      filters.add(filter);
+      final long after = afterId(filter.getPredicate());
+      final long offset = optional(filter.getOffset()).orElse(0L);
+      return dtos.stream()
+          .filter(dto -> dto.getId() > after)
+          .skip(offset)
+          .limit(filter.getLimit())
+          .collect(Collectors.toList());
+    });
+  }
+
+  private static long afterId(final Predicate predicate) {
+    if (predicate == null) {
+      return 0;
+    }
+    if (predicate.getOper() == OPER.AND) {
+      return Arrays.stream(predicate.getChildPredicates())
+          .mapToLong(CrudResourceTest::afterId)
+          .max()
+          .orElse(0);
+    }
+    return predicate.getOper() == OPER.GT ? (Long) predicate.getRhs() : 0;
+  }
+
   @Test(expectedExceptions = ForbiddenException.class)
   public void testGet_withNoAccess() {
     final DummyManager manager = mock(DummyManager.class);
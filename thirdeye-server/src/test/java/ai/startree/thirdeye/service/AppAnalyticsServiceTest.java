@@ -0,0 +1,109 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ai.startree.thirdeye.alert.AlertTemplateRenderer;
+import ai.startree.thirdeye.core.MonitoredMetricWrapper;
+import ai.startree.thirdeye.spi.api.AnomalyStatsApi;
+import ai.startree.thirdeye.spi.datalayer.DaoFilter;
+import ai.startree.thirdeye.spi.datalayer.Predicate;
+import ai.startree.thirdeye.spi.datalayer.bao.AlertManager;
+import ai.startree.thirdeye.spi.datalayer.bao.AnomalyManager;
+import ai.startree.thirdeye.spi.datalayer.dto.AlertDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AlertMetadataDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AlertTemplateDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.DataSourceDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.DatasetConfigDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.MetricConfigDTO;
+import ai.startree.thirdeye.spi.detection.AnomalyFeedbackType;
+import com.codahale.metrics.MetricRegistry;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import org.joda.time.Interval;
+import org.testng.annotations.Test;
+
+public class AppAnalyticsServiceTest {
+
+  private static AlertDTO alert(final long id, final long updateTime) {
+    final AlertDTO alert = new AlertDTO();
+    alert.setName("alert" + id + "-" + updateTime);
+    return (AlertDTO) alert.setId(id).setUpdateTime(new Timestamp(updateTime));
+  }
+
+  private static AlertTemplateDTO rendered(final String metric) {
+    return new AlertTemplateDTO().setMetadata(new AlertMetadataDTO()
+        .setDatasource(new DataSourceDTO().setName("datasource"))
+        .setDataset(new DatasetConfigDTO().setDataset("dataset"))
+        .setMetric(new MetricConfigDTO().setName(metric)));
+  }
+
+  @Test
+  public void testUniqueMonitoredMetricsOnlyRendersUpdatedAlerts() throws Exception {
+    final AlertManager alertManager = mock(AlertManager.class);
+    final AlertTemplateRenderer renderer = mock(AlertTemplateRenderer.class);
+    final AlertDTO alert1 = alert(1L, 1000L);
+    final AlertDTO alert2 = alert(2L, 1000L);
+    when(renderer.renderAlert(eq(alert1), any(Interval.class))).thenReturn(rendered("m1"));
+    when(renderer.renderAlert(eq(alert2), any(Interval.class))).thenReturn(rendered("m2"));
+    when(alertManager.findAllActive()).thenReturn(List.of(alert1, alert2));
+    final AppAnalyticsService service = new AppAnalyticsService(alertManager, renderer,
+        mock(AnomalyManager.class), new MetricRegistry());
+
+    assertThat(service.getUniqueMonitoredMetrics()).hasSize(2);
+    assertThat(service.getUniqueMonitoredMetrics()).hasSize(2);
+    verify(renderer, times(1)).renderAlert(eq(alert1), any(Interval.class));
+    verify(renderer, times(1)).renderAlert(eq(alert2), any(Interval.class));
+
+    // alert 2 is updated and now monitors the same metric as alert 1
+    final AlertDTO updatedAlert2 = alert(2L, 2000L);
+    when(renderer.renderAlert(eq(updatedAlert2), any(Interval.class))).thenReturn(rendered("m1"));
+    when(alertManager.findAllActive()).thenReturn(List.of(alert1, updatedAlert2));
+
+    assertThat(service.getUniqueMonitoredMetrics()).containsExactly(new MonitoredMetricWrapper()
+        .setDatasource("datasource")
+        .setDataset("dataset")
+        .setMetric("m1"));
+    verify(renderer, times(1)).renderAlert(eq(alert1), any(Interval.class));
+    verify(renderer, times(1)).renderAlert(eq(updatedAlert2), any(Interval.class));
+  }
+
+  @Test
+  public void testAnomalyStatsUseFeedbackTypeCounts() {
+    final AnomalyManager anomalyManager = mock(AnomalyManager.class);
+    final Map<AnomalyFeedbackType, Long> counts = Map.of(AnomalyFeedbackType.ANOMALY, 3L,
+        AnomalyFeedbackType.NOT_ANOMALY, 1L);
+    when(anomalyManager.countParentAnomaliesByFeedbackType(any(DaoFilter.class)))
+        .thenReturn(counts);
+    final AppAnalyticsService service = new AppAnalyticsService(mock(AlertManager.class),
+        mock(AlertTemplateRenderer.class), anomalyManager, new MetricRegistry());
+
+    final AnomalyStatsApi allStats = service.computeAnomalyStats(null);
+    assertThat(allStats.getFeedbackStats()).isEqualTo(counts);
+    // the stats without predicate are cached
+    service.computeAnomalyStats(null);
+    verify(anomalyManager, times(1)).countParentAnomaliesByFeedbackType(any(DaoFilter.class));
+
+    service.computeAnomalyStats(Predicate.GE("startTime", 0L));
+    verify(anomalyManager, times(2)).countParentAnomaliesByFeedbackType(any(DaoFilter.class));
+  }
+}
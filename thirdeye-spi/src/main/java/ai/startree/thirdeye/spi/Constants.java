@@ -50,6 +50,7 @@ public interface Constants {
 
   // Data Source Related Constants
   int DEFAULT_HEAP_PERCENTAGE_FOR_RESULTSETGROUP_CACHE = 25;
+  int DEFAULT_HEAP_PERCENTAGE_FOR_HISTORICAL_RESULTSETGROUP_CACHE = 10;
   int DEFAULT_LOWER_BOUND_OF_RESULTSETGROUP_CACHE_SIZE_IN_MB = 100;
   int DEFAULT_UPPER_BOUND_OF_RESULTSETGROUP_CACHE_SIZE_IN_MB = 8192;
 
@@ -84,6 +84,13 @@ public class Predicate {
     return new Predicate(columnName, OPER.IN, values);
   }
 
+  /**
+   * Matches the null values of the column. EQ and IN never match null values.
+   */
+  public static Predicate IS_NULL(String columnName) {
+    return new Predicate(columnName, OPER.IS_NULL, null);
+  }
+
   public static Predicate AND(Predicate... childPredicates) {
     return new Predicate(OPER.AND, childPredicates);
   }
@@ -128,7 +135,8 @@ public class Predicate {
     NEQ("!="),
     IN("IN"),
     BETWEEN("BETWEEN"),
-    LIKE("LIKE");
+    LIKE("LIKE"),
+    IS_NULL("IS NULL");
 
     private static final Map<String, OPER> STRING_TO_ENUM = Arrays.stream(OPER.values()).collect(
         Collectors.toMap(Object::toString, e -> e));
@@ -33,7 +33,7 @@ public class Templatable<T> {
   private @Nullable String templatedValue;
   private @Nullable T value;
   /**
-   * Name of the field containing the value. Used by TemplateEngineTemplatableSerializer.
+   * Name of the field containing the value. Used by StringTemplateUtils.
    */
   public static final String VALUE_FIELD_STRING = "value";
 
@@ -13,7 +13,16 @@
  */
 package ai.startree.thirdeye.spi.datalayer.bao;
 
+import ai.startree.thirdeye.spi.datalayer.Predicate;
 import ai.startree.thirdeye.spi.datalayer.dto.AlertTemplateDTO;
+import java.util.List;
 
 public interface AlertTemplateManager extends AbstractManager<AlertTemplateDTO> {
+
+  /**
+   * Reads the id, name and update time of the templates matching the predicate from the index
+   * table only. The other fields of the returned templates are not set. Use this method to check
+   * that a cached template is up to date without reading the template.
+   */
+  List<AlertTemplateDTO> findVersions(Predicate predicate);
 }
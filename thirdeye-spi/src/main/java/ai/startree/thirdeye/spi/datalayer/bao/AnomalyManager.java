@@ -16,12 +16,31 @@ package ai.startree.thirdeye.spi.datalayer.bao;
 import ai.startree.thirdeye.spi.datalayer.AnomalyFilter;
 import ai.startree.thirdeye.spi.datalayer.DaoFilter;
 import ai.startree.thirdeye.spi.datalayer.dto.AnomalyDTO;
+import ai.startree.thirdeye.spi.detection.AnomalyFeedbackType;
 import java.util.List;
+import java.util.Map;
 
 public interface AnomalyManager extends AbstractManager<AnomalyDTO> {
 
   AnomalyDTO findById(Long id);
 
+  /**
+   * Saves or updates anomalies and their children. Anomalies are persisted in batches, one batch
+   * per level of the anomaly graph, all in a single transaction.
+   *
+   * @return the ids of the anomalies, in the order of the anomalies. If the transaction failed,
+   *     nothing is saved and the ids of the new anomalies are null.
+   */
+  List<Long> saveAll(List<AnomalyDTO> anomalies);
+
+  /**
+   * Updates anomalies and saves or updates their children, in batches, in a single transaction.
+   *
+   * @return the number of anomalies that are persisted, children included. 0 if the transaction
+   *     failed.
+   */
+  int updateAll(List<AnomalyDTO> anomalies);
+
   List<AnomalyDTO> findByFunctionId(Long functionId);
 
   /**
@@ -48,4 +67,12 @@ public interface AnomalyManager extends AbstractManager<AnomalyDTO> {
 
   List<AnomalyDTO> filter(AnomalyFilter anomalyFilter);
   List<AnomalyDTO> findParentAnomaliesWithFeedback(DaoFilter filter);
+
+  /**
+   * Counts the parent anomalies with a feedback, by feedback type. Only the anomaly index and the
+   * feedbacks are read: anomalies are not loaded.
+   *
+   * @return the count of every feedback type, 0 included.
+   */
+  Map<AnomalyFeedbackType, Long> countParentAnomaliesByFeedbackType(DaoFilter filter);
 }
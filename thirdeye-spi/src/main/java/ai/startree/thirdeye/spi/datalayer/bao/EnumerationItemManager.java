@@ -15,6 +15,7 @@ package ai.startree.thirdeye.spi.datalayer.bao;
 
 import ai.startree.thirdeye.spi.datalayer.dto.EnumerationItemDTO;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public interface EnumerationItemManager extends AbstractManager<EnumerationItemDTO> {
 
@@ -24,4 +25,15 @@ public interface EnumerationItemManager extends AbstractManager<EnumerationItemD
 
   EnumerationItemDTO findExistingOrCreate(final EnumerationItemDTO source,
       final List<String> idKeys);
+
+  /**
+   * Bulk version of {@link #findExistingOrCreate(EnumerationItemDTO, List)}.
+   * All sources must belong to the same alert. The output list has the same order as the sources.
+   */
+  default List<EnumerationItemDTO> findExistingOrCreate(final List<EnumerationItemDTO> sources,
+      final List<String> idKeys) {
+    return sources.stream()
+        .map(source -> findExistingOrCreate(source, idKeys))
+        .collect(Collectors.toList());
+  }
 }
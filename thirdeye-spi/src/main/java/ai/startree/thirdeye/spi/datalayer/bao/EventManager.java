@@ -15,6 +15,7 @@ package ai.startree.thirdeye.spi.datalayer.bao;
 
 import ai.startree.thirdeye.spi.datalayer.dto.EventDTO;
 import java.util.List;
+import java.util.Map;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -34,6 +35,16 @@ public interface EventManager extends AbstractManager<EventDTO> {
   List<EventDTO> findEventsBetweenTimeRange(final long startTime, final long endTime,
       @Nullable final List<@NonNull String> eventTypes, @Nullable final String freeTextSqlFilter);
 
+  /**
+   * Returns the events overlapping the time range and matching at least one value of one dimension
+   * filter. Dimension names match if one contains the other once lower-cased and stripped of
+   * non-alphanumeric characters. Dimension values are compared lower-cased. Empty filters match
+   * all events.
+   */
+  List<EventDTO> findEventsBetweenTimeRangeByDimensions(long startTime, long endTime,
+      @Nullable List<@NonNull String> eventTypes,
+      @Nullable Map<String, List<String>> dimensionFilters);
+
   List<EventDTO> findEventsBetweenTimeRangeByName(String eventType, String name, long startTime,
       long endTime);
 }
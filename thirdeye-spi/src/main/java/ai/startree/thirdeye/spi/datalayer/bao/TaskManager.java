@@ -43,6 +43,31 @@ public interface TaskManager extends AbstractManager<TaskDTO> {
 
   List<TaskDTO> findByStatusAndWorkerId(Long workerId, TaskStatus status);
 
+  /**
+   * Atomically claims up to n WAITING tasks for the worker: the claimed tasks are returned in
+   * RUNNING status with workerId and startTime set.
+   *
+   * @param fetchSize max number of WAITING candidates read when the database does not support
+   *     SKIP LOCKED and tasks are claimed with optimistic locking. At least n.
+   * @param types task types to claim. All types are considered if empty.
+   */
+  List<TaskDTO> acquireNextTasks(long workerId, int n, int fetchSize, Set<TaskType> types);
+
+  /**
+   * Returns a value that changes whenever a task is created or set back to WAITING. Read from
+   * memory: does not query the database.
+   */
+  long getTaskGeneration();
+
+  /**
+   * Blocks until the task generation differs from the given generation, or until the timeout
+   * elapses. Returns immediately when a task is created or set back to WAITING by the same
+   * process. Tasks created by other processes are detected by polling.
+   *
+   * @return the latest task generation
+   */
+  long waitForNewTasks(long generation, Duration timeout) throws InterruptedException;
+
   boolean updateStatusAndWorkerId(Long workerId, Long id, Set<TaskStatus> allowedOldStatus,
       int expectedVersion);
 
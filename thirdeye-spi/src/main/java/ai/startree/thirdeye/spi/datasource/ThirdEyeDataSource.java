@@ -54,6 +54,26 @@ public interface ThirdEyeDataSource {
 
   DataTable fetchDataTable(DataSourceRequest request) throws Exception;
 
+  /**
+   * Returns true if the data source caches the results of time segments that cannot change
+   * anymore. Timeseries queries are then split in consecutive time segments, so that historical
+   * segments are served from the cache and only recent segments are queried.
+   *
+   * @return true if timeseries queries should be fetched segment by segment
+   */
+  default boolean cachesTimeSegments() {
+    return false;
+  }
+
+  /**
+   * Returns the statistics of the cache of time segments, see {@link #cachesTimeSegments()}.
+   *
+   * @return null if the data source does not cache time segments
+   */
+  default TimeSegmentCacheStats getTimeSegmentCacheStats() {
+    return null;
+  }
+
   /**
    * Returns boolean value to validate the health of data source
    *
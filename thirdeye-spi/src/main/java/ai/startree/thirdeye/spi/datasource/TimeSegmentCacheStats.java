@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 StarTree Inc
+ *
+ * Licensed under the StarTree Community License (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.startree.ai/legal/startree-community-license
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT * WARRANTIES OF ANY KIND,
+ * either express or implied.
+ * See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ai.startree.thirdeye.spi.datasource;
+
+/**
+ * Statistics of the cache of historical time segments of a {@link ThirdEyeDataSource}.
+ *
+ * @see ThirdEyeDataSource#cachesTimeSegments()
+ */
+public class TimeSegmentCacheStats {
+
+  public static final TimeSegmentCacheStats EMPTY = new TimeSegmentCacheStats(0, 0, 0);
+
+  private final long requestCount;
+  private final long hitCount;
+  private final long savedRowCount;
+
+  /**
+   * @param requestCount number of requests on historical time segments
+   * @param hitCount number of these requests served from the cache
+   * @param savedRowCount number of rows served from the cache instead of the data source
+   */
+  public TimeSegmentCacheStats(final long requestCount, final long hitCount,
+      final long savedRowCount) {
+    this.requestCount = requestCount;
+    this.hitCount = hitCount;
+    this.savedRowCount = savedRowCount;
+  }
+
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getSavedRowCount() {
+    return savedRowCount;
+  }
+
+  public TimeSegmentCacheStats plus(final TimeSegmentCacheStats other) {
+    return new TimeSegmentCacheStats(requestCount + other.requestCount,
+        hitCount + other.hitCount,
+        savedRowCount + other.savedRowCount);
+  }
+}
@@ -42,6 +42,8 @@ public class ContributorsSearchConfiguration {
    * The number of dimensions to be drilled down when analyzing the summary.
    * If 0, the order of the dimensions passed as input is respected.
    * If >0, dimension order should be automatically evaluated.
+   * For the simple algorithm: the maximum number of dimensions combined in a contributor. 0 and 1
+   * analyze dimensions one by one.
    * fixme cyril change this contract - it comes from the cube implementation
    */
   private final int depth;
@@ -23,10 +23,9 @@ import ai.startree.thirdeye.spi.task.TaskType;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
-import com.google.common.collect.ImmutableSet;
 import com.google.inject.Singleton;
 import java.io.IOException;
-import java.util.Collections;
+import java.time.Duration;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -44,10 +43,6 @@ public class TaskDriverRunnable implements Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(TaskDriverRunnable.class);
   private static final Random RANDOM = new Random();
-  private static final Set<TaskStatus> ALLOWED_OLD_TASK_STATUS = ImmutableSet.of(
-      TaskStatus.FAILED,
-      TaskStatus.WAITING
-  );
 
   private final TaskManager taskManager;
   private final TaskContext taskContext;
@@ -189,79 +184,52 @@ public class TaskDriverRunnable implements Runnable {
    */
   private TaskDTO waitForTask() {
     while (!isShutdown()) {
-      final List<TaskDTO> anomalyTasks = findTasks();
-
-      final boolean tasksFound = CollectionUtils.isNotEmpty(anomalyTasks);
-      if (tasksFound) {
-        final TaskDTO taskDTO = acquireTask(anomalyTasks);
-        if (taskDTO != null) {
+      try {
+        // read the generation before claiming: a task created after this point ends the wait
+        final long generation = taskManager.getTaskGeneration();
+        final List<TaskDTO> acquiredTasks = taskManager.acquireNextTasks(workerId,
+            1,
+            config.getTaskFetchSizeCap(),
+            Set.of());
+        if (CollectionUtils.isNotEmpty(acquiredTasks)) {
+          final TaskDTO taskDTO = acquiredTasks.get(0);
           taskFetchHitCounter.inc();
+          taskWaitingTimer.update(
+              System.currentTimeMillis() - taskDTO.getCreateTime().getTime(),
+              TimeUnit.MILLISECONDS);
           return taskDTO;
         }
-      }
-      taskFetchMissCounter.inc();
-      final long idleStart = System.currentTimeMillis();
-      sleep(!tasksFound);
-      workerIdleTimeInSeconds.inc((System.currentTimeMillis() - idleStart) / 1000);
-    }
-    return null;
-  }
-
-  private TaskDTO acquireTask(final List<TaskDTO> anomalyTasks) {
-    // shuffle candidate tasks to avoid synchronized patterns across threads (and hosts)
-    Collections.shuffle(anomalyTasks);
-
-    for (final TaskDTO taskDTO : anomalyTasks) {
-      try {
-        // Don't acquire a new task if shutting down.
-        if (!isShutdown()) {
-          boolean success = taskManager.updateStatusAndWorkerId(workerId,
-              taskDTO.getId(),
-              ALLOWED_OLD_TASK_STATUS,
-              taskDTO.getVersion());
-          if (success) {
-            taskWaitingTimer.update(
-                System.currentTimeMillis() - taskDTO.getCreateTime().getTime(),
-                TimeUnit.MILLISECONDS);
-            return taskDTO;
-          }
-        }
+        taskFetchMissCounter.inc();
+        idle(() -> waitForNewTasks(generation));
       } catch (Exception e) {
         LOG.warn("Got exception when acquiring task. (Worker Id: {})", workerId, e);
+        taskFetchMissCounter.inc();
+        idle(() -> Thread.sleep(config.getTaskFailureDelay().toMillis()));
       }
     }
     return null;
   }
 
-  private List<TaskDTO> findTasks() {
-    try {
-      // randomize fetching head and tail to reduce synchronized patterns across threads (and hosts)
-      boolean orderAscending = System.currentTimeMillis() % 2 == 0;
-
-      // find by task type to separate online task from a normal task
-      return taskManager.findByStatusOrderByCreateTime(TaskStatus.WAITING,
-          config.getTaskFetchSizeCap(),
-          orderAscending);
-    } catch (Exception e) {
-      LOG.error("Exception found in fetching new tasks", e);
-    }
-    return null;
+  /**
+   * Waits until a task is created. The wait is bounded by noTaskDelay plus a random delay, so
+   * that tasks that could not be claimed earlier are eventually retried.
+   */
+  private void waitForNewTasks(final long generation) throws InterruptedException {
+    final long timeout = config.getNoTaskDelay().toMillis() + RANDOM
+        .nextInt((int) config.getRandomDelayCap().toMillis());
+    taskManager.waitForNewTasks(generation, Duration.ofMillis(timeout));
   }
 
-  private void sleep(final boolean hasFetchError) {
-    final long sleepTime = hasFetchError
-        ? config.getTaskFailureDelay().toMillis()
-        : config.getNoTaskDelay().toMillis() + RANDOM
-            .nextInt((int) config.getRandomDelayCap().toMillis());
-    // sleep for few seconds if not tasks found - avoid cpu thrashing
-    // also add some extra random number of milli seconds to allow threads to start at different times
+  private void idle(final IdleAction action) {
+    final long idleStart = System.currentTimeMillis();
     try {
-      Thread.sleep(sleepTime);
+      action.run();
     } catch (InterruptedException e) {
       if (!isShutdown()) {
         LOG.warn(e.getMessage(), e);
       }
     }
+    workerIdleTimeInSeconds.inc((System.currentTimeMillis() - idleStart) / 1000);
   }
 
   private void updateTaskStatus(long taskId,
@@ -282,4 +250,9 @@ public class TaskDriverRunnable implements Runnable {
           message), e);
     }
   }
+
+  private interface IdleAction {
+
+    void run() throws InterruptedException;
+  }
 }
@@ -31,6 +31,7 @@ import ai.startree.thirdeye.spi.datalayer.dto.AlertDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.AlertTemplateDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.AnomalyDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.AnomalySubscriptionGroupNotificationDTO;
+import ai.startree.thirdeye.spi.datalayer.dto.AuthorizationConfigurationDTO;
 import ai.startree.thirdeye.spi.datalayer.dto.DetectionPipelineTaskInfo;
 import ai.startree.thirdeye.spi.detection.DetectionPipelineUsage;
 import ai.startree.thirdeye.spi.detection.v2.OperatorResult;
@@ -43,7 +44,12 @@ import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.Interval;
@@ -150,11 +156,10 @@ public class DetectionPipelineTaskRunner implements TaskRunner {
       alert.setLastTimestamp(newLastTimestamp);
       alertManager.update(alert);
 
-      optional(result.getAnomalies())
-          .orElse(Collections.emptyList())
-          .stream()
-          .map(this::setAnomalyAuth)
-          .forEach(anomalyDao::save);
+      final List<AnomalyDTO> anomalies = optional(result.getAnomalies())
+          .orElse(Collections.emptyList());
+      setAnomalyAuth(alert, anomalies);
+      anomalyDao.saveAll(anomalies);
 
       detectionTaskSuccessCounter.inc();
       LOG.info("Completed detection task for id {} between {} and {}. Detected {} anomalies.",
@@ -190,18 +195,37 @@ public class DetectionPipelineTaskRunner implements TaskRunner {
     return detectionPipelineResultMap.values().iterator().next();
   }
 
-  private AnomalyDTO setAnomalyAuth(final AnomalyDTO anomaly) {
-    optional(alertManager.findById(anomaly.getDetectionConfigId()))
-        .map(AbstractDTO::getAuth)
-        .ifPresent(anomaly::setAuth);
-
-    // Enumeration item auth overrides Alert auth.
-    optional(anomaly.getEnumerationItem())
+  /**
+   * Sets the auth of the anomalies. The alert and enumeration items are fetched once for all
+   * anomalies.
+   */
+  private void setAnomalyAuth(final AlertDTO alert, final List<AnomalyDTO> anomalies) {
+    final Map<Long, Optional<AuthorizationConfigurationDTO>> alertAuths = new HashMap<>();
+    final Map<Long, AuthorizationConfigurationDTO> enumerationItemAuths = new HashMap<>();
+    alertAuths.put(alert.getId(), optional(alert.getAuth()));
+    final List<Long> enumerationItemIds = anomalies.stream()
+        .map(AnomalyDTO::getEnumerationItem)
+        .filter(Objects::nonNull)
         .map(AbstractDTO::getId)
-        .map(enumerationItemManager::findById)
-        .map(AbstractDTO::getAuth)
-        .ifPresent(anomaly::setAuth);
+        .filter(Objects::nonNull)
+        .distinct()
+        .collect(Collectors.toList());
+    if (!enumerationItemIds.isEmpty()) {
+      enumerationItemManager.findByIds(enumerationItemIds)
+          .forEach(item -> enumerationItemAuths.put(item.getId(), item.getAuth()));
+    }
 
-    return anomaly;
+    for (final AnomalyDTO anomaly : anomalies) {
+      optional(anomaly.getDetectionConfigId())
+          .flatMap(alertId -> alertAuths.computeIfAbsent(alertId, id -> optional(
+              alertManager.findById(id)).map(AbstractDTO::getAuth)))
+          .ifPresent(anomaly::setAuth);
+
+      // Enumeration item auth overrides Alert auth.
+      optional(anomaly.getEnumerationItem())
+          .map(AbstractDTO::getId)
+          .map(enumerationItemAuths::get)
+          .ifPresent(anomaly::setAuth);
+    }
   }
 }